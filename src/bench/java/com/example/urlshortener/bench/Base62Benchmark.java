@@ -0,0 +1,65 @@
+package com.example.urlshortener.bench;
+
+import com.example.urlshortener.util.Base62Encoder;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Base62Encoder for 48-bit hash codes and small int ids: String and
+ * caller-buffer encoding, and validated decoding
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class Base62Benchmark {
+
+    private static final int VALUES = 1024;
+
+    private final long[] longs = new long[VALUES];
+    private final int[] ints = new int[VALUES];
+    private final String[] codes = new String[VALUES];
+    private final char[] buffer = new char[Base62Encoder.MAX_LENGTH];
+    private int next;
+
+    @Setup
+    public void setUp() {
+        SplittableRandom random = new SplittableRandom(42);
+        for (int i = 0; i < VALUES; i++) {
+            longs[i] = random.nextLong() & 0xFFFFFFFFFFFFL;
+            ints[i] = random.nextInt(1_000_000);
+            codes[i] = Base62Encoder.encode(longs[i]);
+        }
+    }
+
+    @Benchmark
+    public String encode48BitHash() {
+        return Base62Encoder.encode(longs[next++ & (VALUES - 1)]);
+    }
+
+    @Benchmark
+    public char[] encode48BitHashIntoBuffer() {
+        Base62Encoder.encodeFixed(longs[next++ & (VALUES - 1)], buffer, 0, 9);
+        return buffer;
+    }
+
+    @Benchmark
+    public long decode48BitHash() {
+        return Base62Encoder.decode(codes[next++ & (VALUES - 1)]);
+    }
+
+    @Benchmark
+    public String encodeIntId() {
+        return Base62Encoder.encode(ints[next++ & (VALUES - 1)]);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public String encode48BitHashContended() {
+        return Base62Encoder.encode(longs[next++ & (VALUES - 1)]);
+    }
+}
@@ -0,0 +1,124 @@
+package com.example.urlshortener.bench;
+
+import com.example.urlshortener.UrlShortenerApplication;
+import com.example.urlshortener.service.BulkShortenService;
+import com.example.urlshortener.service.UrlService;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Creating BATCH links with one /shorten/batch request against BATCH
+ * requests to /shorten, and the same without HTTP: one BulkShortenService
+ * call against BATCH UrlService calls. Scores are links per millisecond.
+ * Runs the application on a random port with an in-memory H2 database and
+ * admission control off.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+@State(Scope.Benchmark)
+public class BulkShortenBenchmark {
+
+    private static final int BATCH = 1000;
+
+    private ConfigurableApplicationContext context;
+    private UrlService urlService;
+    private BulkShortenService bulkShortenService;
+    private HttpClient http;
+    private URI shortenUri;
+    private URI batchUri;
+    private long next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = new SpringApplicationBuilder(UrlShortenerApplication.class)
+                .run("--server.port=0",
+                        "--spring.datasource.url=jdbc:h2:mem:bench-bulk;MODE=MySQL;DB_CLOSE_DELAY=-1",
+                        "--spring.datasource.username=sa",
+                        "--spring.datasource.password=",
+                        "--spring.datasource.driver-class-name=org.h2.Driver",
+                        "--spring.jpa.hibernate.ddl-auto=create",
+                        "--spring.jpa.show-sql=false",
+                        "--urlshortener.cache.snapshot.enabled=false",
+                        "--urlshortener.admission.enabled=false",
+                        "--logging.level.root=WARN");
+        urlService = context.getBean(UrlService.class);
+        bulkShortenService = context.getBean(BulkShortenService.class);
+        String baseUrl = "http://localhost:" + ((WebServerApplicationContext) context).getWebServer().getPort();
+        shortenUri = URI.create(baseUrl + "/shorten");
+        batchUri = URI.create(baseUrl + "/shorten/batch");
+        http = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public void singleCalls(Blackhole blackhole) {
+        for (int i = 0; i < BATCH; i++) {
+            blackhole.consume(urlService.shortenUrl(nextUrl()));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public void batch(Blackhole blackhole) throws IOException {
+        List<Map<String, String>> items = new ArrayList<>(BATCH);
+        for (int i = 0; i < BATCH; i++) {
+            items.add(Map.of("longUrl", nextUrl()));
+        }
+        bulkShortenService.shorten(items.iterator(), "http://localhost:8080/r/", blackhole::consume);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public void singleRequests(Blackhole blackhole) throws IOException, InterruptedException {
+        for (int i = 0; i < BATCH; i++) {
+            blackhole.consume(post(shortenUri, "{\"longUrl\":\"" + nextUrl() + "\"}"));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public String batchRequest() throws IOException, InterruptedException {
+        StringBuilder body = new StringBuilder("[");
+        for (int i = 0; i < BATCH; i++) {
+            body.append(i == 0 ? "" : ",").append("{\"longUrl\":\"").append(nextUrl()).append("\"}");
+        }
+        return post(batchUri, body.append(']').toString());
+    }
+
+    private String post(URI uri, String body) throws IOException, InterruptedException {
+        HttpResponse<String> response = http.send(HttpRequest.newBuilder(uri)
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .build(), HttpResponse.BodyHandlers.ofString());
+        if (response.statusCode() != 200) {
+            throw new IllegalStateException(uri + " answered " + response.statusCode());
+        }
+        return response.body();
+    }
+
+    private String nextUrl() {
+        long n = next++;
+        return "https://example.com/articles/" + n + "/some-fairly-typical-slug?utm_source=newsletter&id=" + n * 31;
+    }
+}
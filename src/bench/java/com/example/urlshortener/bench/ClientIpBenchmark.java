@@ -0,0 +1,40 @@
+package com.example.urlshortener.bench;
+
+import com.example.urlshortener.util.ClientIpResolver;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Client IP resolution from proxy headers: ClientIpResolver against the
+ * split(",") based parsing that UrlController.getClientIpAddress used
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ClientIpBenchmark {
+
+    @Param({"203.0.113.7", "203.0.113.7, 10.0.0.1, 10.0.0.2"})
+    public String forwardedFor;
+
+    @Benchmark
+    public String resolver() {
+        return ClientIpResolver.resolve(forwardedFor, null, "10.0.0.9");
+    }
+
+    @Benchmark
+    public String legacySplit() {
+        if (forwardedFor != null && !forwardedFor.isEmpty()) {
+            return forwardedFor.split(",")[0].trim();
+        }
+        return "10.0.0.9";
+    }
+
+    @Benchmark
+    public String remoteAddressOnly() {
+        return ClientIpResolver.resolve(null, null, "0:0:0:0:0:0:0:1");
+    }
+}
@@ -0,0 +1,56 @@
+package com.example.urlshortener.bench;
+
+import com.example.urlshortener.service.HashShortCodeGenerator;
+import org.openjdk.jmh.annotations.*;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The SHA-256 truncation of HashShortCodeGenerator, with a MessageDigest per
+ * call (as generate() does today) and with one reused per thread
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class HashShortCodeBenchmark {
+
+    private static final int URLS = 1024;
+
+    private final String[] urls = new String[URLS];
+    private MessageDigest digest;
+    private int next;
+
+    @Setup
+    public void setUp() throws NoSuchAlgorithmException {
+        for (int i = 0; i < URLS; i++) {
+            urls[i] = "https://example.com/articles/" + i + "/some-fairly-typical-slug?utm_source=newsletter&id=" + i * 31;
+        }
+        digest = MessageDigest.getInstance("SHA-256");
+    }
+
+    @Benchmark
+    public String newDigestPerCall() throws NoSuchAlgorithmException {
+        return HashShortCodeGenerator.candidate(MessageDigest.getInstance("SHA-256"), urls[next++ & (URLS - 1)], 0);
+    }
+
+    @Benchmark
+    public String reusedDigest() {
+        return HashShortCodeGenerator.candidate(digest, urls[next++ & (URLS - 1)], 0);
+    }
+
+    @Benchmark
+    public String retryAttempt() {
+        return HashShortCodeGenerator.candidate(digest, urls[next++ & (URLS - 1)], 3);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public String newDigestPerCallContended() throws NoSuchAlgorithmException {
+        return HashShortCodeGenerator.candidate(MessageDigest.getInstance("SHA-256"), urls[next++ & (URLS - 1)], 0);
+    }
+}
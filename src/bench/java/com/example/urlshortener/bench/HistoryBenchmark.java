@@ -0,0 +1,73 @@
+package com.example.urlshortener.bench;
+
+import com.example.urlshortener.util.URLHistoryStack;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * URLHistoryStack (ring buffer) against the old Stack based class, alone
+ * and with three writers racing one reader on a shared, full history
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Group)
+public class HistoryBenchmark {
+
+    private URLHistoryStack ring;
+    private LegacyURLHistoryStack legacy;
+
+    @Setup
+    public void setUp() {
+        ring = new URLHistoryStack();
+        legacy = new LegacyURLHistoryStack();
+        for (int i = 0; i < 100; i++) {
+            ring.pushHistory("https://example.com/" + i, "code" + i);
+            legacy.pushHistory("https://example.com/" + i, "code" + i);
+        }
+    }
+
+    @Benchmark
+    @Group("ringPushOnly")
+    public void ringPush() {
+        ring.pushHistory("https://example.com/x", "abc123");
+    }
+
+    @Benchmark
+    @Group("legacyPushOnly")
+    public void legacyPush() {
+        legacy.pushHistory("https://example.com/x", "abc123");
+    }
+
+    @Benchmark
+    @Group("ringContended")
+    @GroupThreads(3)
+    public void ringWriter() {
+        ring.pushHistory("https://example.com/x", "abc123");
+    }
+
+    @Benchmark
+    @Group("ringContended")
+    @GroupThreads(1)
+    public List<URLHistoryStack.UrlHistoryEntry> ringReader() {
+        return ring.getHistoryList();
+    }
+
+    @Benchmark
+    @Group("legacyContended")
+    @GroupThreads(3)
+    public void legacyWriter() {
+        legacy.pushHistory("https://example.com/x", "abc123");
+    }
+
+    @Benchmark
+    @Group("legacyContended")
+    @GroupThreads(1)
+    public List<URLHistoryStack.UrlHistoryEntry> legacyReader() {
+        return legacy.getHistoryList();
+    }
+}
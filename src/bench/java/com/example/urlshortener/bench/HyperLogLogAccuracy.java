@@ -0,0 +1,63 @@
+package com.example.urlshortener.bench;
+
+import com.example.urlshortener.util.HyperLogLog;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.SplittableRandom;
+
+/**
+ * Compares HyperLogLog estimates with exact distinct counts on synthetic
+ * visitor streams (with repeat visits), and checks that merged daily
+ * sketches match the exact size of the union. Not a timing benchmark; run
+ * with java -cp target/classes:... com.example.urlshortener.bench.HyperLogLogAccuracy
+ */
+public class HyperLogLogAccuracy {
+
+    private static final int TRIALS = 20;
+
+    public static void main(String[] args) {
+        SplittableRandom random = new SplittableRandom(2024);
+        System.out.printf("%10s %12s %12s %12s%n", "distinct", "mean |err|", "max |err|", "expected σ");
+        for (int distinct : new int[]{10, 100, 1_000, 10_000, 100_000, 1_000_000}) {
+            double sumError = 0;
+            double maxError = 0;
+            for (int trial = 0; trial < TRIALS; trial++) {
+                HyperLogLog sketch = new HyperLogLog();
+                Set<String> exact = new HashSet<>();
+                long base = random.nextLong();
+                // Each visitor comes back a few times
+                for (int visit = 0; visit < distinct * 3; visit++) {
+                    String visitor = "198.51." + (base + random.nextInt(distinct)) + "|Mozilla/5.0";
+                    sketch.offer(visitor);
+                    exact.add(visitor);
+                }
+                double error = Math.abs(sketch.estimate() - exact.size()) / (double) exact.size();
+                sumError += error;
+                maxError = Math.max(maxError, error);
+            }
+            System.out.printf("%10d %11.2f%% %11.2f%% %11.2f%%%n", distinct,
+                    100 * sumError / TRIALS, 100 * maxError, 100 * new HyperLogLog().standardError());
+        }
+
+        // Thirty overlapping days, merged
+        HyperLogLog merged = new HyperLogLog();
+        Set<String> union = new HashSet<>();
+        for (int day = 0; day < 30; day++) {
+            HyperLogLog daily = HyperLogLog.fromBytes(dailySketch(day, union).toBytes());
+            merged.merge(daily);
+        }
+        System.out.printf("30 merged days: estimate %d, exact %d%n", merged.estimate(), union.size());
+    }
+
+    private static HyperLogLog dailySketch(int day, Set<String> union) {
+        HyperLogLog sketch = new HyperLogLog();
+        // 5000 visitors a day, half of them returning from the previous days
+        for (int i = 0; i < 5000; i++) {
+            String visitor = "v" + (i < 2500 ? i : day * 5000 + i);
+            sketch.offer(visitor);
+            union.add(visitor);
+        }
+        return sketch;
+    }
+}
@@ -0,0 +1,110 @@
+package com.example.urlshortener.bench;
+
+import com.example.urlshortener.util.CuckooFilter;
+import com.example.urlshortener.util.FrequencyCache;
+import com.example.urlshortener.util.HyperLogLog;
+import com.example.urlshortener.util.SpaceSaving;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-redirect cost of the in-memory structures on the redirect path:
+ * cache lookup, existence filter, top-K tracker and visitor sketch.
+ * Keys follow a skewed (Zipf-like) popularity, as real links do.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class InMemoryStructuresBenchmark {
+
+    private static final int KEYS = 100_000;
+    private static final int SAMPLES = 1 << 16;
+
+    @State(Scope.Benchmark)
+    public static class Shared {
+        final String[] keys = new String[KEYS];
+        final String[] missingKeys = new String[SAMPLES];
+        final int[] skewed = new int[SAMPLES];
+        FrequencyCache<String, String> cache;
+        CuckooFilter filter;
+        SpaceSaving<String> topK;
+
+        @Setup
+        public void setUp() {
+            SplittableRandom random = new SplittableRandom(7);
+            for (int i = 0; i < KEYS; i++) {
+                keys[i] = Long.toString(random.nextLong() & 0xFFFFFFFFFFFFL, 36);
+            }
+            // Inverse-power sampling: key i is drawn roughly in proportion to 1 / (i + 1)
+            for (int i = 0; i < SAMPLES; i++) {
+                skewed[i] = (int) Math.min(KEYS - 1, Math.floor(Math.pow(KEYS, random.nextDouble())) - 1);
+            }
+            for (int i = 0; i < SAMPLES; i++) {
+                missingKeys[i] = "missing-" + i;
+            }
+            cache = new FrequencyCache<>(10_000);
+            filter = new CuckooFilter(KEYS, 0.001);
+            topK = new SpaceSaving<>(1000);
+            for (int i = 0; i < KEYS; i++) {
+                filter.add(keys[i]);
+            }
+            for (int i = 0; i < SAMPLES; i++) {
+                String key = keys[skewed[i]];
+                if (cache.get(key) == null) {
+                    cache.put(key, key, Long.MAX_VALUE);
+                }
+            }
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Cursor {
+        int next;
+        final HyperLogLog visitors = new HyperLogLog();
+
+        String key(Shared shared) {
+            return shared.keys[shared.skewed[next++ & (SAMPLES - 1)]];
+        }
+    }
+
+    @Benchmark
+    public String cacheGet(Shared shared, Cursor cursor) {
+        return shared.cache.get(cursor.key(shared));
+    }
+
+    @Benchmark
+    @Threads(4)
+    public String cacheGetContended(Shared shared, Cursor cursor) {
+        return shared.cache.get(cursor.key(shared));
+    }
+
+    @Benchmark
+    public boolean filterHit(Shared shared, Cursor cursor) {
+        return shared.filter.mightContain(cursor.key(shared));
+    }
+
+    @Benchmark
+    public boolean filterMiss(Shared shared, Cursor cursor) {
+        return shared.filter.mightContain(shared.missingKeys[cursor.next++ & (SAMPLES - 1)]);
+    }
+
+    @Benchmark
+    public void topKOffer(Shared shared, Cursor cursor) {
+        shared.topK.offer(cursor.key(shared));
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void topKOfferContended(Shared shared, Cursor cursor) {
+        shared.topK.offer(cursor.key(shared));
+    }
+
+    @Benchmark
+    public void visitorSketchOffer(Shared shared, Cursor cursor) {
+        cursor.visitors.offer(cursor.key(shared));
+    }
+}
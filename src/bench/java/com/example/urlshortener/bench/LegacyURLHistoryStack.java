@@ -0,0 +1,43 @@
+package com.example.urlshortener.bench;
+
+import com.example.urlshortener.util.URLHistoryStack.UrlHistoryEntry;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Stack;
+
+/**
+ * The java.util.Stack based URLHistoryStack as it was before the ring
+ * buffer, kept as the baseline for HistoryBenchmark. The compound
+ * operations hold the Stack's monitor, which the original needed (and
+ * lacked) to be safe when shared between request threads.
+ */
+public class LegacyURLHistoryStack {
+
+    private static final int MAX_HISTORY_SIZE = 100;
+
+    private final Stack<UrlHistoryEntry> historyStack = new Stack<>();
+
+    public void pushHistory(String originalUrl, String shortCode) {
+        synchronized (historyStack) {
+            if (historyStack.size() >= MAX_HISTORY_SIZE) {
+                historyStack.remove(0); // Remove oldest entry
+            }
+            historyStack.push(new UrlHistoryEntry(originalUrl, shortCode));
+        }
+    }
+
+    public UrlHistoryEntry peekHistory() {
+        return historyStack.isEmpty() ? null : historyStack.peek();
+    }
+
+    public List<UrlHistoryEntry> getHistoryList() {
+        synchronized (historyStack) {
+            List<UrlHistoryEntry> list = new ArrayList<>();
+            for (int i = historyStack.size() - 1; i >= 0; i--) {
+                list.add(historyStack.get(i));
+            }
+            return list;
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package com.example.urlshortener.bench;
+
+import com.example.urlshortener.UrlShortenerApplication;
+import com.example.urlshortener.model.LinkSummary;
+import com.example.urlshortener.model.UrlMapping;
+import com.example.urlshortener.service.LinkStore;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.orm.jpa.SharedEntityManagerCreator;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Listing 100k active links as JSON: hydrating UrlMapping entities (as the
+ * listings did before, in a read-only and in a read-write transaction)
+ * against the LinkSummary projection the listings use now. Runs the
+ * application without a web server on an in-memory H2 database; use
+ * -prof gc to compare allocation per listing.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+@State(Scope.Benchmark)
+public class ListingProjectionBenchmark {
+
+    private static final int ROWS = 100_000;
+    private static final String ENTITY_QUERY =
+            "SELECT u FROM UrlMapping u WHERE u.expiresAt IS NULL OR u.expiresAt > CURRENT_TIMESTAMP ORDER BY u.createdAt DESC";
+
+    private ConfigurableApplicationContext context;
+    private LinkStore linkStore;
+    private EntityManager entityManager;
+    private TransactionTemplate readOnlyTransaction;
+    private TransactionTemplate readWriteTransaction;
+    private ObjectMapper objectMapper;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = new SpringApplicationBuilder(UrlShortenerApplication.class)
+                .web(WebApplicationType.NONE)
+                .run("--spring.datasource.url=jdbc:h2:mem:bench;MODE=MySQL;DB_CLOSE_DELAY=-1",
+                        "--spring.datasource.username=sa",
+                        "--spring.datasource.password=",
+                        "--spring.datasource.driver-class-name=org.h2.Driver",
+                        "--spring.jpa.hibernate.ddl-auto=create",
+                        "--spring.jpa.show-sql=false",
+                        "--urlshortener.cache.snapshot.enabled=false",
+                        "--logging.level.root=WARN");
+        linkStore = context.getBean(LinkStore.class);
+        entityManager = SharedEntityManagerCreator.createSharedEntityManager(context.getBean(EntityManagerFactory.class));
+        PlatformTransactionManager transactionManager = context.getBean(PlatformTransactionManager.class);
+        readOnlyTransaction = new TransactionTemplate(transactionManager);
+        readOnlyTransaction.setReadOnly(true);
+        readWriteTransaction = new TransactionTemplate(transactionManager);
+        objectMapper = context.getBean(ObjectMapper.class);
+
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        List<Object[]> rows = new ArrayList<>(ROWS);
+        for (int i = 0; i < ROWS; i++) {
+            rows.add(new Object[]{"bench" + i, "https://example.com/bench/" + i + "/a-reasonably-long-article-slug", i, now});
+        }
+        context.getBean(JdbcTemplate.class).batchUpdate(
+                "INSERT INTO url_mapping (short_code, original_url, click_count, created_at) VALUES (?, ?, ?, ?)", rows);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public byte[] entitiesReadOnly() throws Exception {
+        List<UrlMapping> rows = readOnlyTransaction.execute(status ->
+                entityManager.createQuery(ENTITY_QUERY, UrlMapping.class).getResultList());
+        return objectMapper.writeValueAsBytes(rows);
+    }
+
+    @Benchmark
+    public byte[] entitiesReadWrite() throws Exception {
+        List<UrlMapping> rows = readWriteTransaction.execute(status ->
+                entityManager.createQuery(ENTITY_QUERY, UrlMapping.class).getResultList());
+        return objectMapper.writeValueAsBytes(rows);
+    }
+
+    @Benchmark
+    public byte[] projections() throws Exception {
+        List<LinkSummary> rows = linkStore.findAllActive();
+        return objectMapper.writeValueAsBytes(rows);
+    }
+}
@@ -0,0 +1,70 @@
+package com.example.urlshortener.bench;
+
+import com.example.urlshortener.UrlShortenerApplication;
+import com.example.urlshortener.service.UrlService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Creating links end to end through UrlService with the hash and the range
+ * code strategies: code generation, the existence check (hash only), the
+ * insert and the bookkeeping after it. Runs the application without a web
+ * server on an in-memory H2 database; every call shortens a URL not seen before.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+@State(Scope.Benchmark)
+public class ShortenBenchmark {
+
+    @Param({"hash", "range"})
+    public String strategy;
+
+    private final AtomicLong next = new AtomicLong();
+    private ConfigurableApplicationContext context;
+    private UrlService urlService;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = new SpringApplicationBuilder(UrlShortenerApplication.class)
+                .web(WebApplicationType.NONE)
+                .run("--spring.datasource.url=jdbc:h2:mem:bench-" + strategy + ";MODE=MySQL;DB_CLOSE_DELAY=-1",
+                        "--spring.datasource.username=sa",
+                        "--spring.datasource.password=",
+                        "--spring.datasource.driver-class-name=org.h2.Driver",
+                        "--spring.jpa.hibernate.ddl-auto=create",
+                        "--spring.jpa.show-sql=false",
+                        "--urlshortener.cache.snapshot.enabled=false",
+                        "--urlshortener.codegen.strategy=" + strategy,
+                        "--logging.level.root=WARN");
+        urlService = context.getBean(UrlService.class);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public String shorten() {
+        return urlService.shortenUrl(nextUrl());
+    }
+
+    @Benchmark
+    @Threads(4)
+    public String shortenContended() {
+        return urlService.shortenUrl(nextUrl());
+    }
+
+    private String nextUrl() {
+        long n = next.getAndIncrement();
+        return "https://example.com/articles/" + n + "/some-fairly-typical-slug?utm_source=newsletter&id=" + n * 31;
+    }
+}
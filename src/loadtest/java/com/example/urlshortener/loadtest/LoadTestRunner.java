@@ -0,0 +1,443 @@
+package com.example.urlshortener.loadtest;
+
+import com.example.urlshortener.UrlShortenerApplication;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.HdrHistogram.Histogram;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.context.event.ApplicationEnvironmentPreparedEvent;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ApplicationListener;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.core.env.ConfigurableEnvironment;
+import org.springframework.core.env.Environment;
+import org.springframework.core.env.MapPropertySource;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+/**
+ * LoadTestRunner boots the application against an embedded H2 database,
+ * lets LoadTestSeeder fill the link store, then drives a mix of shorten,
+ * batch shorten, redirect, analytics and top-URL requests from
+ * loadtest.clients threads.
+ *
+ * Codes for redirects and analytics are drawn from a Zipf distribution over
+ * the seeded links. After a warm-up, every response time is recorded in an
+ * HdrHistogram per request type; throughput and latency percentiles are
+ * printed and written as JSON to loadtest.output. Batch requests create
+ * loadtest.batch-size links each, so links/s is reported next to req/s.
+ *
+ * Clients are closed loop (the next request is sent when the previous
+ * response arrives), so the numbers describe the capacity of one instance
+ * at the given concurrency rather than latency at a fixed arrival rate.
+ *
+ * With --loadtest.compare=cache or storage the whole run is repeated once per variant
+ * (see COMPARISONS), each on a freshly booted application, and the variants'
+ * results are printed side by side and written together.
+ */
+public final class LoadTestRunner {
+
+    private static final Logger log = LoggerFactory.getLogger(LoadTestRunner.class);
+
+    enum Endpoint {
+        SHORTEN(200), SHORTEN_BATCH(200), REDIRECT(302), ANALYTICS(200), TOP(200);
+
+        private final int expectedStatus;
+
+        Endpoint(int expectedStatus) {
+            this.expectedStatus = expectedStatus;
+        }
+    }
+
+    private static final String COMPARE_ARG = "--loadtest.compare=";
+    private static final String OUTPUT_ARG = "--loadtest.output=";
+    private static final String SNAPSHOT_PATH_ARG = "--urlshortener.cache.snapshot.path=";
+    // A fresh temporary directory per JVM for the files the application writes, so a run
+    // never starts from an earlier run's files and nothing is written into the working tree
+    private static final Path RUN_DIR = createRunDir();
+
+    /**
+     * Variants of each comparison: name and the settings added to the run's arguments
+     */
+    private static final Map<String, Map<String, List<String>>> COMPARISONS = Map.of(
+            "cache", orderedMap(
+                    "cache-on", List.of("--urlshortener.cache.enabled=true"),
+                    "cache-off", List.of("--urlshortener.cache.enabled=false", "--urlshortener.cache.snapshot.enabled=false")),
+            "storage", orderedMap(
+                    "jpa", List.of("--urlshortener.storage=jpa"),
+                    "log", List.of("--urlshortener.storage=log", "--urlshortener.storage.log.dir=" + RUN_DIR.resolve("links"))));
+
+    private LoadTestRunner() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        String compare = argument(args, COMPARE_ARG);
+        int exitCode = 0;
+        try {
+            if (compare == null || compare.isEmpty()) {
+                writeResult(args, runOnce(args));
+            } else {
+                compare(compare, args);
+            }
+        } catch (Exception e) {
+            log.error("Load test failed", e);
+            exitCode = 1;
+        }
+        System.exit(exitCode);
+    }
+
+    private static Map<String, Object> runOnce(String[] args) throws Exception {
+        if (argument(args, SNAPSHOT_PATH_ARG) == null) {
+            List<String> withSnapshot = new ArrayList<>(List.of(args));
+            withSnapshot.add(SNAPSHOT_PATH_ARG + RUN_DIR.resolve("hot-set.bin"));
+            args = withSnapshot.toArray(new String[0]);
+        }
+        SpringApplication application = new SpringApplication(UrlShortenerApplication.class);
+        application.addListeners((ApplicationListener<ApplicationEnvironmentPreparedEvent>) event ->
+                registerApiKeys(event.getEnvironment()));
+        ConfigurableApplicationContext context = application.run(args);
+        try {
+            return new Run(context).execute();
+        } finally {
+            context.close();
+        }
+    }
+
+    /**
+     * Every client sends its own API key, so each gets its own rate limits
+     */
+    private static void registerApiKeys(ConfigurableEnvironment env) {
+        int clients = env.getRequiredProperty("loadtest.clients", Integer.class);
+        StringBuilder keys = new StringBuilder();
+        for (int i = 0; i < clients; i++) {
+            keys.append(i == 0 ? "" : ",").append(apiKey(i));
+        }
+        env.getPropertySources().addFirst(new MapPropertySource("loadtestApiKeys",
+                Map.of("urlshortener.admission.api-keys", keys.toString())));
+    }
+
+    private static String apiKey(int client) {
+        return "loadtest-client-" + client;
+    }
+
+    private static void compare(String name, String[] args) throws Exception {
+        Map<String, List<String>> variants = COMPARISONS.get(name);
+        if (variants == null) {
+            throw new IllegalArgumentException("loadtest.compare must be one of " + COMPARISONS.keySet());
+        }
+        Map<String, Object> results = new LinkedHashMap<>();
+        for (Map.Entry<String, List<String>> variant : variants.entrySet()) {
+            log.info("Running variant {}", variant.getKey());
+            List<String> variantArgs = new ArrayList<>(List.of(args));
+            variantArgs.addAll(variant.getValue());
+            results.put(variant.getKey(), runOnce(variantArgs.toArray(new String[0])));
+        }
+
+        System.out.printf("%n%-13s %-12s %10s %9s %9s %9s%n", "endpoint", "variant", "req/s", "p50 ms", "p99 ms", "p99.9 ms");
+        for (Endpoint endpoint : Endpoint.values()) {
+            results.forEach((variant, result) -> {
+                @SuppressWarnings("unchecked")
+                Map<String, Object> row = (Map<String, Object>) ((Map<String, Object>) ((Map<String, Object>) result)
+                        .get("endpoints")).get(endpoint.name().toLowerCase());
+                if ((Long) row.get("requests") > 0) {
+                    System.out.printf("%-13s %-12s %10.0f %9.2f %9.2f %9.2f%n", endpoint.name().toLowerCase(), variant,
+                            row.get("throughputPerSecond"), row.get("p50Millis"), row.get("p99Millis"), row.get("p999Millis"));
+                }
+            });
+        }
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("compare", name);
+        result.put("variants", results);
+        writeResult(args, result);
+    }
+
+    private static void writeResult(String[] args, Map<String, Object> result) throws IOException {
+        String output = argument(args, OUTPUT_ARG);
+        if (output != null && !output.isEmpty()) {
+            new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT).writeValue(new File(output), result);
+            System.out.println("Results written to " + output);
+        }
+    }
+
+    private static String argument(String[] args, String prefix) {
+        String value = null;
+        for (String arg : args) {
+            if (arg.startsWith(prefix)) {
+                value = arg.substring(prefix.length());
+            }
+        }
+        return value;
+    }
+
+    private static Path createRunDir() {
+        try {
+            return Files.createTempDirectory("urlshortener-loadtest-");
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static <V> Map<String, V> orderedMap(String k1, V v1, String k2, V v2) {
+        Map<String, V> map = new LinkedHashMap<>();
+        map.put(k1, v1);
+        map.put(k2, v2);
+        return map;
+    }
+
+    private static final class Run {
+
+        private final Environment env;
+        private final String baseUrl;
+        private final String redirectBaseUrl;
+        private final int rows;
+        private final int clients;
+        private final int warmupSeconds;
+        private final int durationSeconds;
+        private final double zipfExponent;
+        private final int batchSize;
+        private final int[] weights = new int[Endpoint.values().length];
+        private final int totalWeight;
+        private final HttpClient http;
+
+        private volatile boolean measuring;
+        private volatile boolean stopped;
+
+        Run(ConfigurableApplicationContext context) {
+            this.env = context.getEnvironment();
+            int port = ((WebServerApplicationContext) context).getWebServer().getPort();
+            this.baseUrl = "http://localhost:" + port;
+            this.redirectBaseUrl = "listener".equals(env.getProperty("loadtest.redirect-target"))
+                    ? "http://localhost:" + env.getProperty("urlshortener.redirect-listener.port", "8081")
+                    : baseUrl;
+            this.rows = env.getRequiredProperty("loadtest.rows", Integer.class);
+            this.clients = env.getRequiredProperty("loadtest.clients", Integer.class);
+            this.warmupSeconds = env.getRequiredProperty("loadtest.warmup-seconds", Integer.class);
+            this.durationSeconds = env.getRequiredProperty("loadtest.duration-seconds", Integer.class);
+            this.zipfExponent = env.getRequiredProperty("loadtest.zipf-exponent", Double.class);
+            this.batchSize = env.getRequiredProperty("loadtest.batch-size", Integer.class);
+            int total = 0;
+            for (Endpoint endpoint : Endpoint.values()) {
+                weights[endpoint.ordinal()] = env.getRequiredProperty(
+                        "loadtest.mix." + endpoint.name().toLowerCase(), Integer.class);
+                total += weights[endpoint.ordinal()];
+            }
+            this.totalWeight = total;
+            this.http = HttpClient.newBuilder()
+                    .version(HttpClient.Version.HTTP_1_1)
+                    .followRedirects(HttpClient.Redirect.NEVER)
+                    .connectTimeout(Duration.ofSeconds(5))
+                    .build();
+        }
+
+        Map<String, Object> execute() throws Exception {
+            awaitFilterReady();
+            ZipfSampler zipf = new ZipfSampler(rows, zipfExponent);
+
+            List<Client> workers = new ArrayList<>(clients);
+            for (int i = 0; i < clients; i++) {
+                Client client = new Client(i, zipf);
+                workers.add(client);
+                client.thread.start();
+            }
+            log.info("Warming up {} clients for {} s", clients, warmupSeconds);
+            Thread.sleep(warmupSeconds * 1000L);
+            measuring = true;
+            long start = System.nanoTime();
+            Thread.sleep(durationSeconds * 1000L);
+            measuring = false;
+            double elapsedSeconds = (System.nanoTime() - start) / 1e9;
+            stopped = true;
+            for (Client client : workers) {
+                client.thread.join();
+            }
+            return report(workers, elapsedSeconds);
+        }
+
+        private void awaitFilterReady() throws IOException, InterruptedException {
+            HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + "/admin/filter/stats")).build();
+            for (int i = 0; i < 600; i++) {
+                String body = http.send(request, HttpResponse.BodyHandlers.ofString()).body();
+                if (body.contains("\"ready\":true") || body.contains("\"enabled\":false")) {
+                    return;
+                }
+                Thread.sleep(500);
+            }
+            log.warn("Short code filter is not ready; measuring with database fallbacks");
+        }
+
+        private Endpoint pick(SplittableRandom random) {
+            int r = random.nextInt(totalWeight);
+            for (Endpoint endpoint : Endpoint.values()) {
+                r -= weights[endpoint.ordinal()];
+                if (r < 0) {
+                    return endpoint;
+                }
+            }
+            return Endpoint.REDIRECT;
+        }
+
+        private final class Client {
+            private final int id;
+            private final ZipfSampler zipf;
+            private final SplittableRandom random;
+            private final Histogram[] histograms = new Histogram[Endpoint.values().length];
+            private final long[] errors = new long[Endpoint.values().length];
+            private final Thread thread;
+            private long created;
+
+            Client(int id, ZipfSampler zipf) {
+                this.id = id;
+                this.zipf = zipf;
+                this.random = new SplittableRandom(31L * id + 17);
+                for (int i = 0; i < histograms.length; i++) {
+                    // microseconds, up to 60 s, 3 significant digits
+                    histograms[i] = new Histogram(60_000_000L, 3);
+                }
+                this.thread = new Thread(this::loop, "loadtest-client-" + id);
+            }
+
+            private void loop() {
+                while (!stopped) {
+                    Endpoint endpoint = pick(random);
+                    HttpRequest request = request(endpoint);
+                    long startNanos = System.nanoTime();
+                    int status;
+                    try {
+                        status = http.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+                    } catch (IOException e) {
+                        status = -1;
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return;
+                    }
+                    long micros = (System.nanoTime() - startNanos) / 1000;
+                    if (measuring) {
+                        histograms[endpoint.ordinal()].recordValue(Math.min(micros, 60_000_000L));
+                        if (status != endpoint.expectedStatus) {
+                            errors[endpoint.ordinal()]++;
+                        }
+                    }
+                }
+            }
+
+            private HttpRequest request(Endpoint endpoint) {
+                switch (endpoint) {
+                    case SHORTEN:
+                        String body = "{\"longUrl\":\"https://example.com/new/" + id + "/" + (created++) + "\"}";
+                        return api(baseUrl + "/shorten")
+                                .header("Content-Type", "application/json")
+                                .POST(HttpRequest.BodyPublishers.ofString(body))
+                                .build();
+                    case SHORTEN_BATCH:
+                        StringBuilder items = new StringBuilder("[");
+                        for (int i = 0; i < batchSize; i++) {
+                            items.append(i == 0 ? "" : ",")
+                                    .append("{\"longUrl\":\"https://example.com/new/").append(id).append('/').append(created++).append("\"}");
+                        }
+                        return api(baseUrl + "/shorten/batch")
+                                .header("Content-Type", "application/json")
+                                .POST(HttpRequest.BodyPublishers.ofString(items.append(']').toString()))
+                                .build();
+                    case REDIRECT:
+                        return HttpRequest.newBuilder(URI.create(
+                                redirectBaseUrl + "/r/" + LoadTestSeeder.codeFor(zipf.sample(random)))).build();
+                    case ANALYTICS:
+                        return api(baseUrl + "/analytics/" + LoadTestSeeder.codeFor(zipf.sample(random))).build();
+                    default:
+                        return api(baseUrl + "/analytics/top/urls?n=10").build();
+                }
+            }
+
+            private HttpRequest.Builder api(String url) {
+                return HttpRequest.newBuilder(URI.create(url)).header("X-API-Key", apiKey(id));
+            }
+        }
+
+        private Map<String, Object> report(List<Client> workers, double elapsedSeconds) throws IOException, InterruptedException {
+            Map<String, Object> endpoints = new LinkedHashMap<>();
+            System.out.printf("%n%-13s %10s %8s %10s %10s %9s %9s %9s %9s %9s%n",
+                    "endpoint", "requests", "errors", "req/s", "links/s", "p50 ms", "p90 ms", "p99 ms", "p99.9 ms", "max ms");
+            for (Endpoint endpoint : Endpoint.values()) {
+                Histogram merged = new Histogram(60_000_000L, 3);
+                long errors = 0;
+                for (Client client : workers) {
+                    merged.add(client.histograms[endpoint.ordinal()]);
+                    errors += client.errors[endpoint.ordinal()];
+                }
+                long count = merged.getTotalCount();
+                Map<String, Object> row = new LinkedHashMap<>();
+                row.put("requests", count);
+                row.put("errors", errors);
+                row.put("throughputPerSecond", count / elapsedSeconds);
+                row.put("linksPerSecond", count * linksPerRequest(endpoint) / elapsedSeconds);
+                row.put("meanMillis", merged.getMean() / 1000);
+                row.put("p50Millis", merged.getValueAtPercentile(50) / 1000.0);
+                row.put("p90Millis", merged.getValueAtPercentile(90) / 1000.0);
+                row.put("p99Millis", merged.getValueAtPercentile(99) / 1000.0);
+                row.put("p999Millis", merged.getValueAtPercentile(99.9) / 1000.0);
+                row.put("maxMillis", merged.getMaxValue() / 1000.0);
+                endpoints.put(endpoint.name().toLowerCase(), row);
+                System.out.printf("%-13s %10d %8d %10.0f %10.0f %9.2f %9.2f %9.2f %9.2f %9.2f%n",
+                        endpoint.name().toLowerCase(), count, errors, count / elapsedSeconds, row.get("linksPerSecond"),
+                        row.get("p50Millis"), row.get("p90Millis"), row.get("p99Millis"),
+                        row.get("p999Millis"), row.get("maxMillis"));
+            }
+
+            Map<String, Object> config = new LinkedHashMap<>();
+            config.put("rows", rows);
+            config.put("clients", clients);
+            config.put("warmupSeconds", warmupSeconds);
+            config.put("durationSeconds", durationSeconds);
+            config.put("zipfExponent", zipfExponent);
+            config.put("batchSize", batchSize);
+            config.put("redirectTarget", env.getProperty("loadtest.redirect-target"));
+            config.put("cacheEnabled", env.getProperty("urlshortener.cache.enabled", Boolean.class, true));
+            config.put("storage", env.getProperty("urlshortener.storage", "jpa"));
+            Map<String, Object> mix = new LinkedHashMap<>();
+            for (Endpoint endpoint : Endpoint.values()) {
+                mix.put(endpoint.name().toLowerCase(), weights[endpoint.ordinal()]);
+            }
+            config.put("mix", mix);
+
+            Map<String, Object> result = new LinkedHashMap<>();
+            result.put("config", config);
+            result.put("elapsedSeconds", elapsedSeconds);
+            result.put("endpoints", endpoints);
+            result.put("redirectCache", adminStats("/admin/cache/stats"));
+            result.put("admission", adminStats("/admin/admission/stats"));
+            result.put("storage", adminStats("/admin/storage/stats"));
+            return result;
+        }
+
+        /**
+         * Links a successful request of the endpoint creates
+         */
+        private int linksPerRequest(Endpoint endpoint) {
+            if (endpoint == Endpoint.SHORTEN) {
+                return 1;
+            }
+            return endpoint == Endpoint.SHORTEN_BATCH ? batchSize : 0;
+        }
+
+        private Map<?, ?> adminStats(String path) throws IOException, InterruptedException {
+            return new ObjectMapper().readValue(http.send(HttpRequest.newBuilder(URI.create(baseUrl + path)).build(),
+                    HttpResponse.BodyHandlers.ofString()).body(), Map.class);
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package com.example.urlshortener.loadtest;
+
+import com.example.urlshortener.model.RedirectType;
+import com.example.urlshortener.model.UrlMapping;
+import com.example.urlshortener.service.LinkStore;
+import com.example.urlshortener.service.LinkStore.ClickDelta;
+import com.example.urlshortener.util.Base62Encoder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Seeds the configured LinkStore with loadtest.rows links before the
+ * application reports ready, so the short code filter and the top URL
+ * tracker are built from the seeded data just as they would be from
+ * production data. Links go through the same LinkStore the application
+ * uses, so the seed works with either storage.
+ * Rank 1 is the most popular link; click counts follow the same Zipf shape
+ * as the generated traffic.
+ */
+@Component
+@Profile("loadtest")
+public class LoadTestSeeder implements ApplicationRunner {
+
+    private static final Logger log = LoggerFactory.getLogger(LoadTestSeeder.class);
+
+    private static final int BATCH_SIZE = 10_000;
+    // Seeded codes sit above the 48-bit range used by hash generated codes
+    private static final long CODE_BASE = 1L << 49;
+
+    private final LinkStore linkStore;
+    private final int rows;
+
+    public LoadTestSeeder(LinkStore linkStore, @Value("${loadtest.rows}") int rows) {
+        this.linkStore = linkStore;
+        this.rows = rows;
+    }
+
+    static String codeFor(int rank) {
+        return Base62Encoder.encode(CODE_BASE + rank);
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        long start = System.currentTimeMillis();
+        LocalDateTime now = LocalDateTime.now();
+        long stored = 0;
+        List<UrlMapping> batch = new ArrayList<>(BATCH_SIZE);
+        for (int rank = 1; rank <= rows; rank++) {
+            UrlMapping mapping = new UrlMapping();
+            mapping.setShortCode(codeFor(rank));
+            mapping.setOriginalUrl("https://example.com/load/" + rank + "/a-reasonably-long-article-slug?utm_source=loadtest");
+            mapping.setCreatedAt(now);
+            mapping.setRedirectType(RedirectType.TRACKED);
+            batch.add(mapping);
+            if (batch.size() == BATCH_SIZE || rank == rows) {
+                stored += store(batch, rank - batch.size() + 1, now);
+                batch.clear();
+            }
+        }
+        log.info("Seeded {} links into {} storage in {} ms", stored, linkStore.getName(), System.currentTimeMillis() - start);
+    }
+
+    /**
+     * Insert a batch of consecutive ranks and give them their clicks; returns how many were stored
+     */
+    private int store(List<UrlMapping> batch, int firstRank, LocalDateTime now) {
+        boolean[] inserted = linkStore.insertAll(batch);
+        List<ClickDelta> clicks = new ArrayList<>(batch.size());
+        int stored = 0;
+        for (int i = 0; i < batch.size(); i++) {
+            if (inserted[i]) {
+                stored++;
+                clicks.add(new ClickDelta(batch.get(i).getShortCode(), Math.max(0, 1_000_000 / (firstRank + i)), now));
+            }
+        }
+        List<ClickDelta> failed = linkStore.addClicks(clicks);
+        if (!failed.isEmpty()) {
+            log.warn("Could not seed the clicks of {} links", failed.size());
+        }
+        return stored;
+    }
+}
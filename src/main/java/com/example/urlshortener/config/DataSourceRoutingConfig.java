@@ -0,0 +1,108 @@
+package com.example.urlshortener.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.core.env.Environment;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Replaces the single spring.datasource pool with a primary pool plus one
+ * pool per urlshortener.datasource.replicas[n] entry, routed by
+ * ReadWriteRoutingDataSource. Enabled with
+ * urlshortener.datasource.routing.enabled=true.
+ *
+ * Both kinds of pool take their settings from spring.datasource.hikari.
+ * Replicas without a username or password use the primary's.
+ */
+@Configuration
+@ConditionalOnProperty(name = "urlshortener.datasource.routing.enabled", havingValue = "true")
+public class DataSourceRoutingConfig {
+
+    @Bean
+    public ReadWriteRoutingDataSource routingDataSource(DataSourceProperties properties, Environment environment,
+                                                        ObjectProvider<MeterRegistry> meterRegistry) {
+        Binder binder = Binder.get(environment);
+        HikariDataSource primary = pool(binder, meterRegistry, ReadWriteRoutingDataSource.PRIMARY,
+                properties.determineUrl(), properties.determineUsername(), properties.determinePassword(),
+                properties.determineDriverClassName());
+
+        List<Replica> replicas = binder.bind("urlshortener.datasource.replicas", Bindable.listOf(Replica.class))
+                .orElse(List.of());
+        List<HikariDataSource> replicaPools = new ArrayList<>(replicas.size());
+        for (int i = 0; i < replicas.size(); i++) {
+            Replica replica = replicas.get(i);
+            replicaPools.add(pool(binder, meterRegistry, "replica-" + i, replica.getUrl(),
+                    replica.getUsername() != null ? replica.getUsername() : properties.determineUsername(),
+                    replica.getPassword() != null ? replica.getPassword() : properties.determinePassword(),
+                    properties.determineDriverClassName()));
+        }
+        return new ReadWriteRoutingDataSource(primary, replicaPools);
+    }
+
+    /**
+     * The data source JPA, JdbcTemplate and the transaction manager use
+     */
+    @Bean
+    @Primary
+    public DataSource dataSource(ReadWriteRoutingDataSource routingDataSource) {
+        return new LazyConnectionDataSourceProxy(routingDataSource);
+    }
+
+    private static HikariDataSource pool(Binder binder, ObjectProvider<MeterRegistry> meterRegistry, String name,
+                                         String url, String username, String password, String driverClassName) {
+        HikariDataSource pool = new HikariDataSource();
+        binder.bind("spring.datasource.hikari", Bindable.ofInstance(pool));
+        pool.setPoolName(name);
+        pool.setJdbcUrl(url);
+        pool.setUsername(username);
+        pool.setPassword(password);
+        pool.setDriverClassName(driverClassName);
+        meterRegistry.ifAvailable(pool::setMetricRegistry);
+        return pool;
+    }
+
+    /**
+     * One urlshortener.datasource.replicas[n] entry
+     */
+    public static class Replica {
+        private String url;
+        private String username;
+        private String password;
+
+        public String getUrl() {
+            return url;
+        }
+
+        public void setUrl(String url) {
+            this.url = url;
+        }
+
+        public String getUsername() {
+            return username;
+        }
+
+        public void setUsername(String username) {
+            this.username = username;
+        }
+
+        public String getPassword() {
+            return password;
+        }
+
+        public void setPassword(String password) {
+            this.password = password;
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package com.example.urlshortener.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * ReadWriteRoutingDataSource sends connections of read-only transactions to a
+ * randomly chosen replica pool and everything else (writes, and work outside
+ * a transaction such as the JdbcTemplate flushes) to the primary pool.
+ *
+ * The read-only flag is only known once the transaction has started, so this
+ * must sit behind a LazyConnectionDataSourceProxy, which fetches the real
+ * connection at the first statement. onPrimary forces the primary for reads
+ * that must see the latest writes.
+ */
+public class ReadWriteRoutingDataSource extends AbstractRoutingDataSource implements AutoCloseable {
+
+    static final String PRIMARY = "primary";
+
+    private static final ThreadLocal<Boolean> FORCE_PRIMARY = new ThreadLocal<>();
+
+    private final HikariDataSource primary;
+    private final List<HikariDataSource> replicas;
+    private final String[] replicaKeys;
+    private final LongAdder primaryConnections = new LongAdder();
+    private final LongAdder replicaConnections = new LongAdder();
+    private final LongAdder forcedPrimaryReads = new LongAdder();
+
+    public ReadWriteRoutingDataSource(HikariDataSource primary, List<HikariDataSource> replicas) {
+        this.primary = primary;
+        this.replicas = replicas;
+        this.replicaKeys = new String[replicas.size()];
+        Map<Object, Object> targets = new HashMap<>();
+        targets.put(PRIMARY, primary);
+        for (int i = 0; i < replicas.size(); i++) {
+            replicaKeys[i] = replicas.get(i).getPoolName();
+            targets.put(replicaKeys[i], replicas.get(i));
+        }
+        setTargetDataSources(targets);
+        setDefaultTargetDataSource(primary);
+        afterPropertiesSet();
+    }
+
+    /**
+     * Run a lookup against the primary even inside a read-only transaction
+     */
+    public static <T> T onPrimary(Supplier<T> lookup) {
+        if (FORCE_PRIMARY.get() != null) {
+            return lookup.get();
+        }
+        FORCE_PRIMARY.set(Boolean.TRUE);
+        try {
+            return lookup.get();
+        } finally {
+            FORCE_PRIMARY.remove();
+        }
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        if (replicaKeys.length == 0 || !TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            primaryConnections.increment();
+            return PRIMARY;
+        }
+        if (FORCE_PRIMARY.get() != null) {
+            forcedPrimaryReads.increment();
+            primaryConnections.increment();
+            return PRIMARY;
+        }
+        replicaConnections.increment();
+        return replicaKeys.length == 1
+                ? replicaKeys[0]
+                : replicaKeys[ThreadLocalRandom.current().nextInt(replicaKeys.length)];
+    }
+
+    @Override
+    public void close() {
+        for (HikariDataSource replica : replicas) {
+            replica.close();
+        }
+        primary.close();
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("replicas", List.of(replicaKeys));
+        stats.put("primaryConnections", primaryConnections.sum());
+        stats.put("replicaConnections", replicaConnections.sum());
+        stats.put("forcedPrimaryReads", forcedPrimaryReads.sum());
+        return stats;
+    }
+}
@@ -0,0 +1,76 @@
+package com.example.urlshortener.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * ReadYourWrites keeps lookups of just-created links on the primary.
+ *
+ * A replica may not have a new row yet when the creator follows its link
+ * right away; a miss there would be answered with 404 and negatively cached.
+ * For urlshortener.datasource.routing.sticky-seconds after a code is created,
+ * read lookups of that code therefore go to the primary. Does nothing when
+ * routing is disabled.
+ */
+@Component
+public class ReadYourWrites {
+
+    private final boolean enabled;
+    private final long stickyMillis;
+    private final ConcurrentHashMap<String, Long> recentWrites = new ConcurrentHashMap<>();
+    private final LongAdder stickyReads = new LongAdder();
+
+    public ReadYourWrites(@Value("${urlshortener.datasource.routing.enabled:false}") boolean routingEnabled,
+                          @Value("${urlshortener.datasource.routing.sticky-seconds:5}") long stickySeconds) {
+        this.enabled = routingEnabled && stickySeconds > 0;
+        this.stickyMillis = stickySeconds * 1000;
+    }
+
+    /**
+     * Remember that a code was just written on the primary
+     */
+    public void recordWrite(String shortCode) {
+        if (enabled) {
+            recentWrites.put(shortCode, System.currentTimeMillis() + stickyMillis);
+        }
+    }
+
+    /**
+     * Run a lookup of the given code, on the primary if the code was written recently
+     */
+    public <T> T read(String shortCode, Supplier<T> lookup) {
+        if (!enabled || recentWrites.isEmpty()) {
+            return lookup.get();
+        }
+        Long until = recentWrites.get(shortCode);
+        if (until == null || until < System.currentTimeMillis()) {
+            return lookup.get();
+        }
+        stickyReads.increment();
+        return ReadWriteRoutingDataSource.onPrimary(lookup);
+    }
+
+    @Scheduled(fixedDelay = 1000)
+    public void expire() {
+        if (enabled) {
+            long now = System.currentTimeMillis();
+            recentWrites.values().removeIf(until -> until < now);
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("stickySeconds", stickyMillis / 1000);
+        stats.put("trackedCodes", recentWrites.size());
+        stats.put("stickyReads", stickyReads.sum());
+        return stats;
+    }
+}
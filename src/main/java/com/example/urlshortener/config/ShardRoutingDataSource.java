@@ -0,0 +1,70 @@
+package com.example.urlshortener.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * ShardRoutingDataSource hands out connections from the pool of the shard
+ * selected with Shards.on / Shards.run on the current thread, shard 0 otherwise.
+ *
+ * Sits behind a LazyConnectionDataSourceProxy so that a transaction started
+ * inside Shards.on takes its connection from that shard.
+ */
+public class ShardRoutingDataSource extends AbstractRoutingDataSource implements AutoCloseable {
+
+    private final List<HikariDataSource> pools;
+    private final LongAdder[] connections;
+
+    public ShardRoutingDataSource(List<HikariDataSource> pools) {
+        this.pools = pools;
+        this.connections = new LongAdder[pools.size()];
+        Map<Object, Object> targets = new HashMap<>();
+        for (int i = 0; i < pools.size(); i++) {
+            targets.put(i, pools.get(i));
+            connections[i] = new LongAdder();
+        }
+        setTargetDataSources(targets);
+        setDefaultTargetDataSource(pools.get(0));
+        afterPropertiesSet();
+    }
+
+    /**
+     * Pool of one shard, for work that must bypass routing (schema creation)
+     */
+    HikariDataSource pool(int shard) {
+        return pools.get(shard);
+    }
+
+    int size() {
+        return pools.size();
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        int shard = Shards.current();
+        connections[shard].increment();
+        return shard;
+    }
+
+    @Override
+    public void close() {
+        for (HikariDataSource pool : pools) {
+            pool.close();
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        long[] counts = new long[connections.length];
+        for (int i = 0; i < connections.length; i++) {
+            counts[i] = connections[i].sum();
+        }
+        stats.put("connections", counts);
+        return stats;
+    }
+}
@@ -0,0 +1,120 @@
+package com.example.urlshortener.config;
+
+import com.example.urlshortener.model.UrlMapping;
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.autoconfigure.orm.jpa.EntityManagerFactoryDependsOnPostProcessor;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernateProperties;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernateSettings;
+import org.springframework.boot.autoconfigure.orm.jpa.JpaProperties;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.boot.orm.jpa.EntityManagerFactoryBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.core.env.Environment;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.orm.jpa.LocalContainerEntityManagerFactoryBean;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Replaces the single spring.datasource pool with one pool per shard, routed
+ * by ShardRoutingDataSource. Enabled with urlshortener.sharding.enabled=true.
+ *
+ * All pools take their settings from spring.datasource.hikari; shards without
+ * a username or password use spring.datasource's. spring.jpa.hibernate.ddl-auto
+ * is applied to every shard, not only shard 0.
+ */
+@Configuration
+@ConditionalOnProperty(name = "urlshortener.sharding.enabled", havingValue = "true")
+public class ShardingConfig {
+
+    @Bean
+    public ShardRoutingDataSource shardRoutingDataSource(Shards shards, DataSourceProperties properties,
+                                                         Environment environment,
+                                                         ObjectProvider<MeterRegistry> meterRegistry) {
+        Binder binder = Binder.get(environment);
+        List<HikariDataSource> pools = new ArrayList<>(shards.count());
+        pools.add(pool(binder, meterRegistry, "shard-0", properties.determineUrl(),
+                properties.determineUsername(), properties.determinePassword(),
+                properties.determineDriverClassName()));
+        List<Shards.Shard> extraShards = shards.getExtraShards();
+        for (int i = 0; i < extraShards.size(); i++) {
+            Shards.Shard shard = extraShards.get(i);
+            pools.add(pool(binder, meterRegistry, "shard-" + (i + 1), shard.getUrl(),
+                    shard.getUsername() != null ? shard.getUsername() : properties.determineUsername(),
+                    shard.getPassword() != null ? shard.getPassword() : properties.determinePassword(),
+                    properties.determineDriverClassName()));
+        }
+        return new ShardRoutingDataSource(pools);
+    }
+
+    /**
+     * The data source JPA, JdbcTemplate and the transaction manager use
+     */
+    @Bean
+    @Primary
+    public DataSource dataSource(ShardRoutingDataSource shardRoutingDataSource) {
+        return new LazyConnectionDataSourceProxy(shardRoutingDataSource);
+    }
+
+    /**
+     * Hibernate only manages the schema of the connection it starts with (shard 0).
+     * Apply the same schema action to the other shards through a short-lived
+     * entity manager factory per shard before anything uses them.
+     */
+    @Bean
+    public InitializingBean shardSchemaInitializer(ShardRoutingDataSource shardRoutingDataSource,
+                                                   EntityManagerFactoryBuilder builder,
+                                                   JpaProperties jpaProperties,
+                                                   HibernateProperties hibernateProperties) {
+        return () -> {
+            Map<String, Object> settings = hibernateProperties.determineHibernateProperties(
+                    jpaProperties.getProperties(), new HibernateSettings());
+            for (int shard = 1; shard < shardRoutingDataSource.size(); shard++) {
+                LocalContainerEntityManagerFactoryBean factory = builder
+                        .dataSource(shardRoutingDataSource.pool(shard))
+                        .packages(UrlMapping.class)
+                        .persistenceUnit("shard-" + shard)
+                        .properties(settings)
+                        .build();
+                factory.afterPropertiesSet();
+                factory.destroy();
+            }
+        };
+    }
+
+    /**
+     * Creates the shards' schema before the main entity manager factory, so
+     * beans that touch every shard while starting up find their tables
+     */
+    @Configuration(proxyBeanMethods = false)
+    @ConditionalOnProperty(name = "urlshortener.sharding.enabled", havingValue = "true")
+    static class ShardSchemaDependency extends EntityManagerFactoryDependsOnPostProcessor {
+        ShardSchemaDependency() {
+            super("shardSchemaInitializer");
+        }
+    }
+
+    private static HikariDataSource pool(Binder binder, ObjectProvider<MeterRegistry> meterRegistry, String name,
+                                         String url, String username, String password, String driverClassName) {
+        HikariDataSource pool = new HikariDataSource();
+        binder.bind("spring.datasource.hikari", Bindable.ofInstance(pool));
+        pool.setPoolName(name);
+        pool.setJdbcUrl(url);
+        pool.setUsername(username);
+        pool.setPassword(password);
+        pool.setDriverClassName(driverClassName);
+        meterRegistry.ifAvailable(pool::setMetricRegistry);
+        return pool;
+    }
+}
@@ -0,0 +1,292 @@
+package com.example.urlshortener.config;
+
+import com.example.urlshortener.util.Base62Encoder;
+import com.example.urlshortener.util.ConsistentHashRing;
+import jakarta.annotation.PreDestroy;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.function.IntConsumer;
+import java.util.function.IntFunction;
+import java.util.function.Supplier;
+
+/**
+ * Shards decides which database shard a link lives on and runs work there.
+ *
+ * Shard 0 is spring.datasource; urlshortener.sharding.shards[n] adds shard
+ * n + 1. Every shard has the full schema, and a link's access logs, rollups
+ * and visitor sketches live on the same shard as its url_mapping row.
+ *
+ * A new code is placed by consistent hashing: the code the generator produced
+ * is hashed onto a ring of virtual nodes, then stamped with the chosen shard
+ * (62^9 + shard * 2^49 + code value), so the shard can be read back from the
+ * code itself. Stamped codes have 10 characters and never overlap the hash,
+ * range or id strategies. Codes below 62^9, including every code created
+ * before sharding was enabled, live on shard 0. Because existing codes carry their shard,
+ * adding a shard or giving it more virtual nodes only changes where new links
+ * go and needs no data movement.
+ *
+ * Work is routed by a thread-local shard key that ShardRoutingDataSource reads
+ * when a connection is taken, so on/run must wrap the whole transaction.
+ * With a single shard every method simply runs the work.
+ */
+@Component
+public class Shards {
+
+    // 62^9, the first 10-character value
+    static final long STAMP_BASE = 13_537_086_546_263_552L;
+    static final int STAMP_SHIFT = 49;
+
+    private static final ThreadLocal<Integer> CURRENT = new ThreadLocal<>();
+
+    private final int count;
+    private final ConsistentHashRing<Integer> ring;
+    private final List<Shard> extraShards;
+    private final ExecutorService scatterPool;
+
+    public Shards(Environment environment) {
+        Binder binder = Binder.get(environment);
+        boolean enabled = binder.bind("urlshortener.sharding.enabled", Boolean.class).orElse(false);
+        this.extraShards = enabled
+                ? binder.bind("urlshortener.sharding.shards", Bindable.listOf(Shard.class)).orElse(List.of())
+                : List.of();
+        this.count = extraShards.size() + 1;
+
+        if (count > 1) {
+            if ("id".equals(environment.getProperty("urlshortener.codegen.strategy"))) {
+                throw new IllegalStateException("The id short code strategy cannot be used with sharding");
+            }
+            if (binder.bind("urlshortener.datasource.routing.enabled", Boolean.class).orElse(false)) {
+                throw new IllegalStateException("Read replica routing cannot be combined with sharding");
+            }
+            Map<Integer, Integer> virtualNodes = new LinkedHashMap<>();
+            virtualNodes.put(0, binder.bind("urlshortener.sharding.vnodes", Integer.class).orElse(Shard.DEFAULT_VNODES));
+            for (int i = 0; i < extraShards.size(); i++) {
+                virtualNodes.put(i + 1, extraShards.get(i).getVnodes());
+            }
+            this.ring = new ConsistentHashRing<>(virtualNodes);
+            AtomicInteger threads = new AtomicInteger();
+            this.scatterPool = Executors.newFixedThreadPool(count, runnable -> {
+                Thread thread = new Thread(runnable, "shard-scatter-" + threads.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        } else {
+            this.ring = null;
+            this.scatterPool = null;
+        }
+    }
+
+    /**
+     * Shard the current thread's database work goes to
+     */
+    public static int current() {
+        Integer shard = CURRENT.get();
+        return shard == null ? 0 : shard;
+    }
+
+    public int count() {
+        return count;
+    }
+
+    public boolean isSharded() {
+        return count > 1;
+    }
+
+    /**
+     * Connection settings of shards 1..n (shard 0 is spring.datasource)
+     */
+    List<Shard> getExtraShards() {
+        return extraShards;
+    }
+
+    /**
+     * Shard a code lives on
+     */
+    public int shardFor(String code) {
+        if (count == 1) {
+            return 0;
+        }
+        long value = Base62Encoder.tryDecode(code);
+        if (value < STAMP_BASE) {
+            return 0;
+        }
+        long shard = (value - STAMP_BASE) >>> STAMP_SHIFT;
+        return shard < count ? (int) shard : 0;
+    }
+
+    /**
+     * Place a freshly generated code on a shard and return the code that carries it.
+     * Generated codes must be below 2^49 (hash and range codes are).
+     */
+    public String stamp(String code) {
+        if (count == 1) {
+            return code;
+        }
+        long value = Base62Encoder.decode(code);
+        if (value >= 1L << STAMP_SHIFT) {
+            throw new IllegalArgumentException("Code too large to carry a shard: " + code);
+        }
+        long shard = ring.nodeFor(code);
+        return Base62Encoder.encode(STAMP_BASE + (shard << STAMP_SHIFT) + value);
+    }
+
+    /**
+     * Run work with its database access routed to the given shard
+     */
+    public <T> T on(int shard, Supplier<T> work) {
+        if (count == 1) {
+            return work.get();
+        }
+        Integer previous = CURRENT.get();
+        CURRENT.set(shard);
+        try {
+            return work.get();
+        } finally {
+            if (previous == null) {
+                CURRENT.remove();
+            } else {
+                CURRENT.set(previous);
+            }
+        }
+    }
+
+    public void run(int shard, Runnable work) {
+        on(shard, () -> {
+            work.run();
+            return null;
+        });
+    }
+
+    /**
+     * Run work on the shard the code lives on
+     */
+    public <T> T onShardOf(String code, Supplier<T> work) {
+        return on(shardFor(code), work);
+    }
+
+    /**
+     * Run work on every shard in turn
+     */
+    public void forEach(IntConsumer work) {
+        for (int shard = 0; shard < count; shard++) {
+            int current = shard;
+            run(current, () -> work.accept(current));
+        }
+    }
+
+    /**
+     * Run work on all shards in parallel and return the results in shard order
+     */
+    public <T> List<T> scatter(IntFunction<T> work) {
+        if (count == 1) {
+            return List.of(work.apply(0));
+        }
+        List<CompletableFuture<T>> futures = new ArrayList<>(count);
+        for (int shard = 0; shard < count; shard++) {
+            int current = shard;
+            futures.add(CompletableFuture.supplyAsync(() -> on(current, () -> work.apply(current)), scatterPool));
+        }
+        List<T> results = new ArrayList<>(count);
+        try {
+            for (CompletableFuture<T> future : futures) {
+                results.add(future.join());
+            }
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+        return results;
+    }
+
+    /**
+     * Split items by the shard of their code
+     */
+    public <T> Map<Integer, List<T>> groupByShard(Collection<T> items, Function<T, String> code) {
+        if (count == 1) {
+            return Map.of(0, items instanceof List<T> list ? list : new ArrayList<>(items));
+        }
+        Map<Integer, List<T>> groups = new HashMap<>();
+        for (T item : items) {
+            groups.computeIfAbsent(shardFor(code.apply(item)), k -> new ArrayList<>()).add(item);
+        }
+        return groups;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (scatterPool != null) {
+            scatterPool.shutdownNow();
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("shards", count);
+        if (ring != null) {
+            stats.put("virtualNodes", ring.getVirtualNodes());
+            stats.put("ownership", ring.ownership());
+        }
+        return stats;
+    }
+
+    /**
+     * One urlshortener.sharding.shards[n] entry
+     */
+    public static class Shard {
+        static final int DEFAULT_VNODES = 64;
+
+        private String url;
+        private String username;
+        private String password;
+        private int vnodes = DEFAULT_VNODES;
+
+        public String getUrl() {
+            return url;
+        }
+
+        public void setUrl(String url) {
+            this.url = url;
+        }
+
+        public String getUsername() {
+            return username;
+        }
+
+        public void setUsername(String username) {
+            this.username = username;
+        }
+
+        public String getPassword() {
+            return password;
+        }
+
+        public void setPassword(String password) {
+            this.password = password;
+        }
+
+        public int getVnodes() {
+            return vnodes;
+        }
+
+        public void setVnodes(int vnodes) {
+            this.vnodes = vnodes;
+        }
+    }
+}
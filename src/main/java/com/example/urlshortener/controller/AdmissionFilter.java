@@ -0,0 +1,109 @@
+package com.example.urlshortener.controller;
+
+import com.example.urlshortener.service.AdmissionControl;
+import com.example.urlshortener.util.TrustedProxies;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Runs AdmissionControl in front of the shorten and analytics endpoints and
+ * answers 429 with Retry-After when a request is shed or rate limited.
+ *
+ * Redirects, admin endpoints, actuator and the UI are never limited. It runs
+ * right after RequestTraceFilter, so rejected requests still get a trace id
+ * and appear in the request metrics.
+ *
+ * Clients are told apart by X-API-Key only when the key is one of
+ * urlshortener.admission.api-keys, and by the proxy headers only when the
+ * request comes from one of urlshortener.admission.trusted-proxies; otherwise
+ * by the socket's remote address. Made-up keys or forwarded addresses thus
+ * cannot buy a client fresh buckets or push other clients' buckets out.
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE + 1)
+public class AdmissionFilter extends OncePerRequestFilter {
+
+    private static final String API_KEY_HEADER = "X-API-Key";
+
+    private final AdmissionControl admissionControl;
+    private final Set<String> apiKeys = new HashSet<>();
+    private final TrustedProxies trustedProxies;
+
+    public AdmissionFilter(AdmissionControl admissionControl,
+                           @Value("${urlshortener.admission.api-keys:}") List<String> apiKeys,
+                           @Value("${urlshortener.admission.trusted-proxies:}") List<String> trustedProxies) {
+        this.admissionControl = admissionControl;
+        for (String key : apiKeys) {
+            if (!key.isBlank()) {
+                this.apiKeys.add(key.trim());
+            }
+        }
+        this.trustedProxies = new TrustedProxies(trustedProxies);
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        AdmissionControl.Route route = route(request.getRequestURI());
+        if (route != null) {
+            AdmissionControl.Rejection rejection = admissionControl.admit(route, clientKey(request));
+            if (rejection != null) {
+                response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+                response.setHeader(HttpHeaders.RETRY_AFTER, Long.toString(rejection.retryAfterSeconds()));
+                response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+                response.getWriter().write(rejection.reason() == AdmissionControl.Reason.SHED
+                        ? "{\"error\":\"Server busy, please retry\",\"reason\":\"shed\"}"
+                        : "{\"error\":\"Too many requests\",\"reason\":\"rate_limited\"}");
+                return;
+            }
+        }
+        chain.doFilter(request, response);
+    }
+
+    /**
+     * The limited route a path belongs to, or null if it is never limited
+     */
+    static AdmissionControl.Route route(String path) {
+        if (path.equals("/shorten")) {
+            return AdmissionControl.Route.SHORTEN;
+        }
+        if (path.equals("/shorten/batch")) {
+            return AdmissionControl.Route.SHORTEN_BATCH;
+        }
+        if (!path.startsWith("/analytics/")) {
+            return null;
+        }
+        // Listings and exports scan many links; per-link analytics are point lookups
+        if (path.startsWith("/analytics/active/") || path.startsWith("/analytics/top/") || path.endsWith("/stream")) {
+            return AdmissionControl.Route.LISTING;
+        }
+        return AdmissionControl.Route.ANALYTICS;
+    }
+
+    /**
+     * A configured API key, else the client IP as seen by the trusted proxies
+     */
+    String clientKey(HttpServletRequest request) {
+        String apiKey = request.getHeader(API_KEY_HEADER);
+        if (apiKey != null && apiKeys.contains(apiKey)) {
+            return "key:" + apiKey;
+        }
+        return "ip:" + trustedProxies.clientIp(request.getHeader("X-Forwarded-For"),
+                request.getHeader("X-Real-IP"), request.getRemoteAddr());
+    }
+}
@@ -0,0 +1,168 @@
+package com.example.urlshortener.controller;
+
+import com.example.urlshortener.model.UrlMapping;
+import com.example.urlshortener.service.RedirectPolicy;
+import com.example.urlshortener.service.UrlMetrics;
+import com.example.urlshortener.service.UrlService;
+import com.example.urlshortener.util.ClientIpResolver;
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * RedirectListener serves GET /r/{code} on a separate port with the JDK's
+ * built-in HTTP server, skipping the servlet container and Spring MVC
+ * dispatch. It uses the same UrlService lookup, redirect cache and click
+ * pipeline as UrlController.redirect, so both ports behave the same; the
+ * API and UI stay on the main port.
+ *
+ * Enabled with urlshortener.redirect-listener.enabled=true.
+ */
+@Component
+@ConditionalOnProperty(name = "urlshortener.redirect-listener.enabled", havingValue = "true")
+public class RedirectListener implements SmartLifecycle {
+
+    private static final Logger log = LoggerFactory.getLogger(RedirectListener.class);
+
+    private static final String PREFIX = "/r/";
+    private static final String UNKNOWN_AGENT = "Unknown";
+    private static final String REQUEST_ID_HEADER = RequestTraceFilter.REQUEST_ID_HEADER;
+
+    private final UrlService service;
+    private final UrlMetrics metrics;
+    private final RedirectPolicy redirectPolicy;
+    private final int port;
+    private final int threads;
+    private final int backlog;
+
+    private final LongAdder redirects = new LongAdder();
+    private final LongAdder notFound = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+
+    private volatile HttpServer server;
+    private volatile ExecutorService executor;
+
+    public RedirectListener(UrlService service, UrlMetrics metrics, RedirectPolicy redirectPolicy,
+                            @Value("${urlshortener.redirect-listener.port:8081}") int port,
+                            @Value("${urlshortener.redirect-listener.threads:32}") int threads,
+                            @Value("${urlshortener.redirect-listener.backlog:1024}") int backlog) {
+        this.service = service;
+        this.metrics = metrics;
+        this.redirectPolicy = redirectPolicy;
+        this.port = port;
+        this.threads = threads;
+        this.backlog = backlog;
+    }
+
+    @Override
+    public void start() {
+        try {
+            HttpServer httpServer = HttpServer.create(new InetSocketAddress(port), backlog);
+            AtomicInteger counter = new AtomicInteger();
+            executor = Executors.newFixedThreadPool(threads, runnable -> {
+                Thread thread = new Thread(runnable, "redirect-listener-" + counter.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+            httpServer.setExecutor(executor);
+            httpServer.createContext(PREFIX, this::handle);
+            httpServer.start();
+            server = httpServer;
+            log.info("Redirect listener started on port {}", port);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not start redirect listener on port " + port, e);
+        }
+    }
+
+    @Override
+    public void stop() {
+        HttpServer httpServer = server;
+        if (httpServer != null) {
+            httpServer.stop(1);
+            executor.shutdown();
+            try {
+                executor.awaitTermination(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            server = null;
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return server != null;
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        UrlMetrics.Trace trace = metrics.beginTrace(exchange.getRequestHeaders().getFirst(REQUEST_ID_HEADER));
+        exchange.getResponseHeaders().set(REQUEST_ID_HEADER, trace.getTraceId());
+        try {
+            String method = exchange.getRequestMethod();
+            if (!"GET".equals(method) && !"HEAD".equals(method)) {
+                rejected.increment();
+                exchange.sendResponseHeaders(405, -1);
+                return;
+            }
+
+            String path = exchange.getRequestURI().getRawPath();
+            String code = path.substring(PREFIX.length());
+            UrlMapping mapping = code.isEmpty() || code.indexOf('/') >= 0 ? null : service.getOriginalUrl(code);
+            if (mapping == null) {
+                notFound.increment();
+                exchange.sendResponseHeaders(404, -1);
+                return;
+            }
+
+            Headers headers = exchange.getRequestHeaders();
+            String userAgent = headers.getFirst("User-Agent");
+            String referer = headers.getFirst("Referer");
+            String clientIp = ClientIpResolver.resolve(headers.getFirst("X-Forwarded-For"),
+                    headers.getFirst("X-Real-IP"), exchange.getRemoteAddress().getAddress().getHostAddress());
+            service.incrementClick(mapping, userAgent != null ? userAgent : UNKNOWN_AGENT, clientIp,
+                    referer != null ? referer : "");
+
+            exchange.getResponseHeaders().set("Location", mapping.getOriginalUrl());
+            exchange.getResponseHeaders().set("Cache-Control", redirectPolicy.cacheControl(mapping));
+            exchange.sendResponseHeaders(redirectPolicy.status(mapping).value(), -1);
+            redirects.increment();
+        } catch (RuntimeException e) {
+            log.warn("Redirect listener failed to serve {}", exchange.getRequestURI(), e);
+            if (exchange.getResponseCode() == -1) {
+                exchange.sendResponseHeaders(500, -1);
+            }
+        } finally {
+            exchange.close();
+            metrics.endTrace(trace, exchange.getRequestMethod(), exchange.getRequestURI().getRawPath(),
+                    exchange.getResponseCode());
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("port", port);
+        stats.put("threads", threads);
+        stats.put("running", isRunning());
+        stats.put("redirects", redirects.sum());
+        stats.put("notFound", notFound.sum());
+        stats.put("rejected", rejected.sum());
+        return stats;
+    }
+}
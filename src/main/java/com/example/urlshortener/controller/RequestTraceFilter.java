@@ -0,0 +1,44 @@
+package com.example.urlshortener.controller;
+
+import com.example.urlshortener.service.UrlMetrics;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+
+/**
+ * Gives every request a trace id (the caller's X-Request-Id when it sends a
+ * usable one), returns it in the X-Request-Id response header and logs
+ * requests slower than urlshortener.metrics.slow-request-ms together with
+ * their stage timings.
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+public class RequestTraceFilter extends OncePerRequestFilter {
+
+    static final String REQUEST_ID_HEADER = "X-Request-Id";
+
+    private final UrlMetrics metrics;
+
+    public RequestTraceFilter(UrlMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        UrlMetrics.Trace trace = metrics.beginTrace(request.getHeader(REQUEST_ID_HEADER));
+        response.setHeader(REQUEST_ID_HEADER, trace.getTraceId());
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            metrics.endTrace(trace, request.getMethod(), request.getRequestURI(), response.getStatus());
+        }
+    }
+}
@@ -1,13 +1,37 @@
 package com.example.urlshortener.controller;
 
+import com.example.urlshortener.config.ReadWriteRoutingDataSource;
+import com.example.urlshortener.config.ReadYourWrites;
+import com.example.urlshortener.config.ShardRoutingDataSource;
+import com.example.urlshortener.model.RedirectType;
+import com.example.urlshortener.model.RollupGranularity;
 import com.example.urlshortener.model.UrlMapping;
+import com.example.urlshortener.service.AdmissionControl;
+import com.example.urlshortener.service.BulkShortenService;
+import com.example.urlshortener.service.CacheWarmer;
+import com.example.urlshortener.service.RedirectPolicy;
 import com.example.urlshortener.service.UrlService;
+import com.example.urlshortener.util.ClientIpResolver;
+import com.example.urlshortener.util.ExpirationParser;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 
+import java.io.IOException;
+import java.io.OutputStream;
 import java.net.URI;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.HashMap;
@@ -18,15 +42,42 @@ import java.util.Map;
 @CrossOrigin(origins = "*")
 public class UrlController {
 
+    private static final String NDJSON = "application/x-ndjson";
+    private static final String API_KEY_HEADER = "X-API-Key";
+
     private final UrlService service;
+    private final BulkShortenService bulkShortenService;
+    private final ObjectMapper objectMapper;
+    private final ObjectProvider<RedirectListener> redirectListener;
+    private final ObjectProvider<ReadWriteRoutingDataSource> routingDataSource;
+    private final ObjectProvider<ShardRoutingDataSource> shardRoutingDataSource;
+    private final ReadYourWrites readYourWrites;
+    private final CacheWarmer cacheWarmer;
+    private final RedirectPolicy redirectPolicy;
+    private final AdmissionControl admissionControl;
 
-    public UrlController(UrlService service) {
+    public UrlController(UrlService service, BulkShortenService bulkShortenService, ObjectMapper objectMapper,
+                         ObjectProvider<RedirectListener> redirectListener,
+                         ObjectProvider<ReadWriteRoutingDataSource> routingDataSource,
+                         ObjectProvider<ShardRoutingDataSource> shardRoutingDataSource,
+                         ReadYourWrites readYourWrites, CacheWarmer cacheWarmer,
+                         RedirectPolicy redirectPolicy, AdmissionControl admissionControl) {
         this.service = service;
+        this.bulkShortenService = bulkShortenService;
+        this.objectMapper = objectMapper;
+        this.redirectListener = redirectListener;
+        this.routingDataSource = routingDataSource;
+        this.shardRoutingDataSource = shardRoutingDataSource;
+        this.readYourWrites = readYourWrites;
+        this.cacheWarmer = cacheWarmer;
+        this.redirectPolicy = redirectPolicy;
+        this.admissionControl = admissionControl;
     }
 
     // 🔹 Create short URL (POST endpoint with optional expiration)
     @PostMapping("/shorten")
-    public ResponseEntity<Map<String, Object>> shortenUrlPost(@RequestBody Map<String, String> request) {
+    public ResponseEntity<Map<String, Object>> shortenUrlPost(@RequestBody Map<String, String> request,
+                                                              @RequestHeader(value = API_KEY_HEADER, required = false) String apiKey) {
         String longUrl = request.get("longUrl");
         String expiresIn = request.get("expiresIn"); // Format: "1h", "1d", "7d"
         
@@ -39,19 +90,51 @@ public class UrlController {
             expiresAt = parseExpirationTime(expiresIn);
         }
         
-        String code = service.shortenUrlWithExpiration(longUrl, expiresAt);
+        // "reuseExisting": true returns the active link of an identical URL if there is one
+        String reuseExisting = request.get("reuseExisting");
+        boolean reuse = reuseExisting != null
+                ? Boolean.parseBoolean(reuseExisting)
+                : service.isReuseExistingByDefault();
+
+        // "redirectType": "permanent" (cacheable 301) or "tracked" (uncached 302, every click counted)
+        RedirectType redirectType;
+        try {
+            redirectType = redirectPolicy.resolve(request.get("redirectType"));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+
+        UrlMapping mapping = service.createMapping(longUrl, expiresAt, reuse, apiKey, redirectType);
+        String code = mapping.getShortCode();
         String shortUrl = "http://localhost:8080/r/" + code;
         
         Map<String, Object> response = new HashMap<>();
         response.put("shortUrl", shortUrl);
         response.put("shortCode", code);
         response.put("originalUrl", longUrl);
-        response.put("expiresAt", expiresAt);
-        response.put("createdAt", LocalDateTime.now());
+        response.put("expiresAt", mapping.getExpiresAt());
+        response.put("createdAt", mapping.getCreatedAt());
+        response.put("redirectType", mapping.getRedirectType());
         
         return ResponseEntity.ok(response);
     }
 
+    // 🔹 Create many short URLs at once (JSON array or NDJSON body, NDJSON response)
+    @PostMapping(value = "/shorten/batch", consumes = {MediaType.APPLICATION_JSON_VALUE, NDJSON})
+    public void shortenBatch(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        response.setContentType(NDJSON);
+        response.setCharacterEncoding("UTF-8");
+
+        // A JSON array and newline-delimited objects are both read one item at a time
+        MappingIterator<Map<String, String>> items = objectMapper
+                .readerFor(new TypeReference<Map<String, String>>() { })
+                .readValues(request.getInputStream());
+        OutputStream out = response.getOutputStream();
+
+        bulkShortenService.shorten(items, "http://localhost:8080/r/", result -> writeNdjsonLine(out, result));
+        out.flush();
+    }
+
     // 🔹 Create short URL (GET endpoint - legacy support)
     @GetMapping("/shorten")
     public String shorten(@RequestParam String url) {
@@ -78,92 +161,330 @@ public class UrlController {
         service.incrementClick(mapping, userAgent, clientIp, referer);
 
         return ResponseEntity
-                .status(HttpStatus.FOUND)
+                .status(redirectPolicy.status(mapping))
                 .location(URI.create(mapping.getOriginalUrl()))
+                .header(HttpHeaders.CACHE_CONTROL, redirectPolicy.cacheControl(mapping))
                 .build();
     }
 
+    // Whether the client's copy of a link's analytics is still current (sets ETag and Last-Modified)
+    private boolean isNotModified(String code, WebRequest webRequest) {
+        UrlService.AnalyticsVersion version = service.getAnalyticsVersion(code);
+        return version != null && webRequest.checkNotModified(version.eTag(), version.lastModifiedMillis());
+    }
+
+    // Analytics may be cached, but only reused after revalidating with the ETag
+    private static ResponseEntity<Map<String, Object>> revalidated(Map<String, Object> body) {
+        return ResponseEntity.ok().cacheControl(CacheControl.noCache()).body(body);
+    }
+
     // Helper method to extract client IP address
     private String getClientIpAddress(HttpServletRequest request) {
-        // Check for IP from proxy headers first
-        String xForwardedFor = request.getHeader("X-Forwarded-For");
-        if (xForwardedFor != null && !xForwardedFor.isEmpty()) {
-            // X-Forwarded-For can contain multiple IPs, get the first one
-            return xForwardedFor.split(",")[0].trim();
-        }
-        
-        String xRealIp = request.getHeader("X-Real-IP");
-        if (xRealIp != null && !xRealIp.isEmpty()) {
-            return xRealIp;
-        }
-        
-        // Fallback to remote address
-        String remoteAddr = request.getRemoteAddr();
-        
-        // Normalize IPv6 loopback to IPv4 format
-        if (remoteAddr != null) {
-            if ("0:0:0:0:0:0:0:1".equals(remoteAddr) || "::1".equals(remoteAddr)) {
-                return "127.0.0.1";
-            }
-        }
-        
-        return remoteAddr != null ? remoteAddr : "Unknown";
+        return ClientIpResolver.resolve(request.getHeader("X-Forwarded-For"),
+                request.getHeader("X-Real-IP"), request.getRemoteAddr());
     }
 
     // 🔹 Get analytics for a specific URL
     @GetMapping("/analytics/{code}")
-    public ResponseEntity<Map<String, Object>> getUrlAnalytics(@PathVariable String code) {
+    public ResponseEntity<Map<String, Object>> getUrlAnalytics(@PathVariable String code, WebRequest webRequest) {
+        if (isNotModified(code, webRequest)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).build();
+        }
         Map<String, Object> analytics = service.getUrlAnalytics(code);
         
         if (analytics == null) {
             return ResponseEntity.notFound().build();
         }
         
-        return ResponseEntity.ok(analytics);
+        return revalidated(analytics);
     }
 
-    // 🔹 Get top 10 most clicked URLs
+    // 🔹 Get the N most clicked URLs (approx: in-memory tracker, exact: database sort)
     @GetMapping("/analytics/top/urls")
-    public ResponseEntity<Map<String, Object>> getTopUrls() {
-        List<UrlMapping> topUrls = service.getTopUrls();
-        
-        Map<String, Object> response = new HashMap<>();
-        response.put("count", topUrls.size());
-        response.put("urls", topUrls);
-        
+    public ResponseEntity<Map<String, Object>> getTopUrls(@RequestParam(defaultValue = "10") int n,
+                                                          @RequestParam(defaultValue = "approx") String mode) {
+        Map<String, Object> response;
+        if ("approx".equalsIgnoreCase(mode) && service.isApproximateTopUrlsAvailable()) {
+            response = service.getTopUrlsApprox(n);
+            response.put("mode", "approx");
+        } else if ("approx".equalsIgnoreCase(mode) || "exact".equalsIgnoreCase(mode)) {
+            response = new HashMap<>();
+            response.put("urls", service.getTopUrlsExact(n));
+            response.put("mode", "exact");
+        } else {
+            return ResponseEntity.badRequest().body(Map.of("error", "mode must be approx or exact"));
+        }
+        response.put("count", ((List<?>) response.get("urls")).size());
+
         return ResponseEntity.ok(response);
     }
 
-    // 🔹 Get all active URLs
+    // 🔹 Get active URLs, one keyset page at a time (follow nextCursor for more)
     @GetMapping("/analytics/active/urls")
-    public ResponseEntity<Map<String, Object>> getAllActiveUrls() {
-        List<UrlMapping> activeUrls = service.getAllActiveUrls();
-        
-        Map<String, Object> response = new HashMap<>();
-        response.put("count", activeUrls.size());
-        response.put("urls", activeUrls);
-        
-        return ResponseEntity.ok(response);
+    public ResponseEntity<Map<String, Object>> getAllActiveUrls(@RequestParam(required = false) String cursor,
+                                                                @RequestParam(defaultValue = "100") int limit) {
+        try {
+            return ResponseEntity.ok(service.getActiveUrlsPage(cursor, limit));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    // 🔹 Stream all active URLs as NDJSON
+    @GetMapping(value = "/analytics/active/urls/stream", produces = NDJSON)
+    public void streamActiveUrls(HttpServletResponse response) throws IOException {
+        response.setContentType(NDJSON);
+        response.setCharacterEncoding("UTF-8");
+        OutputStream out = response.getOutputStream();
+        service.streamActiveUrls(row -> writeNdjsonLine(out, row));
+        out.flush();
+    }
+
+    // 🔹 Get access logs for a URL, one keyset page at a time
+    @GetMapping("/analytics/{code}/logs")
+    public ResponseEntity<Map<String, Object>> getAccessLogs(@PathVariable String code,
+                                                             @RequestParam(required = false) String cursor,
+                                                             @RequestParam(defaultValue = "100") int limit,
+                                                             WebRequest webRequest) {
+        if (isNotModified(code, webRequest)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).build();
+        }
+        Map<String, Object> page;
+        try {
+            page = service.getAccessLogsPage(code, cursor, limit);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+
+        if (page == null) {
+            return ResponseEntity.notFound().build();
+        }
+        return revalidated(page);
     }
 
-    // 🔹 Delete expired URLs
+    // 🔹 Get clicks over time for a URL (granularity: minute, hour or day)
+    @GetMapping("/analytics/{code}/clicks")
+    public ResponseEntity<Map<String, Object>> getClicksOverTime(
+            @PathVariable String code,
+            @RequestParam(defaultValue = "hour") String granularity,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            @RequestParam(defaultValue = "3") int topReferers,
+            WebRequest webRequest) {
+        if (isNotModified(code, webRequest)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).build();
+        }
+        Map<String, Object> series;
+        try {
+            series = service.getClicksOverTime(code, RollupGranularity.fromString(granularity), from, to, topReferers);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+
+        if (series == null) {
+            return ResponseEntity.notFound().build();
+        }
+        return revalidated(series);
+    }
+
+    // 🔹 Get estimated unique visitors for a URL, per day and over the range
+    @GetMapping("/analytics/{code}/visitors")
+    public ResponseEntity<Map<String, Object>> getUniqueVisitors(
+            @PathVariable String code,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            WebRequest webRequest) {
+        if (isNotModified(code, webRequest)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).build();
+        }
+        Map<String, Object> visitors;
+        try {
+            visitors = service.getUniqueVisitors(code, from, to);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+
+        if (visitors == null) {
+            return ResponseEntity.notFound().build();
+        }
+        return revalidated(visitors);
+    }
+
+    // 🔹 Stream all access logs for a URL as NDJSON
+    @GetMapping(value = "/analytics/{code}/logs/stream", produces = NDJSON)
+    public void streamAccessLogs(@PathVariable String code, HttpServletResponse response) throws IOException {
+        response.setContentType(NDJSON);
+        response.setCharacterEncoding("UTF-8");
+        OutputStream out = response.getOutputStream();
+        if (!service.streamAccessLogs(code, row -> writeNdjsonLine(out, row))) {
+            response.setStatus(HttpStatus.NOT_FOUND.value());
+        }
+        out.flush();
+    }
+
+    private void writeNdjsonLine(OutputStream out, Object row) throws IOException {
+        out.write(objectMapper.writeValueAsBytes(row));
+        out.write('\n');
+    }
+
+    // 🔹 Delete expired URLs (runs the chunked purge now)
     @DeleteMapping("/admin/cleanup-expired")
-    public ResponseEntity<Map<String, String>> cleanupExpiredUrls() {
-        service.deleteExpiredUrls();
-        return ResponseEntity.ok(Map.of("message", "Expired URLs cleaned up successfully"));
+    public ResponseEntity<Map<String, Object>> cleanupExpiredUrls() {
+        long deleted = service.deleteExpiredUrls();
+        return ResponseEntity.ok(Map.of("message", "Expired URLs cleaned up successfully", "deleted", deleted));
+    }
+
+    // 🔹 Get expiry and purge statistics
+    @GetMapping("/admin/expiry/stats")
+    public ResponseEntity<Map<String, Object>> getExpiryStats() {
+        return ResponseEntity.ok(service.getExpiryStats());
+    }
+
+    // 🔹 Build click rollups from access logs recorded before live rollups started
+    @PostMapping("/admin/rollups/backfill")
+    public ResponseEntity<Map<String, Object>> backfillRollups(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime before) {
+        try {
+            if (!service.startRollupBackfill(before)) {
+                return ResponseEntity.status(HttpStatus.CONFLICT).body(Map.of("error", "Backfill already running"));
+            }
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(Map.of("error", e.getMessage()));
+        }
+        return ResponseEntity.accepted().body(service.getRollupStats());
     }
 
-    // 🔹 Get URL history from stack
+    // 🔹 Get click rollup statistics
+    @GetMapping("/admin/rollups/stats")
+    public ResponseEntity<Map<String, Object>> getRollupStats() {
+        return ResponseEntity.ok(service.getRollupStats());
+    }
+
+    // 🔹 Get top URL tracker statistics
+    @GetMapping("/admin/topk/stats")
+    public ResponseEntity<Map<String, Object>> getTopUrlStats() {
+        return ResponseEntity.ok(service.getTopUrlStats());
+    }
+
+    // 🔹 Get unique visitor sketch statistics
+    @GetMapping("/admin/visitors/stats")
+    public ResponseEntity<Map<String, Object>> getVisitorStats() {
+        return ResponseEntity.ok(service.getVisitorStats());
+    }
+
+    // 🔹 Get history statistics
+    @GetMapping("/admin/history/stats")
+    public ResponseEntity<Map<String, Object>> getHistoryStats() {
+        return ResponseEntity.ok(service.getHistoryStats());
+    }
+
+    // 🔹 Get statistics of the dedicated redirect listener (if enabled)
+    @GetMapping("/admin/redirect-listener/stats")
+    public ResponseEntity<Map<String, Object>> getRedirectListenerStats() {
+        RedirectListener listener = redirectListener.getIfAvailable();
+        if (listener == null) {
+            return ResponseEntity.ok(Map.of("enabled", false));
+        }
+        Map<String, Object> stats = listener.getStats();
+        stats.put("enabled", true);
+        return ResponseEntity.ok(stats);
+    }
+
+    // 🔹 Get read/write routing statistics (if replicas are configured)
+    @GetMapping("/admin/datasource/stats")
+    public ResponseEntity<Map<String, Object>> getDataSourceStats() {
+        ReadWriteRoutingDataSource routing = routingDataSource.getIfAvailable();
+        if (routing == null) {
+            return ResponseEntity.ok(Map.of("routingEnabled", false));
+        }
+        Map<String, Object> stats = routing.getStats();
+        stats.put("routingEnabled", true);
+        stats.put("readYourWrites", readYourWrites.getStats());
+        return ResponseEntity.ok(stats);
+    }
+
+    // 🔹 Get shard layout statistics (virtual nodes, hash space ownership and links per shard)
+    @GetMapping("/admin/shards/stats")
+    public ResponseEntity<Map<String, Object>> getShardStats() {
+        Map<String, Object> stats = service.getShardStats();
+        ShardRoutingDataSource sharding = shardRoutingDataSource.getIfAvailable();
+        if (sharding != null) {
+            stats.putAll(sharding.getStats());
+        }
+        return ResponseEntity.ok(stats);
+    }
+
+    // 🔹 Get link storage statistics (size, segments and recovery of the log store)
+    @GetMapping("/admin/storage/stats")
+    public ResponseEntity<Map<String, Object>> getStorageStats() {
+        return ResponseEntity.ok(service.getStorageStats());
+    }
+
+    // 🔹 Compact link storage now
+    @PostMapping("/admin/storage/compact")
+    public ResponseEntity<Map<String, Object>> compactStorage() {
+        long reclaimed = service.compactStorage();
+        Map<String, Object> stats = service.getStorageStats();
+        stats.put("reclaimedNow", reclaimed);
+        return ResponseEntity.ok(stats);
+    }
+
+    // 🔹 Get redirect cache statistics
+    @GetMapping("/admin/cache/stats")
+    public ResponseEntity<Map<String, Object>> getCacheStats() {
+        return ResponseEntity.ok(service.getCacheStats());
+    }
+
+    // 🔹 Get startup cache warm-up statistics (snapshot load time, first-minute hit rate)
+    @GetMapping("/admin/cache/warmup/stats")
+    public ResponseEntity<Map<String, Object>> getCacheWarmupStats() {
+        return ResponseEntity.ok(cacheWarmer.getStats());
+    }
+
+    // 🔹 Write the hot set snapshot now
+    @PostMapping("/admin/cache/snapshot")
+    public ResponseEntity<Map<String, Object>> writeCacheSnapshot() {
+        cacheWarmer.writeSnapshot();
+        return ResponseEntity.ok(cacheWarmer.getStats());
+    }
+
+    // 🔹 Get admission control statistics (pool pressure, shedding level, requests admitted and rejected per route)
+    @GetMapping("/admin/admission/stats")
+    public ResponseEntity<Map<String, Object>> getAdmissionStats() {
+        return ResponseEntity.ok(admissionControl.getStats());
+    }
+
+    // 🔹 Get short code filter statistics
+    @GetMapping("/admin/filter/stats")
+    public ResponseEntity<Map<String, Object>> getFilterStats() {
+        return ResponseEntity.ok(service.getFilterStats());
+    }
+
+    // 🔹 Get click counter flush statistics
+    @GetMapping("/admin/clicks/stats")
+    public ResponseEntity<Map<String, Object>> getClickStats() {
+        return ResponseEntity.ok(service.getClickStats());
+    }
+
+    // 🔹 Get access log writer statistics
+    @GetMapping("/admin/access-log/stats")
+    public ResponseEntity<Map<String, Object>> getAccessLogStats() {
+        return ResponseEntity.ok(service.getAccessLogStats());
+    }
+
+    // 🔹 Get URL history from stack (per client when an X-API-Key header is sent)
     @GetMapping("/analytics/history")
-    public ResponseEntity<Map<String, Object>> getUrlHistory() {
-        Map<String, Object> history = service.getUrlHistory();
+    public ResponseEntity<Map<String, Object>> getUrlHistory(
+            @RequestHeader(value = API_KEY_HEADER, required = false) String apiKey) {
+        Map<String, Object> history = service.getUrlHistory(apiKey);
         return ResponseEntity.ok(history);
     }
 
     // 🔹 Get most recent URL from history
     @GetMapping("/analytics/history/recent")
-    public ResponseEntity<Object> getMostRecentHistory() {
-        var recent = service.getMostRecentHistory();
+    public ResponseEntity<Object> getMostRecentHistory(
+            @RequestHeader(value = API_KEY_HEADER, required = false) String apiKey) {
+        var recent = service.getMostRecentHistory(apiKey);
         
         if (recent == null) {
             return ResponseEntity.ok(Map.of("message", "No history available"));
@@ -177,19 +498,6 @@ public class UrlController {
      * Formats: "1h", "24h", "7d", "30d"
      */
     private LocalDateTime parseExpirationTime(String expiresIn) {
-        LocalDateTime now = LocalDateTime.now();
-        
-        if (expiresIn.endsWith("h")) {
-            int hours = Integer.parseInt(expiresIn.replace("h", ""));
-            return now.plusHours(hours);
-        } else if (expiresIn.endsWith("d")) {
-            int days = Integer.parseInt(expiresIn.replace("d", ""));
-            return now.plusDays(days);
-        } else if (expiresIn.endsWith("m")) {
-            int minutes = Integer.parseInt(expiresIn.replace("m", ""));
-            return now.plusMinutes(minutes);
-        }
-        
-        return null;
+        return ExpirationParser.parse(expiresIn);
     }
 }
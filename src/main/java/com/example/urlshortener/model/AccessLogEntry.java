@@ -0,0 +1,10 @@
+package com.example.urlshortener.model;
+
+import java.time.LocalDateTime;
+
+/**
+ * Read-only view of an access log, built by JPQL constructor expressions so
+ * the lazy urlMapping association is never loaded
+ */
+public record AccessLogEntry(Long id, LocalDateTime accessedAt, String ipAddress, String userAgent, String referer) {
+}
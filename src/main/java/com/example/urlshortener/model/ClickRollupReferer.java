@@ -0,0 +1,56 @@
+package com.example.urlshortener.model;
+
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+
+@Entity
+@Table(name = "click_rollup_referer", indexes = {
+        @Index(name = "uk_click_rollup_referer", columnList = "short_code, granularity, bucket_start, referer", unique = true)
+})
+public class ClickRollupReferer {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "short_code", nullable = false, length = 32)
+    private String shortCode;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "granularity", nullable = false, length = 8)
+    private RollupGranularity granularity;
+
+    @Column(name = "bucket_start", nullable = false)
+    private LocalDateTime bucketStart;
+
+    // Host of the referring page, or "(direct)"
+    @Column(name = "referer", nullable = false)
+    private String referer;
+
+    @Column(nullable = false)
+    private long clicks;
+
+    public Long getId() {
+        return id;
+    }
+
+    public String getShortCode() {
+        return shortCode;
+    }
+
+    public RollupGranularity getGranularity() {
+        return granularity;
+    }
+
+    public LocalDateTime getBucketStart() {
+        return bucketStart;
+    }
+
+    public String getReferer() {
+        return referer;
+    }
+
+    public long getClicks() {
+        return clicks;
+    }
+}
@@ -0,0 +1,35 @@
+package com.example.urlshortener.model;
+
+import jakarta.persistence.*;
+
+@Entity
+@Table(name = "code_sequence")
+public class CodeSequence {
+
+    @Id
+    @Column(length = 64)
+    private String name;
+
+    @Column(name = "next_value", nullable = false)
+    private long nextValue;
+
+    public CodeSequence() {
+    }
+
+    public CodeSequence(String name, long nextValue) {
+        this.name = name;
+        this.nextValue = nextValue;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public long getNextValue() {
+        return nextValue;
+    }
+
+    public void setNextValue(long nextValue) {
+        this.nextValue = nextValue;
+    }
+}
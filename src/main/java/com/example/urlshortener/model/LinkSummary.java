@@ -0,0 +1,25 @@
+package com.example.urlshortener.model;
+
+import java.time.LocalDateTime;
+
+/**
+ * Read-only view of a link returned by listings. Built by JPQL constructor
+ * expressions, so no entity is hydrated or tracked by the persistence context,
+ * and serialized as is (without the internal url hash).
+ */
+public record LinkSummary(Long id, String shortCode, String originalUrl, int clickCount,
+                          LocalDateTime createdAt, LocalDateTime expiresAt, LocalDateTime lastAccessedAt,
+                          RedirectType redirectType) {
+
+    public LinkSummary {
+        // Null on links created before redirect types existed, which are tracked
+        if (redirectType == null) {
+            redirectType = RedirectType.TRACKED;
+        }
+    }
+
+    public static LinkSummary of(UrlMapping mapping) {
+        return new LinkSummary(mapping.getId(), mapping.getShortCode(), mapping.getOriginalUrl(), mapping.getClickCount(),
+                mapping.getCreatedAt(), mapping.getExpiresAt(), mapping.getLastAccessedAt(), mapping.getRedirectType());
+    }
+}
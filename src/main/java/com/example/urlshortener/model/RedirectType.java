@@ -0,0 +1,25 @@
+package com.example.urlshortener.model;
+
+/**
+ * How a link redirects, chosen when it is created
+ */
+public enum RedirectType {
+    /**
+     * 302 that browsers and CDNs must not cache, so every click reaches the
+     * application and is counted
+     */
+    TRACKED,
+    /**
+     * 301 that may be cached until the link expires; repeat clicks from the
+     * same browser or CDN are not counted
+     */
+    PERMANENT;
+
+    public static RedirectType fromString(String value) {
+        try {
+            return valueOf(value.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("redirectType must be one of tracked, permanent");
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package com.example.urlshortener.model;
+
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+
+/**
+ * Progress of the click rollup backfill on one shard (a single row, id 1).
+ * live_since is when live rollups first started on the shard; cutoff and
+ * last_log_id are the range the backfill was started with and how far it got.
+ */
+@Entity
+@Table(name = "rollup_backfill")
+public class RollupBackfill {
+
+    @Id
+    private int id;
+
+    @Column(name = "live_since", nullable = false)
+    private LocalDateTime liveSince;
+
+    @Column(name = "cutoff")
+    private LocalDateTime cutoff;
+
+    @Column(name = "last_log_id", nullable = false)
+    private long lastLogId;
+
+    @Column(name = "completed_at")
+    private LocalDateTime completedAt;
+
+    public RollupBackfill() {
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public LocalDateTime getLiveSince() {
+        return liveSince;
+    }
+
+    public LocalDateTime getCutoff() {
+        return cutoff;
+    }
+
+    public long getLastLogId() {
+        return lastLogId;
+    }
+
+    public LocalDateTime getCompletedAt() {
+        return completedAt;
+    }
+}
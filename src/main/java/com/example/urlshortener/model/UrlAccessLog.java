@@ -4,19 +4,25 @@ import jakarta.persistence.*;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "url_access_log")
+@Table(name = "url_access_log", indexes = {
+        @Index(name = "idx_access_log_mapping_time", columnList = "url_mapping_id, accessed_at, id")
+})
 public class UrlAccessLog {
 
+    // Pooled sequence instead of IDENTITY so Hibernate can batch the inserts
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "url_access_log_seq")
+    @SequenceGenerator(name = "url_access_log_seq", sequenceName = "url_access_log_seq", allocationSize = 500)
     private Long id;
 
+    // No foreign key: with urlshortener.storage=log the links are not in url_mapping
     @ManyToOne(fetch = FetchType.LAZY)
-    @JoinColumn(name = "url_mapping_id")
+    @JoinColumn(name = "url_mapping_id", foreignKey = @ForeignKey(ConstraintMode.NO_CONSTRAINT))
     private UrlMapping urlMapping;
 
     private String userAgent;
     private String ipAddress;
+    @Column(name = "accessed_at")
     private LocalDateTime accessedAt;
     private String referer;
 
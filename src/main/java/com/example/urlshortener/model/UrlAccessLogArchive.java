@@ -0,0 +1,70 @@
+package com.example.urlshortener.model;
+
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+
+/**
+ * Access log row of a link that has expired and been purged
+ */
+@Entity
+@Table(name = "url_access_log_archive", indexes = {
+        @Index(name = "idx_access_log_archive_code", columnList = "short_code, accessed_at")
+})
+public class UrlAccessLogArchive {
+
+    // Same id as the original url_access_log row
+    @Id
+    private Long id;
+
+    @Column(name = "short_code", nullable = false)
+    private String shortCode;
+
+    @Column(name = "original_url", length = 2000)
+    private String originalUrl;
+
+    @Column(name = "user_agent")
+    private String userAgent;
+
+    @Column(name = "ip_address")
+    private String ipAddress;
+
+    @Column(name = "accessed_at")
+    private LocalDateTime accessedAt;
+
+    private String referer;
+
+    @Column(name = "archived_at", nullable = false)
+    private LocalDateTime archivedAt;
+
+    public Long getId() {
+        return id;
+    }
+
+    public String getShortCode() {
+        return shortCode;
+    }
+
+    public String getOriginalUrl() {
+        return originalUrl;
+    }
+
+    public String getUserAgent() {
+        return userAgent;
+    }
+
+    public String getIpAddress() {
+        return ipAddress;
+    }
+
+    public LocalDateTime getAccessedAt() {
+        return accessedAt;
+    }
+
+    public String getReferer() {
+        return referer;
+    }
+
+    public LocalDateTime getArchivedAt() {
+        return archivedAt;
+    }
+}
@@ -4,7 +4,11 @@ import jakarta.persistence.*;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "url_mapping")
+@Table(name = "url_mapping", indexes = {
+        @Index(name = "idx_url_mapping_url_hash", columnList = "url_hash", unique = true),
+        @Index(name = "idx_url_mapping_created", columnList = "created_at, id"),
+        @Index(name = "idx_url_mapping_expires", columnList = "expires_at, id")
+})
 public class UrlMapping {
 
     @Id
@@ -17,6 +21,10 @@ public class UrlMapping {
     @Column(length = 2000)
     private String originalUrl;
 
+    // SHA-256 of originalUrl; only set on links created in reuse-existing mode
+    @Column(name = "url_hash", columnDefinition = "char(64)")
+    private String urlHash;
+
     private int clickCount;
 
     @Column(name = "created_at")
@@ -28,10 +36,19 @@ public class UrlMapping {
     @Column(name = "last_accessed_at")
     private LocalDateTime lastAccessedAt;
 
+    // Null on links created before redirect types existed, which are tracked
+    @Enumerated(EnumType.STRING)
+    @Column(name = "redirect_type", length = 16)
+    private RedirectType redirectType;
+
     public Long getId() {
         return id;
     }
 
+    public void setId(Long id) {
+        this.id = id;
+    }
+
     public String getShortCode() {
         return shortCode;
     }
@@ -48,6 +65,14 @@ public class UrlMapping {
         this.originalUrl = originalUrl;
     }
 
+    public String getUrlHash() {
+        return urlHash;
+    }
+
+    public void setUrlHash(String urlHash) {
+        this.urlHash = urlHash;
+    }
+
     public int getClickCount() {
         return clickCount;
     }
@@ -80,6 +105,14 @@ public class UrlMapping {
         this.lastAccessedAt = lastAccessedAt;
     }
 
+    public RedirectType getRedirectType() {
+        return redirectType == null ? RedirectType.TRACKED : redirectType;
+    }
+
+    public void setRedirectType(RedirectType redirectType) {
+        this.redirectType = redirectType;
+    }
+
     public boolean isExpired() {
         return expiresAt != null && LocalDateTime.now().isAfter(expiresAt);
     }
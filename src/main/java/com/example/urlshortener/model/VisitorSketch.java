@@ -0,0 +1,43 @@
+package com.example.urlshortener.model;
+
+import jakarta.persistence.*;
+import java.time.LocalDate;
+
+/**
+ * Serialized HyperLogLog of the distinct visitors of one short code on one day
+ */
+@Entity
+@Table(name = "visitor_sketch", indexes = {
+        @Index(name = "uk_visitor_sketch_day", columnList = "short_code, visit_date", unique = true)
+})
+public class VisitorSketch {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "short_code", nullable = false, length = 32)
+    private String shortCode;
+
+    @Column(name = "visit_date", nullable = false)
+    private LocalDate visitDate;
+
+    @Column(name = "sketch", nullable = false, length = 4098)
+    private byte[] sketch;
+
+    public Long getId() {
+        return id;
+    }
+
+    public String getShortCode() {
+        return shortCode;
+    }
+
+    public LocalDate getVisitDate() {
+        return visitDate;
+    }
+
+    public byte[] getSketch() {
+        return sketch;
+    }
+}
@@ -0,0 +1,37 @@
+package com.example.urlshortener.repository;
+
+import com.example.urlshortener.model.ClickRollup;
+import com.example.urlshortener.model.RollupGranularity;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Queries run in read-only transactions (served by a replica when read/write
+ * routing is enabled)
+ */
+@Transactional(readOnly = true)
+public interface ClickRollupRepository extends JpaRepository<ClickRollup, Long> {
+
+    @Query("SELECT r FROM ClickRollup r WHERE r.shortCode = :shortCode AND r.granularity = :granularity " +
+            "AND r.bucketStart >= :from AND r.bucketStart < :to ORDER BY r.bucketStart")
+    List<ClickRollup> findBuckets(@Param("shortCode") String shortCode,
+                                  @Param("granularity") RollupGranularity granularity,
+                                  @Param("from") LocalDateTime from,
+                                  @Param("to") LocalDateTime to);
+
+    @Query("SELECT COALESCE(SUM(r.clicks), 0) FROM ClickRollup r WHERE r.shortCode = :shortCode " +
+            "AND r.granularity = :granularity AND r.bucketStart >= :from AND r.bucketStart < :to")
+    long sumClicks(@Param("shortCode") String shortCode,
+                   @Param("granularity") RollupGranularity granularity,
+                   @Param("from") LocalDateTime from,
+                   @Param("to") LocalDateTime to);
+
+    @Query("SELECT COALESCE(SUM(r.clicks), 0) FROM ClickRollup r WHERE r.shortCode = :shortCode " +
+            "AND r.granularity = com.example.urlshortener.model.RollupGranularity.DAY")
+    long sumAllDailyClicks(@Param("shortCode") String shortCode);
+}
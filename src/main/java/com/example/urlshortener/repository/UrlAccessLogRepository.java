@@ -1,20 +1,51 @@
 package com.example.urlshortener.repository;
 
+import com.example.urlshortener.model.AccessLogEntry;
 import com.example.urlshortener.model.UrlAccessLog;
 import com.example.urlshortener.model.UrlMapping;
+import jakarta.persistence.QueryHint;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.stream.Stream;
 
+import static org.hibernate.jpa.HibernateHints.HINT_FETCH_SIZE;
+
+/**
+ * Queries run in read-only transactions (served by a replica when read/write
+ * routing is enabled). Listings project into AccessLogEntry records, so the
+ * lazy urlMapping is never touched.
+ */
+@Transactional(readOnly = true)
 public interface UrlAccessLogRepository extends JpaRepository<UrlAccessLog, Long> {
     
     List<UrlAccessLog> findByUrlMapping(UrlMapping urlMapping);
 
-    @Query("SELECT u FROM UrlAccessLog u WHERE u.urlMapping = :urlMapping ORDER BY u.accessedAt DESC")
-    List<UrlAccessLog> findAccessLogsByUrl(@Param("urlMapping") UrlMapping urlMapping);
+    @Query("SELECT new com.example.urlshortener.model.AccessLogEntry(u.id, u.accessedAt, u.ipAddress, u.userAgent, u.referer) " +
+            "FROM UrlAccessLog u WHERE u.urlMapping = :urlMapping ORDER BY u.accessedAt DESC")
+    List<AccessLogEntry> findAccessLogsByUrl(@Param("urlMapping") UrlMapping urlMapping);
+
+    @Query("SELECT new com.example.urlshortener.model.AccessLogEntry(u.id, u.accessedAt, u.ipAddress, u.userAgent, u.referer) " +
+            "FROM UrlAccessLog u WHERE u.urlMapping = :urlMapping ORDER BY u.accessedAt DESC, u.id DESC")
+    List<AccessLogEntry> findAccessLogsPage(@Param("urlMapping") UrlMapping urlMapping, Limit limit);
+
+    @Query("SELECT new com.example.urlshortener.model.AccessLogEntry(u.id, u.accessedAt, u.ipAddress, u.userAgent, u.referer) " +
+            "FROM UrlAccessLog u WHERE u.urlMapping = :urlMapping " +
+            "AND (u.accessedAt < :accessedAt OR (u.accessedAt = :accessedAt AND u.id < :id)) ORDER BY u.accessedAt DESC, u.id DESC")
+    List<AccessLogEntry> findAccessLogsPageAfter(@Param("urlMapping") UrlMapping urlMapping,
+                                                 @Param("accessedAt") LocalDateTime accessedAt,
+                                                 @Param("id") Long id, Limit limit);
+
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "500"))
+    @Query("SELECT new com.example.urlshortener.model.AccessLogEntry(u.id, u.accessedAt, u.ipAddress, u.userAgent, u.referer) " +
+            "FROM UrlAccessLog u WHERE u.urlMapping = :urlMapping ORDER BY u.accessedAt DESC, u.id DESC")
+    Stream<AccessLogEntry> streamAccessLogsByUrl(@Param("urlMapping") UrlMapping urlMapping);
 
     @Query("SELECT u FROM UrlAccessLog u WHERE u.accessedAt BETWEEN :startDate AND :endDate ORDER BY u.accessedAt DESC")
     List<UrlAccessLog> findAccessLogsByDateRange(@Param("startDate") LocalDateTime startDate, @Param("endDate") LocalDateTime endDate);
@@ -1,25 +1,70 @@
 package com.example.urlshortener.repository;
 
+import com.example.urlshortener.model.LinkSummary;
 import com.example.urlshortener.model.UrlMapping;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+import jakarta.persistence.QueryHint;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
+import static org.hibernate.jpa.HibernateHints.HINT_FETCH_SIZE;
+
+/**
+ * Queries run in read-only transactions, so with read/write routing enabled
+ * they are served by a replica; save and modifying queries use the primary.
+ * Listings project straight into LinkSummary records instead of entities.
+ */
+@Transactional(readOnly = true)
 public interface UrlRepository extends JpaRepository<UrlMapping, Long> {
     Optional<UrlMapping> findByShortCode(String shortCode);
 
-    @Query("SELECT u FROM UrlMapping u WHERE u.expiresAt IS NULL OR u.expiresAt > CURRENT_TIMESTAMP ORDER BY u.clickCount DESC LIMIT 10")
-    List<UrlMapping> findTop10ActiveUrls();
+    Optional<UrlMapping> findByUrlHash(String urlHash);
+
+    @Transactional
+    @Modifying
+    @Query("UPDATE UrlMapping u SET u.urlHash = NULL WHERE u.id = :id")
+    int clearUrlHash(@Param("id") Long id);
+
+    @Query("SELECT new com.example.urlshortener.model.LinkSummary(u.id, u.shortCode, u.originalUrl, u.clickCount, " +
+            "u.createdAt, u.expiresAt, u.lastAccessedAt, u.redirectType) FROM UrlMapping u WHERE u.expiresAt IS NULL OR u.expiresAt > CURRENT_TIMESTAMP ORDER BY u.clickCount DESC")
+    List<LinkSummary> findTopActiveUrls(Limit limit);
+
+    @Query("SELECT u.shortCode, u.clickCount FROM UrlMapping u WHERE u.expiresAt IS NULL OR u.expiresAt > CURRENT_TIMESTAMP ORDER BY u.clickCount DESC")
+    List<Object[]> findTopActiveClickCounts(Limit limit);
+
+    List<UrlMapping> findByShortCodeIn(Collection<String> shortCodes);
+
+    @Query("SELECT new com.example.urlshortener.model.LinkSummary(u.id, u.shortCode, u.originalUrl, u.clickCount, " +
+            "u.createdAt, u.expiresAt, u.lastAccessedAt, u.redirectType) FROM UrlMapping u WHERE u.expiresAt IS NULL OR u.expiresAt > CURRENT_TIMESTAMP ORDER BY u.createdAt DESC")
+    List<LinkSummary> findAllActiveUrls();
+
+    @Query("SELECT new com.example.urlshortener.model.LinkSummary(u.id, u.shortCode, u.originalUrl, u.clickCount, " +
+            "u.createdAt, u.expiresAt, u.lastAccessedAt, u.redirectType) FROM UrlMapping u WHERE u.expiresAt IS NULL OR u.expiresAt > CURRENT_TIMESTAMP ORDER BY u.createdAt DESC, u.id DESC")
+    List<LinkSummary> findActiveUrlsPage(Limit limit);
+
+    @Query("SELECT new com.example.urlshortener.model.LinkSummary(u.id, u.shortCode, u.originalUrl, u.clickCount, " +
+            "u.createdAt, u.expiresAt, u.lastAccessedAt, u.redirectType) FROM UrlMapping u WHERE (u.expiresAt IS NULL OR u.expiresAt > CURRENT_TIMESTAMP) " +
+            "AND (u.createdAt < :createdAt OR (u.createdAt = :createdAt AND u.id < :id)) ORDER BY u.createdAt DESC, u.id DESC")
+    List<LinkSummary> findActiveUrlsPageAfter(@Param("createdAt") LocalDateTime createdAt, @Param("id") Long id, Limit limit);
 
-    @Query("SELECT u FROM UrlMapping u WHERE u.expiresAt IS NULL OR u.expiresAt > CURRENT_TIMESTAMP ORDER BY u.createdAt DESC")
-    List<UrlMapping> findAllActiveUrls();
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "500"))
+    @Query("SELECT new com.example.urlshortener.model.LinkSummary(u.id, u.shortCode, u.originalUrl, u.clickCount, " +
+            "u.createdAt, u.expiresAt, u.lastAccessedAt, u.redirectType) FROM UrlMapping u WHERE u.expiresAt IS NULL OR u.expiresAt > CURRENT_TIMESTAMP ORDER BY u.createdAt DESC, u.id DESC")
+    Stream<LinkSummary> streamActiveUrls();
 
-    @Query("SELECT u FROM UrlMapping u WHERE u.expiresAt IS NOT NULL AND u.expiresAt <= CURRENT_TIMESTAMP")
-    List<UrlMapping> findExpiredUrls();
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "1000"))
+    @Query("SELECT u.shortCode FROM UrlMapping u WHERE u.shortCode IS NOT NULL")
+    Stream<String> streamAllShortCodes();
 
     @Query("SELECT u FROM UrlMapping u WHERE u.createdAt BETWEEN :startDate AND :endDate ORDER BY u.createdAt DESC")
     List<UrlMapping> findUrlsByDateRange(@Param("startDate") LocalDateTime startDate, @Param("endDate") LocalDateTime endDate);
@@ -0,0 +1,27 @@
+package com.example.urlshortener.repository;
+
+import com.example.urlshortener.model.VisitorSketch;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * Queries run in read-only transactions (served by a replica when read/write
+ * routing is enabled)
+ */
+@Transactional(readOnly = true)
+public interface VisitorSketchRepository extends JpaRepository<VisitorSketch, Long> {
+
+    @Query("SELECT s FROM VisitorSketch s WHERE s.shortCode = :shortCode " +
+            "AND s.visitDate >= :from AND s.visitDate <= :to ORDER BY s.visitDate")
+    List<VisitorSketch> findSketches(@Param("shortCode") String shortCode,
+                                     @Param("from") LocalDate from,
+                                     @Param("to") LocalDate to);
+
+    @Query("SELECT s FROM VisitorSketch s WHERE s.shortCode = :shortCode")
+    List<VisitorSketch> findAllSketches(@Param("shortCode") String shortCode);
+}
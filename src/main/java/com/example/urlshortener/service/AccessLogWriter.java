@@ -0,0 +1,225 @@
+package com.example.urlshortener.service;
+
+import com.example.urlshortener.config.Shards;
+import com.example.urlshortener.model.UrlAccessLog;
+import com.example.urlshortener.repository.UrlAccessLogRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * AccessLogWriter takes access-log rows off the redirect thread.
+ *
+ * Redirects only enqueue a UrlAccessLog into a bounded queue. A single writer
+ * thread drains the queue and inserts the rows in one transaction per batch,
+ * which Hibernate sends as a JDBC batch (the log id comes from a pooled
+ * sequence, so no per-row IDENTITY round trip is needed).
+ *
+ * When the queue is full the configured overflow policy applies: DROP discards
+ * the row immediately, BLOCK waits up to the block timeout for space.
+ * With several shards a batch is split and each part is inserted on the shard
+ * of its link.
+ */
+@Component
+public class AccessLogWriter {
+
+    private static final Logger log = LoggerFactory.getLogger(AccessLogWriter.class);
+
+    // Shard n hands out ids from n * 2^40 on, see alignSequence
+    static final long SHARD_ID_SPACING = 1L << 40;
+
+    public enum OverflowPolicy {
+        DROP,
+        BLOCK
+    }
+
+    private final UrlAccessLogRepository accessLogRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final JdbcTemplate jdbcTemplate;
+    private final Shards shards;
+    private final UrlMetrics metrics;
+    private final BlockingQueue<UrlAccessLog> queue;
+    private final int capacity;
+    private final int batchSize;
+    private final OverflowPolicy overflowPolicy;
+    private final long blockTimeoutMillis;
+
+    private final AtomicLong enqueued = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong written = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong batches = new AtomicLong();
+    private final AtomicLong totalInsertNanos = new AtomicLong();
+    private volatile long maxInsertNanos;
+    private volatile int lastBatchSize;
+
+    private volatile boolean running;
+    private Thread writerThread;
+
+    public AccessLogWriter(UrlAccessLogRepository accessLogRepository,
+                           TransactionTemplate transactionTemplate,
+                           JdbcTemplate jdbcTemplate,
+                           Shards shards,
+                           UrlMetrics metrics,
+                           @Value("${urlshortener.access-log.queue-capacity:10000}") int capacity,
+                           @Value("${urlshortener.access-log.batch-size:500}") int batchSize,
+                           @Value("${urlshortener.access-log.overflow-policy:DROP}") OverflowPolicy overflowPolicy,
+                           @Value("${urlshortener.access-log.block-timeout-ms:50}") long blockTimeoutMillis) {
+        this.accessLogRepository = accessLogRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.jdbcTemplate = jdbcTemplate;
+        this.shards = shards;
+        this.metrics = metrics;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.capacity = capacity;
+        this.batchSize = batchSize;
+        this.overflowPolicy = overflowPolicy;
+        this.blockTimeoutMillis = blockTimeoutMillis;
+        metrics.gauge("urlshortener.access_log.queue.depth", "Access log rows waiting to be written",
+                queue, BlockingQueue::size);
+        metrics.gauge("urlshortener.access_log.dropped", "Access log rows dropped because the queue was full",
+                dropped, AtomicLong::get);
+    }
+
+    @PostConstruct
+    public void start() {
+        alignSequence();
+        running = true;
+        writerThread = new Thread(this::drainLoop, "access-log-writer");
+        writerThread.setDaemon(true);
+        writerThread.start();
+    }
+
+    /**
+     * Queue an access log for insertion; returns false if it was dropped
+     */
+    public boolean submit(UrlAccessLog accessLog) {
+        boolean accepted;
+        if (overflowPolicy == OverflowPolicy.BLOCK) {
+            try {
+                accepted = queue.offer(accessLog, blockTimeoutMillis, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                accepted = false;
+            }
+        } else {
+            accepted = queue.offer(accessLog);
+        }
+
+        if (accepted) {
+            enqueued.incrementAndGet();
+        } else {
+            dropped.incrementAndGet();
+        }
+        return accepted;
+    }
+
+    private void drainLoop() {
+        List<UrlAccessLog> batch = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                UrlAccessLog first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, batchSize - 1);
+                writeBatch(batch);
+            } catch (InterruptedException e) {
+                running = false;
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void writeBatch(List<UrlAccessLog> batch) {
+        if (shards.isSharded()) {
+            shards.groupByShard(batch, row -> row.getUrlMapping().getShortCode())
+                    .forEach((shard, rows) -> shards.run(shard, () -> writeShardBatch(rows)));
+        } else {
+            writeShardBatch(batch);
+        }
+    }
+
+    private void writeShardBatch(List<UrlAccessLog> batch) {
+        long start = System.nanoTime();
+        try {
+            transactionTemplate.executeWithoutResult(status -> accessLogRepository.saveAll(batch));
+            metrics.record(UrlMetrics.Stage.FLUSH_ACCESS_LOGS, start);
+            written.addAndGet(batch.size());
+        } catch (RuntimeException e) {
+            failed.addAndGet(batch.size());
+            log.warn("Failed to write {} access log rows", batch.size(), e);
+        }
+        long elapsed = System.nanoTime() - start;
+        batches.incrementAndGet();
+        totalInsertNanos.addAndGet(elapsed);
+        if (elapsed > maxInsertNanos) {
+            maxInsertNanos = elapsed;
+        }
+        lastBatchSize = batch.size();
+    }
+
+    /**
+     * Rows created before the switch from IDENTITY to a sequence already use
+     * ids; move the sequence past them so new ids never collide.
+     *
+     * Hibernate keeps one pool of ids in memory for all shards and refills it
+     * from whichever shard it is writing to, so each shard's sequence starts in
+     * its own range of 2^40 ids; that keeps ids unique across shards.
+     */
+    private void alignSequence() {
+        shards.forEach(shard -> {
+            try {
+                jdbcTemplate.update("UPDATE url_access_log_seq SET next_val = " +
+                        "GREATEST(next_val, ?, (SELECT COALESCE(MAX(id), 0) + 1 FROM url_access_log))",
+                        shard * SHARD_ID_SPACING);
+            } catch (RuntimeException e) {
+                log.debug("Access log sequence not aligned on shard {}: {}", shard, e.getMessage());
+            }
+        });
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        // The writer notices within one poll interval and drains the rest
+        running = false;
+        if (writerThread != null) {
+            writerThread.join(TimeUnit.SECONDS.toMillis(10));
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        long batchCount = batches.get();
+        stats.put("queueDepth", queue.size());
+        stats.put("queueCapacity", capacity);
+        stats.put("overflowPolicy", overflowPolicy);
+        stats.put("enqueued", enqueued.get());
+        stats.put("dropped", dropped.get());
+        stats.put("written", written.get());
+        stats.put("failed", failed.get());
+        stats.put("batches", batchCount);
+        stats.put("maxBatchSize", batchSize);
+        stats.put("lastBatchSize", lastBatchSize);
+        stats.put("avgBatchSize", batchCount == 0 ? 0.0 : (double) (written.get() + failed.get()) / batchCount);
+        stats.put("avgInsertMillis", batchCount == 0 ? 0.0 : totalInsertNanos.get() / 1_000_000.0 / batchCount);
+        stats.put("maxInsertMillis", maxInsertNanos / 1_000_000.0);
+        return stats;
+    }
+}
@@ -0,0 +1,284 @@
+package com.example.urlshortener.service;
+
+import com.example.urlshortener.util.TokenBuckets;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * AdmissionControl decides whether an API request may run, so that clients
+ * hammering the API cannot starve redirects of database connections.
+ *
+ * Two checks run in front of every limited route (see AdmissionFilter;
+ * redirects are never limited):
+ * - Load shedding: the connection pools' waiting threads and recent average
+ *   connection wait are sampled every sample interval. Their ratio to the
+ *   configured thresholds is the pressure. At pressure 1 low priority routes
+ *   are rejected, at 2 normal ones as well, and at 4 high priority ones too.
+ * - Rate limiting: each client (API key, or IP address without one) has a
+ *   token bucket per rate class, held in a bounded TokenBuckets table.
+ */
+@Component
+public class AdmissionControl {
+
+    private static final Logger log = LoggerFactory.getLogger(AdmissionControl.class);
+
+    /**
+     * Requests of higher priority are shed later; the value is the shedding
+     * level from which a priority is rejected
+     */
+    public enum Priority {
+        HIGH(3),
+        NORMAL(2),
+        LOW(1);
+
+        private final int shedLevel;
+
+        Priority(int shedLevel) {
+            this.shedLevel = shedLevel;
+        }
+    }
+
+    /**
+     * Token bucket settings shared by several routes
+     */
+    public enum RateClass {
+        SHORTEN,
+        ANALYTICS,
+        LISTING
+    }
+
+    /**
+     * Limited routes; metrics are tagged with the route name
+     */
+    public enum Route {
+        SHORTEN("shorten", Priority.HIGH, RateClass.SHORTEN),
+        SHORTEN_BATCH("shorten_batch", Priority.LOW, RateClass.SHORTEN),
+        ANALYTICS("analytics", Priority.NORMAL, RateClass.ANALYTICS),
+        LISTING("listing", Priority.LOW, RateClass.LISTING);
+
+        private final String tag;
+        private final Priority priority;
+        private final RateClass rateClass;
+
+        Route(String tag, Priority priority, RateClass rateClass) {
+            this.tag = tag;
+            this.priority = priority;
+            this.rateClass = rateClass;
+        }
+
+        public String getTag() {
+            return tag;
+        }
+    }
+
+    public enum Reason {
+        SHED("shed"),
+        RATE_LIMITED("rate_limited");
+
+        private final String tag;
+
+        Reason(String tag) {
+            this.tag = tag;
+        }
+
+        public String getTag() {
+            return tag;
+        }
+    }
+
+    /**
+     * Why a request was turned away and when the client may retry
+     */
+    public record Rejection(Reason reason, long retryAfterSeconds) {
+    }
+
+    private final MeterRegistry registry;
+    private final boolean enabled;
+    private final boolean rateLimitEnabled;
+    private final double[] ratePerSecond = new double[RateClass.values().length];
+    private final double[] burst = new double[RateClass.values().length];
+    private final TokenBuckets buckets;
+    private final long idleNanos;
+    private final double pendingThreshold;
+    private final double waitThresholdMillis;
+
+    private final Counter[] admitted = new Counter[Route.values().length];
+    private final Counter[][] rejected = new Counter[Route.values().length][Reason.values().length];
+    private final AtomicLong idleRemoved = new AtomicLong();
+
+    private volatile int sheddingLevel;
+    private volatile double pressure;
+    private volatile double poolPending;
+    private volatile double poolWaitMillis;
+    private double lastAcquireNanos;
+    private long lastAcquireCount;
+
+    public AdmissionControl(MeterRegistry registry,
+                            @Value("${urlshortener.admission.enabled:true}") boolean enabled,
+                            @Value("${urlshortener.admission.rate-limit.enabled:true}") boolean rateLimitEnabled,
+                            @Value("${urlshortener.admission.shorten.rate-per-second:10}") double shortenRate,
+                            @Value("${urlshortener.admission.shorten.burst:50}") double shortenBurst,
+                            @Value("${urlshortener.admission.analytics.rate-per-second:20}") double analyticsRate,
+                            @Value("${urlshortener.admission.analytics.burst:100}") double analyticsBurst,
+                            @Value("${urlshortener.admission.listing.rate-per-second:1}") double listingRate,
+                            @Value("${urlshortener.admission.listing.burst:10}") double listingBurst,
+                            @Value("${urlshortener.admission.max-clients:100000}") int maxClients,
+                            @Value("${urlshortener.admission.idle-seconds:300}") long idleSeconds,
+                            @Value("${urlshortener.admission.pending-threshold:5}") double pendingThreshold,
+                            @Value("${urlshortener.admission.wait-threshold-ms:20}") double waitThresholdMillis) {
+        this.registry = registry;
+        this.enabled = enabled;
+        this.rateLimitEnabled = rateLimitEnabled;
+        ratePerSecond[RateClass.SHORTEN.ordinal()] = shortenRate;
+        burst[RateClass.SHORTEN.ordinal()] = shortenBurst;
+        ratePerSecond[RateClass.ANALYTICS.ordinal()] = analyticsRate;
+        burst[RateClass.ANALYTICS.ordinal()] = analyticsBurst;
+        ratePerSecond[RateClass.LISTING.ordinal()] = listingRate;
+        burst[RateClass.LISTING.ordinal()] = listingBurst;
+        this.buckets = new TokenBuckets(maxClients);
+        this.idleNanos = TimeUnit.SECONDS.toNanos(idleSeconds);
+        this.pendingThreshold = pendingThreshold;
+        this.waitThresholdMillis = waitThresholdMillis;
+
+        for (Route route : Route.values()) {
+            admitted[route.ordinal()] = Counter.builder("urlshortener.admission.admitted")
+                    .description("API requests let through admission control")
+                    .tag("route", route.tag)
+                    .register(registry);
+            for (Reason reason : Reason.values()) {
+                rejected[route.ordinal()][reason.ordinal()] = Counter.builder("urlshortener.admission.rejected")
+                        .description("API requests answered with 429 by admission control")
+                        .tag("route", route.tag)
+                        .tag("reason", reason.tag)
+                        .register(registry);
+            }
+        }
+        Gauge.builder("urlshortener.admission.pressure", this, control -> control.pressure)
+                .description("Connection pool pressure relative to the shedding thresholds (1 = start shedding)")
+                .register(registry);
+        Gauge.builder("urlshortener.admission.shedding.level", this, control -> control.sheddingLevel)
+                .description("0 = nothing shed, 1 = low priority shed, 2 = normal too, 3 = high too")
+                .register(registry);
+        Gauge.builder("urlshortener.admission.clients", buckets, TokenBuckets::size)
+                .description("Clients with a token bucket")
+                .register(registry);
+    }
+
+    /**
+     * Admit a request of a client to a route; null if it may run
+     */
+    public Rejection admit(Route route, String clientKey) {
+        if (!enabled) {
+            return null;
+        }
+        if (sheddingLevel >= route.priority.shedLevel) {
+            rejected[route.ordinal()][Reason.SHED.ordinal()].increment();
+            return new Rejection(Reason.SHED, 1);
+        }
+        if (rateLimitEnabled) {
+            int rateClass = route.rateClass.ordinal();
+            long waitNanos = buckets.tryAcquire(route.rateClass.name() + '|' + clientKey,
+                    ratePerSecond[rateClass], burst[rateClass], System.nanoTime());
+            if (waitNanos > 0) {
+                rejected[route.ordinal()][Reason.RATE_LIMITED.ordinal()].increment();
+                return new Rejection(Reason.RATE_LIMITED, Math.max(1, TimeUnit.NANOSECONDS.toSeconds(waitNanos + 999_999_999)));
+            }
+        }
+        admitted[route.ordinal()].increment();
+        return null;
+    }
+
+    /**
+     * Recompute the pressure from the pools' waiting threads and the average
+     * connection wait since the previous sample; pressure decays by half
+     * per sample once the pools are quiet again
+     */
+    @Scheduled(fixedRateString = "${urlshortener.admission.sample-interval-ms:250}")
+    public synchronized void sample() {
+        if (!enabled) {
+            return;
+        }
+        double pending = 0;
+        for (Gauge gauge : registry.find("hikaricp.connections.pending").gauges()) {
+            pending += gauge.value();
+        }
+        double acquireNanos = 0;
+        long acquireCount = 0;
+        for (Timer timer : registry.find("hikaricp.connections.acquire").timers()) {
+            acquireNanos += timer.totalTime(TimeUnit.NANOSECONDS);
+            acquireCount += timer.count();
+        }
+        long acquired = acquireCount - lastAcquireCount;
+        double waitMillis = acquired <= 0 ? 0 : (acquireNanos - lastAcquireNanos) / acquired / 1e6;
+        lastAcquireNanos = acquireNanos;
+        lastAcquireCount = acquireCount;
+
+        // Rise at once but relax by half per sample, so shedding does not flap between quiet samples
+        double current = Math.max(Math.max(pending / pendingThreshold, waitMillis / waitThresholdMillis), pressure / 2);
+        int level = current >= 4 ? 3 : current >= 2 ? 2 : current >= 1 ? 1 : 0;
+        if (level != sheddingLevel) {
+            if (level > sheddingLevel) {
+                log.warn("Shedding level {} -> {} (pool waiters {}, average wait {} ms)", sheddingLevel, level,
+                        (long) pending, String.format("%.1f", waitMillis));
+            } else {
+                log.info("Shedding level {} -> {}", sheddingLevel, level);
+            }
+        }
+        poolPending = pending;
+        poolWaitMillis = waitMillis;
+        pressure = current;
+        sheddingLevel = level;
+    }
+
+    @Scheduled(fixedDelayString = "${urlshortener.admission.cleanup-interval-ms:60000}")
+    public void removeIdleClients() {
+        idleRemoved.addAndGet(buckets.removeIdle(idleNanos, System.nanoTime()));
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("rateLimitEnabled", rateLimitEnabled);
+        Map<String, Object> limits = new HashMap<>();
+        for (RateClass rateClass : RateClass.values()) {
+            limits.put(rateClass.name().toLowerCase(), Map.of(
+                    "ratePerSecond", ratePerSecond[rateClass.ordinal()],
+                    "burst", burst[rateClass.ordinal()]));
+        }
+        stats.put("limits", limits);
+        stats.put("clients", buckets.size());
+        stats.put("maxClients", buckets.getMaxKeys());
+        stats.put("evictedClients", buckets.getEvictions());
+        stats.put("idleClientsRemoved", idleRemoved.get());
+        stats.put("pressure", pressure);
+        stats.put("sheddingLevel", sheddingLevel);
+        stats.put("poolPending", poolPending);
+        stats.put("poolWaitMillis", poolWaitMillis);
+        stats.put("pendingThreshold", pendingThreshold);
+        stats.put("waitThresholdMillis", waitThresholdMillis);
+        Map<String, Object> routes = new HashMap<>();
+        for (Route route : Route.values()) {
+            Map<String, Object> counts = new HashMap<>();
+            counts.put("priority", route.priority.name().toLowerCase());
+            counts.put("admitted", (long) admitted[route.ordinal()].count());
+            for (Reason reason : Reason.values()) {
+                counts.put(reason.tag, (long) rejected[route.ordinal()][reason.ordinal()].count());
+            }
+            routes.put(route.tag, counts);
+        }
+        stats.put("routes", routes);
+        return stats;
+    }
+}
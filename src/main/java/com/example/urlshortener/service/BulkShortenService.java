@@ -0,0 +1,273 @@
+package com.example.urlshortener.service;
+
+import com.example.urlshortener.config.ReadYourWrites;
+import com.example.urlshortener.model.RedirectType;
+import com.example.urlshortener.model.UrlMapping;
+import com.example.urlshortener.util.ExpirationParser;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * BulkShortenService creates many links in one request.
+ *
+ * Items are consumed from an iterator in chunks. Codes for a whole chunk are
+ * generated in memory, the chunk is handed to the LinkStore at once (for the
+ * database, one JDBC batch INSERT per shard in its own transaction), and the
+ * per-item results are handed to the caller as soon as the chunk is stored.
+ * If a chunk fails, its rows are retried one by one so a single bad item only
+ * fails itself.
+ */
+@Service
+public class BulkShortenService {
+
+    private static final Logger log = LoggerFactory.getLogger(BulkShortenService.class);
+    private static final int MAX_URL_LENGTH = 2000;
+
+    /**
+     * Receives one result per input item, in input order
+     */
+    @FunctionalInterface
+    public interface ResultSink {
+        void accept(Map<String, Object> result) throws IOException;
+    }
+
+    private final LinkStore linkStore;
+    private final ShortCodeStrategy codeStrategy;
+    private final ShortCodeFilter codeFilter;
+    private final RedirectCache redirectCache;
+    private final ExpiryService expiryService;
+    private final ReadYourWrites readYourWrites;
+    private final RedirectPolicy redirectPolicy;
+    private final int chunkSize;
+
+    public BulkShortenService(LinkStore linkStore,
+                              ShortCodeStrategy codeStrategy,
+                              ShortCodeFilter codeFilter,
+                              RedirectCache redirectCache,
+                              ExpiryService expiryService,
+                              ReadYourWrites readYourWrites,
+                              RedirectPolicy redirectPolicy,
+                              @Value("${urlshortener.bulk.chunk-size:1000}") int chunkSize) {
+        this.linkStore = linkStore;
+        this.codeStrategy = codeStrategy;
+        this.codeFilter = codeFilter;
+        this.redirectCache = redirectCache;
+        this.expiryService = expiryService;
+        this.readYourWrites = readYourWrites;
+        this.redirectPolicy = redirectPolicy;
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * Shorten every item ({"longUrl": ..., "expiresIn": ..., "redirectType": ...}) and report each result
+     */
+    public void shorten(Iterator<Map<String, String>> items, String shortUrlPrefix, ResultSink sink) throws IOException {
+        int index = 0;
+        List<Item> chunk = new ArrayList<>(chunkSize);
+        while (items.hasNext()) {
+            chunk.add(prepare(index++, items.next()));
+            if (chunk.size() >= chunkSize) {
+                persistChunk(chunk);
+                report(chunk, shortUrlPrefix, sink);
+                chunk.clear();
+            }
+        }
+        if (!chunk.isEmpty()) {
+            persistChunk(chunk);
+            report(chunk, shortUrlPrefix, sink);
+        }
+    }
+
+    private Item prepare(int index, Map<String, String> request) {
+        Item item = new Item(index);
+        String longUrl = request == null ? null : request.get("longUrl");
+        if (longUrl == null || longUrl.isEmpty()) {
+            item.error = "longUrl is required";
+            return item;
+        }
+        if (longUrl.length() > MAX_URL_LENGTH) {
+            item.error = "longUrl is longer than " + MAX_URL_LENGTH + " characters";
+            return item;
+        }
+        String expiresIn = request.get("expiresIn");
+        try {
+            item.expiresIn = expiresIn == null || expiresIn.isEmpty() ? null : expiresIn;
+            item.expiresAt = item.expiresIn == null ? null : ExpirationParser.parse(expiresIn);
+        } catch (NumberFormatException e) {
+            item.error = "invalid expiresIn: " + expiresIn;
+            return item;
+        }
+        try {
+            item.redirectType = redirectPolicy.resolve(request.get("redirectType"));
+        } catch (IllegalArgumentException e) {
+            item.error = e.getMessage();
+            return item;
+        }
+        item.longUrl = longUrl;
+        return item;
+    }
+
+    private void persistChunk(List<Item> chunk) {
+        if (codeStrategy instanceof IdCodeAssigner assigner) {
+            persistChunkWithIds(chunk, assigner);
+            return;
+        }
+        ShortCodeGenerator codeGenerator = (ShortCodeGenerator) codeStrategy;
+        // Generate codes in memory; identical URLs in one chunk hash to the same
+        // code, in which case they share the link if they asked for the same one.
+        Map<String, Item> byCode = new LinkedHashMap<>();
+        for (Item item : chunk) {
+            if (item.error != null) {
+                continue;
+            }
+            item.shortCode = codeGenerator.generate(item.longUrl);
+            Item owner = byCode.putIfAbsent(item.shortCode, item);
+            if (owner != null && !owner.longUrl.equals(item.longUrl)) {
+                item.error = "short code collision, please retry";
+            } else if (owner != null && !owner.sameLink(item)) {
+                item.error = "longUrl repeats item " + owner.index + " with a different expiresIn or redirectType";
+            }
+        }
+
+        if (byCode.isEmpty()) {
+            return;
+        }
+        LocalDateTime now = LocalDateTime.now();
+        List<Item> owners = new ArrayList<>(byCode.values());
+        List<UrlMapping> mappings = new ArrayList<>(owners.size());
+        for (Item item : owners) {
+            mappings.add(mapping(item, now));
+        }
+        boolean[] stored = linkStore.insertAll(mappings);
+        for (int i = 0; i < owners.size(); i++) {
+            if (!stored[i]) {
+                owners.get(i).error = "could not store link";
+            }
+        }
+
+        for (Item item : byCode.values()) {
+            if (item.error == null) {
+                readYourWrites.recordWrite(item.shortCode);
+                codeFilter.add(item.shortCode);
+                redirectCache.invalidate(item.shortCode);
+                expiryService.schedule(item.shortCode, item.expiresAt);
+            }
+        }
+        // Items that shared a code get the owner's outcome
+        for (Item item : chunk) {
+            Item owner = item.error == null ? byCode.get(item.shortCode) : null;
+            if (owner != null && owner != item) {
+                item.error = owner.error;
+                item.expiresAt = owner.expiresAt;
+            }
+        }
+    }
+
+    /**
+     * Id-based codes: the store assigns ids and derives the codes from them,
+     * for the whole chunk at once. Every item gets its own link.
+     */
+    private void persistChunkWithIds(List<Item> chunk, IdCodeAssigner assigner) {
+        LocalDateTime now = LocalDateTime.now();
+        List<Item> items = new ArrayList<>(chunk.size());
+        for (Item item : chunk) {
+            if (item.error == null) {
+                items.add(item);
+            }
+        }
+        if (items.isEmpty()) {
+            return;
+        }
+
+        try {
+            List<UrlMapping> mappings = new ArrayList<>(items.size());
+            for (Item item : items) {
+                mappings.add(mapping(item, now));
+            }
+            linkStore.insertAllWithIdCodes(mappings, assigner);
+            for (int i = 0; i < items.size(); i++) {
+                items.get(i).shortCode = mappings.get(i).getShortCode();
+            }
+        } catch (RuntimeException e) {
+            log.debug("Bulk chunk insert failed, retrying rows individually: {}", e.getMessage());
+            for (Item item : items) {
+                try {
+                    UrlMapping mapping = mapping(item, now);
+                    linkStore.insertAllWithIdCodes(List.of(mapping), assigner);
+                    item.shortCode = mapping.getShortCode();
+                } catch (RuntimeException rowFailure) {
+                    item.shortCode = null;
+                    item.error = "could not store link";
+                }
+            }
+        }
+
+        for (Item item : items) {
+            if (item.error == null) {
+                readYourWrites.recordWrite(item.shortCode);
+                codeFilter.add(item.shortCode);
+                redirectCache.invalidate(item.shortCode);
+                expiryService.schedule(item.shortCode, item.expiresAt);
+            }
+        }
+    }
+
+    private static UrlMapping mapping(Item item, LocalDateTime now) {
+        UrlMapping mapping = new UrlMapping();
+        mapping.setShortCode(item.shortCode);
+        mapping.setOriginalUrl(item.longUrl);
+        mapping.setCreatedAt(now);
+        mapping.setExpiresAt(item.expiresAt);
+        mapping.setRedirectType(item.redirectType);
+        return mapping;
+    }
+
+    private void report(List<Item> chunk, String shortUrlPrefix, ResultSink sink) throws IOException {
+        for (Item item : chunk) {
+            Map<String, Object> result = new HashMap<>();
+            result.put("index", item.index);
+            if (item.error != null) {
+                result.put("error", item.error);
+            } else {
+                result.put("shortCode", item.shortCode);
+                result.put("shortUrl", shortUrlPrefix + item.shortCode);
+                result.put("expiresAt", item.expiresAt);
+            }
+            sink.accept(result);
+        }
+    }
+
+    private static class Item {
+        private final int index;
+        private String longUrl;
+        private String expiresIn;
+        private LocalDateTime expiresAt;
+        private RedirectType redirectType;
+        private String shortCode;
+        private String error;
+
+        Item(int index) {
+            this.index = index;
+        }
+
+        /**
+         * Whether the other item asks for the same link as this one
+         */
+        boolean sameLink(Item other) {
+            return longUrl.equals(other.longUrl) && Objects.equals(expiresIn, other.expiresIn)
+                    && redirectType == other.redirectType;
+        }
+    }
+}
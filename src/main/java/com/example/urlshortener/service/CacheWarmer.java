@@ -0,0 +1,259 @@
+package com.example.urlshortener.service;
+
+import com.example.urlshortener.model.UrlMapping;
+import com.example.urlshortener.storage.HotSetFile;
+import com.example.urlshortener.util.SpaceSaving;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * CacheWarmer keeps the redirect cache warm across restarts.
+ *
+ * Every snapshot interval (and on shutdown) the links that TopUrlTracker saw
+ * clicked most since the previous snapshot are written to a HotSetFile. On
+ * start the file is loaded into the RedirectCache before the application
+ * reports readiness: Spring Boot only switches readiness to ACCEPTING_TRAFFIC
+ * after all ApplicationRunners have finished. Expired links are skipped, and
+ * the others are checked against the LinkStore in the background after their
+ * first hit, so a link deleted while the application was down is served at
+ * most until that check.
+ *
+ * The first snapshot after a start ranks by total clicks, since there is no
+ * earlier count to compare with.
+ */
+@Component
+public class CacheWarmer implements ApplicationRunner {
+
+    private static final Logger log = LoggerFactory.getLogger(CacheWarmer.class);
+    private static final long FIRST_MINUTE_MILLIS = 60_000;
+
+    private final RedirectCache redirectCache;
+    private final TopUrlTracker topUrlTracker;
+    private final LinkStore linkStore;
+    private final boolean enabled;
+    private final Path file;
+    private final int maxEntries;
+    private final int verifyBatchSize;
+
+    private volatile Map<String, Long> previousCounts = Map.of();
+
+    private volatile boolean warmedUp;
+    private volatile long warmupMillis;
+    private volatile int warmedEntries;
+    private volatile int skippedEntries;
+    private volatile long snapshotAgeMillis = -1;
+    private volatile String warmupError;
+    private volatile long warmedAtMillis;
+    private volatile long hitsAtWarmup;
+    private volatile long missesAtWarmup;
+    private volatile Double firstMinuteHitRate;
+
+    private final AtomicLong verified = new AtomicLong();
+    private final AtomicLong stale = new AtomicLong();
+    private final AtomicLong snapshotsWritten = new AtomicLong();
+    private final AtomicLong failedSnapshots = new AtomicLong();
+    private volatile int lastSnapshotEntries;
+    private volatile long lastSnapshotBytes;
+    private volatile long lastSnapshotMillis;
+
+    public CacheWarmer(RedirectCache redirectCache, TopUrlTracker topUrlTracker, LinkStore linkStore, UrlMetrics metrics,
+                       @Value("${urlshortener.cache.snapshot.enabled:true}") boolean enabled,
+                       @Value("${urlshortener.cache.snapshot.path:data/hot-set.bin}") String file,
+                       @Value("${urlshortener.cache.snapshot.max-entries:1000}") int maxEntries,
+                       @Value("${urlshortener.cache.snapshot.verify-batch-size:500}") int verifyBatchSize) {
+        this.redirectCache = redirectCache;
+        this.topUrlTracker = topUrlTracker;
+        this.linkStore = linkStore;
+        this.enabled = enabled && redirectCache.isEnabled();
+        this.file = Path.of(file);
+        this.maxEntries = Math.min(maxEntries, redirectCache.getMaxSize());
+        this.verifyBatchSize = verifyBatchSize;
+        metrics.gauge("urlshortener.cache.warmup.seconds", "Time taken to load the hot set snapshot at startup",
+                this, warmer -> warmer.warmupMillis / 1000.0);
+        metrics.gauge("urlshortener.cache.warmup.entries", "Links loaded into the redirect cache at startup",
+                this, warmer -> warmer.warmedEntries);
+        metrics.gauge("urlshortener.cache.warmup.hit.ratio",
+                "Redirect cache hit rate in the first minute after startup (so far, until the minute is over)",
+                this, CacheWarmer::currentFirstMinuteHitRate);
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        warmUp();
+    }
+
+    /**
+     * Load the hot set snapshot into the redirect cache, hottest links last so
+     * they end up most recently used
+     */
+    void warmUp() {
+        long start = System.nanoTime();
+        if (enabled) {
+            try {
+                HotSetFile.Snapshot snapshot = HotSetFile.read(file, mapping -> !mapping.isExpired());
+                if (snapshot == null) {
+                    log.info("No hot set snapshot at {}; redirect cache starts empty", file.toAbsolutePath());
+                } else {
+                    List<UrlMapping> mappings = snapshot.mappings();
+                    int count = Math.min(mappings.size(), maxEntries);
+                    for (int i = count - 1; i >= 0; i--) {
+                        redirectCache.putUnverified(mappings.get(i));
+                    }
+                    warmedEntries = count;
+                    skippedEntries = snapshot.skipped() + mappings.size() - count;
+                    snapshotAgeMillis = System.currentTimeMillis() - snapshot.writtenAtMillis();
+                }
+            } catch (IOException | RuntimeException e) {
+                warmupError = e.getMessage();
+                log.warn("Could not load hot set snapshot {}; redirect cache starts empty", file.toAbsolutePath(), e);
+            }
+        }
+        warmupMillis = (System.nanoTime() - start) / 1_000_000;
+        hitsAtWarmup = redirectCache.getHits();
+        missesAtWarmup = redirectCache.getMisses();
+        warmedAtMillis = System.currentTimeMillis();
+        warmedUp = true;
+        if (enabled) {
+            log.info("Redirect cache warmed with {} links in {} ms ({} skipped)", warmedEntries, warmupMillis,
+                    skippedEntries);
+        }
+    }
+
+    /**
+     * Check warmed links that were hit against the LinkStore, replacing them
+     * with the stored link or dropping them if it is gone or expired
+     */
+    @Scheduled(fixedDelayString = "${urlshortener.cache.snapshot.verify-interval-ms:1000}")
+    public void verifyWarmed() {
+        if (firstMinuteHitRate == null && warmedUp
+                && System.currentTimeMillis() - warmedAtMillis >= FIRST_MINUTE_MILLIS) {
+            firstMinuteHitRate = currentFirstMinuteHitRate();
+            log.info("Redirect cache hit rate in the first minute after startup: {}",
+                    String.format("%.3f", firstMinuteHitRate));
+        }
+        List<String> codes = redirectCache.pollToVerify(verifyBatchSize);
+        if (codes.isEmpty()) {
+            return;
+        }
+        try {
+            Map<String, UrlMapping> stored = linkStore.findByShortCodeIn(codes).stream()
+                    .collect(Collectors.toMap(UrlMapping::getShortCode, Function.identity()));
+            for (String code : codes) {
+                UrlMapping mapping = stored.get(code);
+                if (mapping == null || mapping.isExpired()) {
+                    redirectCache.invalidate(code);
+                    stale.incrementAndGet();
+                } else {
+                    redirectCache.put(mapping);
+                }
+            }
+            verified.addAndGet(codes.size());
+        } catch (RuntimeException e) {
+            log.warn("Could not verify {} warmed links; they stay cached until their TTL", codes.size(), e);
+        }
+    }
+
+    /**
+     * Write the links clicked most since the previous snapshot
+     */
+    @Scheduled(initialDelayString = "${urlshortener.cache.snapshot.interval-ms:60000}",
+            fixedDelayString = "${urlshortener.cache.snapshot.interval-ms:60000}")
+    public void writeSnapshot() {
+        if (!enabled || !topUrlTracker.isEnabled()) {
+            return;
+        }
+        long start = System.nanoTime();
+        try {
+            Map<String, Long> counts = new HashMap<>();
+            for (SpaceSaving.Entry<String> entry : topUrlTracker.top(topUrlTracker.getCapacity())) {
+                counts.put(entry.key(), entry.count());
+            }
+            Map<String, Long> previous = previousCounts;
+            Comparator<String> byRecentClicks = Comparator
+                    .comparingLong((String code) -> counts.get(code) - previous.getOrDefault(code, 0L))
+                    .thenComparingLong(counts::get)
+                    .reversed();
+            List<String> ranked = counts.keySet().stream()
+                    .sorted(byRecentClicks)
+                    .limit(maxEntries)
+                    .toList();
+
+            Map<String, UrlMapping> stored = linkStore.findByShortCodeIn(ranked).stream()
+                    .collect(Collectors.toMap(UrlMapping::getShortCode, Function.identity()));
+            List<UrlMapping> hotSet = new ArrayList<>(ranked.size());
+            for (String code : ranked) {
+                UrlMapping mapping = stored.get(code);
+                if (mapping != null && !mapping.isExpired()) {
+                    hotSet.add(mapping);
+                }
+            }
+            lastSnapshotBytes = HotSetFile.write(file, hotSet);
+            lastSnapshotEntries = hotSet.size();
+            lastSnapshotMillis = (System.nanoTime() - start) / 1_000_000;
+            previousCounts = counts;
+            snapshotsWritten.incrementAndGet();
+        } catch (IOException | RuntimeException e) {
+            failedSnapshots.incrementAndGet();
+            log.warn("Could not write hot set snapshot {}", file.toAbsolutePath(), e);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        writeSnapshot();
+    }
+
+    private double currentFirstMinuteHitRate() {
+        if (firstMinuteHitRate != null) {
+            return firstMinuteHitRate;
+        }
+        if (!warmedUp) {
+            return 0.0;
+        }
+        long hits = redirectCache.getHits() - hitsAtWarmup;
+        long lookups = hits + redirectCache.getMisses() - missesAtWarmup;
+        return lookups == 0 ? 0.0 : (double) hits / lookups;
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("path", file.toAbsolutePath().toString());
+        stats.put("maxEntries", maxEntries);
+        stats.put("warmedUp", warmedUp);
+        stats.put("warmupMillis", warmupMillis);
+        stats.put("warmedEntries", warmedEntries);
+        stats.put("skippedEntries", skippedEntries);
+        stats.put("snapshotAgeMillisAtStartup", snapshotAgeMillis);
+        if (warmupError != null) {
+            stats.put("warmupError", warmupError);
+        }
+        stats.put("firstMinuteHitRate", currentFirstMinuteHitRate());
+        stats.put("firstMinuteComplete", firstMinuteHitRate != null);
+        stats.put("verified", verified.get());
+        stats.put("stale", stale.get());
+        stats.put("snapshotsWritten", snapshotsWritten.get());
+        stats.put("failedSnapshots", failedSnapshots.get());
+        stats.put("lastSnapshotEntries", lastSnapshotEntries);
+        stats.put("lastSnapshotBytes", lastSnapshotBytes);
+        stats.put("lastSnapshotMillis", lastSnapshotMillis);
+        return stats;
+    }
+}
@@ -0,0 +1,142 @@
+package com.example.urlshortener.service;
+
+import com.example.urlshortener.util.DeltaCounters;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * ClickCounter accumulates redirect clicks in memory and writes them to the
+ * link store in the background.
+ *
+ * Clicks are held in DeltaCounters, so concurrent clicks on the same link
+ * never lose increments and never wait on each other; the time of each
+ * code's latest click is kept as its mark. A scheduled flusher hands the
+ * pending deltas to the LinkStore in batches (for the database,
+ * {@code click_count = click_count + n} UPDATEs, one batch per shard), and
+ * the remaining deltas are flushed when the application shuts down.
+ */
+@Component
+public class ClickCounter {
+
+    private static final Logger log = LoggerFactory.getLogger(ClickCounter.class);
+
+    private final LinkStore linkStore;
+    private final UrlMetrics metrics;
+    private final int batchSize;
+    private final DeltaCounters<String> pending = new DeltaCounters<>();
+
+    private final AtomicLong flushedClicks = new AtomicLong();
+    private final AtomicLong flushCount = new AtomicLong();
+    private final AtomicLong failedFlushes = new AtomicLong();
+    private volatile long lastFlushMillis;
+
+    public ClickCounter(LinkStore linkStore, UrlMetrics metrics,
+                        @Value("${urlshortener.clicks.batch-size:500}") int batchSize) {
+        this.linkStore = linkStore;
+        this.metrics = metrics;
+        this.batchSize = batchSize;
+        metrics.gauge("urlshortener.clicks.pending.codes", "Short codes with clicks waiting for the next flush",
+                pending, DeltaCounters::size);
+    }
+
+    /**
+     * Record one click; never touches the database
+     */
+    public void record(String shortCode, LocalDateTime accessedAt) {
+        pending.add(shortCode, 1, micros(accessedAt));
+    }
+
+    /**
+     * Clicks recorded for a code that have not been written to the database yet
+     */
+    public long getPendingClicks(String shortCode) {
+        return pending.get(shortCode);
+    }
+
+    /**
+     * Latest access time recorded for a code that has not been flushed yet
+     */
+    public LocalDateTime getPendingLastAccessedAt(String shortCode) {
+        return time(pending.getMark(shortCode));
+    }
+
+    /**
+     * Write all pending deltas in batches
+     */
+    @Scheduled(fixedDelayString = "${urlshortener.clicks.flush-interval-ms:1000}")
+    public synchronized void flush() {
+        if (pending.isEmpty()) {
+            return;
+        }
+
+        List<LinkStore.ClickDelta> batch = new ArrayList<>(batchSize);
+        pending.drain((shortCode, delta, mark) -> {
+            batch.add(new LinkStore.ClickDelta(shortCode, delta, time(mark)));
+            if (batch.size() >= batchSize) {
+                writeBatch(batch);
+                batch.clear();
+            }
+        });
+        if (!batch.isEmpty()) {
+            writeBatch(batch);
+        }
+        lastFlushMillis = System.currentTimeMillis();
+    }
+
+    private void writeBatch(List<LinkStore.ClickDelta> batch) {
+        long start = System.nanoTime();
+        List<LinkStore.ClickDelta> failed = linkStore.addClicks(batch);
+        metrics.record(UrlMetrics.Stage.FLUSH_CLICKS, start);
+        flushCount.incrementAndGet();
+        for (LinkStore.ClickDelta delta : batch) {
+            flushedClicks.addAndGet(delta.clicks());
+        }
+        if (!failed.isEmpty()) {
+            // Put the deltas back so the next flush retries them
+            failedFlushes.incrementAndGet();
+            log.warn("Failed to flush {} click counters, will retry", failed.size());
+            for (LinkStore.ClickDelta delta : failed) {
+                flushedClicks.addAndGet(-delta.clicks());
+                pending.add(delta.shortCode(), delta.clicks(), micros(delta.lastAccessedAt()));
+            }
+        }
+    }
+
+    @PreDestroy
+    public void flushOnShutdown() {
+        flush();
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("pendingCodes", pending.size());
+        stats.put("batchSize", batchSize);
+        stats.put("flushedClicks", flushedClicks.get());
+        stats.put("flushBatches", flushCount.get());
+        stats.put("failedFlushes", failedFlushes.get());
+        stats.put("lastFlushMillis", lastFlushMillis);
+        return stats;
+    }
+
+    // Access times as UTC-based microseconds, so the latest is the largest mark
+    private static long micros(LocalDateTime time) {
+        return time == null ? DeltaCounters.NO_MARK : time.toEpochSecond(ZoneOffset.UTC) * 1_000_000 + time.getNano() / 1_000;
+    }
+
+    private static LocalDateTime time(long micros) {
+        return micros == DeltaCounters.NO_MARK ? null : LocalDateTime.ofEpochSecond(Math.floorDiv(micros, 1_000_000),
+                (int) Math.floorMod(micros, 1_000_000) * 1_000, ZoneOffset.UTC);
+    }
+}
@@ -0,0 +1,460 @@
+package com.example.urlshortener.service;
+
+import com.example.urlshortener.config.Shards;
+import com.example.urlshortener.model.ClickRollup;
+import com.example.urlshortener.model.ClickRollupReferer;
+import com.example.urlshortener.model.RollupGranularity;
+import com.example.urlshortener.repository.ClickRollupRefererRepository;
+import com.example.urlshortener.repository.ClickRollupRepository;
+import com.example.urlshortener.util.DeltaCounters;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.net.URI;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * ClickRollups maintains per-code click counts in minute, hour and day
+ * buckets, plus per-referer counts for hour and day buckets.
+ *
+ * Clicks are counted in memory as they flow in and merged into the
+ * click_rollup tables by a scheduled upsert, so reading a clicks-over-time
+ * series touches a few hundred rollup rows instead of the raw access log.
+ * A one-off backfill job builds the same buckets from existing
+ * url_access_log rows that predate live recording. Rollup rows are kept on
+ * the shard of their link.
+ *
+ * Upserts add to the stored counts, so the backfill must count each access
+ * log once. Every shard keeps a rollup_backfill row with the time live
+ * recording first started there, the cutoff the backfill was started with
+ * and the last access log id it has counted; that id moves in the same
+ * transaction as the counts. A backfill may only cover logs before live
+ * recording started, and once started it can only be resumed with the same
+ * cutoff.
+ */
+@Component
+public class ClickRollups {
+
+    private static final Logger log = LoggerFactory.getLogger(ClickRollups.class);
+
+    private static final String UPSERT_BUCKET_SQL =
+            "INSERT INTO click_rollup (short_code, granularity, bucket_start, clicks) VALUES (?, ?, ?, ?) " +
+            "ON DUPLICATE KEY UPDATE clicks = clicks + VALUES(clicks)";
+    private static final String UPSERT_REFERER_SQL =
+            "INSERT INTO click_rollup_referer (short_code, granularity, bucket_start, referer, clicks) VALUES (?, ?, ?, ?, ?) " +
+            "ON DUPLICATE KEY UPDATE clicks = clicks + VALUES(clicks)";
+    // Codes are looked up through the LinkStore, so this also works when links are not in url_mapping
+    private static final String BACKFILL_SCAN_SQL =
+            "SELECT id, url_mapping_id, accessed_at, referer FROM url_access_log " +
+            "WHERE id > ? AND accessed_at < ? ORDER BY id LIMIT ?";
+    private static final String INIT_BACKFILL_SQL =
+            "INSERT INTO rollup_backfill (id, live_since, last_log_id) VALUES (1, ?, 0) ON DUPLICATE KEY UPDATE id = id";
+    private static final String SELECT_BACKFILL_SQL =
+            "SELECT live_since, cutoff, last_log_id, completed_at FROM rollup_backfill WHERE id = 1";
+    private static final String CLAIM_BACKFILL_SQL =
+            "UPDATE rollup_backfill SET cutoff = ? WHERE id = 1 AND cutoff IS NULL";
+    private static final String ADVANCE_BACKFILL_SQL =
+            "UPDATE rollup_backfill SET last_log_id = ? WHERE id = 1 AND last_log_id = ?";
+    private static final String COMPLETE_BACKFILL_SQL =
+            "UPDATE rollup_backfill SET completed_at = ? WHERE id = 1";
+
+    private static final RollupGranularity[] REFERER_GRANULARITIES = {RollupGranularity.HOUR, RollupGranularity.DAY};
+    private static final String DIRECT = "(direct)";
+    private static final int MAX_REFERER_LENGTH = 255;
+    private static final int MAX_BUCKETS = 2000;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final Shards shards;
+    private final LinkStore linkStore;
+    private final TransactionTemplate writeTransaction;
+    private final ClickRollupRepository rollupRepository;
+    private final ClickRollupRefererRepository refererRepository;
+    private final int batchSize;
+    private final int minuteRetentionHours;
+    private final int backfillChunkSize;
+    private final LocalDateTime startedAt = LocalDateTime.now();
+    private volatile LocalDateTime liveSince = startedAt;
+
+    private final DeltaCounters<BucketKey> buckets = new DeltaCounters<>();
+    private final DeltaCounters<RefererKey> referers = new DeltaCounters<>();
+
+    private final AtomicLong flushedRows = new AtomicLong();
+    private final AtomicLong failedFlushes = new AtomicLong();
+    private final AtomicBoolean backfillRunning = new AtomicBoolean();
+    private final AtomicLong backfilledLogs = new AtomicLong();
+    private volatile String backfillStatus = "not started";
+
+    public ClickRollups(JdbcTemplate jdbcTemplate, Shards shards, LinkStore linkStore,
+                        PlatformTransactionManager transactionManager,
+                        ClickRollupRepository rollupRepository,
+                        ClickRollupRefererRepository refererRepository,
+                        @Value("${urlshortener.rollups.batch-size:500}") int batchSize,
+                        @Value("${urlshortener.rollups.minute-retention-hours:48}") int minuteRetentionHours,
+                        @Value("${urlshortener.rollups.backfill-chunk-size:5000}") int backfillChunkSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.shards = shards;
+        this.linkStore = linkStore;
+        this.writeTransaction = new TransactionTemplate(transactionManager);
+        this.rollupRepository = rollupRepository;
+        this.refererRepository = refererRepository;
+        this.batchSize = batchSize;
+        this.minuteRetentionHours = minuteRetentionHours;
+        this.backfillChunkSize = backfillChunkSize;
+    }
+
+    /**
+     * Count one click in every bucket it belongs to
+     */
+    public void record(String shortCode, String referer, LocalDateTime accessedAt) {
+        for (RollupGranularity granularity : RollupGranularity.values()) {
+            buckets.add(new BucketKey(shortCode, granularity, granularity.bucketStart(accessedAt)), 1);
+        }
+        String source = refererHost(referer);
+        for (RollupGranularity granularity : REFERER_GRANULARITIES) {
+            referers.add(new RefererKey(shortCode, granularity, granularity.bucketStart(accessedAt), source), 1);
+        }
+    }
+
+    /**
+     * Merge the in-memory counts into the rollup tables
+     */
+    @Scheduled(fixedDelayString = "${urlshortener.rollups.flush-interval-ms:5000}")
+    public synchronized void flush() {
+        List<Object[]> bucketRows = new ArrayList<>();
+        buckets.drain((key, clicks) -> bucketRows.add(new Object[]{
+                key.shortCode, key.granularity.name(), Timestamp.valueOf(key.bucketStart), clicks}));
+        List<Object[]> refererRows = new ArrayList<>();
+        referers.drain((key, clicks) -> refererRows.add(new Object[]{
+                key.shortCode, key.granularity.name(), Timestamp.valueOf(key.bucketStart), key.referer, clicks}));
+
+        // Rows that could not be written go back into the counters for the next flush
+        for (Object[] row : upsert(UPSERT_BUCKET_SQL, bucketRows)) {
+            buckets.add(new BucketKey((String) row[0], RollupGranularity.valueOf((String) row[1]),
+                    ((Timestamp) row[2]).toLocalDateTime()), (Long) row[3]);
+        }
+        for (Object[] row : upsert(UPSERT_REFERER_SQL, refererRows)) {
+            referers.add(new RefererKey((String) row[0], RollupGranularity.valueOf((String) row[1]),
+                    ((Timestamp) row[2]).toLocalDateTime(), (String) row[3]), (Long) row[4]);
+        }
+    }
+
+    /**
+     * Upsert rows in batches; returns the rows that were not applied. Upserts
+     * add deltas, so batches that did succeed must not be retried.
+     */
+    private List<Object[]> upsert(String sql, List<Object[]> rows) {
+        List<Object[]> failed = new ArrayList<>();
+        shards.groupByShard(rows, row -> (String) row[0])
+                .forEach((shard, shardRows) -> failed.addAll(shards.on(shard, () -> upsertOnShard(sql, shardRows))));
+        return failed;
+    }
+
+    private List<Object[]> upsertOnShard(String sql, List<Object[]> rows) {
+        for (int from = 0; from < rows.size(); from += batchSize) {
+            List<Object[]> batch = rows.subList(from, Math.min(rows.size(), from + batchSize));
+            try {
+                jdbcTemplate.batchUpdate(sql, batch);
+                flushedRows.addAndGet(batch.size());
+            } catch (RuntimeException e) {
+                failedFlushes.incrementAndGet();
+                log.warn("Failed to flush {} rollup rows, will retry", rows.size() - from, e);
+                return rows.subList(from, rows.size());
+            }
+        }
+        return List.of();
+    }
+
+    @PreDestroy
+    public void flushOnShutdown() {
+        flush();
+    }
+
+    /**
+     * Drop minute buckets that are older than the retention window
+     */
+    @Scheduled(fixedDelayString = "${urlshortener.rollups.retention-interval-ms:3600000}")
+    public void pruneMinuteBuckets() {
+        LocalDateTime cutoff = LocalDateTime.now().minusHours(minuteRetentionHours);
+        shards.forEach(shard -> jdbcTemplate.update("DELETE FROM click_rollup WHERE granularity = ? AND bucket_start < ?",
+                RollupGranularity.MINUTE.name(), Timestamp.valueOf(cutoff)));
+    }
+
+    /**
+     * Clicks over time for one code; null bounds use the granularity's default range
+     */
+    public Map<String, Object> getClicksOverTime(String shortCode, RollupGranularity granularity,
+                                                 LocalDateTime from, LocalDateTime to, int topReferers) {
+        LocalDateTime end = to != null ? to : LocalDateTime.now();
+        LocalDateTime start = granularity.bucketStart(from != null ? from : end.minus(granularity.getDefaultRange()));
+        if (!start.isBefore(end)) {
+            throw new IllegalArgumentException("from must be before to");
+        }
+
+        List<ClickRollup> rows = rollupRepository.findBuckets(shortCode, granularity, start, end);
+        if (rows.size() > MAX_BUCKETS) {
+            throw new IllegalArgumentException("range spans more than " + MAX_BUCKETS + " buckets; use a coarser granularity");
+        }
+
+        Map<LocalDateTime, List<Map<String, Object>>> referersByBucket = new HashMap<>();
+        if (topReferers > 0 && granularity != RollupGranularity.MINUTE) {
+            for (ClickRollupReferer row : refererRepository.findBuckets(shortCode, granularity, start, end)) {
+                List<Map<String, Object>> top = referersByBucket.computeIfAbsent(row.getBucketStart(), k -> new ArrayList<>());
+                if (top.size() < topReferers) {
+                    top.add(Map.of("referer", row.getReferer(), "clicks", row.getClicks()));
+                }
+            }
+        }
+
+        long total = 0;
+        List<Map<String, Object>> series = new ArrayList<>(rows.size());
+        for (ClickRollup row : rows) {
+            Map<String, Object> bucket = new LinkedHashMap<>();
+            bucket.put("bucketStart", row.getBucketStart());
+            bucket.put("clicks", row.getClicks());
+            if (referersByBucket.containsKey(row.getBucketStart())) {
+                bucket.put("topReferers", referersByBucket.get(row.getBucketStart()));
+            }
+            series.add(bucket);
+            total += row.getClicks();
+        }
+
+        Map<String, Object> result = new HashMap<>();
+        result.put("shortCode", shortCode);
+        result.put("granularity", granularity.name().toLowerCase());
+        result.put("from", start);
+        result.put("to", end);
+        result.put("totalClicks", total);
+        result.put("buckets", series);
+        return result;
+    }
+
+    /**
+     * Clicks in the last 24 hours, from the hourly buckets
+     */
+    public long getClicksLast24Hours(String shortCode) {
+        LocalDateTime now = LocalDateTime.now();
+        return rollupRepository.sumClicks(shortCode, RollupGranularity.HOUR,
+                RollupGranularity.HOUR.bucketStart(now.minusHours(23)), now.plusHours(1));
+    }
+
+    /**
+     * All clicks ever rolled up for a code, from the daily buckets
+     */
+    public long getTotalRolledUpClicks(String shortCode) {
+        return rollupRepository.sumAllDailyClicks(shortCode);
+    }
+
+    /**
+     * Remember when live recording started on every shard; an earlier start
+     * recorded by a previous run or another instance is kept
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void recordLiveStart() {
+        try {
+            shards.forEach(shard -> {
+                LocalDateTime since = backfillState().liveSince();
+                if (shard == 0) {
+                    liveSince = since;
+                }
+            });
+        } catch (RuntimeException e) {
+            log.warn("Could not record when live rollups started; the backfill will retry", e);
+        }
+    }
+
+    /**
+     * Start building rollups from access logs recorded before the given time
+     * (default: when live recording first started). Returns false if already
+     * running; throws IllegalArgumentException if the range overlaps clicks
+     * that were already counted.
+     */
+    public boolean startBackfill(LocalDateTime before) {
+        if (!backfillRunning.compareAndSet(false, true)) {
+            return false;
+        }
+        Map<Integer, LocalDateTime> cutoffs = new LinkedHashMap<>();
+        try {
+            shards.forEach(shard -> cutoffs.put(shard, backfillCutoff(shard, before)));
+        } catch (RuntimeException e) {
+            backfillRunning.set(false);
+            throw e;
+        }
+        Thread worker = new Thread(() -> backfill(cutoffs), "rollup-backfill");
+        worker.setDaemon(true);
+        worker.start();
+        return true;
+    }
+
+    private LocalDateTime backfillCutoff(int shard, LocalDateTime before) {
+        BackfillState state = backfillState();
+        LocalDateTime cutoff = before != null ? before : state.liveSince();
+        if (cutoff.isAfter(state.liveSince())) {
+            throw new IllegalArgumentException("shard " + shard + " has counted clicks live since " +
+                    state.liveSince() + "; only earlier access logs can be backfilled");
+        }
+        if (state.cutoff() != null && !state.cutoff().equals(cutoff)) {
+            throw new IllegalArgumentException("shard " + shard + " was already backfilled before " + state.cutoff() +
+                    " (up to access log " + state.lastLogId() + "); only that range can be resumed");
+        }
+        return cutoff;
+    }
+
+    /**
+     * Backfill state of the current shard, created with this instance's start
+     * as the live start if the shard has none yet
+     */
+    private BackfillState backfillState() {
+        jdbcTemplate.update(INIT_BACKFILL_SQL, Timestamp.valueOf(startedAt));
+        return jdbcTemplate.queryForObject(SELECT_BACKFILL_SQL, (rs, i) -> new BackfillState(
+                rs.getTimestamp(1).toLocalDateTime(),
+                rs.getTimestamp(2) != null ? rs.getTimestamp(2).toLocalDateTime() : null,
+                rs.getLong(3),
+                rs.getTimestamp(4) != null ? rs.getTimestamp(4).toLocalDateTime() : null));
+    }
+
+    private void backfill(Map<Integer, LocalDateTime> cutoffs) {
+        backfilledLogs.set(0);
+        backfillStatus = "running";
+        try {
+            // Access logs and the rollups built from them are on the same shard
+            cutoffs.forEach((shard, cutoff) -> shards.run(shard, () -> backfillShard(shard, cutoff)));
+            backfillStatus = "completed";
+            log.info("Rollup backfill completed over {} access logs", backfilledLogs.get());
+        } catch (RuntimeException e) {
+            backfillStatus = "failed: " + e.getMessage();
+            log.warn("Rollup backfill failed", e);
+        } finally {
+            backfillRunning.set(false);
+        }
+    }
+
+    private void backfillShard(int shard, LocalDateTime before) {
+        jdbcTemplate.update(CLAIM_BACKFILL_SQL, Timestamp.valueOf(before));
+        BackfillState state = backfillState();
+        if (!before.equals(state.cutoff())) {
+            throw new IllegalStateException("shard " + shard + " is being backfilled before " + state.cutoff());
+        }
+        if (state.completedAt() != null) {
+            return;
+        }
+        backfillStatus = "running on shard " + shard + " (before " + before + ", after access log " + state.lastLogId() + ")";
+
+        long lastId = state.lastLogId();
+        while (true) {
+            List<AccessLogRow> rows = jdbcTemplate.query(BACKFILL_SCAN_SQL, (rs, i) -> new AccessLogRow(
+                    rs.getLong(1), rs.getLong(2), rs.getTimestamp(3).toLocalDateTime(), rs.getString(4)),
+                    lastId, Timestamp.valueOf(before), backfillChunkSize);
+            if (rows.isEmpty()) {
+                break;
+            }
+
+            Set<Long> mappingIds = new HashSet<>();
+            for (AccessLogRow row : rows) {
+                mappingIds.add(row.mappingId());
+            }
+            // Logs of deleted links have no code and are skipped
+            Map<Long, String> codes = linkStore.findShortCodesByIds(mappingIds);
+            DeltaCounters<BucketKey> chunkBuckets = new DeltaCounters<>();
+            DeltaCounters<RefererKey> chunkReferers = new DeltaCounters<>();
+            for (AccessLogRow row : rows) {
+                String code = codes.get(row.mappingId());
+                if (code == null) {
+                    continue;
+                }
+                String source = refererHost(row.referer());
+                for (RollupGranularity granularity : RollupGranularity.values()) {
+                    chunkBuckets.add(new BucketKey(code, granularity, granularity.bucketStart(row.accessedAt())), 1);
+                }
+                for (RollupGranularity granularity : REFERER_GRANULARITIES) {
+                    chunkReferers.add(new RefererKey(code, granularity, granularity.bucketStart(row.accessedAt()), source), 1);
+                }
+            }
+            List<Object[]> bucketRows = new ArrayList<>();
+            chunkBuckets.drain((key, clicks) -> bucketRows.add(new Object[]{
+                    key.shortCode, key.granularity.name(), Timestamp.valueOf(key.bucketStart), clicks}));
+            List<Object[]> refererRows = new ArrayList<>();
+            chunkReferers.drain((key, clicks) -> refererRows.add(new Object[]{
+                    key.shortCode, key.granularity.name(), Timestamp.valueOf(key.bucketStart), key.referer, clicks}));
+
+            // The counts and the high-water mark commit together; a mark moved by
+            // another instance rolls the chunk back
+            long from = lastId;
+            long to = rows.get(rows.size() - 1).id();
+            writeTransaction.executeWithoutResult(status -> {
+                if (jdbcTemplate.update(ADVANCE_BACKFILL_SQL, to, from) == 0) {
+                    throw new IllegalStateException("shard " + shard + " backfill moved past access log " + from +
+                            " elsewhere");
+                }
+                jdbcTemplate.batchUpdate(UPSERT_BUCKET_SQL, bucketRows);
+                jdbcTemplate.batchUpdate(UPSERT_REFERER_SQL, refererRows);
+            });
+
+            lastId = to;
+            backfilledLogs.addAndGet(rows.size());
+        }
+        jdbcTemplate.update(COMPLETE_BACKFILL_SQL, Timestamp.valueOf(LocalDateTime.now()));
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("pendingBuckets", buckets.size());
+        stats.put("pendingRefererBuckets", referers.size());
+        stats.put("flushedRows", flushedRows.get());
+        stats.put("failedFlushes", failedFlushes.get());
+        stats.put("liveSince", liveSince);
+        stats.put("backfillRunning", backfillRunning.get());
+        stats.put("backfillStatus", backfillStatus);
+        stats.put("backfilledLogs", backfilledLogs.get());
+        return stats;
+    }
+
+    /**
+     * Reduce a referer URL to its host to keep the number of rows bounded
+     */
+    static String refererHost(String referer) {
+        if (referer == null || referer.isBlank()) {
+            return DIRECT;
+        }
+        String host = null;
+        try {
+            host = URI.create(referer.trim()).getHost();
+        } catch (IllegalArgumentException e) {
+            // not a URI; fall through to the raw value
+        }
+        String source = host != null ? host.toLowerCase() : referer.trim();
+        return source.length() > MAX_REFERER_LENGTH ? source.substring(0, MAX_REFERER_LENGTH) : source;
+    }
+
+    private record BackfillState(LocalDateTime liveSince, LocalDateTime cutoff, long lastLogId,
+                                 LocalDateTime completedAt) {
+    }
+
+    private record AccessLogRow(long id, long mappingId, LocalDateTime accessedAt, String referer) {
+    }
+
+    private record BucketKey(String shortCode, RollupGranularity granularity, LocalDateTime bucketStart) {
+    }
+
+    private record RefererKey(String shortCode, RollupGranularity granularity, LocalDateTime bucketStart,
+                              String referer) {
+    }
+}
@@ -0,0 +1,126 @@
+package com.example.urlshortener.service;
+
+import com.example.urlshortener.util.URLHistoryStack;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * ClientHistories holds the shortening history shown on the History tab.
+ *
+ * There is one global history, plus (optionally) one per client identified
+ * by its API key. Per-client histories are created on first use, dropped
+ * after being idle for idle-minutes, and capped at max-clients, so memory
+ * stays bounded by max-clients x size entries; when the cap is reached the
+ * least recently used tenth of the histories is evicted at once.
+ */
+@Component
+public class ClientHistories {
+
+    private final URLHistoryStack global;
+    private final ConcurrentHashMap<String, ClientHistory> clients = new ConcurrentHashMap<>();
+    private final boolean perClient;
+    private final int historySize;
+    private final int maxClients;
+    private final long idleMillis;
+    private final AtomicLong evictedClients = new AtomicLong();
+
+    public ClientHistories(@Value("${urlshortener.history.size:100}") int historySize,
+                           @Value("${urlshortener.history.per-client.enabled:true}") boolean perClient,
+                           @Value("${urlshortener.history.per-client.max-clients:10000}") int maxClients,
+                           @Value("${urlshortener.history.per-client.idle-minutes:30}") long idleMinutes) {
+        this.global = new URLHistoryStack(historySize);
+        this.historySize = historySize;
+        this.perClient = perClient;
+        this.maxClients = maxClients;
+        this.idleMillis = idleMinutes * 60_000;
+    }
+
+    /**
+     * Record a shortening in the global history and in the client's own history
+     */
+    public void push(String clientKey, String originalUrl, String shortCode) {
+        global.pushHistory(originalUrl, shortCode);
+        if (perClient && clientKey != null && !clientKey.isEmpty()) {
+            clientHistory(clientKey).pushHistory(originalUrl, shortCode);
+        }
+    }
+
+    /**
+     * The client's history, or the global one when no client key is given
+     */
+    public URLHistoryStack get(String clientKey) {
+        if (!perClient || clientKey == null || clientKey.isEmpty()) {
+            return global;
+        }
+        ClientHistory history = clients.get(clientKey);
+        if (history == null) {
+            return new URLHistoryStack(historySize);
+        }
+        history.lastUsed = System.currentTimeMillis();
+        return history.stack;
+    }
+
+    private URLHistoryStack clientHistory(String clientKey) {
+        ClientHistory history = clients.get(clientKey);
+        if (history == null) {
+            if (clients.size() >= maxClients) {
+                evictLeastRecentlyUsed(Math.max(1, maxClients / 10));
+            }
+            history = clients.computeIfAbsent(clientKey, k -> new ClientHistory(new URLHistoryStack(historySize)));
+        }
+        history.lastUsed = System.currentTimeMillis();
+        return history.stack;
+    }
+
+    private synchronized void evictLeastRecentlyUsed(int count) {
+        if (clients.size() < maxClients) {
+            return;
+        }
+        List<Map.Entry<String, ClientHistory>> entries = new ArrayList<>(clients.entrySet());
+        entries.sort(Comparator.comparingLong(e -> e.getValue().lastUsed));
+        for (int i = 0; i < count && i < entries.size(); i++) {
+            if (clients.remove(entries.get(i).getKey(), entries.get(i).getValue())) {
+                evictedClients.incrementAndGet();
+            }
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${urlshortener.history.per-client.cleanup-interval-ms:60000}")
+    public void evictIdle() {
+        long cutoff = System.currentTimeMillis() - idleMillis;
+        clients.forEach((key, history) -> {
+            if (history.lastUsed < cutoff && clients.remove(key, history)) {
+                evictedClients.incrementAndGet();
+            }
+        });
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("perClient", perClient);
+        stats.put("clients", clients.size());
+        stats.put("maxClients", maxClients);
+        stats.put("historySize", historySize);
+        stats.put("evictedClients", evictedClients.get());
+        stats.put("globalEntries", global.getHistorySize());
+        return stats;
+    }
+
+    private static class ClientHistory {
+        private final URLHistoryStack stack;
+        private volatile long lastUsed;
+
+        ClientHistory(URLHistoryStack stack) {
+            this.stack = stack;
+        }
+    }
+}
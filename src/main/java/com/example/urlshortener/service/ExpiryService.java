@@ -0,0 +1,289 @@
+package com.example.urlshortener.service;
+
+import com.example.urlshortener.config.Shards;
+import com.example.urlshortener.util.TimingWheel;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * ExpiryService retires links when they expire, in two steps.
+ *
+ * Eviction: links expiring within the next horizon are kept in a
+ * TimingWheel, and on the tick of their deadline they are dropped from the
+ * redirect cache and the top URL tracker. The wheel is filled from new links
+ * as they are created and by a periodic scan of the LinkStore.
+ *
+ * Purge: a scheduled job deletes expired rows in bounded chunks, each in its
+ * own short transaction. A chunk selects up to chunk-size expired links
+ * from the LinkStore, removes (or archives) their access logs in id-ordered
+ * slices, deletes their rollups and visitor sketches, then deletes the links.
+ * Rows are only purged once they have been expired for the grace period, so
+ * clicks and logs still buffered in memory are written before their link
+ * disappears. The dependent rows of a chunk are deleted on each link's shard.
+ */
+@Service
+public class ExpiryService {
+
+    private static final Logger log = LoggerFactory.getLogger(ExpiryService.class);
+
+    private final LinkStore linkStore;
+    private final JdbcTemplate jdbcTemplate;
+    private final Shards shards;
+    private final TransactionTemplate transactionTemplate;
+    private final RedirectCache redirectCache;
+    private final ShortCodeFilter codeFilter;
+    private final TopUrlTracker topUrlTracker;
+    private final TimingWheel<String> wheel;
+    private final long horizonMillis;
+    private final int chunkSize;
+    private final int logChunkSize;
+    private final long graceSeconds;
+    private final boolean archiveLogs;
+
+    private final AtomicLong evicted = new AtomicLong();
+    private final AtomicLong mappingsDeleted = new AtomicLong();
+    private final AtomicLong logsDeleted = new AtomicLong();
+    private final AtomicLong logsArchived = new AtomicLong();
+    private final AtomicLong chunks = new AtomicLong();
+    private final AtomicLong totalChunkMillis = new AtomicLong();
+    private volatile long maxChunkMillis;
+    private volatile long lastChunkMillis;
+    private volatile LocalDateTime lastPurgeAt;
+
+    public ExpiryService(LinkStore linkStore, JdbcTemplate jdbcTemplate, Shards shards,
+                         PlatformTransactionManager transactionManager,
+                         RedirectCache redirectCache,
+                         ShortCodeFilter codeFilter,
+                         TopUrlTracker topUrlTracker,
+                         @Value("${urlshortener.expiry.tick-ms:1000}") long tickMillis,
+                         @Value("${urlshortener.expiry.wheel-slots:3600}") int wheelSlots,
+                         @Value("${urlshortener.expiry.horizon-minutes:60}") long horizonMinutes,
+                         @Value("${urlshortener.expiry.chunk-size:500}") int chunkSize,
+                         @Value("${urlshortener.expiry.log-chunk-size:5000}") int logChunkSize,
+                         @Value("${urlshortener.expiry.purge-grace-seconds:300}") long graceSeconds,
+                         @Value("${urlshortener.expiry.archive-logs:false}") boolean archiveLogs) {
+        this.linkStore = linkStore;
+        this.jdbcTemplate = jdbcTemplate;
+        this.shards = shards;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.redirectCache = redirectCache;
+        this.codeFilter = codeFilter;
+        this.topUrlTracker = topUrlTracker;
+        this.wheel = new TimingWheel<>(wheelSlots, tickMillis, System.currentTimeMillis());
+        this.horizonMillis = horizonMinutes * 60_000;
+        this.chunkSize = chunkSize;
+        this.logChunkSize = logChunkSize;
+        this.graceSeconds = graceSeconds;
+        this.archiveLogs = archiveLogs;
+    }
+
+    /**
+     * Track a new link's expiration (ignored if it is beyond the horizon;
+     * the periodic scan picks it up later)
+     */
+    public void schedule(String shortCode, LocalDateTime expiresAt) {
+        if (expiresAt == null) {
+            return;
+        }
+        long deadline = toMillis(expiresAt);
+        if (deadline <= System.currentTimeMillis() + horizonMillis) {
+            wheel.schedule(shortCode, deadline);
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(initialDelayString = "${urlshortener.expiry.scan-interval-ms:600000}",
+            fixedDelayString = "${urlshortener.expiry.scan-interval-ms:600000}")
+    public void loadUpcoming() {
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime until = now.plusNanos(horizonMillis * 1_000_000);
+        int[] loaded = {0};
+        linkStore.forEachExpiring(now, until, (code, expiresAt) -> {
+            wheel.schedule(code, toMillis(expiresAt));
+            loaded[0]++;
+        });
+        log.debug("Scheduled {} links expiring before {}", loaded[0], until);
+    }
+
+    /**
+     * Evict links whose expiration has passed from the in-memory structures
+     */
+    @Scheduled(fixedRateString = "${urlshortener.expiry.tick-ms:1000}")
+    public void tick() {
+        for (String code : wheel.advance(System.currentTimeMillis())) {
+            redirectCache.invalidate(code);
+            topUrlTracker.remove(code);
+            evicted.incrementAndGet();
+        }
+    }
+
+    @Scheduled(initialDelayString = "${urlshortener.expiry.purge-interval-ms:60000}",
+            fixedDelayString = "${urlshortener.expiry.purge-interval-ms:60000}")
+    public void scheduledPurge() {
+        try {
+            purgeExpired();
+        } catch (RuntimeException e) {
+            log.warn("Expired link purge failed; will retry", e);
+        }
+    }
+
+    /**
+     * Delete every link expired for longer than the grace period, chunk by
+     * chunk. Returns the number of links deleted.
+     */
+    public synchronized long purgeExpired() {
+        LocalDateTime cutoff = LocalDateTime.now().minusSeconds(graceSeconds);
+        long deleted = 0;
+        while (true) {
+            long start = System.currentTimeMillis();
+            List<LinkStore.LinkKey> chunk = linkStore.findExpired(cutoff, chunkSize);
+            if (chunk.isEmpty()) {
+                break;
+            }
+            int[] removed = {0};
+            shards.groupByShard(chunk, LinkStore.LinkKey::shortCode)
+                    .forEach((shard, links) -> shards.run(shard, () -> removed[0] += purgeLinks(links)));
+            for (LinkStore.LinkKey link : chunk) {
+                wheel.cancel(link.shortCode());
+                redirectCache.invalidate(link.shortCode());
+                codeFilter.remove(link.shortCode());
+                topUrlTracker.remove(link.shortCode());
+            }
+
+            deleted += removed[0];
+            mappingsDeleted.addAndGet(removed[0]);
+            recordChunk(System.currentTimeMillis() - start);
+            if (chunk.size() < chunkSize) {
+                break;
+            }
+        }
+        lastPurgeAt = LocalDateTime.now();
+        if (deleted > 0) {
+            log.info("Purged {} expired links", deleted);
+        }
+        return deleted;
+    }
+
+    /**
+     * Delete the access logs, rollups and visitor sketches of links on the
+     * current shard, then the links themselves
+     */
+    private int purgeLinks(List<LinkStore.LinkKey> links) {
+        List<Long> ids = new ArrayList<>(links.size());
+        List<String> codes = new ArrayList<>(links.size());
+        for (LinkStore.LinkKey link : links) {
+            ids.add(link.id());
+            codes.add(link.shortCode());
+        }
+        purgeLogs(ids);
+        return transactionTemplate.execute(status -> {
+            String codeList = placeholders(codes.size());
+            jdbcTemplate.update("DELETE FROM click_rollup WHERE short_code IN (" + codeList + ")", codes.toArray());
+            jdbcTemplate.update("DELETE FROM click_rollup_referer WHERE short_code IN (" + codeList + ")", codes.toArray());
+            jdbcTemplate.update("DELETE FROM visitor_sketch WHERE short_code IN (" + codeList + ")", codes.toArray());
+            return linkStore.delete(links);
+        });
+    }
+
+    /**
+     * Delete (or archive, then delete) the access logs of the given links in
+     * id-ordered slices so no single statement touches too many rows
+     */
+    private void purgeLogs(List<Long> mappingIds) {
+        String idList = placeholders(mappingIds.size());
+        String selectSql = "SELECT id FROM url_access_log WHERE url_mapping_id IN (" + idList + ") ORDER BY id LIMIT ?";
+        Object[] selectArgs = new Object[mappingIds.size() + 1];
+        for (int i = 0; i < mappingIds.size(); i++) {
+            selectArgs[i] = mappingIds.get(i);
+        }
+        selectArgs[mappingIds.size()] = logChunkSize;
+
+        while (true) {
+            List<Long> logIds = jdbcTemplate.queryForList(selectSql, Long.class, selectArgs);
+            if (logIds.isEmpty()) {
+                return;
+            }
+            String logList = placeholders(logIds.size());
+            transactionTemplate.executeWithoutResult(status -> {
+                if (archiveLogs) {
+                    int archived = jdbcTemplate.update(
+                            "INSERT INTO url_access_log_archive " +
+                            "(id, short_code, original_url, user_agent, ip_address, accessed_at, referer, archived_at) " +
+                            "SELECT l.id, m.short_code, m.original_url, l.user_agent, l.ip_address, l.accessed_at, l.referer, ? " +
+                            "FROM url_access_log l JOIN url_mapping m ON m.id = l.url_mapping_id WHERE l.id IN (" + logList + ")",
+                            prepend(Timestamp.valueOf(LocalDateTime.now()), logIds));
+                    logsArchived.addAndGet(archived);
+                }
+                logsDeleted.addAndGet(jdbcTemplate.update("DELETE FROM url_access_log WHERE id IN (" + logList + ")", logIds.toArray()));
+            });
+            if (logIds.size() < logChunkSize) {
+                return;
+            }
+        }
+    }
+
+    private void recordChunk(long millis) {
+        chunks.incrementAndGet();
+        totalChunkMillis.addAndGet(millis);
+        lastChunkMillis = millis;
+        if (millis > maxChunkMillis) {
+            maxChunkMillis = millis;
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        LocalDateTime now = LocalDateTime.now();
+        stats.put("scheduled", wheel.size());
+        stats.put("evictedOnTime", evicted.get());
+        stats.put("mappingsDeleted", mappingsDeleted.get());
+        stats.put("logsDeleted", logsDeleted.get());
+        stats.put("logsArchived", logsArchived.get());
+        stats.put("archiveLogs", archiveLogs);
+        stats.put("chunks", chunks.get());
+        stats.put("lastChunkMillis", lastChunkMillis);
+        stats.put("maxChunkMillis", maxChunkMillis);
+        stats.put("avgChunkMillis", chunks.get() == 0 ? 0.0 : (double) totalChunkMillis.get() / chunks.get());
+        long backlog = linkStore.countExpired(now.minusSeconds(graceSeconds));
+        long expired = linkStore.countExpired(now);
+        stats.put("expiredBacklog", backlog);
+        stats.put("expiredInGracePeriod", expired - backlog);
+        stats.put("lastPurgeAt", lastPurgeAt);
+        return stats;
+    }
+
+    private static long toMillis(LocalDateTime time) {
+        return time.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+    private static String placeholders(int count) {
+        return String.join(", ", Collections.nCopies(count, "?"));
+    }
+
+    private static Object[] prepend(Object first, List<?> rest) {
+        Object[] args = new Object[rest.size() + 1];
+        args[0] = first;
+        for (int i = 0; i < rest.size(); i++) {
+            args[i + 1] = rest.get(i);
+        }
+        return args;
+    }
+}
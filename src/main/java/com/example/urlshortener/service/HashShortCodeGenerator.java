@@ -0,0 +1,81 @@
+package com.example.urlshortener.service;
+
+import com.example.urlshortener.config.Shards;
+import com.example.urlshortener.util.Base62Encoder;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Derives the short code from a SHA-256 hash of the URL, truncated to 48 bits.
+ * On a collision the URL is re-hashed with an attempt counter. Every candidate
+ * is checked against the LinkStore, since other instances may have stored it.
+ * With several shards the candidate is stamped with its shard first and
+ * checked there.
+ */
+@Component
+@ConditionalOnProperty(name = "urlshortener.codegen.strategy", havingValue = "hash", matchIfMissing = true)
+public class HashShortCodeGenerator implements ShortCodeGenerator {
+
+    private final LinkStore linkStore;
+    private final Shards shards;
+    private final UrlMetrics metrics;
+
+    public HashShortCodeGenerator(LinkStore linkStore, Shards shards, UrlMetrics metrics) {
+        this.linkStore = linkStore;
+        this.shards = shards;
+        this.metrics = metrics;
+    }
+
+    @Override
+    public String generate(String longUrl) {
+        // Use SHA-256, truncate to first 6 bytes (48 bits) and encode to Base62
+        String shortCode = null;
+        try {
+            MessageDigest md = MessageDigest.getInstance("SHA-256");
+            // Try a few attempts to avoid collisions by appending attempt counter
+            for (int attempt = 0; attempt < 8; attempt++) {
+                String candidate = shards.stamp(candidate(md, longUrl, attempt));
+                if (!linkStore.existsByShortCode(candidate)) {
+                    shortCode = candidate;
+                    metrics.recordCollisionRetries(attempt);
+                    break;
+                }
+            }
+        } catch (NoSuchAlgorithmException e) {
+            // fallback to original hashCode if SHA-256 unavailable
+            shortCode = shards.stamp(Base62Encoder.encode(longUrl.hashCode()));
+        }
+
+        if (shortCode == null) {
+            // last resort: use hashCode
+            metrics.recordCollisionRetries(8);
+            shortCode = shards.stamp(Base62Encoder.encode(longUrl.hashCode()));
+        }
+        return shortCode;
+    }
+
+    /**
+     * Code for the given attempt: SHA-256 of the URL (plus ":attempt" after the
+     * first try), first 6 bytes, Base62
+     */
+    public static String candidate(MessageDigest md, String longUrl, int attempt) {
+        byte[] digest = md.digest((longUrl + (attempt == 0 ? "" : ":" + attempt)).getBytes());
+        long truncated = 0L;
+        // take first 6 bytes -> 48 bits
+        for (int i = 0; i < 6; i++) {
+            truncated = (truncated << 8) | (digest[i] & 0xFFL);
+        }
+        // ensure positive
+        truncated = truncated & 0xFFFFFFFFFFFFL;
+
+        return Base62Encoder.encode(truncated);
+    }
+
+    @Override
+    public String getName() {
+        return "hash";
+    }
+}
@@ -0,0 +1,13 @@
+package com.example.urlshortener.service;
+
+/**
+ * Strategy whose short code is derived from the link's primary key, so the
+ * store assigns it while inserting the link (see LinkStore.insert)
+ */
+public interface IdCodeAssigner extends ShortCodeStrategy {
+
+    /**
+     * Code of the link with the given primary key
+     */
+    String codeForId(long id);
+}
@@ -0,0 +1,53 @@
+package com.example.urlshortener.service;
+
+import com.example.urlshortener.util.Base62Encoder;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+/**
+ * Uses the url_mapping primary key as the short code: the id plus 2^52,
+ * Base62-encoded in exactly 9 characters.
+ *
+ * The offset keeps these codes disjoint from the hash (below 2^48) and range
+ * (2^48 + id) strategies, so any 9-character code in this range can be decoded
+ * straight back to the id and resolved with a primary key lookup instead of
+ * the short_code index (see idForCode). Needs no collision check; the row is
+ * inserted first and gets its code in the same transaction.
+ */
+@Component
+@ConditionalOnProperty(name = "urlshortener.codegen.strategy", havingValue = "id")
+public class IdShortCodeGenerator implements IdCodeAssigner {
+
+    static final long CODE_OFFSET = 1L << 52;
+    static final int CODE_LENGTH = 9;
+    // 62^9, the first value that needs 10 digits
+    private static final long CODE_LIMIT = 13_537_086_546_263_552L;
+
+    @Override
+    public String getName() {
+        return "id";
+    }
+
+    @Override
+    public String codeForId(long id) {
+        if (id < 0 || id >= CODE_LIMIT - CODE_OFFSET) {
+            throw new IllegalArgumentException("id out of range for id codes: " + id);
+        }
+        char[] code = new char[CODE_LENGTH];
+        Base62Encoder.encodeFixed(CODE_OFFSET + id, code, 0, CODE_LENGTH);
+        return new String(code);
+    }
+
+    /**
+     * Primary key encoded in an id-strategy code, or -1 if the code is not one.
+     * Works whichever strategy is currently configured, so links created while
+     * the id strategy was active keep their fast lookup.
+     */
+    public static long idForCode(String code) {
+        if (code == null || code.length() != CODE_LENGTH) {
+            return -1;
+        }
+        long value = Base62Encoder.tryDecode(code);
+        return value >= CODE_OFFSET && value < CODE_LIMIT ? value - CODE_OFFSET : -1;
+    }
+}
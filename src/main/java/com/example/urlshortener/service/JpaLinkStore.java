@@ -0,0 +1,390 @@
+package com.example.urlshortener.service;
+
+import com.example.urlshortener.config.ReadWriteRoutingDataSource;
+import com.example.urlshortener.config.ReadYourWrites;
+import com.example.urlshortener.config.Shards;
+import com.example.urlshortener.model.LinkSummary;
+import com.example.urlshortener.model.UrlMapping;
+import com.example.urlshortener.repository.UrlRepository;
+import com.example.urlshortener.util.KeysetCursor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.domain.Limit;
+import org.springframework.jdbc.core.ArgumentPreparedStatementSetter;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * Stores links in the url_mapping table through JPA and JDBC batches.
+ *
+ * With several shards every link lives on the shard its code names: lookups
+ * by code go to that shard, lookups by url hash and listings ask every shard
+ * and merge the already sorted results.
+ */
+@Component
+@ConditionalOnProperty(name = "urlshortener.storage", havingValue = "jpa", matchIfMissing = true)
+public class JpaLinkStore implements LinkStore {
+
+    private static final Logger log = LoggerFactory.getLogger(JpaLinkStore.class);
+
+    private static final String INSERT_SQL =
+            "INSERT INTO url_mapping (short_code, original_url, click_count, created_at, expires_at, redirect_type) " +
+            "VALUES (?, ?, 0, ?, ?, ?)";
+    private static final String ASSIGN_CODE_SQL = "UPDATE url_mapping SET short_code = ? WHERE id = ?";
+    private static final String ADD_CLICKS_SQL =
+            "UPDATE url_mapping SET click_count = click_count + ?, last_accessed_at = ? WHERE short_code = ?";
+    private static final String SCAN_EXPIRING_SQL =
+            "SELECT short_code, expires_at FROM url_mapping WHERE expires_at > ? AND expires_at <= ?";
+    private static final String SELECT_EXPIRED_SQL =
+            "SELECT id, short_code, expires_at FROM url_mapping WHERE expires_at <= ? ORDER BY expires_at, id LIMIT ?";
+    private static final String COUNT_EXPIRED_SQL =
+            "SELECT COUNT(*) FROM url_mapping WHERE expires_at <= ?";
+
+    private static final Comparator<LinkSummary> BY_CLICKS =
+            Comparator.comparingInt(LinkSummary::clickCount).reversed();
+    private static final Comparator<LinkSummary> NEWEST_FIRST =
+            Comparator.comparing(LinkSummary::createdAt).thenComparing(LinkSummary::id).reversed();
+
+    private final UrlRepository repository;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate writeTransaction;
+    private final TransactionTemplate readOnlyTransaction;
+    private final ReadYourWrites readYourWrites;
+    private final Shards shards;
+
+    public JpaLinkStore(UrlRepository repository, JdbcTemplate jdbcTemplate,
+                        PlatformTransactionManager transactionManager, ReadYourWrites readYourWrites,
+                        Shards shards) {
+        this.repository = repository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.writeTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        this.readYourWrites = readYourWrites;
+        this.shards = shards;
+    }
+
+    @Override
+    public String getName() {
+        return "jpa";
+    }
+
+    /**
+     * Codes of the id strategy decode to the primary key, which is checked
+     * against the stored code; others use the short_code index. Codes created
+     * moments ago are read from the primary database.
+     */
+    @Override
+    public Optional<UrlMapping> findByShortCode(String code) {
+        long id = IdShortCodeGenerator.idForCode(code);
+        if (id >= 0) {
+            return readYourWrites.read(code, () -> repository.findById(id))
+                    .filter(mapping -> code.equals(mapping.getShortCode()));
+        }
+        return shards.onShardOf(code, () -> readYourWrites.read(code, () -> repository.findByShortCode(code)));
+    }
+
+    @Override
+    public boolean existsByShortCode(String code) {
+        // Checked on the primary, where the latest codes always are
+        return shards.onShardOf(code, () -> ReadWriteRoutingDataSource.onPrimary(
+                () -> repository.findByShortCode(code))).isPresent();
+    }
+
+    /**
+     * Checked on every shard's primary so a link created moments ago is always found
+     */
+    @Override
+    public Optional<UrlMapping> findByUrlHash(String urlHash) {
+        return shards.scatter(shard -> ReadWriteRoutingDataSource.onPrimary(() -> repository.findByUrlHash(urlHash)))
+                .stream()
+                .flatMap(Optional::stream)
+                .min(Comparator.comparing(UrlMapping::isExpired));
+    }
+
+    @Override
+    public List<UrlMapping> findByShortCodeIn(Collection<String> shortCodes) {
+        List<UrlMapping> mappings = new ArrayList<>();
+        shards.groupByShard(shortCodes, code -> code).forEach((shard, codes) ->
+                mappings.addAll(shards.on(shard, () -> repository.findByShortCodeIn(codes))));
+        return mappings;
+    }
+
+    @Override
+    public Map<Long, String> findShortCodesByIds(Collection<Long> ids) {
+        Map<Long, String> codes = new HashMap<>();
+        if (ids.isEmpty()) {
+            return codes;
+        }
+        jdbcTemplate.query("SELECT id, short_code FROM url_mapping WHERE id IN (" +
+                        String.join(", ", Collections.nCopies(ids.size(), "?")) + ")",
+                (RowCallbackHandler) rs -> codes.put(rs.getLong(1), rs.getString(2)), ids.toArray());
+        return codes;
+    }
+
+    /**
+     * An id-derived code is the encoded primary key; it is set before the
+     * insert commits
+     */
+    @Override
+    public void insert(UrlMapping mapping, ShortCodeStrategy strategy) {
+        if (strategy instanceof IdCodeAssigner assigner) {
+            writeTransaction.executeWithoutResult(status -> {
+                repository.save(mapping);
+                mapping.setShortCode(assigner.codeForId(mapping.getId()));
+            });
+            return;
+        }
+        shards.onShardOf(mapping.getShortCode(), () -> repository.save(mapping));
+    }
+
+    /**
+     * One JDBC batch per shard in its own transaction; if a batch fails its
+     * rows are retried one by one so a single bad row only fails itself
+     */
+    @Override
+    public boolean[] insertAll(List<UrlMapping> mappings) {
+        boolean[] stored = new boolean[mappings.size()];
+        List<Integer> indexes = IntStream.range(0, mappings.size()).boxed().toList();
+        shards.groupByShard(indexes, i -> mappings.get(i).getShortCode()).forEach((shard, group) ->
+                shards.run(shard, () -> insertShard(mappings, group, stored)));
+        return stored;
+    }
+
+    private void insertShard(List<UrlMapping> mappings, List<Integer> indexes, boolean[] stored) {
+        List<Object[]> rows = new ArrayList<>(indexes.size());
+        for (int i : indexes) {
+            rows.add(row(mappings.get(i)));
+        }
+        try {
+            writeTransaction.executeWithoutResult(status -> jdbcTemplate.batchUpdate(INSERT_SQL, rows));
+            indexes.forEach(i -> stored[i] = true);
+        } catch (RuntimeException e) {
+            log.debug("Batch insert failed, retrying rows individually: {}", e.getMessage());
+            for (int i : indexes) {
+                try {
+                    jdbcTemplate.update(INSERT_SQL, row(mappings.get(i)));
+                    stored[i] = true;
+                } catch (RuntimeException rowFailure) {
+                    stored[i] = false;
+                }
+            }
+        }
+    }
+
+    /**
+     * Insert the links, read back the generated ids and set the codes in the
+     * same transaction
+     */
+    @Override
+    public void insertAllWithIdCodes(List<UrlMapping> mappings, IdCodeAssigner assigner) {
+        writeTransaction.executeWithoutResult(status -> {
+            KeyHolder keys = new GeneratedKeyHolder();
+            jdbcTemplate.batchUpdate(connection -> connection.prepareStatement(INSERT_SQL, new String[]{"id"}),
+                    new BatchPreparedStatementSetter() {
+                        @Override
+                        public void setValues(PreparedStatement ps, int i) throws SQLException {
+                            new ArgumentPreparedStatementSetter(row(mappings.get(i))).setValues(ps);
+                        }
+
+                        @Override
+                        public int getBatchSize() {
+                            return mappings.size();
+                        }
+                    }, keys);
+
+            List<Map<String, Object>> generated = keys.getKeyList();
+            List<Object[]> codes = new ArrayList<>(mappings.size());
+            for (int i = 0; i < mappings.size(); i++) {
+                // The key column is named differently per driver (ID, GENERATED_KEY)
+                long id = ((Number) generated.get(i).values().iterator().next()).longValue();
+                mappings.get(i).setId(id);
+                mappings.get(i).setShortCode(assigner.codeForId(id));
+                codes.add(new Object[]{mappings.get(i).getShortCode(), id});
+            }
+            jdbcTemplate.batchUpdate(ASSIGN_CODE_SQL, codes);
+        });
+    }
+
+    private static Object[] row(UrlMapping mapping) {
+        return new Object[]{
+                mapping.getShortCode(),
+                mapping.getOriginalUrl(),
+                Timestamp.valueOf(mapping.getCreatedAt()),
+                mapping.getExpiresAt() == null ? null : Timestamp.valueOf(mapping.getExpiresAt()),
+                mapping.getRedirectType().name()
+        };
+    }
+
+    @Override
+    public void clearUrlHash(UrlMapping mapping) {
+        shards.onShardOf(mapping.getShortCode(), () -> repository.clearUrlHash(mapping.getId()));
+    }
+
+    /**
+     * Batched {@code click_count = click_count + n} UPDATEs, one batch per shard
+     */
+    @Override
+    public List<ClickDelta> addClicks(List<ClickDelta> deltas) {
+        List<ClickDelta> failed = new ArrayList<>();
+        shards.groupByShard(deltas, ClickDelta::shortCode).forEach((shard, group) -> shards.run(shard, () -> {
+            List<Object[]> rows = new ArrayList<>(group.size());
+            for (ClickDelta delta : group) {
+                rows.add(new Object[]{delta.clicks(), Timestamp.valueOf(delta.lastAccessedAt()), delta.shortCode()});
+            }
+            try {
+                jdbcTemplate.batchUpdate(ADD_CLICKS_SQL, rows);
+            } catch (RuntimeException e) {
+                log.warn("Failed to add clicks to {} links on shard {}", group.size(), shard, e);
+                failed.addAll(group);
+            }
+        }));
+        return failed;
+    }
+
+    @Override
+    public List<LinkSummary> findTopActive(int limit) {
+        return merge(shards.scatter(shard -> repository.findTopActiveUrls(Limit.of(limit))), BY_CLICKS, limit);
+    }
+
+    @Override
+    public List<CodeClicks> findTopActiveClickCounts(int limit) {
+        List<CodeClicks> rows = new ArrayList<>();
+        shards.scatter(shard -> repository.findTopActiveClickCounts(Limit.of(limit))).forEach(shardRows -> {
+            for (Object[] row : shardRows) {
+                rows.add(new CodeClicks((String) row[0], ((Number) row[1]).longValue()));
+            }
+        });
+        // Keep the overall top entries when several shards contributed
+        rows.sort(Comparator.comparingLong(CodeClicks::clicks).reversed());
+        return rows.size() <= limit ? rows : rows.subList(0, limit);
+    }
+
+    @Override
+    public List<LinkSummary> findAllActive() {
+        return merge(shards.scatter(shard -> repository.findAllActiveUrls()), NEWEST_FIRST, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Every shard returns its own newest rows after the cursor; the page is the newest of those
+     */
+    @Override
+    public List<LinkSummary> findActivePage(KeysetCursor after, int limit) {
+        Limit fetch = Limit.of(limit);
+        return merge(shards.scatter(shard -> after == null
+                ? repository.findActiveUrlsPage(fetch)
+                : repository.findActiveUrlsPageAfter(after.timestamp(), after.id(), fetch)), NEWEST_FIRST, limit);
+    }
+
+    /**
+     * With several shards the rows come shard by shard, each newest first
+     */
+    @Override
+    public void forEachActive(Consumer<LinkSummary> visitor) {
+        shards.forEach(shard -> readOnlyTransaction.executeWithoutResult(status -> {
+            try (Stream<LinkSummary> rows = repository.streamActiveUrls()) {
+                rows.forEach(visitor);
+            }
+        }));
+    }
+
+    @Override
+    public void forEachShortCode(Consumer<String> visitor) {
+        shards.forEach(shard -> readOnlyTransaction.executeWithoutResult(status -> {
+            try (Stream<String> codes = repository.streamAllShortCodes()) {
+                codes.forEach(visitor);
+            }
+        }));
+    }
+
+    @Override
+    public void forEachExpiring(LocalDateTime after, LocalDateTime until, BiConsumer<String, LocalDateTime> visitor) {
+        shards.forEach(shard -> jdbcTemplate.query(SCAN_EXPIRING_SQL,
+                (RowCallbackHandler) rs -> visitor.accept(rs.getString(1), rs.getTimestamp(2).toLocalDateTime()),
+                Timestamp.valueOf(after), Timestamp.valueOf(until)));
+    }
+
+    @Override
+    public long countExpired(LocalDateTime cutoff) {
+        return shards.scatter(shard -> jdbcTemplate.queryForObject(COUNT_EXPIRED_SQL, Long.class, Timestamp.valueOf(cutoff)))
+                .stream().mapToLong(Long::longValue).sum();
+    }
+
+    @Override
+    public List<LinkKey> findExpired(LocalDateTime cutoff, int limit) {
+        List<Object[]> rows = new ArrayList<>();
+        shards.scatter(shard -> jdbcTemplate.query(SELECT_EXPIRED_SQL, (rs, i) -> new Object[]{
+                rs.getTimestamp(3), new LinkKey(rs.getLong(1), rs.getString(2))}, Timestamp.valueOf(cutoff), limit))
+                .forEach(rows::addAll);
+        if (shards.isSharded()) {
+            rows.sort(Comparator.comparing((Object[] row) -> (Timestamp) row[0]));
+        }
+        List<LinkKey> keys = new ArrayList<>(Math.min(rows.size(), limit));
+        for (int i = 0; i < rows.size() && i < limit; i++) {
+            keys.add((LinkKey) rows.get(i)[1]);
+        }
+        return keys;
+    }
+
+    @Override
+    public int delete(List<LinkKey> links) {
+        int[] deleted = {0};
+        shards.groupByShard(links, LinkKey::shortCode).forEach((shard, group) -> shards.run(shard, () -> {
+            Object[] ids = group.stream().map(LinkKey::id).toArray();
+            deleted[0] += jdbcTemplate.update("DELETE FROM url_mapping WHERE id IN (" +
+                    String.join(", ", Collections.nCopies(ids.length, "?")) + ")", ids);
+        }));
+        return deleted[0];
+    }
+
+    @Override
+    public long count() {
+        return repository.count();
+    }
+
+    @Override
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("storage", getName());
+        stats.put("shards", shards.count());
+        return stats;
+    }
+
+    /**
+     * Merge the already sorted results of every shard and keep the first limit rows
+     */
+    private static List<LinkSummary> merge(List<List<LinkSummary>> perShard, Comparator<LinkSummary> order, int limit) {
+        if (perShard.size() == 1) {
+            List<LinkSummary> rows = perShard.get(0);
+            return rows.size() <= limit ? rows : rows.subList(0, limit);
+        }
+        List<LinkSummary> rows = new ArrayList<>();
+        perShard.forEach(rows::addAll);
+        rows.sort(order);
+        return rows.size() <= limit ? rows : new ArrayList<>(rows.subList(0, limit));
+    }
+}
@@ -0,0 +1,150 @@
+package com.example.urlshortener.service;
+
+import com.example.urlshortener.model.LinkSummary;
+import com.example.urlshortener.model.UrlMapping;
+import com.example.urlshortener.util.KeysetCursor;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+/**
+ * Where links are stored. Selected with {@code urlshortener.storage}:
+ * jpa (the url_mapping table, default) or log (an embedded append-only log,
+ * see LogLinkStore). Access logs, rollups and visitor sketches stay in the
+ * database either way.
+ *
+ * Listings only return active (not expired) links, as read-only LinkSummary
+ * records.
+ */
+public interface LinkStore {
+
+    /**
+     * Clicks to add to a link, with its latest access
+     */
+    record ClickDelta(String shortCode, long clicks, LocalDateTime lastAccessedAt) {
+    }
+
+    record CodeClicks(String shortCode, long clicks) {
+    }
+
+    record LinkKey(long id, String shortCode) {
+    }
+
+    /**
+     * Name of the store, reported in stats
+     */
+    String getName();
+
+    /**
+     * Link with the code; a code created moments ago is always found
+     */
+    Optional<UrlMapping> findByShortCode(String shortCode);
+
+    /**
+     * Whether any link has the code, checked against the latest writes
+     */
+    boolean existsByShortCode(String shortCode);
+
+    /**
+     * Reuse-mode link of a url hash, preferring a live one over an expired one
+     */
+    Optional<UrlMapping> findByUrlHash(String urlHash);
+
+    List<UrlMapping> findByShortCodeIn(Collection<String> shortCodes);
+
+    /**
+     * Codes of the links with the ids; deleted links are left out. The
+     * database store reads the shard selected with Shards.on
+     */
+    Map<Long, String> findShortCodesByIds(Collection<Long> ids);
+
+    /**
+     * Store a new link and set its id; throws DataIntegrityViolationException
+     * if the code or url hash is taken. With an IdCodeAssigner the code is
+     * derived from the id as part of the insert, otherwise it must already be set.
+     */
+    void insert(UrlMapping mapping, ShortCodeStrategy strategy);
+
+    /**
+     * Store new links with their codes set; returns per link whether it was stored
+     */
+    boolean[] insertAll(List<UrlMapping> mappings);
+
+    /**
+     * Store new links whose codes are derived from their ids, all or none
+     */
+    void insertAllWithIdCodes(List<UrlMapping> mappings, IdCodeAssigner assigner);
+
+    /**
+     * Release the url hash of a link so a new link can claim it
+     */
+    void clearUrlHash(UrlMapping mapping);
+
+    /**
+     * Add clicks to links; returns the deltas that could not be written.
+     * Deltas of links that no longer exist are dropped.
+     */
+    List<ClickDelta> addClicks(List<ClickDelta> deltas);
+
+    /**
+     * Most clicked links first
+     */
+    List<LinkSummary> findTopActive(int limit);
+
+    List<CodeClicks> findTopActiveClickCounts(int limit);
+
+    /**
+     * Newest first
+     */
+    List<LinkSummary> findAllActive();
+
+    /**
+     * Up to limit links after the cursor (or the newest), newest first
+     */
+    List<LinkSummary> findActivePage(KeysetCursor after, int limit);
+
+    /**
+     * Visit every active link with constant memory
+     */
+    void forEachActive(Consumer<LinkSummary> visitor);
+
+    void forEachShortCode(Consumer<String> visitor);
+
+    /**
+     * Visit the code and expiry of links expiring after one time and up to another
+     */
+    void forEachExpiring(LocalDateTime after, LocalDateTime until, BiConsumer<String, LocalDateTime> visitor);
+
+    long countExpired(LocalDateTime cutoff);
+
+    /**
+     * Up to limit links expired at or before the cutoff, earliest expiry first
+     */
+    List<LinkKey> findExpired(LocalDateTime cutoff, int limit);
+
+    /**
+     * Delete links; returns how many were deleted
+     */
+    int delete(List<LinkKey> links);
+
+    /**
+     * Number of stored links; the database store counts the shard selected
+     * with Shards.on
+     */
+    long count();
+
+    /**
+     * Reclaim the space of deleted and superseded links now; returns the bytes
+     * reclaimed (always 0 for stores that need no compaction)
+     */
+    default long compact() {
+        return 0;
+    }
+
+    Map<String, Object> getStats();
+}
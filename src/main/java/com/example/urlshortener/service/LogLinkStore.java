@@ -0,0 +1,328 @@
+package com.example.urlshortener.service;
+
+import com.example.urlshortener.config.Shards;
+import com.example.urlshortener.model.LinkSummary;
+import com.example.urlshortener.model.UrlMapping;
+import com.example.urlshortener.storage.LinkLog;
+import com.example.urlshortener.util.KeysetCursor;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.LongFunction;
+
+/**
+ * Stores links in an embedded LinkLog instead of the database, for
+ * deployments without MySQL. Enabled with urlshortener.storage=log.
+ *
+ * The log's mapped pages are forced to disk every force interval, so a crash
+ * of the machine loses at most that much; a crash of the process loses
+ * nothing. Index checkpoints are written every checkpoint interval (when
+ * anything changed) and on shutdown, so a restart only replays the records
+ * written since. Compaction runs when deleted, superseded and click records
+ * make up at least the minimum dead ratio of the log.
+ *
+ * Link ids are assigned by the log; access logs refer to them without a
+ * foreign key. Cannot be combined with sharding or access log archiving,
+ * which both need url_mapping rows.
+ */
+@Component
+@ConditionalOnProperty(name = "urlshortener.storage", havingValue = "log")
+public class LogLinkStore implements LinkStore {
+
+    private static final Logger log = LoggerFactory.getLogger(LogLinkStore.class);
+
+    private final LinkLog linkLog;
+    private final Path dir;
+    private final int segmentBytes;
+    private final double compactionMinDeadRatio;
+
+    public LogLinkStore(Shards shards, UrlMetrics metrics,
+                        @Value("${urlshortener.storage.log.dir:data/links}") String dir,
+                        @Value("${urlshortener.storage.log.segment-size-mb:64}") int segmentSizeMb,
+                        @Value("${urlshortener.storage.log.expected-links:1000000}") int expectedLinks,
+                        @Value("${urlshortener.storage.log.compaction-min-dead-ratio:0.5}") double compactionMinDeadRatio,
+                        @Value("${urlshortener.expiry.archive-logs:false}") boolean archiveLogs) throws IOException {
+        if (shards.isSharded()) {
+            throw new IllegalStateException("urlshortener.storage=log cannot be combined with sharding");
+        }
+        if (archiveLogs) {
+            throw new IllegalStateException("urlshortener.storage=log cannot archive access logs; " +
+                    "set urlshortener.expiry.archive-logs=false");
+        }
+        this.dir = Path.of(dir);
+        this.segmentBytes = segmentSizeMb << 20;
+        this.compactionMinDeadRatio = compactionMinDeadRatio;
+        this.linkLog = LinkLog.open(this.dir, segmentBytes, expectedLinks);
+        metrics.gauge("urlshortener.storage.log.links", "Links in the link log", linkLog, LinkLog::size);
+        metrics.gauge("urlshortener.storage.log.bytes", "Bytes of records in the link log", linkLog, LinkLog::totalBytes);
+        metrics.gauge("urlshortener.storage.log.dead.ratio", "Share of the link log compaction would reclaim",
+                linkLog, LinkLog::deadRatio);
+        metrics.gauge("urlshortener.storage.log.segments", "Segment files of the link log", linkLog, LinkLog::segmentCount);
+    }
+
+    @Override
+    public String getName() {
+        return "log";
+    }
+
+    @Override
+    public Optional<UrlMapping> findByShortCode(String shortCode) {
+        return Optional.ofNullable(linkLog.get(shortCode));
+    }
+
+    @Override
+    public boolean existsByShortCode(String shortCode) {
+        return linkLog.contains(shortCode);
+    }
+
+    @Override
+    public Optional<UrlMapping> findByUrlHash(String urlHash) {
+        return Optional.ofNullable(linkLog.getByUrlHash(urlHash));
+    }
+
+    @Override
+    public List<UrlMapping> findByShortCodeIn(Collection<String> shortCodes) {
+        List<UrlMapping> mappings = new ArrayList<>(shortCodes.size());
+        for (String code : shortCodes) {
+            UrlMapping mapping = linkLog.get(code);
+            if (mapping != null) {
+                mappings.add(mapping);
+            }
+        }
+        return mappings;
+    }
+
+    @Override
+    public Map<Long, String> findShortCodesByIds(Collection<Long> ids) {
+        Map<Long, String> codes = new HashMap<>();
+        for (long id : ids) {
+            UrlMapping mapping = linkLog.get(id);
+            if (mapping != null) {
+                codes.put(id, mapping.getShortCode());
+            }
+        }
+        return codes;
+    }
+
+    @Override
+    public void insert(UrlMapping mapping, ShortCodeStrategy strategy) {
+        LongFunction<String> codeForId = strategy instanceof IdCodeAssigner assigner ? assigner::codeForId : null;
+        if (!linkLog.insert(mapping, codeForId)) {
+            throw new DataIntegrityViolationException("short code or url hash already stored: " + mapping.getShortCode());
+        }
+    }
+
+    @Override
+    public boolean[] insertAll(List<UrlMapping> mappings) {
+        boolean[] stored = new boolean[mappings.size()];
+        for (int i = 0; i < mappings.size(); i++) {
+            try {
+                stored[i] = linkLog.insert(mappings.get(i), null);
+            } catch (RuntimeException e) {
+                log.debug("Could not store link {}: {}", mappings.get(i).getShortCode(), e.getMessage());
+            }
+        }
+        return stored;
+    }
+
+    @Override
+    public void insertAllWithIdCodes(List<UrlMapping> mappings, IdCodeAssigner assigner) {
+        for (UrlMapping mapping : mappings) {
+            insert(mapping, assigner);
+        }
+    }
+
+    @Override
+    public void clearUrlHash(UrlMapping mapping) {
+        linkLog.clearUrlHash(mapping.getId());
+    }
+
+    @Override
+    public List<ClickDelta> addClicks(List<ClickDelta> deltas) {
+        List<ClickDelta> failed = new ArrayList<>();
+        for (ClickDelta delta : deltas) {
+            try {
+                linkLog.addClicks(delta.shortCode(), delta.clicks(), delta.lastAccessedAt());
+            } catch (RuntimeException e) {
+                log.warn("Failed to add clicks to {}", delta.shortCode(), e);
+                failed.add(delta);
+            }
+        }
+        return failed;
+    }
+
+    @Override
+    public List<LinkSummary> findTopActive(int limit) {
+        List<LinkSummary> rows = new ArrayList<>();
+        for (UrlMapping mapping : linkLog.topByClicks(limit, LocalDateTime.now())) {
+            rows.add(LinkSummary.of(mapping));
+        }
+        return rows;
+    }
+
+    @Override
+    public List<CodeClicks> findTopActiveClickCounts(int limit) {
+        List<CodeClicks> rows = new ArrayList<>();
+        for (UrlMapping mapping : linkLog.topByClicks(limit, LocalDateTime.now())) {
+            rows.add(new CodeClicks(mapping.getShortCode(), mapping.getClickCount()));
+        }
+        return rows;
+    }
+
+    @Override
+    public List<LinkSummary> findAllActive() {
+        List<LinkSummary> mappings = new ArrayList<>();
+        forEachActive(mappings::add);
+        return mappings;
+    }
+
+    /**
+     * Newest first by id, which follows creation order; the cursor's id is
+     * the position
+     */
+    @Override
+    public List<LinkSummary> findActivePage(KeysetCursor after, int limit) {
+        List<LinkSummary> page = new ArrayList<>(limit);
+        linkLog.forEachNewest(after == null ? Long.MAX_VALUE : after.id(), LocalDateTime.now(), mapping -> {
+            page.add(LinkSummary.of(mapping));
+            return page.size() < limit;
+        });
+        return page;
+    }
+
+    @Override
+    public void forEachActive(Consumer<LinkSummary> visitor) {
+        linkLog.forEachNewest(Long.MAX_VALUE, LocalDateTime.now(), mapping -> {
+            visitor.accept(LinkSummary.of(mapping));
+            return true;
+        });
+    }
+
+    @Override
+    public void forEachShortCode(Consumer<String> visitor) {
+        linkLog.forEachCode(visitor);
+    }
+
+    @Override
+    public void forEachExpiring(LocalDateTime after, LocalDateTime until, BiConsumer<String, LocalDateTime> visitor) {
+        linkLog.forEachExpiring(after, until, visitor);
+    }
+
+    @Override
+    public long countExpired(LocalDateTime cutoff) {
+        return linkLog.countExpired(cutoff);
+    }
+
+    @Override
+    public List<LinkKey> findExpired(LocalDateTime cutoff, int limit) {
+        List<LinkKey> keys = new ArrayList<>();
+        for (UrlMapping mapping : linkLog.expired(cutoff, limit)) {
+            keys.add(new LinkKey(mapping.getId(), mapping.getShortCode()));
+        }
+        return keys;
+    }
+
+    @Override
+    public int delete(List<LinkKey> links) {
+        int deleted = 0;
+        for (LinkKey link : links) {
+            if (linkLog.delete(link.id(), link.shortCode())) {
+                deleted++;
+            }
+        }
+        return deleted;
+    }
+
+    @Override
+    public long count() {
+        return linkLog.size();
+    }
+
+    @Scheduled(fixedDelayString = "${urlshortener.storage.log.force-interval-ms:1000}")
+    public void force() {
+        linkLog.force();
+    }
+
+    @Scheduled(initialDelayString = "${urlshortener.storage.log.checkpoint-interval-ms:300000}",
+            fixedDelayString = "${urlshortener.storage.log.checkpoint-interval-ms:300000}")
+    public void checkpoint() {
+        if (linkLog.writesSinceCheckpoint() == 0) {
+            return;
+        }
+        try {
+            linkLog.checkpoint();
+        } catch (IOException | RuntimeException e) {
+            log.warn("Link log checkpoint failed; the next start replays more of the log", e);
+        }
+    }
+
+    /**
+     * Compact when enough of the log is dead and it spans more than one segment
+     */
+    @Scheduled(initialDelayString = "${urlshortener.storage.log.compaction-interval-ms:600000}",
+            fixedDelayString = "${urlshortener.storage.log.compaction-interval-ms:600000}")
+    public void scheduledCompaction() {
+        if (linkLog.deadRatio() < compactionMinDeadRatio || linkLog.totalBytes() < segmentBytes) {
+            return;
+        }
+        compact();
+    }
+
+    @Override
+    public long compact() {
+        try {
+            return linkLog.compact();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @PreDestroy
+    public void close() throws IOException {
+        linkLog.close();
+    }
+
+    @Override
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("storage", getName());
+        stats.put("dir", dir.toAbsolutePath().toString());
+        stats.put("links", linkLog.size());
+        stats.put("segments", linkLog.segmentCount());
+        stats.put("segmentBytes", segmentBytes);
+        stats.put("totalBytes", linkLog.totalBytes());
+        stats.put("liveBytes", linkLog.liveBytes());
+        stats.put("deadRatio", linkLog.deadRatio());
+        stats.put("compactionMinDeadRatio", compactionMinDeadRatio);
+        stats.put("indexMemoryBytes", linkLog.indexMemoryBytes());
+        stats.put("recoveredFromCheckpoint", linkLog.isRecoveredFromCheckpoint());
+        stats.put("replayedRecords", linkLog.replayedRecords());
+        stats.put("tornTails", linkLog.tornTails());
+        stats.put("recoveryMillis", linkLog.recoveryMillis());
+        stats.put("writesSinceCheckpoint", linkLog.writesSinceCheckpoint());
+        stats.put("checkpoints", linkLog.checkpoints());
+        stats.put("lastCheckpointMillis", linkLog.lastCheckpointMillis());
+        stats.put("compactions", linkLog.compactions());
+        stats.put("reclaimedBytes", linkLog.reclaimedBytes());
+        stats.put("lastCompactionMillis", linkLog.lastCompactionMillis());
+        return stats;
+    }
+}
@@ -0,0 +1,118 @@
+package com.example.urlshortener.service;
+
+import com.example.urlshortener.config.Shards;
+import com.example.urlshortener.model.CodeSequence;
+import com.example.urlshortener.repository.CodeSequenceRepository;
+import com.example.urlshortener.util.Base62Encoder;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Hands out short codes from blocks of numeric ids leased from the
+ * code_sequence table.
+ *
+ * One short transaction reserves {@code block-size} ids at a time; inside a
+ * block ids are handed out with a single atomic increment, so creating a link
+ * needs no existence check at all. Ids are offset by 2^48 before encoding,
+ * which keeps them disjoint from the 48-bit values of the hash strategy.
+ * With several shards the sequence lives on shard 0 and each code is stamped
+ * with the shard it is placed on.
+ */
+@Component
+@ConditionalOnProperty(name = "urlshortener.codegen.strategy", havingValue = "range")
+public class RangeShortCodeGenerator implements ShortCodeGenerator {
+
+    static final String SEQUENCE_NAME = "short_code";
+    static final long CODE_OFFSET = 1L << 48;
+
+    private final CodeSequenceRepository sequenceRepository;
+    private final Shards shards;
+    private final TransactionTemplate leaseTransaction;
+    private final int blockSize;
+    private final AtomicReference<IdBlock> current = new AtomicReference<>(IdBlock.EMPTY);
+    private final AtomicLong leasedBlocks = new AtomicLong();
+
+    public RangeShortCodeGenerator(CodeSequenceRepository sequenceRepository, Shards shards,
+                                   PlatformTransactionManager transactionManager,
+                                   @Value("${urlshortener.codegen.block-size:1000}") int blockSize) {
+        this.sequenceRepository = sequenceRepository;
+        this.shards = shards;
+        this.blockSize = blockSize;
+        this.leaseTransaction = new TransactionTemplate(transactionManager);
+        this.leaseTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    @Override
+    public String generate(String longUrl) {
+        return shards.stamp(Base62Encoder.encode(CODE_OFFSET + nextId()));
+    }
+
+    @Override
+    public String getName() {
+        return "range";
+    }
+
+    /**
+     * Next id from the current block, leasing a new block when it runs out
+     */
+    public long nextId() {
+        while (true) {
+            IdBlock block = current.get();
+            long id = block.next.getAndIncrement();
+            if (id < block.end) {
+                return id;
+            }
+            synchronized (this) {
+                if (current.get() == block) {
+                    current.set(leaseBlock());
+                }
+            }
+        }
+    }
+
+    public long getLeasedBlocks() {
+        return leasedBlocks.get();
+    }
+
+    private IdBlock leaseBlock() {
+        return shards.on(0, this::leaseBlockOnShard);
+    }
+
+    private IdBlock leaseBlockOnShard() {
+        try {
+            return leaseTransaction.execute(status -> reserve());
+        } catch (DataIntegrityViolationException e) {
+            // Another instance created the sequence row first; lock it and retry
+            return leaseTransaction.execute(status -> reserve());
+        }
+    }
+
+    private IdBlock reserve() {
+        CodeSequence sequence = sequenceRepository.findForUpdate(SEQUENCE_NAME)
+                .orElseGet(() -> sequenceRepository.saveAndFlush(new CodeSequence(SEQUENCE_NAME, 0)));
+        long start = sequence.getNextValue();
+        sequence.setNextValue(start + blockSize);
+        leasedBlocks.incrementAndGet();
+        return new IdBlock(start, start + blockSize);
+    }
+
+    private static class IdBlock {
+        static final IdBlock EMPTY = new IdBlock(0, 0);
+
+        private final AtomicLong next;
+        private final long end;
+
+        IdBlock(long start, long end) {
+            this.next = new AtomicLong(start);
+            this.end = end;
+        }
+    }
+}
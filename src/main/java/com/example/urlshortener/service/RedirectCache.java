@@ -0,0 +1,193 @@
+package com.example.urlshortener.service;
+
+import com.example.urlshortener.model.UrlMapping;
+import com.example.urlshortener.util.FrequencyCache;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * RedirectCache keeps recently resolved short codes in memory so that hot
+ * links do not need a database round trip on every redirect.
+ *
+ * Found mappings are cached until the link expires (or the configured TTL,
+ * whichever comes first). Unknown codes are remembered for a short time so
+ * repeated lookups of nonexistent codes stop reaching the database.
+ *
+ * Mappings warmed from a hot set snapshot are served as they are, but the
+ * first hit of each queues its code for CacheWarmer to check against the
+ * LinkStore.
+ */
+@Component
+public class RedirectCache {
+
+    private final FrequencyCache<String, UrlMapping> found;
+    private final FrequencyCache<String, Boolean> missing;
+    private final boolean enabled;
+    private final long ttlMillis;
+    private final long missTtlMillis;
+    private final Set<String> unverified = ConcurrentHashMap.newKeySet();
+    private final Queue<String> toVerify = new ConcurrentLinkedQueue<>();
+    private final AtomicLong warmedHits = new AtomicLong();
+    private volatile long unverifiedUntilMillis;
+
+    public RedirectCache(@Value("${urlshortener.cache.enabled:true}") boolean enabled,
+                         @Value("${urlshortener.cache.max-size:10000}") int maxSize,
+                         @Value("${urlshortener.cache.ttl-seconds:600}") long ttlSeconds,
+                         @Value("${urlshortener.cache.miss-max-size:10000}") int missMaxSize,
+                         @Value("${urlshortener.cache.miss-ttl-seconds:30}") long missTtlSeconds) {
+        this.enabled = enabled;
+        this.found = new FrequencyCache<>(maxSize);
+        this.missing = new FrequencyCache<>(missMaxSize);
+        this.ttlMillis = ttlSeconds * 1000;
+        this.missTtlMillis = missTtlSeconds * 1000;
+    }
+
+    /**
+     * Look up a cached mapping, or null if the code is not cached
+     */
+    public UrlMapping get(String code) {
+        if (!enabled) {
+            return null;
+        }
+        UrlMapping mapping = found.get(code);
+        if (mapping != null && !unverified.isEmpty() && unverified.remove(code)) {
+            warmedHits.incrementAndGet();
+            toVerify.add(code);
+        }
+        return mapping;
+    }
+
+    /**
+     * Check whether the code was recently looked up and not found
+     */
+    public boolean isKnownMissing(String code) {
+        return enabled && missing.get(code) != null;
+    }
+
+    /**
+     * Cache a mapping until it expires or the TTL runs out
+     */
+    public void put(UrlMapping mapping) {
+        if (!enabled) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        long expiresAt = now + ttlMillis;
+        if (mapping.getExpiresAt() != null) {
+            long linkExpiry = mapping.getExpiresAt().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+            expiresAt = Math.min(expiresAt, linkExpiry);
+        }
+        unverified.remove(mapping.getShortCode());
+        missing.invalidate(mapping.getShortCode());
+        found.put(mapping.getShortCode(), mapping, expiresAt);
+    }
+
+    /**
+     * Cache a mapping read from a snapshot; it is checked against the
+     * LinkStore after its first hit
+     */
+    public void putUnverified(UrlMapping mapping) {
+        if (!enabled) {
+            return;
+        }
+        put(mapping);
+        unverified.add(mapping.getShortCode());
+        unverifiedUntilMillis = System.currentTimeMillis() + ttlMillis;
+    }
+
+    /**
+     * Take up to max codes of snapshot mappings that were hit and need checking
+     */
+    public List<String> pollToVerify(int max) {
+        List<String> codes = new ArrayList<>();
+        String code;
+        while (codes.size() < max && (code = toVerify.poll()) != null) {
+            codes.add(code);
+        }
+        return codes;
+    }
+
+    /**
+     * Remember that a code does not resolve to an active link
+     */
+    public void putMissing(String code) {
+        if (enabled) {
+            missing.put(code, Boolean.TRUE, System.currentTimeMillis() + missTtlMillis);
+        }
+    }
+
+    /**
+     * Forget everything known about a code (created, deleted or expired)
+     */
+    public void invalidate(String code) {
+        unverified.remove(code);
+        found.invalidate(code);
+        missing.invalidate(code);
+    }
+
+    public void invalidateAll() {
+        unverified.clear();
+        found.invalidateAll();
+        missing.invalidateAll();
+    }
+
+    /**
+     * Periodically drop expired entries so they do not occupy cache slots
+     */
+    @Scheduled(fixedDelayString = "${urlshortener.cache.cleanup-interval-ms:60000}")
+    public void removeExpired() {
+        found.removeExpired();
+        missing.removeExpired();
+        // Every warmed mapping has been replaced or has expired by now
+        if (!unverified.isEmpty() && System.currentTimeMillis() > unverifiedUntilMillis) {
+            unverified.clear();
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public int getMaxSize() {
+        return found.getMaxSize();
+    }
+
+    public long getHits() {
+        return found.getHits();
+    }
+
+    public long getMisses() {
+        return found.getMisses();
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("size", found.size());
+        stats.put("maxSize", found.getMaxSize());
+        stats.put("hits", found.getHits());
+        stats.put("misses", found.getMisses());
+        stats.put("evictions", found.getEvictions());
+        stats.put("expirations", found.getExpirations());
+        stats.put("admissionRejections", found.getRejections());
+        long lookups = found.getHits() + found.getMisses();
+        stats.put("hitRate", lookups == 0 ? 0.0 : (double) found.getHits() / lookups);
+        stats.put("negativeSize", missing.size());
+        stats.put("negativeHits", missing.getHits());
+        stats.put("unverifiedWarmed", unverified.size());
+        stats.put("warmedHits", warmedHits.get());
+        return stats;
+    }
+}
@@ -0,0 +1,67 @@
+package com.example.urlshortener.service;
+
+import com.example.urlshortener.model.RedirectType;
+import com.example.urlshortener.model.UrlMapping;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Status and Cache-Control of redirects, shared by UrlController and
+ * RedirectListener.
+ *
+ * Tracked links answer 302 with no-store, so every click reaches the
+ * application. Permanent links answer 301 with a public max-age, capped at
+ * the configured maximum and at the time left until the link expires, so no
+ * browser or CDN keeps redirecting after the link is gone.
+ */
+@Component
+public class RedirectPolicy {
+
+    private static final String NO_STORE = CacheControl.noStore().getHeaderValue();
+
+    private final RedirectType defaultType;
+    private final long maxAgeSeconds;
+
+    public RedirectPolicy(@Value("${urlshortener.redirect.default-type:tracked}") String defaultType,
+                          @Value("${urlshortener.redirect.permanent-max-age-seconds:86400}") long maxAgeSeconds) {
+        this.defaultType = RedirectType.fromString(defaultType);
+        this.maxAgeSeconds = maxAgeSeconds;
+    }
+
+    /**
+     * The requested redirect type, or the default if none was requested;
+     * throws IllegalArgumentException for unknown types
+     */
+    public RedirectType resolve(String requested) {
+        return requested == null || requested.isBlank() ? defaultType : RedirectType.fromString(requested);
+    }
+
+    public RedirectType getDefaultType() {
+        return defaultType;
+    }
+
+    public HttpStatus status(UrlMapping mapping) {
+        return mapping.getRedirectType() == RedirectType.PERMANENT ? HttpStatus.MOVED_PERMANENTLY : HttpStatus.FOUND;
+    }
+
+    public String cacheControl(UrlMapping mapping) {
+        if (mapping.getRedirectType() != RedirectType.PERMANENT) {
+            return NO_STORE;
+        }
+        return CacheControl.maxAge(maxAgeSeconds(mapping), TimeUnit.SECONDS).cachePublic().getHeaderValue();
+    }
+
+    private long maxAgeSeconds(UrlMapping mapping) {
+        if (mapping.getExpiresAt() == null) {
+            return maxAgeSeconds;
+        }
+        long untilExpiry = Duration.between(LocalDateTime.now(), mapping.getExpiresAt()).getSeconds();
+        return Math.max(0, Math.min(maxAgeSeconds, untilExpiry));
+    }
+}
@@ -0,0 +1,138 @@
+package com.example.urlshortener.service;
+
+import com.example.urlshortener.util.CuckooFilter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * ShortCodeFilter answers "does this short code exist?" from memory.
+ *
+ * A CuckooFilter over every short code is built in the background after
+ * startup by streaming every code from the LinkStore, and kept up to date on
+ * every create and delete made by this instance. A negative answer is only
+ * definite when this is the only instance writing to the database, so the
+ * filter is used only with urlshortener.filter.single-instance=true; the
+ * redirect and analytics paths can then return 404 without a database query.
+ * Otherwise links created by other instances would be missing from it, and
+ * every code is reported as possibly present.
+ *
+ * Until the build has finished (or if the filter ever overflows) every code
+ * is reported as possibly present, which falls back to the database.
+ */
+@Component
+public class ShortCodeFilter {
+
+    private static final Logger log = LoggerFactory.getLogger(ShortCodeFilter.class);
+
+    private final LinkStore linkStore;
+    private final boolean enabled;
+    private final boolean singleInstance;
+    private final CuckooFilter filter;
+    private final double targetFalsePositiveRate;
+    private final long expectedInsertions;
+
+    private volatile boolean ready;
+    private volatile boolean degraded;
+    private volatile long buildMillis;
+    private final AtomicLong definiteMisses = new AtomicLong();
+
+    public ShortCodeFilter(LinkStore linkStore,
+                           @Value("${urlshortener.filter.enabled:true}") boolean enabled,
+                           @Value("${urlshortener.filter.single-instance:false}") boolean singleInstance,
+                           @Value("${urlshortener.filter.expected-insertions:1000000}") long expectedInsertions,
+                           @Value("${urlshortener.filter.false-positive-rate:0.001}") double falsePositiveRate) {
+        this.linkStore = linkStore;
+        // Without single-instance mode a miss proves nothing, so there is nothing to build
+        this.enabled = enabled && singleInstance;
+        this.singleInstance = singleInstance;
+        this.expectedInsertions = expectedInsertions;
+        this.targetFalsePositiveRate = falsePositiveRate;
+        this.filter = this.enabled ? new CuckooFilter(expectedInsertions, falsePositiveRate) : null;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void buildInBackground() {
+        if (!enabled) {
+            return;
+        }
+        Thread builder = new Thread(this::build, "short-code-filter-build");
+        builder.setDaemon(true);
+        builder.start();
+    }
+
+    private void build() {
+        long start = System.currentTimeMillis();
+        try {
+            linkStore.forEachShortCode(this::add);
+            buildMillis = System.currentTimeMillis() - start;
+            ready = true;
+            log.info("Short code filter built with {} codes in {} ms", filter.size(), buildMillis);
+        } catch (RuntimeException e) {
+            degraded = true;
+            log.warn("Short code filter build failed; lookups fall back to the database", e);
+        }
+    }
+
+    /**
+     * False means the code definitely does not exist
+     */
+    public boolean mightContain(String code) {
+        if (!ready || degraded) {
+            return true;
+        }
+        boolean found = filter.mightContain(code);
+        if (!found) {
+            definiteMisses.incrementAndGet();
+        }
+        return found;
+    }
+
+    public void add(String code) {
+        if (enabled && code != null && !filter.add(code)) {
+            if (!degraded) {
+                log.warn("Short code filter is full; raise urlshortener.filter.expected-insertions");
+            }
+            degraded = true;
+        }
+    }
+
+    /**
+     * Remove a deleted code. In single-instance mode every stored code was
+     * added by this instance, either by the build or on create; removing a
+     * code that was never added could drop another code's fingerprint, so
+     * deletes are ignored until the build has finished.
+     */
+    public void remove(String code) {
+        if (enabled && ready && code != null) {
+            filter.remove(code);
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("singleInstance", singleInstance);
+        stats.put("ready", ready);
+        stats.put("degraded", degraded);
+        stats.put("definiteMisses", definiteMisses.get());
+        stats.put("expectedInsertions", expectedInsertions);
+        stats.put("targetFalsePositiveRate", targetFalsePositiveRate);
+        if (filter != null) {
+            stats.put("size", filter.size());
+            stats.put("slots", filter.capacity());
+            stats.put("fingerprintBits", filter.getFingerprintBits());
+            stats.put("memoryBytes", filter.getMemoryBytes());
+            stats.put("estimatedFalsePositiveRate", filter.estimatedFalsePositiveRate());
+            stats.put("buildMillis", buildMillis);
+        }
+        return stats;
+    }
+}
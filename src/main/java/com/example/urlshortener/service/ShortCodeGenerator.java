@@ -0,0 +1,12 @@
+package com.example.urlshortener.service;
+
+/**
+ * Strategy that produces the short code of a new link before it is stored
+ */
+public interface ShortCodeGenerator extends ShortCodeStrategy {
+
+    /**
+     * Produce a short code that is not used by any existing link
+     */
+    String generate(String longUrl);
+}
@@ -0,0 +1,15 @@
+package com.example.urlshortener.service;
+
+/**
+ * How new links get their short codes. Selected with
+ * {@code urlshortener.codegen.strategy}: hash and range generate the code
+ * before the link is stored (ShortCodeGenerator), id derives it from the
+ * primary key the store assigns (IdCodeAssigner).
+ */
+public interface ShortCodeStrategy {
+
+    /**
+     * Name of the strategy, reported in stats
+     */
+    String getName();
+}
@@ -0,0 +1,122 @@
+package com.example.urlshortener.service;
+
+import com.example.urlshortener.util.DeltaCounters;
+import com.example.urlshortener.util.SpaceSaving;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * TopUrlTracker keeps the most-clicked short codes in memory.
+ *
+ * A SpaceSaving summary is fed from the redirect path, so the ranking is
+ * current even while ClickCounter has not flushed yet. It is seeded at
+ * startup with the most clicked links of the LinkStore, so estimates
+ * follow the all-time click count rather than only clicks since startup.
+ *
+ * Redirects only add to DeltaCounters, which never block each other; the
+ * buffered clicks are offered to the summary (one locked update per code)
+ * every drain interval and before each read.
+ */
+@Component
+public class TopUrlTracker {
+
+    private static final Logger log = LoggerFactory.getLogger(TopUrlTracker.class);
+
+    private final LinkStore linkStore;
+    private final boolean enabled;
+    private final SpaceSaving<String> summary;
+    private final DeltaCounters<String> pending = new DeltaCounters<>();
+
+    public TopUrlTracker(LinkStore linkStore,
+                         @Value("${urlshortener.topk.enabled:true}") boolean enabled,
+                         @Value("${urlshortener.topk.capacity:1000}") int capacity) {
+        this.linkStore = linkStore;
+        this.enabled = enabled;
+        this.summary = new SpaceSaving<>(capacity);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void seed() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            List<LinkStore.CodeClicks> rows = linkStore.findTopActiveClickCounts(summary.capacity());
+            for (LinkStore.CodeClicks row : rows) {
+                summary.offer(row.shortCode(), row.clicks());
+            }
+            if (rows.size() >= summary.capacity()) {
+                // Links left out of the seed have at most the smallest seeded count
+                summary.raiseFloor(rows.stream().mapToLong(LinkStore.CodeClicks::clicks).min().orElse(0));
+            }
+            log.info("Top URL tracker seeded with {} codes", rows.size());
+        } catch (RuntimeException e) {
+            log.warn("Could not seed top URL tracker; ranking starts from live clicks only", e);
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void record(String shortCode) {
+        if (enabled) {
+            pending.add(shortCode, 1);
+        }
+    }
+
+    public void remove(String shortCode) {
+        if (enabled) {
+            drain();
+            summary.remove(shortCode);
+        }
+    }
+
+    /**
+     * Offer the clicks buffered since the last drain to the summary
+     */
+    @Scheduled(fixedDelayString = "${urlshortener.topk.drain-interval-ms:1000}")
+    public void drain() {
+        pending.drain(summary::offer);
+    }
+
+    /**
+     * Highest estimated counts first
+     */
+    public List<SpaceSaving.Entry<String>> top(int n) {
+        drain();
+        return summary.top(n);
+    }
+
+    /**
+     * Upper bound on the clicks of any code that is not tracked
+     */
+    public long maxUntrackedClicks() {
+        drain();
+        return summary.minCount();
+    }
+
+    public int getCapacity() {
+        return summary.capacity();
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("capacity", summary.capacity());
+        stats.put("tracked", summary.size());
+        stats.put("pendingCodes", pending.size());
+        stats.put("totalClicksObserved", summary.total());
+        stats.put("maxUntrackedClicks", summary.minCount());
+        return stats;
+    }
+}
@@ -0,0 +1,244 @@
+package com.example.urlshortener.service;
+
+import com.example.urlshortener.model.VisitorSketch;
+import com.example.urlshortener.config.Shards;
+import com.example.urlshortener.repository.VisitorSketchRepository;
+import com.example.urlshortener.util.HyperLogLog;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Date;
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * UniqueVisitors estimates distinct visitors (IP address + user agent) per
+ * short code with HyperLogLog sketches.
+ *
+ * Redirects update an in-memory sketch per code and day, held together per
+ * code so reads of one code never scan the others. A scheduled flush merges
+ * each pending sketch into that day's row of visitor_sketch and their union
+ * into the code's lifetime row, so any range of days can be answered by
+ * merging at most one row per day, and the all-time count by reading one
+ * row. Merging is idempotent, so a failed flush can simply be retried.
+ */
+@Component
+public class UniqueVisitors {
+
+    private static final Logger log = LoggerFactory.getLogger(UniqueVisitors.class);
+
+    /**
+     * visit_date of the row that holds a code's lifetime sketch
+     */
+    static final LocalDate LIFETIME = LocalDate.of(1970, 1, 1);
+
+    private static final String SELECT_SQL =
+            "SELECT sketch FROM visitor_sketch WHERE short_code = ? AND visit_date = ? FOR UPDATE";
+    private static final String UPSERT_SQL =
+            "INSERT INTO visitor_sketch (short_code, visit_date, sketch) VALUES (?, ?, ?) " +
+            "ON DUPLICATE KEY UPDATE sketch = VALUES(sketch)";
+    private static final int MAX_RANGE_DAYS = 366;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final Shards shards;
+    private final TransactionTemplate transactionTemplate;
+    private final VisitorSketchRepository repository;
+    private final boolean enabled;
+
+    private final ConcurrentHashMap<String, PendingSketches> pending = new ConcurrentHashMap<>();
+    private final AtomicLong flushedSketches = new AtomicLong();
+    private final AtomicLong failedFlushes = new AtomicLong();
+
+    public UniqueVisitors(JdbcTemplate jdbcTemplate, Shards shards,
+                          PlatformTransactionManager transactionManager,
+                          VisitorSketchRepository repository,
+                          @Value("${urlshortener.visitors.enabled:true}") boolean enabled) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.shards = shards;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.repository = repository;
+        this.enabled = enabled;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Count one visit by the given client
+     */
+    public void record(String shortCode, String ipAddress, String userAgent, LocalDate day) {
+        if (!enabled) {
+            return;
+        }
+        long hash = HyperLogLog.hash64(ipAddress + '|' + userAgent);
+        while (true) {
+            PendingSketches sketches = pending.computeIfAbsent(shortCode, k -> new PendingSketches());
+            synchronized (sketches) {
+                if (!sketches.retired) {
+                    sketches.byDay.computeIfAbsent(day, d -> new HyperLogLog()).offerHash(hash);
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Merge pending sketches into visitor_sketch
+     */
+    @Scheduled(fixedDelayString = "${urlshortener.visitors.flush-interval-ms:10000}")
+    public synchronized void flush() {
+        // A snapshot of the codes: requeued sketches wait for the next flush
+        for (String shortCode : new ArrayList<>(pending.keySet())) {
+            PendingSketches sketches = pending.remove(shortCode);
+            if (sketches == null) {
+                continue;
+            }
+            Map<LocalDate, HyperLogLog> byDay;
+            synchronized (sketches) {
+                sketches.retired = true;
+                byDay = sketches.byDay;
+            }
+            HyperLogLog lifetime = new HyperLogLog();
+            byDay.values().forEach(lifetime::merge);
+            try {
+                shards.run(shards.shardFor(shortCode), () -> transactionTemplate.executeWithoutResult(status -> {
+                    byDay.forEach((day, delta) -> mergeInto(shortCode, day, delta));
+                    mergeInto(shortCode, LIFETIME, lifetime);
+                }));
+                flushedSketches.addAndGet(byDay.size());
+            } catch (RuntimeException e) {
+                failedFlushes.incrementAndGet();
+                log.warn("Failed to flush visitor sketches for {}, will retry", shortCode, e);
+                requeue(shortCode, byDay);
+            }
+        }
+    }
+
+    private void mergeInto(String shortCode, LocalDate day, HyperLogLog delta) {
+        List<byte[]> existing = jdbcTemplate.query(SELECT_SQL, (rs, i) -> rs.getBytes(1), shortCode, Date.valueOf(day));
+        HyperLogLog merged = existing.isEmpty() ? delta.copy() : HyperLogLog.fromBytes(existing.get(0));
+        if (!existing.isEmpty()) {
+            merged.merge(delta);
+        }
+        jdbcTemplate.update(UPSERT_SQL, shortCode, Date.valueOf(day), merged.toBytes());
+    }
+
+    private void requeue(String shortCode, Map<LocalDate, HyperLogLog> byDay) {
+        while (true) {
+            PendingSketches sketches = pending.computeIfAbsent(shortCode, k -> new PendingSketches());
+            synchronized (sketches) {
+                if (!sketches.retired) {
+                    byDay.forEach((day, delta) -> sketches.byDay.computeIfAbsent(day, d -> new HyperLogLog()).merge(delta));
+                    return;
+                }
+            }
+        }
+    }
+
+    @PreDestroy
+    public void flushOnShutdown() {
+        flush();
+    }
+
+    /**
+     * Estimated distinct visitors since the link was created
+     */
+    public long getLifetimeUniqueVisitors(String shortCode) {
+        HyperLogLog total = new HyperLogLog();
+        repository.findSketches(shortCode, LIFETIME, LIFETIME)
+                .forEach(row -> total.merge(HyperLogLog.fromBytes(row.getSketch())));
+        mergePending(total, shortCode);
+        return total.estimate();
+    }
+
+    /**
+     * Distinct visitors per day and over the whole range (which is not the
+     * sum of the days, since a visitor may come back on several days)
+     */
+    public Map<String, Object> getUniqueVisitors(String shortCode, LocalDate from, LocalDate to) {
+        LocalDate end = to != null ? to : LocalDate.now();
+        LocalDate start = from != null ? from : end.minusDays(29);
+        if (start.isAfter(end) || !start.isAfter(LIFETIME)) {
+            throw new IllegalArgumentException("from must be a date before to");
+        }
+        if (ChronoUnit.DAYS.between(start, end) >= MAX_RANGE_DAYS) {
+            throw new IllegalArgumentException("range spans more than " + MAX_RANGE_DAYS + " days");
+        }
+
+        Map<LocalDate, HyperLogLog> byDay = new LinkedHashMap<>();
+        for (VisitorSketch row : repository.findSketches(shortCode, start, end)) {
+            byDay.put(row.getVisitDate(), HyperLogLog.fromBytes(row.getSketch()));
+        }
+        PendingSketches sketches = pending.get(shortCode);
+        if (sketches != null) {
+            synchronized (sketches) {
+                sketches.byDay.forEach((day, sketch) -> {
+                    if (!day.isBefore(start) && !day.isAfter(end)) {
+                        byDay.computeIfAbsent(day, d -> new HyperLogLog()).merge(sketch);
+                    }
+                });
+            }
+        }
+
+        HyperLogLog range = new HyperLogLog();
+        List<Map<String, Object>> days = new ArrayList<>();
+        for (LocalDate day = start; !day.isAfter(end); day = day.plusDays(1)) {
+            HyperLogLog sketch = byDay.get(day);
+            if (sketch != null) {
+                range.merge(sketch);
+                days.add(Map.of("date", day, "uniqueVisitors", sketch.estimate()));
+            }
+        }
+
+        Map<String, Object> result = new HashMap<>();
+        result.put("shortCode", shortCode);
+        result.put("from", start);
+        result.put("to", end);
+        result.put("uniqueVisitors", range.estimate());
+        result.put("relativeStandardError", range.standardError());
+        result.put("days", days);
+        return result;
+    }
+
+    private void mergePending(HyperLogLog into, String shortCode) {
+        PendingSketches sketches = pending.get(shortCode);
+        if (sketches != null) {
+            synchronized (sketches) {
+                sketches.byDay.values().forEach(into::merge);
+            }
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("pendingCodes", pending.size());
+        stats.put("flushedSketches", flushedSketches.get());
+        stats.put("failedFlushes", failedFlushes.get());
+        stats.put("relativeStandardError", new HyperLogLog().standardError());
+        return stats;
+    }
+
+    /**
+     * Unflushed sketches of one code by day; guarded by the instance's lock
+     */
+    private static class PendingSketches {
+        private final Map<LocalDate, HyperLogLog> byDay = new HashMap<>(4);
+        private boolean retired;
+    }
+}
@@ -0,0 +1,190 @@
+package com.example.urlshortener.service;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.slf4j.MDC;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * UrlMetrics records how long each stage of the redirect, shorten and
+ * analytics flows takes, and traces slow requests.
+ *
+ * Every stage has a Micrometer timer that is created once at startup, so
+ * recording is two System.nanoTime() calls and a lock-free update. The
+ * timers are published as urlshortener_{flow}_seconds{stage="..."} on
+ * /actuator/prometheus next to Spring's http.server.requests and HikariCP's
+ * connection acquire timers.
+ *
+ * A request that runs inside a Trace also collects its own stage timings;
+ * when it takes longer than urlshortener.metrics.slow-request-ms one log line
+ * with its trace id and stage breakdown is written.
+ */
+@Component
+public class UrlMetrics {
+
+    private static final Logger log = LoggerFactory.getLogger(UrlMetrics.class);
+
+    public static final String TRACE_ID_KEY = "traceId";
+
+    /**
+     * Timed stages, grouped by flow
+     */
+    public enum Stage {
+        REDIRECT_CACHE("redirect", "cache_lookup"),
+        REDIRECT_REJECTED("redirect", "rejected_lookup"),
+        REDIRECT_DATABASE("redirect", "db_lookup"),
+        REDIRECT_RECORD("redirect", "record_click"),
+        SHORTEN_DEDUP("shorten", "dedup_lookup"),
+        SHORTEN_GENERATE("shorten", "generate_code"),
+        SHORTEN_INSERT("shorten", "insert"),
+        ANALYTICS_MAPPING("analytics", "mapping_lookup"),
+        ANALYTICS_ACCESS_LOGS("analytics", "access_logs"),
+        ANALYTICS_ROLLUPS("analytics", "rollups"),
+        ANALYTICS_VISITORS("analytics", "unique_visitors"),
+        FLUSH_CLICKS("flush", "click_counts"),
+        FLUSH_ACCESS_LOGS("flush", "access_logs");
+
+        private final String flow;
+        private final String stage;
+
+        Stage(String flow, String stage) {
+            this.flow = flow;
+            this.stage = stage;
+        }
+    }
+
+    private static final ThreadLocal<Trace> CURRENT = new ThreadLocal<>();
+
+    private final MeterRegistry registry;
+    private final Timer[] timers = new Timer[Stage.values().length];
+    private final DistributionSummary collisionRetries;
+    private final long slowRequestNanos;
+
+    public UrlMetrics(MeterRegistry registry,
+                      @Value("${urlshortener.metrics.slow-request-ms:500}") long slowRequestMillis) {
+        this.registry = registry;
+        for (Stage stage : Stage.values()) {
+            timers[stage.ordinal()] = Timer.builder("urlshortener." + stage.flow)
+                    .description("Time spent in one stage of the " + stage.flow + " flow")
+                    .tag("stage", stage.stage)
+                    .register(registry);
+        }
+        this.collisionRetries = DistributionSummary.builder("urlshortener.shorten.collision.retries")
+                .description("Extra candidates tried before a free short code was found")
+                .register(registry);
+        this.slowRequestNanos = TimeUnit.MILLISECONDS.toNanos(slowRequestMillis);
+    }
+
+    /**
+     * Record a stage that started at startNanos (from System.nanoTime()) and ends now
+     */
+    public void record(Stage stage, long startNanos) {
+        long elapsed = System.nanoTime() - startNanos;
+        timers[stage.ordinal()].record(elapsed, TimeUnit.NANOSECONDS);
+        Trace trace = CURRENT.get();
+        if (trace != null) {
+            trace.stageNanos[stage.ordinal()] += elapsed;
+        }
+    }
+
+    /**
+     * Record how many candidates were rejected before a short code was accepted
+     */
+    public void recordCollisionRetries(int retries) {
+        collisionRetries.record(retries);
+    }
+
+    /**
+     * Publish a value of an existing component as a gauge
+     */
+    public <T> void gauge(String name, String description, T source, ToDoubleFunction<T> value) {
+        Gauge.builder(name, source, value).description(description).register(registry);
+    }
+
+    /**
+     * Start tracing the current request on this thread. The trace id is put
+     * into the logging MDC so every log line of the request carries it.
+     * A usable incoming id (e.g. from X-Request-Id) is kept, otherwise a new one is made.
+     */
+    public Trace beginTrace(String incomingTraceId) {
+        String traceId = isUsableTraceId(incomingTraceId)
+                ? incomingTraceId
+                : Long.toHexString(ThreadLocalRandom.current().nextLong() | Long.MIN_VALUE);
+        Trace trace = new Trace(traceId, System.nanoTime());
+        CURRENT.set(trace);
+        MDC.put(TRACE_ID_KEY, traceId);
+        return trace;
+    }
+
+    /**
+     * Finish the trace and log it if the request was slow
+     */
+    public void endTrace(Trace trace, String method, String path, int status) {
+        long elapsed = System.nanoTime() - trace.startNanos;
+        try {
+            if (elapsed >= slowRequestNanos) {
+                log.warn("Slow request {} {} -> {} took {} ms [trace {}] stages: {}",
+                        method, path, status, TimeUnit.NANOSECONDS.toMillis(elapsed),
+                        trace.traceId, trace.describeStages());
+            }
+        } finally {
+            CURRENT.remove();
+            MDC.remove(TRACE_ID_KEY);
+        }
+    }
+
+    private static boolean isUsableTraceId(String traceId) {
+        if (traceId == null || traceId.isEmpty() || traceId.length() > 64) {
+            return false;
+        }
+        for (int i = 0; i < traceId.length(); i++) {
+            char c = traceId.charAt(i);
+            if (!(Character.isLetterOrDigit(c) || c == '-' || c == '_' || c == '.')) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Stage timings of one request
+     */
+    public static final class Trace {
+        private final String traceId;
+        private final long startNanos;
+        private final long[] stageNanos = new long[Stage.values().length];
+
+        private Trace(String traceId, long startNanos) {
+            this.traceId = traceId;
+            this.startNanos = startNanos;
+        }
+
+        public String getTraceId() {
+            return traceId;
+        }
+
+        private String describeStages() {
+            StringBuilder sb = new StringBuilder();
+            for (Stage stage : Stage.values()) {
+                long nanos = stageNanos[stage.ordinal()];
+                if (nanos > 0) {
+                    if (sb.length() > 0) {
+                        sb.append(", ");
+                    }
+                    sb.append(stage.flow).append('.').append(stage.stage).append('=')
+                            .append(String.format("%.2f", nanos / 1_000_000.0)).append("ms");
+                }
+            }
+            return sb.length() == 0 ? "none" : sb.toString();
+        }
+    }
+}
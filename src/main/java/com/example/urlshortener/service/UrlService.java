@@ -1,30 +1,111 @@
 package com.example.urlshortener.service;
 
+import com.example.urlshortener.config.ReadYourWrites;
+import com.example.urlshortener.config.Shards;
+import com.example.urlshortener.model.AccessLogEntry;
+import com.example.urlshortener.model.LinkSummary;
 import com.example.urlshortener.model.UrlMapping;
 import com.example.urlshortener.model.UrlAccessLog;
-import com.example.urlshortener.repository.UrlRepository;
+import com.example.urlshortener.model.RedirectType;
+import com.example.urlshortener.model.RollupGranularity;
 import com.example.urlshortener.repository.UrlAccessLogRepository;
-import com.example.urlshortener.util.Base62Encoder;
 import com.example.urlshortener.util.URLHistoryStack;
+import com.example.urlshortener.util.UrlHash;
+import com.example.urlshortener.util.KeysetCursor;
+import com.example.urlshortener.util.SpaceSaving;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.security.MessageDigest;
-import java.security.NoSuchAlgorithmException;
+import java.util.stream.Stream;
 
 @Service
 public class UrlService {
 
-    private final UrlRepository repository;
+    public static final int DEFAULT_PAGE_SIZE = 100;
+    public static final int MAX_PAGE_SIZE = 1000;
+
+    /**
+     * Receives rows of a streamed listing one at a time
+     */
+    @FunctionalInterface
+    public interface RowWriter<T> {
+        void write(T row) throws IOException;
+    }
+
+    /**
+     * Validators of a link's analytics responses (a weak ETag and Last-Modified)
+     */
+    public record AnalyticsVersion(String eTag, long lastModifiedMillis) {
+    }
+
+    private final LinkStore linkStore;
     private final UrlAccessLogRepository accessLogRepository;
-    private static final URLHistoryStack historyStack = new URLHistoryStack();
+    private final RedirectCache redirectCache;
+    private final ClickCounter clickCounter;
+    private final AccessLogWriter accessLogWriter;
+    private final ShortCodeStrategy codeStrategy;
+    private final ShortCodeFilter codeFilter;
+    private final ClickRollups clickRollups;
+    private final TopUrlTracker topUrlTracker;
+    private final UniqueVisitors uniqueVisitors;
+    private final ExpiryService expiryService;
+    private final boolean reuseExisting;
+    private final TransactionTemplate readOnlyTransaction;
+    private final ClientHistories histories;
+    private final UrlMetrics metrics;
+    private final ReadYourWrites readYourWrites;
+    private final Shards shards;
+    private final RedirectPolicy redirectPolicy;
 
-    public UrlService(UrlRepository repository, UrlAccessLogRepository accessLogRepository) {
-        this.repository = repository;
+    public UrlService(LinkStore linkStore, UrlAccessLogRepository accessLogRepository,
+                      RedirectCache redirectCache, ClickCounter clickCounter,
+                      AccessLogWriter accessLogWriter, ShortCodeStrategy codeStrategy,
+                      ShortCodeFilter codeFilter, ClickRollups clickRollups,
+                      TopUrlTracker topUrlTracker, UniqueVisitors uniqueVisitors,
+                      ExpiryService expiryService, ClientHistories histories, UrlMetrics metrics,
+                      ReadYourWrites readYourWrites, Shards shards, RedirectPolicy redirectPolicy,
+                      PlatformTransactionManager transactionManager,
+                      @Value("${urlshortener.dedup.reuse-existing:false}") boolean reuseExisting) {
+        this.linkStore = linkStore;
         this.accessLogRepository = accessLogRepository;
+        this.redirectCache = redirectCache;
+        this.clickCounter = clickCounter;
+        this.accessLogWriter = accessLogWriter;
+        this.codeStrategy = codeStrategy;
+        this.codeFilter = codeFilter;
+        this.clickRollups = clickRollups;
+        this.topUrlTracker = topUrlTracker;
+        this.uniqueVisitors = uniqueVisitors;
+        this.expiryService = expiryService;
+        this.histories = histories;
+        this.metrics = metrics;
+        this.readYourWrites = readYourWrites;
+        this.shards = shards;
+        this.redirectPolicy = redirectPolicy;
+        this.reuseExisting = reuseExisting;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+    }
+
+    /**
+     * Whether identical URLs reuse their existing link unless a request says otherwise
+     */
+    public boolean isReuseExistingByDefault() {
+        return reuseExisting;
     }
 
     /**
@@ -38,84 +119,144 @@ public class UrlService {
      * Shorten a URL with expiration date
      */
     public String shortenUrlWithExpiration(String longUrl, LocalDateTime expiresAt) {
-        // Use SHA-256, truncate to first 6 bytes (48 bits) and encode to Base62
-        String shortCode = null;
-        try {
-            MessageDigest md = MessageDigest.getInstance("SHA-256");
-            // Try a few attempts to avoid collisions by appending attempt counter
-            for (int attempt = 0; attempt < 8; attempt++) {
-                byte[] digest = md.digest((longUrl + (attempt == 0 ? "" : ":" + attempt)).getBytes());
-                long truncated = 0L;
-                // take first 6 bytes -> 48 bits
-                for (int i = 0; i < 6; i++) {
-                    truncated = (truncated << 8) | (digest[i] & 0xFFL);
-                }
-                // ensure positive
-                truncated = truncated & 0xFFFFFFFFFFFFL;
-
-                String candidate = Base62Encoder.encode(truncated);
-                var existing = repository.findByShortCode(candidate);
-                if (existing.isEmpty()) {
-                    shortCode = candidate;
-                    break;
+        return createMapping(longUrl, expiresAt, reuseExisting).getShortCode();
+    }
+
+    /**
+     * Create a mapping for a URL. In reuse-existing mode an identical URL that
+     * already has an active reuse-mode link returns that link instead of a new one.
+     */
+    public UrlMapping createMapping(String longUrl, LocalDateTime expiresAt, boolean reuse) {
+        return createMapping(longUrl, expiresAt, reuse, null);
+    }
+
+    /**
+     * Create a mapping and record it in the given client's history as well as the global one
+     */
+    public UrlMapping createMapping(String longUrl, LocalDateTime expiresAt, boolean reuse, String clientKey) {
+        return createMapping(longUrl, expiresAt, reuse, clientKey, redirectPolicy.getDefaultType());
+    }
+
+    /**
+     * Create a mapping with the given redirect type. A reused link keeps the
+     * redirect type it was created with.
+     */
+    public UrlMapping createMapping(String longUrl, LocalDateTime expiresAt, boolean reuse, String clientKey,
+                                    RedirectType redirectType) {
+        String urlHash = null;
+        long start = System.nanoTime();
+        if (reuse) {
+            urlHash = UrlHash.of(longUrl);
+            String hash = urlHash;
+            var existing = linkStore.findByUrlHash(hash).orElse(null);
+            metrics.record(UrlMetrics.Stage.SHORTEN_DEDUP, start);
+            if (existing != null) {
+                if (!existing.isExpired()) {
+                    return existing;
                 }
+                // Release the hash of the expired link so a new one can claim it
+                linkStore.clearUrlHash(existing);
             }
-        } catch (NoSuchAlgorithmException e) {
-            // fallback to original hashCode if SHA-256 unavailable
-            shortCode = Base62Encoder.encode(longUrl.hashCode());
-        }
-
-        if (shortCode == null) {
-            // last resort: use hashCode
-            shortCode = Base62Encoder.encode(longUrl.hashCode());
         }
 
         UrlMapping mapping = new UrlMapping();
-        mapping.setShortCode(shortCode);
+        if (codeStrategy instanceof ShortCodeGenerator generator) {
+            start = System.nanoTime();
+            mapping.setShortCode(generator.generate(longUrl));
+            metrics.record(UrlMetrics.Stage.SHORTEN_GENERATE, start);
+        }
         mapping.setOriginalUrl(longUrl);
+        mapping.setUrlHash(urlHash);
         mapping.setClickCount(0);
         mapping.setCreatedAt(LocalDateTime.now());
         mapping.setExpiresAt(expiresAt);
+        mapping.setRedirectType(redirectType);
 
-        repository.save(mapping);
+        start = System.nanoTime();
+        try {
+            linkStore.insert(mapping, codeStrategy);
+            metrics.record(UrlMetrics.Stage.SHORTEN_INSERT, start);
+        } catch (DataIntegrityViolationException e) {
+            // Lost a race with another request for the same URL: return its link
+            if (urlHash == null) {
+                throw e;
+            }
+            return linkStore.findByUrlHash(urlHash)
+                    .filter(winner -> !winner.isExpired())
+                    .orElseThrow(() -> e);
+        }
+        String shortCode = mapping.getShortCode();
+        readYourWrites.recordWrite(shortCode);
+        codeFilter.add(shortCode);
+        redirectCache.invalidate(shortCode);
+        expiryService.schedule(shortCode, mapping.getExpiresAt());
         
         // Add to history stack
-        historyStack.pushHistory(longUrl, shortCode);
+        histories.push(clientKey, longUrl, shortCode);
         
-        return shortCode;
+        return mapping;
     }
 
     /**
-     * Get original URL and check expiration
+     * Get original URL and check expiration (served from the redirect cache when possible)
      */
     public UrlMapping getOriginalUrl(String code) {
-        var mapping = repository.findByShortCode(code).orElse(null);
+        long start = System.nanoTime();
+        UrlMapping cached = redirectCache.get(code);
+        if (cached != null) {
+            metrics.record(UrlMetrics.Stage.REDIRECT_CACHE, start);
+            return cached.isExpired() ? null : cached;
+        }
+        if (redirectCache.isKnownMissing(code) || !codeFilter.mightContain(code)) {
+            metrics.record(UrlMetrics.Stage.REDIRECT_REJECTED, start);
+            return null;
+        }
+
+        var mapping = linkStore.findByShortCode(code).orElse(null);
+        metrics.record(UrlMetrics.Stage.REDIRECT_DATABASE, start);
         
-        if (mapping != null && mapping.isExpired()) {
+        if (mapping == null || mapping.isExpired()) {
+            redirectCache.putMissing(code);
             return null; // Return null for expired URLs
         }
         
+        redirectCache.put(mapping);
         return mapping;
     }
 
     /**
-     * Increment click count and log access
+     * Increment click count, rollups and log access.
+     * All are only recorded in memory; ClickCounter, ClickRollups and
+     * AccessLogWriter write them to the database in batches.
      */
     public void incrementClick(UrlMapping mapping, String userAgent, String ipAddress, String referer) {
-        mapping.setClickCount(mapping.getClickCount() + 1);
-        mapping.setLastAccessedAt(LocalDateTime.now());
-        repository.save(mapping);
+        long start = System.nanoTime();
+        LocalDateTime now = LocalDateTime.now();
+        clickCounter.record(mapping.getShortCode(), now);
+        clickRollups.record(mapping.getShortCode(), referer, now);
+        topUrlTracker.record(mapping.getShortCode());
+        uniqueVisitors.record(mapping.getShortCode(), ipAddress, userAgent, now.toLocalDate());
         
         // Log access details for analytics
         UrlAccessLog accessLog = new UrlAccessLog(mapping, userAgent, ipAddress, referer);
-        accessLogRepository.save(accessLog);
+        accessLogWriter.submit(accessLog);
+        metrics.record(UrlMetrics.Stage.REDIRECT_RECORD, start);
     }
 
     /**
      * Get analytics for a specific short URL
      */
     public Map<String, Object> getUrlAnalytics(String shortCode) {
-        var mapping = repository.findByShortCode(shortCode).orElse(null);
+        return shards.onShardOf(shortCode, () -> urlAnalytics(shortCode));
+    }
+
+    private Map<String, Object> urlAnalytics(String shortCode) {
+        long start = System.nanoTime();
+        if (!codeFilter.mightContain(shortCode)) {
+            return null;
+        }
+        var mapping = linkStore.findByShortCode(shortCode).orElse(null);
+        metrics.record(UrlMetrics.Stage.ANALYTICS_MAPPING, start);
         
         if (mapping == null) {
             return null;
@@ -124,46 +265,366 @@ public class UrlService {
         Map<String, Object> analytics = new HashMap<>();
         analytics.put("shortCode", shortCode);
         analytics.put("originalUrl", mapping.getOriginalUrl());
-        analytics.put("totalClicks", mapping.getClickCount());
+        // Include clicks that are still waiting for the next flush
+        LocalDateTime lastAccessedAt = mapping.getLastAccessedAt();
+        LocalDateTime pendingAccess = clickCounter.getPendingLastAccessedAt(shortCode);
+        if (pendingAccess != null && (lastAccessedAt == null || pendingAccess.isAfter(lastAccessedAt))) {
+            lastAccessedAt = pendingAccess;
+        }
+        analytics.put("totalClicks", mapping.getClickCount() + clickCounter.getPendingClicks(shortCode));
         analytics.put("createdAt", mapping.getCreatedAt());
-        analytics.put("lastAccessedAt", mapping.getLastAccessedAt());
+        analytics.put("lastAccessedAt", lastAccessedAt);
         analytics.put("expiresAt", mapping.getExpiresAt());
         analytics.put("isExpired", mapping.isExpired());
         
-        // Get detailed access logs
-        List<UrlAccessLog> accessLogs = accessLogRepository.findAccessLogsByUrl(mapping);
-        analytics.put("accessLogs", accessLogs);
-        analytics.put("totalAccessRecords", accessLogs.size());
+        // Only the most recent page of access logs; older ones via /analytics/{code}/logs
+        start = System.nanoTime();
+        Map<String, Object> logsPage = accessLogsPage(mapping, null, DEFAULT_PAGE_SIZE);
+        analytics.put("accessLogs", logsPage.get("logs"));
+        analytics.put("accessLogsNextCursor", logsPage.get("nextCursor"));
+        metrics.record(UrlMetrics.Stage.ANALYTICS_ACCESS_LOGS, start);
+        // Counts come from the daily/hourly rollups instead of counting log rows
+        start = System.nanoTime();
+        analytics.put("totalAccessRecords", clickRollups.getTotalRolledUpClicks(shortCode));
+        analytics.put("clicksLast24Hours", clickRollups.getClicksLast24Hours(shortCode));
+        metrics.record(UrlMetrics.Stage.ANALYTICS_ROLLUPS, start);
+        if (uniqueVisitors.isEnabled()) {
+            start = System.nanoTime();
+            analytics.put("uniqueVisitors", uniqueVisitors.getLifetimeUniqueVisitors(shortCode));
+            metrics.record(UrlMetrics.Stage.ANALYTICS_VISITORS, start);
+        }
         
         return analytics;
     }
 
+    /**
+     * Validators of the per-link analytics responses, or null for unknown
+     * codes. They change with every click (flushed or still pending), when
+     * the link expires, and at the start of every hour, since the rolling
+     * 24-hour counts and default time ranges move with the clock.
+     */
+    public AnalyticsVersion getAnalyticsVersion(String shortCode) {
+        if (!codeFilter.mightContain(shortCode)) {
+            return null;
+        }
+        UrlMapping mapping = linkStore.findByShortCode(shortCode).orElse(null);
+        if (mapping == null) {
+            return null;
+        }
+        LocalDateTime lastChange = mapping.getLastAccessedAt() != null ? mapping.getLastAccessedAt() : mapping.getCreatedAt();
+        LocalDateTime pendingAccess = clickCounter.getPendingLastAccessedAt(shortCode);
+        if (pendingAccess != null && pendingAccess.isAfter(lastChange)) {
+            lastChange = pendingAccess;
+        }
+        LocalDateTime hour = LocalDateTime.now().truncatedTo(ChronoUnit.HOURS);
+        if (hour.isAfter(lastChange)) {
+            lastChange = hour;
+        }
+        long lastModified = lastChange.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        long clicks = mapping.getClickCount() + clickCounter.getPendingClicks(shortCode);
+        String eTag = "W/\"" + Long.toString(clicks, 36) + "-" + Long.toString(lastModified, 36)
+                + (mapping.isExpired() ? "-x" : "") + "\"";
+        return new AnalyticsVersion(eTag, lastModified);
+    }
+
+    /**
+     * Get clicks over time for a short URL at the given granularity
+     */
+    public Map<String, Object> getClicksOverTime(String shortCode, RollupGranularity granularity,
+                                                 LocalDateTime from, LocalDateTime to, int topReferers) {
+        if (!codeFilter.mightContain(shortCode) || linkStore.findByShortCode(shortCode).isEmpty()) {
+            return null;
+        }
+        return shards.onShardOf(shortCode,
+                () -> clickRollups.getClicksOverTime(shortCode, granularity, from, to, topReferers));
+    }
+
+    /**
+     * Get estimated unique visitors per day and over a range of days for a short URL
+     */
+    public Map<String, Object> getUniqueVisitors(String shortCode, LocalDate from, LocalDate to) {
+        if (!codeFilter.mightContain(shortCode) || linkStore.findByShortCode(shortCode).isEmpty()) {
+            return null;
+        }
+        return shards.onShardOf(shortCode, () -> uniqueVisitors.getUniqueVisitors(shortCode, from, to));
+    }
+
+    /**
+     * Get unique visitor sketch statistics
+     */
+    public Map<String, Object> getVisitorStats() {
+        return uniqueVisitors.getStats();
+    }
+
+    /**
+     * Start the rollup backfill over access logs recorded before the given time
+     */
+    public boolean startRollupBackfill(LocalDateTime before) {
+        return clickRollups.startBackfill(before);
+    }
+
+    /**
+     * Get click rollup statistics
+     */
+    public Map<String, Object> getRollupStats() {
+        return clickRollups.getStats();
+    }
+
+    /**
+     * Get one page of access logs for a short URL, newest first
+     */
+    public Map<String, Object> getAccessLogsPage(String shortCode, String cursor, int limit) {
+        var mapping = codeFilter.mightContain(shortCode) ? linkStore.findByShortCode(shortCode).orElse(null) : null;
+        return mapping == null ? null : shards.onShardOf(shortCode, () -> accessLogsPage(mapping, cursor, limit));
+    }
+
+    private Map<String, Object> accessLogsPage(UrlMapping mapping, String cursor, int limit) {
+        Limit fetch = Limit.of(clampPageSize(limit) + 1);
+        List<AccessLogEntry> rows;
+        if (cursor == null || cursor.isEmpty()) {
+            rows = accessLogRepository.findAccessLogsPage(mapping, fetch);
+        } else {
+            KeysetCursor after = KeysetCursor.decode(cursor);
+            rows = accessLogRepository.findAccessLogsPageAfter(mapping, after.timestamp(), after.id(), fetch);
+        }
+
+        boolean hasMore = rows.size() > clampPageSize(limit);
+        List<AccessLogEntry> page = hasMore ? rows.subList(0, rows.size() - 1) : rows;
+
+        Map<String, Object> result = new HashMap<>();
+        result.put("count", page.size());
+        result.put("logs", page);
+        result.put("nextCursor", hasMore
+                ? new KeysetCursor(page.get(page.size() - 1).accessedAt(), page.get(page.size() - 1).id()).encode()
+                : null);
+        return result;
+    }
+
+    /**
+     * Stream every access log of a short URL, newest first, with constant memory.
+     * Returns false if the short code does not exist.
+     */
+    public boolean streamAccessLogs(String shortCode, RowWriter<AccessLogEntry> writer) {
+        var mapping = codeFilter.mightContain(shortCode) ? linkStore.findByShortCode(shortCode).orElse(null) : null;
+        if (mapping == null) {
+            return false;
+        }
+        shards.run(shards.shardFor(shortCode), () -> readOnlyTransaction.executeWithoutResult(status -> {
+            try (Stream<AccessLogEntry> rows = accessLogRepository.streamAccessLogsByUrl(mapping)) {
+                rows.forEach(row -> write(writer, row));
+            }
+        }));
+        return true;
+    }
+
     /**
      * Get top 10 most clicked URLs
      */
-    public List<UrlMapping> getTopUrls() {
-        return repository.findTop10ActiveUrls();
+    public List<LinkSummary> getTopUrls() {
+        return linkStore.findTopActive(10);
+    }
+
+    /**
+     * Get the n most clicked URLs by sorting the stored links on their click count
+     */
+    public List<LinkSummary> getTopUrlsExact(int n) {
+        return linkStore.findTopActive(clampPageSize(n));
+    }
+
+    /**
+     * Whether top URLs can be answered from the in-memory tracker
+     */
+    public boolean isApproximateTopUrlsAvailable() {
+        return topUrlTracker.isEnabled();
+    }
+
+    /**
+     * Get the n most clicked URLs from the in-memory tracker.
+     *
+     * Each entry reports its estimated clickCount, the most that estimate can
+     * be too high (maxError), and whether it is guaranteed to belong to the
+     * true top n. Expired and deleted links are dropped from the tracker.
+     */
+    public Map<String, Object> getTopUrlsApprox(int n) {
+        n = Math.max(1, Math.min(n, topUrlTracker.getCapacity()));
+        List<SpaceSaving.Entry<String>> candidates = topUrlTracker.top(Math.min(topUrlTracker.getCapacity(), 2 * n + 10));
+        Map<String, UrlMapping> mappings = resolveMappings(candidates);
+
+        List<SpaceSaving.Entry<String>> live = new ArrayList<>(n + 1);
+        for (SpaceSaving.Entry<String> entry : candidates) {
+            UrlMapping mapping = mappings.get(entry.key());
+            if (mapping == null || mapping.isExpired()) {
+                topUrlTracker.remove(entry.key());
+            } else if (live.size() <= n) {
+                live.add(entry);
+            }
+        }
+
+        // An entry is certainly in the top n if its lower bound beats every
+        // estimate that did not make the cut, including untracked codes.
+        long threshold = topUrlTracker.maxUntrackedClicks();
+        if (live.size() > n) {
+            threshold = Math.max(threshold, live.remove(n).count());
+        }
+        List<Map<String, Object>> urls = new ArrayList<>(live.size());
+        for (SpaceSaving.Entry<String> entry : live) {
+            UrlMapping mapping = mappings.get(entry.key());
+            Map<String, Object> view = new HashMap<>();
+            view.put("shortCode", mapping.getShortCode());
+            view.put("originalUrl", mapping.getOriginalUrl());
+            view.put("createdAt", mapping.getCreatedAt());
+            view.put("expiresAt", mapping.getExpiresAt());
+            view.put("clickCount", entry.count());
+            view.put("maxError", entry.error());
+            view.put("guaranteed", entry.guaranteedCount() >= threshold);
+            urls.add(view);
+        }
+
+        Map<String, Object> result = new HashMap<>();
+        result.put("urls", urls);
+        result.put("maxUntrackedClicks", topUrlTracker.maxUntrackedClicks());
+        return result;
+    }
+
+    private Map<String, UrlMapping> resolveMappings(List<SpaceSaving.Entry<String>> entries) {
+        Map<String, UrlMapping> mappings = new HashMap<>();
+        List<String> missing = new ArrayList<>();
+        for (SpaceSaving.Entry<String> entry : entries) {
+            UrlMapping cached = redirectCache.get(entry.key());
+            if (cached != null) {
+                mappings.put(entry.key(), cached);
+            } else {
+                missing.add(entry.key());
+            }
+        }
+        linkStore.findByShortCodeIn(missing).forEach(m -> mappings.put(m.getShortCode(), m));
+        return mappings;
+    }
+
+    /**
+     * Get top URL tracker statistics
+     */
+    public Map<String, Object> getTopUrlStats() {
+        return topUrlTracker.getStats();
     }
 
     /**
      * Get all active (non-expired) URLs
      */
-    public List<UrlMapping> getAllActiveUrls() {
-        return repository.findAllActiveUrls();
+    public List<LinkSummary> getAllActiveUrls() {
+        return linkStore.findAllActive();
     }
 
     /**
-     * Clean up expired URLs
+     * Get one page of active URLs, newest first
      */
-    public void deleteExpiredUrls() {
-        List<UrlMapping> expiredUrls = repository.findExpiredUrls();
-        repository.deleteAll(expiredUrls);
+    public Map<String, Object> getActiveUrlsPage(String cursor, int limit) {
+        KeysetCursor after = cursor == null || cursor.isEmpty() ? null : KeysetCursor.decode(cursor);
+        List<LinkSummary> rows = linkStore.findActivePage(after, clampPageSize(limit) + 1);
+
+        boolean hasMore = rows.size() > clampPageSize(limit);
+        List<LinkSummary> page = hasMore ? rows.subList(0, rows.size() - 1) : rows;
+
+        Map<String, Object> result = new HashMap<>();
+        result.put("count", page.size());
+        result.put("urls", page);
+        result.put("nextCursor", hasMore
+                ? new KeysetCursor(page.get(page.size() - 1).createdAt(), page.get(page.size() - 1).id()).encode()
+                : null);
+        return result;
     }
 
     /**
-     * Get URL history from stack
+     * Stream every active URL, newest first, with constant memory.
+     * With several shards the rows come shard by shard, each newest first.
      */
-    public Map<String, Object> getUrlHistory() {
+    public void streamActiveUrls(RowWriter<LinkSummary> writer) {
+        linkStore.forEachActive(row -> write(writer, row));
+    }
+
+    private static <T> void write(RowWriter<T> writer, T row) {
+        try {
+            writer.write(row);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static int clampPageSize(int limit) {
+        return Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+    }
+
+    /**
+     * Clean up expired URLs now instead of waiting for the scheduled purge;
+     * returns the number of links deleted
+     */
+    public long deleteExpiredUrls() {
+        return expiryService.purgeExpired();
+    }
+
+    /**
+     * Get expiry and purge statistics
+     */
+    public Map<String, Object> getExpiryStats() {
+        return expiryService.getStats();
+    }
+
+    /**
+     * Get shard layout statistics with the number of links on each shard
+     */
+    public Map<String, Object> getShardStats() {
+        Map<String, Object> stats = shards.getStats();
+        stats.put("links", shards.scatter(shard -> linkStore.count()));
+        return stats;
+    }
+
+    /**
+     * Get link storage statistics
+     */
+    public Map<String, Object> getStorageStats() {
+        return linkStore.getStats();
+    }
+
+    /**
+     * Compact link storage now; returns the number of bytes reclaimed
+     */
+    public long compactStorage() {
+        return linkStore.compact();
+    }
+
+    /**
+     * Get redirect cache statistics
+     */
+    public Map<String, Object> getCacheStats() {
+        return redirectCache.getStats();
+    }
+
+    /**
+     * Get short code filter statistics
+     */
+    public Map<String, Object> getFilterStats() {
+        return codeFilter.getStats();
+    }
+
+    /**
+     * Get click counter flush statistics
+     */
+    public Map<String, Object> getClickStats() {
+        return clickCounter.getStats();
+    }
+
+    /**
+     * Get access log writer statistics
+     */
+    public Map<String, Object> getAccessLogStats() {
+        return accessLogWriter.getStats();
+    }
+
+    /**
+     * Get URL history from stack (the client's own history when a client key is given)
+     */
+    public Map<String, Object> getUrlHistory(String clientKey) {
+        URLHistoryStack historyStack = histories.get(clientKey);
         Map<String, Object> history = new HashMap<>();
         history.put("historySize", historyStack.getHistorySize());
         history.put("maxSize", historyStack.getMaxSize());
@@ -174,7 +635,14 @@ public class UrlService {
     /**
      * Get the most recent URL from history (peek)
      */
-    public URLHistoryStack.UrlHistoryEntry getMostRecentHistory() {
-        return historyStack.peekHistory();
+    public URLHistoryStack.UrlHistoryEntry getMostRecentHistory(String clientKey) {
+        return histories.get(clientKey).peekHistory();
+    }
+
+    /**
+     * Get history statistics
+     */
+    public Map<String, Object> getHistoryStats() {
+        return histories.getStats();
     }
 }
@@ -0,0 +1,157 @@
+package com.example.urlshortener.storage;
+
+import com.example.urlshortener.model.RedirectType;
+import com.example.urlshortener.model.UrlMapping;
+import com.example.urlshortener.util.OffHeapIndex;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Predicate;
+import java.util.zip.CRC32;
+
+/**
+ * Binary snapshot of the hottest links, hottest first, for warming the
+ * redirect cache after a restart.
+ *
+ * Layout: magic, version, snapshot time (epoch millis), entry count, then per
+ * entry id, createdAt, expiresAt (microseconds as in LinkRecord), click count,
+ * code (short length + UTF-8), url (int length + UTF-8) and redirect type
+ * (ordinal), and finally a CRC32 of everything before it. The file is
+ * replaced atomically, and read through a read-only mapping in one
+ * sequential pass.
+ */
+public final class HotSetFile {
+
+    private static final int MAGIC = 0x484F5453;
+    private static final int VERSION = 2;
+    private static final int HEADER_BYTES = 20;
+    private static final RedirectType[] REDIRECT_TYPES = RedirectType.values();
+    private static final int ENTRY_FIXED_BYTES = 8 + 8 + 8 + 4 + 2 + 4 + 1;
+
+    /**
+     * Links of a snapshot in rank order, and how many were skipped while loading
+     */
+    public record Snapshot(long writtenAtMillis, List<UrlMapping> mappings, int skipped, long bytes) {
+    }
+
+    private HotSetFile() {
+    }
+
+    /**
+     * Write the links (hottest first) to the file; returns the bytes written
+     */
+    public static long write(Path file, List<UrlMapping> mappings) throws IOException {
+        List<byte[]> codes = new ArrayList<>(mappings.size());
+        List<byte[]> urls = new ArrayList<>(mappings.size());
+        long size = HEADER_BYTES + 4;
+        for (UrlMapping mapping : mappings) {
+            byte[] code = mapping.getShortCode().getBytes(StandardCharsets.UTF_8);
+            byte[] url = mapping.getOriginalUrl().getBytes(StandardCharsets.UTF_8);
+            codes.add(code);
+            urls.add(url);
+            size += ENTRY_FIXED_BYTES + code.length + url.length;
+        }
+        if (size > Integer.MAX_VALUE) {
+            throw new IOException("hot set snapshot too large: " + size + " bytes");
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate((int) size);
+        buffer.putInt(MAGIC).putInt(VERSION).putLong(System.currentTimeMillis()).putInt(mappings.size());
+        for (int i = 0; i < mappings.size(); i++) {
+            UrlMapping mapping = mappings.get(i);
+            buffer.putLong(mapping.getId())
+                    .putLong(LinkRecord.micros(mapping.getCreatedAt()))
+                    .putLong(LinkRecord.micros(mapping.getExpiresAt()))
+                    .putInt(mapping.getClickCount())
+                    .putShort((short) codes.get(i).length).put(codes.get(i))
+                    .putInt(urls.get(i).length).put(urls.get(i))
+                    .put((byte) mapping.getRedirectType().ordinal());
+        }
+        CRC32 crc = new CRC32();
+        crc.update(buffer.array(), 0, buffer.position());
+        buffer.putInt((int) crc.getValue());
+        buffer.flip();
+
+        Files.createDirectories(file.toAbsolutePath().getParent());
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            OffHeapIndex.writeFully(channel, buffer);
+            channel.force(true);
+        }
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return size;
+    }
+
+    /**
+     * Read a snapshot, leaving out links the filter rejects (e.g. expired ones);
+     * null if there is no file. Throws IOException if the file is corrupt.
+     */
+    public static Snapshot read(Path file, Predicate<UrlMapping> keep) throws IOException {
+        if (!Files.exists(file)) {
+            return null;
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < HEADER_BYTES + 4 || size > Integer.MAX_VALUE) {
+                throw new IOException("hot set snapshot has an invalid size: " + size);
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+
+            CRC32 crc = new CRC32();
+            crc.update(buffer.slice(0, (int) size - 4));
+            if ((int) crc.getValue() != buffer.getInt((int) size - 4)) {
+                throw new IOException("hot set snapshot checksum mismatch");
+            }
+            if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+                throw new IOException("not a hot set snapshot (version " + VERSION + ")");
+            }
+            long writtenAt = buffer.getLong();
+            int count = buffer.getInt();
+
+            List<UrlMapping> mappings = new ArrayList<>(count);
+            int skipped = 0;
+            for (int i = 0; i < count; i++) {
+                UrlMapping mapping = new UrlMapping();
+                mapping.setId(buffer.getLong());
+                mapping.setCreatedAt(LinkRecord.time(buffer.getLong()));
+                mapping.setExpiresAt(LinkRecord.time(buffer.getLong()));
+                mapping.setClickCount(buffer.getInt());
+                mapping.setShortCode(string(buffer, buffer.getShort()));
+                mapping.setOriginalUrl(string(buffer, buffer.getInt()));
+                mapping.setRedirectType(redirectType(buffer.get()));
+                if (keep.test(mapping)) {
+                    mappings.add(mapping);
+                } else {
+                    skipped++;
+                }
+            }
+            return new Snapshot(writtenAt, mappings, skipped, size);
+        }
+    }
+
+    private static RedirectType redirectType(byte ordinal) throws IOException {
+        if (ordinal < 0 || ordinal >= REDIRECT_TYPES.length) {
+            throw new IOException("hot set snapshot has an unknown redirect type " + ordinal);
+        }
+        return REDIRECT_TYPES[ordinal];
+    }
+
+    private static String string(ByteBuffer buffer, int length) throws IOException {
+        if (length < 0 || length > buffer.remaining()) {
+            throw new IOException("hot set snapshot entry is truncated");
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,931 @@
+package com.example.urlshortener.storage;
+
+import com.example.urlshortener.model.UrlMapping;
+import com.example.urlshortener.util.HyperLogLog;
+import com.example.urlshortener.util.OffHeapIndex;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.LongConsumer;
+import java.util.function.LongFunction;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/**
+ * LinkLog stores links in an append-only log of memory-mapped segments.
+ *
+ * Every change appends a record: PUT for a new or changed link, DELETE for a
+ * removed one, CLICKS for a new click total. Two OffHeapIndex tables map
+ * short codes and url hashes to link ids, and a LinkTable holds each id's
+ * current record offset, expiry and clicks.
+ *
+ * Recovery loads the last index checkpoint and replays only the records
+ * written after it. Without a usable checkpoint the whole log is replayed in
+ * segment order, the later record for an id winning. A torn record at the
+ * end of the newest segment (a crash in the middle of a write) is detected
+ * by its CRC and cut off.
+ *
+ * Compaction copies the live PUT records of all sealed segments into new
+ * segments, folding in the current clicks, and deletes the old ones; DELETE
+ * and CLICKS records and superseded PUTs are dropped. Old segments are deleted
+ * oldest first, so a crash part-way never leaves a PUT without the DELETE
+ * that followed it. If the newest id belongs to a deleted link, its DELETE is
+ * copied too, so a full replay never hands that id out again.
+ *
+ * Reads use an optimistic StampedLock read and fall back to a read lock if a
+ * write raced with them; writes, checkpoints and compaction swaps take the lock.
+ */
+public final class LinkLog implements Closeable {
+
+    private static final Logger log = LoggerFactory.getLogger(LinkLog.class);
+
+    private static final String CHECKPOINT = "index.ckpt";
+    private static final int CHECKPOINT_MAGIC = 0x4C4E4B43;
+    private static final int CHECKPOINT_VERSION = 1;
+    // Room for compaction output between two original segments in replay order
+    private static final int ORDER_SHIFT = 10;
+    private static final int SWAP_BATCH = 4096;
+    private static final int SCAN_BATCH = 4096;
+
+    private final Path dir;
+    private final int segmentBytes;
+    private final StampedLock lock = new StampedLock();
+    private final Object maintenance = new Object();
+    private final Map<Integer, LogSegment> segments = new ConcurrentHashMap<>();
+
+    private OffHeapIndex codeIndex;
+    private OffHeapIndex hashIndex;
+    private LinkTable table;
+    private LogSegment active;
+    private int nextSegmentId = 1;
+    private volatile long nextId = 1;
+    private volatile long liveBytes;
+    private volatile long totalBytes;
+    private volatile long writesSinceCheckpoint;
+
+    private boolean recoveredFromCheckpoint;
+    private long replayedRecords;
+    private int tornTails;
+    private long recoveryMillis;
+    private volatile long checkpoints;
+    private volatile long lastCheckpointMillis;
+    private volatile long compactions;
+    private volatile long reclaimedBytes;
+    private volatile long lastCompactionMillis;
+
+    private LinkLog(Path dir, int segmentBytes, int expectedLinks) {
+        this.dir = dir;
+        this.segmentBytes = segmentBytes;
+        reset(expectedLinks);
+    }
+
+    /**
+     * Open (or create) the log in the directory and recover its state
+     */
+    public static LinkLog open(Path dir, int segmentBytes, int expectedLinks) throws IOException {
+        Files.createDirectories(dir);
+        LinkLog linkLog = new LinkLog(dir, segmentBytes, expectedLinks);
+        linkLog.recover(expectedLinks);
+        return linkLog;
+    }
+
+    // --- Recovery ---
+
+    private void recover(int expectedLinks) throws IOException {
+        long start = System.currentTimeMillis();
+        List<LogSegment> found = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir, "segment-*.log")) {
+            for (Path file : files) {
+                found.add(LogSegment.open(file));
+            }
+        }
+        found.sort(Comparator.comparingLong(segment -> segment.order));
+        for (LogSegment segment : found) {
+            segments.put(segment.id, segment);
+            nextSegmentId = Math.max(nextSegmentId, segment.id + 1);
+        }
+
+        int[] resume = loadCheckpoint(found);
+        if (resume == null) {
+            reset(expectedLinks);
+        }
+        recoveredFromCheckpoint = resume != null;
+        boolean replaying = resume == null;
+        for (int i = 0; i < found.size(); i++) {
+            LogSegment segment = found.get(i);
+            boolean last = i == found.size() - 1;
+            if (!replaying && segment.id == resume[0]) {
+                replay(segment, resume[1], last);
+                replaying = true;
+            } else if (replaying) {
+                replay(segment, LogSegment.HEADER_BYTES, last);
+            }
+        }
+        long bytes = 0;
+        for (LogSegment segment : found) {
+            bytes += segment.dataBytes();
+        }
+        totalBytes = bytes;
+        active = found.isEmpty() ? newSegment((long) nextSegmentId << ORDER_SHIFT) : found.get(found.size() - 1);
+        recoveryMillis = System.currentTimeMillis() - start;
+        log.info("Link log opened with {} links in {} ms ({}, {} records replayed)", codeIndex.size(), recoveryMillis,
+                recoveredFromCheckpoint ? "from checkpoint" : "full replay", replayedRecords);
+    }
+
+    /**
+     * Load the checkpoint; returns the segment id and position to replay
+     * from, or null if there is no checkpoint or it does not match the files
+     */
+    private int[] loadCheckpoint(List<LogSegment> found) {
+        Path file = dir.resolve(CHECKPOINT);
+        if (!Files.exists(file)) {
+            return null;
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(36);
+            OffHeapIndex.readFully(channel, header);
+            header.flip();
+            if (header.getInt() != CHECKPOINT_MAGIC || header.getInt() != CHECKPOINT_VERSION) {
+                throw new IOException("not a link log checkpoint");
+            }
+            long checkpointNextId = header.getLong();
+            long checkpointLiveBytes = header.getLong();
+            int activeId = header.getInt();
+            int activePosition = header.getInt();
+            int count = header.getInt();
+            ByteBuffer ids = ByteBuffer.allocate(count * 4);
+            OffHeapIndex.readFully(channel, ids);
+            ids.flip();
+            Set<Integer> listed = new HashSet<>();
+            while (ids.hasRemaining()) {
+                listed.add(ids.getInt());
+            }
+
+            // Segments removed or written by a compaction after the checkpoint
+            // make it stale; segments rolled after it are simply replayed
+            LogSegment resumeFrom = segments.get(activeId);
+            if (resumeFrom == null || !segments.keySet().containsAll(listed)) {
+                throw new IOException("checkpoint lists segments that no longer exist");
+            }
+            for (LogSegment segment : found) {
+                if (!listed.contains(segment.id) && segment.order <= resumeFrom.order) {
+                    throw new IOException("segment " + segment.id + " was written before the checkpoint's last segment");
+                }
+            }
+
+            OffHeapIndex codes = OffHeapIndex.readFrom(channel);
+            OffHeapIndex hashes = OffHeapIndex.readFrom(channel);
+            LinkTable columns = LinkTable.readFrom(channel);
+            ByteBuffer trailer = ByteBuffer.allocate(4);
+            OffHeapIndex.readFully(channel, trailer);
+            if (trailer.flip().getInt() != CHECKPOINT_MAGIC) {
+                throw new IOException("checkpoint is truncated");
+            }
+            codeIndex = codes;
+            hashIndex = hashes;
+            table = columns;
+            nextId = checkpointNextId;
+            liveBytes = checkpointLiveBytes;
+            return new int[]{activeId, activePosition};
+        } catch (IOException | RuntimeException e) {
+            log.warn("Link log checkpoint not usable, replaying the whole log: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    private void replay(LogSegment segment, int position, boolean last) {
+        ByteBuffer buffer = segment.buffer;
+        while (true) {
+            LinkRecord record = LinkRecord.read(buffer, position);
+            if (record == null) {
+                break;
+            }
+            apply(record, LogSegment.offset(segment.id, position));
+            position += record.size;
+            replayedRecords++;
+        }
+        if (position + 4 <= buffer.capacity() && buffer.getInt(position) != 0) {
+            if (last) {
+                log.warn("Cut off a torn record at {} of {}", position, segment.file);
+                segment.truncate(position);
+                tornTails++;
+            } else {
+                log.warn("Stopped replaying {} at a corrupt record at {}", segment.file, position);
+            }
+        }
+        segment.setWritePosition(position);
+    }
+
+    private void apply(LinkRecord record, long offset) {
+        switch (record.type) {
+            case LinkRecord.PUT -> applyPut(record.mapping, offset, record.size);
+            case LinkRecord.DELETE -> applyDelete(record.id);
+            case LinkRecord.CLICKS -> {
+                if (table.offset(record.id) != 0) {
+                    table.setClicks(record.id, record.clickCount, record.lastAccessedAt);
+                }
+            }
+            default -> throw new IllegalStateException("unknown record type " + record.type);
+        }
+        nextId = Math.max(nextId, record.id + 1);
+    }
+
+    private void applyPut(UrlMapping mapping, long offset, int size) {
+        long id = mapping.getId();
+        long old = table.offset(id);
+        if (old != 0) {
+            unindex(id, old);
+            liveBytes -= sizeAt(old);
+        }
+        table.set(id, offset, LinkRecord.micros(mapping.getExpiresAt()), mapping.getClickCount(),
+                LinkRecord.micros(mapping.getLastAccessedAt()));
+        String code = mapping.getShortCode();
+        codeIndex.put(hash(code), id, value -> value == id || codeMatches(value, code));
+        String urlHash = mapping.getUrlHash();
+        if (urlHash != null) {
+            hashIndex.put(hash(urlHash), id, value -> value == id || urlHashMatches(value, urlHash));
+        }
+        liveBytes += size;
+    }
+
+    private void applyDelete(long id) {
+        long old = table.offset(id);
+        if (old == 0) {
+            return;
+        }
+        unindex(id, old);
+        liveBytes -= sizeAt(old);
+        table.clear(id);
+    }
+
+    private void unindex(long id, long offset) {
+        LinkRecord old = recordAt(offset);
+        codeIndex.remove(hash(old.shortCode), value -> value == id);
+        if (old.urlHash != null) {
+            hashIndex.remove(hash(old.urlHash), value -> value == id);
+        }
+    }
+
+    // --- Reads ---
+
+    /**
+     * Link with the short code, or null
+     */
+    public UrlMapping get(String shortCode) {
+        return read(() -> mappingOf(codeIndex.get(hash(shortCode), value -> codeMatches(value, shortCode))));
+    }
+
+    /**
+     * Link with the id, or null
+     */
+    public UrlMapping get(long id) {
+        return id <= 0 ? null : read(() -> mappingOf(id));
+    }
+
+    /**
+     * Link created in reuse-existing mode for the url hash, or null
+     */
+    public UrlMapping getByUrlHash(String urlHash) {
+        return read(() -> mappingOf(hashIndex.get(hash(urlHash), value -> urlHashMatches(value, urlHash))));
+    }
+
+    public boolean contains(String shortCode) {
+        return read(() -> codeIndex.get(hash(shortCode), value -> codeMatches(value, shortCode)) != 0);
+    }
+
+    /**
+     * Visit active links from the newest id down, starting below beforeId,
+     * until the visitor returns false
+     */
+    public void forEachNewest(long beforeId, LocalDateTime now, Predicate<UrlMapping> visitor) {
+        long nowMicros = LinkRecord.micros(now);
+        for (long id = Math.min(beforeId, nextId) - 1; id > 0; id--) {
+            long current = id;
+            UrlMapping mapping = read(() -> isActive(current, nowMicros) ? mappingOf(current) : null);
+            if (mapping != null && !visitor.test(mapping)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Active links with the most clicks, most clicked first
+     */
+    public List<UrlMapping> topByClicks(int limit, LocalDateTime now) {
+        long nowMicros = LinkRecord.micros(now);
+        PriorityQueue<long[]> top = new PriorityQueue<>(Comparator.comparingLong((long[] row) -> row[1])
+                .thenComparingLong(row -> -row[0]));
+        sweep(id -> {
+            if (isActive(id, nowMicros)) {
+                top.offer(new long[]{id, table.clicks(id)});
+                if (top.size() > limit) {
+                    top.poll();
+                }
+            }
+        });
+        List<long[]> rows = new ArrayList<>(top);
+        rows.sort(Comparator.comparingLong((long[] row) -> row[1]).reversed().thenComparingLong(row -> row[0]));
+        return mappings(rows);
+    }
+
+    /**
+     * Links expired at or before the cutoff, earliest expiry first
+     */
+    public List<UrlMapping> expired(LocalDateTime cutoff, int limit) {
+        long cutoffMicros = LinkRecord.micros(cutoff);
+        Comparator<long[]> byExpiry = Comparator.comparingLong((long[] row) -> row[1]).thenComparingLong(row -> row[0]);
+        PriorityQueue<long[]> earliest = new PriorityQueue<>(byExpiry.reversed());
+        sweep(id -> {
+            long expiresAt = table.expiresAt(id);
+            if (expiresAt != LinkRecord.NONE && expiresAt <= cutoffMicros) {
+                earliest.offer(new long[]{id, expiresAt});
+                if (earliest.size() > limit) {
+                    earliest.poll();
+                }
+            }
+        });
+        List<long[]> rows = new ArrayList<>(earliest);
+        rows.sort(byExpiry);
+        return mappings(rows);
+    }
+
+    public long countExpired(LocalDateTime cutoff) {
+        long cutoffMicros = LinkRecord.micros(cutoff);
+        long[] count = {0};
+        sweep(id -> {
+            long expiresAt = table.expiresAt(id);
+            if (expiresAt != LinkRecord.NONE && expiresAt <= cutoffMicros) {
+                count[0]++;
+            }
+        });
+        return count[0];
+    }
+
+    /**
+     * Visit the code and expiry of links expiring after one time and up to another
+     */
+    public void forEachExpiring(LocalDateTime after, LocalDateTime until, BiConsumer<String, LocalDateTime> visitor) {
+        long afterMicros = LinkRecord.micros(after);
+        long untilMicros = LinkRecord.micros(until);
+        List<long[]> rows = new ArrayList<>();
+        sweep(id -> {
+            long expiresAt = table.expiresAt(id);
+            if (expiresAt != LinkRecord.NONE && expiresAt > afterMicros && expiresAt <= untilMicros) {
+                rows.add(new long[]{id, expiresAt});
+            }
+        });
+        for (UrlMapping mapping : mappings(rows)) {
+            visitor.accept(mapping.getShortCode(), mapping.getExpiresAt());
+        }
+    }
+
+    /**
+     * Visit the short code of every link
+     */
+    public void forEachCode(Consumer<String> visitor) {
+        List<String> codes = new ArrayList<>(SCAN_BATCH);
+        for (long from = 1; from < nextId; from += SCAN_BATCH) {
+            long stamp = lock.readLock();
+            try {
+                for (long id = from; id < Math.min(from + SCAN_BATCH, nextId); id++) {
+                    long offset = table.offset(id);
+                    if (offset != 0) {
+                        codes.add(recordAt(offset).shortCode);
+                    }
+                }
+            } finally {
+                lock.unlockRead(stamp);
+            }
+            codes.forEach(visitor);
+            codes.clear();
+        }
+    }
+
+    // --- Writes ---
+
+    /**
+     * Store a new link under the next id; false if its short code or url hash
+     * is already taken. With codeForId the short code is derived from the id.
+     */
+    public boolean insert(UrlMapping mapping, LongFunction<String> codeForId) {
+        long stamp = lock.writeLock();
+        try {
+            long id = nextId;
+            if (codeForId != null) {
+                mapping.setShortCode(codeForId.apply(id));
+            }
+            String code = mapping.getShortCode();
+            String urlHash = mapping.getUrlHash();
+            if (codeIndex.get(hash(code), value -> codeMatches(value, code)) != 0
+                    || urlHash != null && hashIndex.get(hash(urlHash), value -> urlHashMatches(value, urlHash)) != 0) {
+                return false;
+            }
+            mapping.setId(id);
+            nextId = id + 1;
+            byte[] record = LinkRecord.put(mapping);
+            applyPut(mapping, append(record), record.length);
+            return true;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Release a link's url hash so a new link can claim it
+     */
+    public void clearUrlHash(long id) {
+        long stamp = lock.writeLock();
+        try {
+            UrlMapping mapping = mappingOf(id);
+            if (mapping != null && mapping.getUrlHash() != null) {
+                mapping.setUrlHash(null);
+                byte[] record = LinkRecord.put(mapping);
+                applyPut(mapping, append(record), record.length);
+            }
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Add clicks to a link; false if the code does not exist (any more)
+     */
+    public boolean addClicks(String shortCode, long clicks, LocalDateTime lastAccessedAt) {
+        long stamp = lock.writeLock();
+        try {
+            long id = codeIndex.get(hash(shortCode), value -> codeMatches(value, shortCode));
+            if (id == 0) {
+                return false;
+            }
+            long total = table.clicks(id) + clicks;
+            long last = Math.max(table.lastAccessedAt(id), LinkRecord.micros(lastAccessedAt));
+            append(LinkRecord.clicks(id, total, last));
+            table.setClicks(id, total, last);
+            return true;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Delete the link with the id if it still has the short code
+     */
+    public boolean delete(long id, String shortCode) {
+        long stamp = lock.writeLock();
+        try {
+            long offset = id > 0 ? table.offset(id) : 0;
+            if (offset == 0 || !codeMatches(id, shortCode)) {
+                return false;
+            }
+            append(LinkRecord.delete(id, shortCode, recordAt(offset).urlHash));
+            applyDelete(id);
+            return true;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Write the mapped pages of the active segment to disk
+     */
+    public void force() {
+        LogSegment current = active;
+        current.force();
+    }
+
+    // --- Checkpoints and compaction ---
+
+    /**
+     * Write both indexes and the link table, so the next start only replays
+     * records appended after this point. Writes wait while it runs.
+     */
+    public void checkpoint() throws IOException {
+        synchronized (maintenance) {
+            long start = System.currentTimeMillis();
+            Path temporary = dir.resolve(CHECKPOINT + ".tmp");
+            long stamp = lock.readLock();
+            try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                // Records the checkpoint covers must be on disk before it is
+                active.force();
+                ByteBuffer header = ByteBuffer.allocate(36 + segments.size() * 4);
+                header.putInt(CHECKPOINT_MAGIC).putInt(CHECKPOINT_VERSION)
+                        .putLong(nextId).putLong(liveBytes)
+                        .putInt(active.id).putInt(active.writePosition())
+                        .putInt(segments.size());
+                segments.keySet().forEach(header::putInt);
+                OffHeapIndex.writeFully(channel, header.flip());
+                codeIndex.writeTo(channel);
+                hashIndex.writeTo(channel);
+                table.writeTo(channel);
+                OffHeapIndex.writeFully(channel, ByteBuffer.allocate(4).putInt(CHECKPOINT_MAGIC).flip());
+                channel.force(true);
+                writesSinceCheckpoint = 0;
+            } finally {
+                lock.unlockRead(stamp);
+            }
+            Files.move(temporary, dir.resolve(CHECKPOINT),
+                    StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            checkpoints++;
+            lastCheckpointMillis = System.currentTimeMillis() - start;
+        }
+    }
+
+    /**
+     * Rewrite all sealed segments with only their live records; returns the
+     * number of bytes reclaimed
+     */
+    public long compact() throws IOException {
+        synchronized (maintenance) {
+            long start = System.currentTimeMillis();
+            List<LogSegment> sealed = new ArrayList<>();
+            long highestId;
+            long stamp = lock.writeLock();
+            try {
+                // Always roll, so the output gets a fresh gap in the replay order
+                roll();
+                highestId = nextId - 1;
+                for (LogSegment segment : segments.values()) {
+                    if (segment != active) {
+                        sealed.add(segment);
+                    }
+                }
+            } finally {
+                lock.unlockWrite(stamp);
+            }
+            if (sealed.isEmpty()) {
+                return 0;
+            }
+            sealed.sort(Comparator.comparingLong(segment -> segment.order));
+
+            // Output replays after every sealed segment and before the active one
+            long baseOrder = sealed.get(sealed.size() - 1).order;
+            long before = 0;
+            List<LogSegment> outputs = new ArrayList<>();
+            List<long[]> moves = new ArrayList<>(SWAP_BATCH);
+            for (LogSegment segment : sealed) {
+                before += segment.dataBytes();
+                for (int position = LogSegment.HEADER_BYTES; position < segment.writePosition(); ) {
+                    int size = LinkRecord.sizeAt(segment.buffer, position);
+                    if (size == 0) {
+                        break;
+                    }
+                    if (LinkRecord.typeAt(segment.buffer, position) == LinkRecord.PUT) {
+                        long offset = LogSegment.offset(segment.id, position);
+                        byte[] copy = liveCopy(LinkRecord.idAt(segment.buffer, position), offset);
+                        if (copy != null) {
+                            moves.add(new long[]{LinkRecord.idAt(segment.buffer, position), offset,
+                                    appendOutput(outputs, baseOrder, copy), copy.length});
+                            if (moves.size() >= SWAP_BATCH) {
+                                swap(moves);
+                                moves.clear();
+                            }
+                        }
+                    }
+                    position += size;
+                }
+            }
+            swap(moves);
+            // Replay derives the next id from the records it sees
+            byte[] retired = retiredIdRecord(highestId);
+            if (retired != null) {
+                appendOutput(outputs, baseOrder, retired);
+            }
+            long after = 0;
+            for (LogSegment output : outputs) {
+                output.force();
+                after += output.dataBytes();
+            }
+
+            stamp = lock.writeLock();
+            try {
+                for (LogSegment segment : sealed) {
+                    segments.remove(segment.id);
+                    totalBytes -= segment.dataBytes();
+                }
+                if (retired != null) {
+                    totalBytes += retired.length;
+                }
+            } finally {
+                lock.unlockWrite(stamp);
+            }
+            for (LogSegment segment : sealed) {
+                segment.delete();
+            }
+            checkpoint();
+
+            compactions++;
+            reclaimedBytes += before - after;
+            lastCompactionMillis = System.currentTimeMillis() - start;
+            log.info("Compacted {} link log segments into {} in {} ms, reclaimed {} bytes",
+                    sealed.size(), outputs.size(), lastCompactionMillis, before - after);
+            return before - after;
+        }
+    }
+
+    /**
+     * The record at the offset with the link's current clicks, or null if it
+     * is no longer the link's current record
+     */
+    private byte[] liveCopy(long id, long offset) {
+        long stamp = lock.readLock();
+        try {
+            return table.offset(id) == offset ? LinkRecord.put(mappingOf(id)) : null;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * A DELETE for the id if its link is gone, or null if its record survives
+     */
+    private byte[] retiredIdRecord(long id) {
+        long stamp = lock.readLock();
+        try {
+            return id > 0 && table.offset(id) == 0 ? LinkRecord.delete(id, null, null) : null;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Append a record to the last compaction output, starting a new one when
+     * it is full; returns the record's offset
+     */
+    private long appendOutput(List<LogSegment> outputs, long baseOrder, byte[] record) throws IOException {
+        LogSegment output = outputs.isEmpty() ? null : outputs.get(outputs.size() - 1);
+        int at = output == null ? -1 : output.append(record);
+        if (at < 0) {
+            output = newOutputSegment(baseOrder, outputs.size() + 1);
+            outputs.add(output);
+            at = output.append(record);
+        }
+        return LogSegment.offset(output.id, at);
+    }
+
+    /**
+     * Point links at their copies, unless they changed while being copied
+     */
+    private void swap(List<long[]> moves) {
+        long stamp = lock.writeLock();
+        try {
+            for (long[] move : moves) {
+                totalBytes += move[3];
+                if (table.offset(move[0]) == move[1]) {
+                    liveBytes += move[3] - sizeAt(move[1]);
+                    table.setOffset(move[0], move[2]);
+                }
+            }
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    private LogSegment newOutputSegment(long baseOrder, int part) throws IOException {
+        if (part >= 1 << ORDER_SHIFT) {
+            throw new IllegalStateException("compaction output does not fit between segments; raise the segment size");
+        }
+        long stamp = lock.writeLock();
+        try {
+            return newSegment(baseOrder + part);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    // --- Internals ---
+
+    private long append(byte[] record) {
+        int position = active.append(record);
+        if (position < 0) {
+            roll();
+            position = active.append(record);
+            if (position < 0) {
+                throw new IllegalArgumentException("record of " + record.length + " bytes does not fit in a segment");
+            }
+        }
+        totalBytes += record.length;
+        writesSinceCheckpoint++;
+        return LogSegment.offset(active.id, position);
+    }
+
+    private void roll() {
+        active.force();
+        try {
+            active = newSegment((long) nextSegmentId << ORDER_SHIFT);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private LogSegment newSegment(long order) throws IOException {
+        LogSegment segment = LogSegment.create(dir, nextSegmentId++, order, segmentBytes);
+        segments.put(segment.id, segment);
+        return segment;
+    }
+
+    private <T> T read(Supplier<T> reader) {
+        long stamp = lock.tryOptimisticRead();
+        if (stamp != 0) {
+            try {
+                T result = reader.get();
+                if (lock.validate(stamp)) {
+                    return result;
+                }
+            } catch (RuntimeException e) {
+                // A write moved the structures under the reader; retry under the lock
+            }
+        }
+        stamp = lock.readLock();
+        try {
+            return reader.get();
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Visit the id of every stored link, a batch of ids per read lock
+     */
+    private void sweep(LongConsumer visitor) {
+        for (long from = 1; from < nextId; from += SCAN_BATCH) {
+            long stamp = lock.readLock();
+            try {
+                for (long id = from; id < Math.min(from + SCAN_BATCH, nextId); id++) {
+                    if (table.offset(id) != 0) {
+                        visitor.accept(id);
+                    }
+                }
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+    }
+
+    private List<UrlMapping> mappings(List<long[]> rows) {
+        List<UrlMapping> mappings = new ArrayList<>(rows.size());
+        for (long[] row : rows) {
+            UrlMapping mapping = get(row[0]);
+            if (mapping != null) {
+                mappings.add(mapping);
+            }
+        }
+        return mappings;
+    }
+
+    private UrlMapping mappingOf(long id) {
+        long offset = id == 0 ? 0 : table.offset(id);
+        if (offset == 0) {
+            return null;
+        }
+        UrlMapping mapping = recordAt(offset).mapping;
+        mapping.setClickCount((int) table.clicks(id));
+        mapping.setLastAccessedAt(LinkRecord.time(table.lastAccessedAt(id)));
+        return mapping;
+    }
+
+    private boolean isActive(long id, long nowMicros) {
+        if (table.offset(id) == 0) {
+            return false;
+        }
+        long expiresAt = table.expiresAt(id);
+        return expiresAt == LinkRecord.NONE || expiresAt > nowMicros;
+    }
+
+    private boolean codeMatches(long id, String shortCode) {
+        long offset = table.offset(id);
+        return offset != 0 && LinkRecord.hasCode(bufferOf(offset), LogSegment.positionOf(offset), shortCode);
+    }
+
+    private boolean urlHashMatches(long id, String urlHash) {
+        long offset = table.offset(id);
+        return offset != 0 && LinkRecord.hasUrlHash(bufferOf(offset), LogSegment.positionOf(offset), urlHash);
+    }
+
+    private LinkRecord recordAt(long offset) {
+        return LinkRecord.readTrusted(bufferOf(offset), LogSegment.positionOf(offset));
+    }
+
+    private int sizeAt(long offset) {
+        return LinkRecord.HEADER_BYTES + bufferOf(offset).getInt(LogSegment.positionOf(offset));
+    }
+
+    private ByteBuffer bufferOf(long offset) {
+        return segments.get(LogSegment.segmentOf(offset)).buffer;
+    }
+
+    private void reset(int expectedLinks) {
+        codeIndex = new OffHeapIndex(expectedLinks);
+        hashIndex = new OffHeapIndex(Math.max(16, expectedLinks / 8));
+        table = new LinkTable();
+        nextId = 1;
+        liveBytes = 0;
+    }
+
+    private static long hash(String value) {
+        return HyperLogLog.hash64(value);
+    }
+
+    @Override
+    public void close() throws IOException {
+        synchronized (maintenance) {
+            force();
+            checkpoint();
+        }
+    }
+
+    // --- Statistics ---
+
+    public int size() {
+        return codeIndex.size();
+    }
+
+    public int segmentCount() {
+        return segments.size();
+    }
+
+    public long totalBytes() {
+        return totalBytes;
+    }
+
+    public long liveBytes() {
+        return liveBytes;
+    }
+
+    /**
+     * Share of the log taken by records compaction would drop
+     */
+    public double deadRatio() {
+        long total = totalBytes;
+        return total == 0 ? 0.0 : 1.0 - (double) liveBytes / total;
+    }
+
+    /**
+     * Off-heap bytes of both indexes and the link table
+     */
+    public long indexMemoryBytes() {
+        return codeIndex.memoryBytes() + hashIndex.memoryBytes() + table.memoryBytes();
+    }
+
+    public long writesSinceCheckpoint() {
+        return writesSinceCheckpoint;
+    }
+
+    public boolean isRecoveredFromCheckpoint() {
+        return recoveredFromCheckpoint;
+    }
+
+    public long replayedRecords() {
+        return replayedRecords;
+    }
+
+    public int tornTails() {
+        return tornTails;
+    }
+
+    public long recoveryMillis() {
+        return recoveryMillis;
+    }
+
+    public long checkpoints() {
+        return checkpoints;
+    }
+
+    public long lastCheckpointMillis() {
+        return lastCheckpointMillis;
+    }
+
+    public long compactions() {
+        return compactions;
+    }
+
+    public long reclaimedBytes() {
+        return reclaimedBytes;
+    }
+
+    public long lastCompactionMillis() {
+        return lastCompactionMillis;
+    }
+}
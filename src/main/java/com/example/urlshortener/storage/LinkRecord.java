@@ -0,0 +1,245 @@
+package com.example.urlshortener.storage;
+
+import com.example.urlshortener.model.RedirectType;
+import com.example.urlshortener.model.UrlMapping;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.zip.CRC32;
+
+/**
+ * Binary format of one log record.
+ *
+ * <pre>
+ * int   length of everything after the crc
+ * int   CRC32 of everything after the crc
+ * byte  type (PUT or DELETE)
+ * long  link id
+ * PUT:    long createdAt, long expiresAt, long lastAccessedAt, long clickCount,
+ *         short + code, short + url hash, int + original URL, byte redirect type
+ *         (ordinal; records written before redirect types end after the URL)
+ * DELETE: short + code, short + url hash
+ * CLICKS: long clickCount, long lastAccessedAt
+ * </pre>
+ *
+ * Times are microseconds of the LocalDateTime read as UTC (NONE when unset);
+ * strings are UTF-8 with their byte length in front, a null url hash has length 0.
+ * A length of 0 marks the end of the written part of a segment. CLICKS
+ * records carry a link's total (not a delta), so replaying one twice is harmless.
+ */
+final class LinkRecord {
+
+    static final byte PUT = 1;
+    static final byte DELETE = 2;
+    static final byte CLICKS = 3;
+    static final int HEADER_BYTES = 8;
+    static final long NONE = Long.MIN_VALUE;
+
+    private static final int TYPE_AT = HEADER_BYTES;
+    private static final int ID_AT = TYPE_AT + 1;
+    private static final int PUT_FIELDS_AT = ID_AT + 8;
+    private static final int PUT_CODE_AT = PUT_FIELDS_AT + 32;
+    private static final int DELETE_CODE_AT = PUT_FIELDS_AT;
+    private static final RedirectType[] REDIRECT_TYPES = RedirectType.values();
+
+    final byte type;
+    final long id;
+    final int size;
+    final UrlMapping mapping;
+    final String shortCode;
+    final String urlHash;
+    final long clickCount;
+    final long lastAccessedAt;
+
+    private LinkRecord(byte type, long id, int size, UrlMapping mapping, String shortCode, String urlHash,
+                       long clickCount, long lastAccessedAt) {
+        this.type = type;
+        this.id = id;
+        this.size = size;
+        this.mapping = mapping;
+        this.shortCode = shortCode;
+        this.urlHash = urlHash;
+        this.clickCount = clickCount;
+        this.lastAccessedAt = lastAccessedAt;
+    }
+
+    static byte[] put(UrlMapping mapping) {
+        byte[] code = utf8(mapping.getShortCode());
+        byte[] hash = utf8(mapping.getUrlHash());
+        byte[] url = utf8(mapping.getOriginalUrl());
+        ByteBuffer buffer = ByteBuffer.allocate(PUT_CODE_AT + 2 + code.length + 2 + hash.length + 4 + url.length + 1);
+        buffer.position(TYPE_AT);
+        buffer.put(PUT).putLong(mapping.getId())
+                .putLong(micros(mapping.getCreatedAt()))
+                .putLong(micros(mapping.getExpiresAt()))
+                .putLong(micros(mapping.getLastAccessedAt()))
+                .putLong(mapping.getClickCount())
+                .putShort((short) code.length).put(code)
+                .putShort((short) hash.length).put(hash)
+                .putInt(url.length).put(url)
+                .put((byte) mapping.getRedirectType().ordinal());
+        return seal(buffer);
+    }
+
+    static byte[] delete(long id, String shortCode, String urlHash) {
+        byte[] code = utf8(shortCode);
+        byte[] hash = utf8(urlHash);
+        ByteBuffer buffer = ByteBuffer.allocate(DELETE_CODE_AT + 2 + code.length + 2 + hash.length);
+        buffer.position(TYPE_AT);
+        buffer.put(DELETE).putLong(id)
+                .putShort((short) code.length).put(code)
+                .putShort((short) hash.length).put(hash);
+        return seal(buffer);
+    }
+
+    static byte[] clicks(long id, long clickCount, long lastAccessedAt) {
+        ByteBuffer buffer = ByteBuffer.allocate(PUT_FIELDS_AT + 16);
+        buffer.position(TYPE_AT);
+        buffer.put(CLICKS).putLong(id).putLong(clickCount).putLong(lastAccessedAt);
+        return seal(buffer);
+    }
+
+    /**
+     * Total size of the record at the position, or 0 at the end of the written data
+     */
+    static int sizeAt(ByteBuffer segment, int position) {
+        if (position + HEADER_BYTES > segment.limit()) {
+            return 0;
+        }
+        int length = segment.getInt(position);
+        if (length <= 0 || length > segment.limit() - position - HEADER_BYTES) {
+            return 0;
+        }
+        return HEADER_BYTES + length;
+    }
+
+    /**
+     * Parse and verify the record at the position; null at the end of the
+     * written data or at a torn (partially written) record
+     */
+    static LinkRecord read(ByteBuffer segment, int position) {
+        int size = sizeAt(segment, position);
+        if (size == 0) {
+            return null;
+        }
+        CRC32 crc = new CRC32();
+        crc.update(segment.slice(position + HEADER_BYTES, size - HEADER_BYTES));
+        if ((int) crc.getValue() != segment.getInt(position + 4)) {
+            return null;
+        }
+        return parse(segment, position, size);
+    }
+
+    /**
+     * Parse the record at the position without verifying it; for records the
+     * index points to, which were verified when they were written or replayed
+     */
+    static LinkRecord readTrusted(ByteBuffer segment, int position) {
+        return parse(segment, position, HEADER_BYTES + segment.getInt(position));
+    }
+
+    static byte typeAt(ByteBuffer segment, int position) {
+        return segment.get(position + TYPE_AT);
+    }
+
+    static long idAt(ByteBuffer segment, int position) {
+        return segment.getLong(position + ID_AT);
+    }
+
+    /**
+     * Whether the PUT record at the position has the short code, without decoding the rest
+     */
+    static boolean hasCode(ByteBuffer segment, int position, String shortCode) {
+        int at = position + PUT_CODE_AT;
+        return shortCode.equals(string(segment, at + 2, segment.getShort(at)));
+    }
+
+    /**
+     * Whether the PUT record at the position has the url hash
+     */
+    static boolean hasUrlHash(ByteBuffer segment, int position, String urlHash) {
+        int at = position + PUT_CODE_AT;
+        at += 2 + segment.getShort(at);
+        return urlHash.equals(string(segment, at + 2, segment.getShort(at)));
+    }
+
+    private static LinkRecord parse(ByteBuffer segment, int position, int size) {
+        byte type = segment.get(position + TYPE_AT);
+        long id = segment.getLong(position + ID_AT);
+        if (type == DELETE) {
+            int at = position + DELETE_CODE_AT;
+            int codeLength = segment.getShort(at);
+            String code = string(segment, at + 2, codeLength);
+            at += 2 + codeLength;
+            return new LinkRecord(type, id, size, null, code, string(segment, at + 2, segment.getShort(at)), 0, NONE);
+        }
+        if (type == CLICKS) {
+            int at = position + PUT_FIELDS_AT;
+            return new LinkRecord(type, id, size, null, null, null, segment.getLong(at), segment.getLong(at + 8));
+        }
+
+        int at = position + PUT_FIELDS_AT;
+        UrlMapping mapping = new UrlMapping();
+        mapping.setId(id);
+        mapping.setCreatedAt(time(segment.getLong(at)));
+        mapping.setExpiresAt(time(segment.getLong(at + 8)));
+        mapping.setLastAccessedAt(time(segment.getLong(at + 16)));
+        long clickCount = segment.getLong(at + 24);
+        mapping.setClickCount((int) clickCount);
+        at = position + PUT_CODE_AT;
+        int codeLength = segment.getShort(at);
+        mapping.setShortCode(string(segment, at + 2, codeLength));
+        at += 2 + codeLength;
+        int hashLength = segment.getShort(at);
+        mapping.setUrlHash(string(segment, at + 2, hashLength));
+        at += 2 + hashLength;
+        int urlLength = segment.getInt(at);
+        if (urlLength < 0 || urlLength > position + size - at - 4) {
+            throw new IllegalStateException("corrupt link record at " + position);
+        }
+        mapping.setOriginalUrl(string(segment, at + 4, urlLength));
+        at += 4 + urlLength;
+        if (at < position + size) {
+            byte redirectType = segment.get(at);
+            if (redirectType < 0 || redirectType >= REDIRECT_TYPES.length) {
+                throw new IllegalStateException("corrupt link record at " + position);
+            }
+            mapping.setRedirectType(REDIRECT_TYPES[redirectType]);
+        }
+        return new LinkRecord(type, id, size, mapping, mapping.getShortCode(), mapping.getUrlHash(),
+                clickCount, segment.getLong(position + PUT_FIELDS_AT + 16));
+    }
+
+    static long micros(LocalDateTime time) {
+        return time == null ? NONE : time.toEpochSecond(ZoneOffset.UTC) * 1_000_000 + time.getNano() / 1_000;
+    }
+
+    static LocalDateTime time(long micros) {
+        return micros == NONE ? null : LocalDateTime.ofEpochSecond(Math.floorDiv(micros, 1_000_000),
+                (int) Math.floorMod(micros, 1_000_000) * 1_000, ZoneOffset.UTC);
+    }
+
+    private static byte[] seal(ByteBuffer buffer) {
+        byte[] bytes = buffer.array();
+        CRC32 crc = new CRC32();
+        crc.update(bytes, HEADER_BYTES, bytes.length - HEADER_BYTES);
+        buffer.putInt(0, bytes.length - HEADER_BYTES);
+        buffer.putInt(4, (int) crc.getValue());
+        return bytes;
+    }
+
+    private static byte[] utf8(String value) {
+        return value == null ? new byte[0] : value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static String string(ByteBuffer segment, int at, int length) {
+        if (length == 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        segment.get(at, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,127 @@
+package com.example.urlshortener.storage;
+
+import com.example.urlshortener.util.OffHeapIndex;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+/**
+ * Per-link columns kept off-heap and addressed by link id: the log offset of
+ * the link's current record (0 once deleted), expiresAt, clickCount and
+ * lastAccessedAt. Expiry scans, top-by-clicks and click updates work on these
+ * columns without reading the log.
+ *
+ * Ids are dense, so the columns are split into fixed chunks of ids that are
+ * allocated as ids are handed out. Not thread-safe; LinkLog guards it.
+ */
+final class LinkTable {
+
+    private static final int CHUNK_SHIFT = 16;
+    private static final int CHUNK_IDS = 1 << CHUNK_SHIFT;
+    private static final int ROW_BYTES = 32;
+    private static final int OFFSET = 0;
+    private static final int EXPIRES_AT = 8;
+    private static final int CLICKS = 16;
+    private static final int LAST_ACCESSED_AT = 24;
+
+    private ByteBuffer[] chunks = new ByteBuffer[0];
+
+    long offset(long id) {
+        ByteBuffer chunk = chunkOf(id);
+        return chunk == null ? 0 : chunk.getLong(at(id) + OFFSET);
+    }
+
+    long expiresAt(long id) {
+        return chunkOf(id).getLong(at(id) + EXPIRES_AT);
+    }
+
+    long clicks(long id) {
+        return chunkOf(id).getLong(at(id) + CLICKS);
+    }
+
+    long lastAccessedAt(long id) {
+        return chunkOf(id).getLong(at(id) + LAST_ACCESSED_AT);
+    }
+
+    void set(long id, long offset, long expiresAt, long clicks, long lastAccessedAt) {
+        ensure(id);
+        ByteBuffer chunk = chunkOf(id);
+        int at = at(id);
+        chunk.putLong(at + OFFSET, offset);
+        chunk.putLong(at + EXPIRES_AT, expiresAt);
+        chunk.putLong(at + CLICKS, clicks);
+        chunk.putLong(at + LAST_ACCESSED_AT, lastAccessedAt);
+    }
+
+    void setOffset(long id, long offset) {
+        chunkOf(id).putLong(at(id) + OFFSET, offset);
+    }
+
+    void setClicks(long id, long clicks, long lastAccessedAt) {
+        ByteBuffer chunk = chunkOf(id);
+        chunk.putLong(at(id) + CLICKS, clicks);
+        chunk.putLong(at(id) + LAST_ACCESSED_AT, lastAccessedAt);
+    }
+
+    void clear(long id) {
+        set(id, 0, 0, 0, 0);
+    }
+
+    /**
+     * One past the highest id the table has room for
+     */
+    long capacity() {
+        return (long) chunks.length << CHUNK_SHIFT;
+    }
+
+    long memoryBytes() {
+        return (long) chunks.length * CHUNK_IDS * ROW_BYTES;
+    }
+
+    void writeTo(FileChannel channel) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(4).putInt(chunks.length).flip();
+        OffHeapIndex.writeFully(channel, header);
+        for (ByteBuffer chunk : chunks) {
+            OffHeapIndex.writeFully(channel, chunk.duplicate().clear());
+        }
+    }
+
+    static LinkTable readFrom(FileChannel channel) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(4);
+        OffHeapIndex.readFully(channel, header);
+        int count = header.flip().getInt();
+        if (count < 0 || count > Integer.MAX_VALUE >> CHUNK_SHIFT) {
+            throw new IOException("corrupt link table header");
+        }
+        LinkTable table = new LinkTable();
+        table.chunks = new ByteBuffer[count];
+        for (int i = 0; i < count; i++) {
+            table.chunks[i] = ByteBuffer.allocateDirect(CHUNK_IDS * ROW_BYTES);
+            OffHeapIndex.readFully(channel, table.chunks[i]);
+        }
+        return table;
+    }
+
+    private void ensure(long id) {
+        int chunk = (int) (id >>> CHUNK_SHIFT);
+        if (chunk >= chunks.length) {
+            ByteBuffer[] grown = Arrays.copyOf(chunks, chunk + 1);
+            for (int i = chunks.length; i < grown.length; i++) {
+                grown[i] = ByteBuffer.allocateDirect(CHUNK_IDS * ROW_BYTES);
+            }
+            chunks = grown;
+        }
+    }
+
+    private ByteBuffer chunkOf(long id) {
+        int chunk = (int) (id >>> CHUNK_SHIFT);
+        ByteBuffer[] current = chunks;
+        return chunk < current.length ? current[chunk] : null;
+    }
+
+    private static int at(long id) {
+        return (int) (id & (CHUNK_IDS - 1)) * ROW_BYTES;
+    }
+}
@@ -0,0 +1,130 @@
+package com.example.urlshortener.storage;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * One preallocated, memory-mapped file of the link log.
+ *
+ * A 32-byte header (magic, version, segment id, replay order) is followed by
+ * records. The file is created at its full size, so the unwritten part reads
+ * as zeros, which LinkRecord treats as the end of the data.
+ *
+ * Segments are replayed by order rather than id: compaction output must
+ * replay after the segments it was copied from but before any newer ones.
+ * A record's position in the log is {@code segmentId << 32 | position}.
+ */
+final class LogSegment {
+
+    static final int HEADER_BYTES = 32;
+    private static final int MAGIC = 0x4C4E4B53;
+    private static final int VERSION = 1;
+
+    final int id;
+    final long order;
+    final Path file;
+    final MappedByteBuffer buffer;
+    private int writePosition;
+
+    private LogSegment(int id, long order, Path file, MappedByteBuffer buffer, int writePosition) {
+        this.id = id;
+        this.order = order;
+        this.file = file;
+        this.buffer = buffer;
+        this.writePosition = writePosition;
+    }
+
+    static Path fileOf(Path dir, int id) {
+        return dir.resolve(String.format("segment-%08d.log", id));
+    }
+
+    static LogSegment create(Path dir, int id, long order, int size) throws IOException {
+        Path file = fileOf(dir, id);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE_NEW,
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            buffer.putInt(0, MAGIC).putInt(4, VERSION).putInt(8, id).putLong(16, order);
+            buffer.force();
+            return new LogSegment(id, order, file, buffer, HEADER_BYTES);
+        }
+    }
+
+    /**
+     * Map an existing segment; the write position is found by replaying it
+     */
+    static LogSegment open(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size());
+            if (buffer.capacity() < HEADER_BYTES || buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+                throw new IOException("not a link log segment: " + file);
+            }
+            return new LogSegment(buffer.getInt(8), buffer.getLong(16), file, buffer, HEADER_BYTES);
+        }
+    }
+
+    static long offset(int segmentId, int position) {
+        return (long) segmentId << 32 | position;
+    }
+
+    static int segmentOf(long offset) {
+        return (int) (offset >>> 32);
+    }
+
+    static int positionOf(long offset) {
+        return (int) offset;
+    }
+
+    /**
+     * Append a record; returns its position, or -1 if the segment is full
+     */
+    int append(byte[] record) {
+        if (writePosition + record.length > buffer.capacity()) {
+            return -1;
+        }
+        int position = writePosition;
+        buffer.put(position, record);
+        writePosition += record.length;
+        return position;
+    }
+
+    int writePosition() {
+        return writePosition;
+    }
+
+    void setWritePosition(int position) {
+        this.writePosition = position;
+    }
+
+    /**
+     * Bytes of records written to this segment
+     */
+    int dataBytes() {
+        return writePosition - HEADER_BYTES;
+    }
+
+    /**
+     * Zero everything from the position on, so a torn record is not read again
+     */
+    void truncate(int position) {
+        ByteBuffer zeros = ByteBuffer.allocate(Math.min(1 << 16, buffer.capacity() - position));
+        for (int at = position; at < buffer.capacity(); at += zeros.capacity()) {
+            buffer.put(at, zeros.array(), 0, Math.min(zeros.capacity(), buffer.capacity() - at));
+        }
+        writePosition = position;
+        buffer.force();
+    }
+
+    void force() {
+        buffer.force();
+    }
+
+    void delete() throws IOException {
+        // The mapping itself is released when the buffer is garbage collected
+        Files.deleteIfExists(file);
+    }
+}
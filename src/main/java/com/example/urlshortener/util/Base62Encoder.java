@@ -1,27 +1,182 @@
 package com.example.urlshortener.util;
 
+import java.util.Arrays;
+
+/**
+ * Base62 codec for short codes.
+ *
+ * Digits are written least significant first (value 62 is "ab"), which is
+ * the order every existing short code was generated in, so decoding a stored
+ * code returns the value it was made from. Only non-negative values can be
+ * encoded; an int is read as unsigned.
+ *
+ * The char[] and byte[] variants write into a caller-supplied buffer and do
+ * not allocate. Fixed-width encoding pads with the zero digit 'a', which
+ * decodes to the same value.
+ */
 public class Base62Encoder {
 
     private static final String BASE62 =
             "abcdefghijklmnopqrstuvwxyzABCDEFGHIJKLMNOPQRSTUVWXYZ0123456789";
+    private static final char[] DIGITS = BASE62.toCharArray();
+    private static final byte[] VALUES = new byte[128];
+
+    /** Digits needed for Long.MAX_VALUE */
+    public static final int MAX_LENGTH = 11;
+
+    static {
+        Arrays.fill(VALUES, (byte) -1);
+        for (int i = 0; i < DIGITS.length; i++) {
+            VALUES[DIGITS[i]] = (byte) i;
+        }
+    }
+
     public static String encode(int value) {
-        long v = value;
-        return encode(v);
+        return encode(Integer.toUnsignedLong(value));
     }
 
     public static String encode(long value) {
-        // treat value as unsigned
+        char[] buffer = new char[MAX_LENGTH];
+        int length = encode(value, buffer, 0);
+        return new String(buffer, 0, length);
+    }
+
+    /**
+     * Write the digits of value into dst at offset; returns the number of digits written
+     */
+    public static int encode(long value, char[] dst, int offset) {
+        checkNonNegative(value);
         long v = value;
-        if (v == 0) {
-            return String.valueOf(BASE62.charAt(0));
+        int i = offset;
+        do {
+            dst[i++] = DIGITS[(int) (v % 62)];
+            v /= 62;
+        } while (v > 0);
+        return i - offset;
+    }
+
+    /**
+     * Write exactly width digits of value into dst at offset, padding with 'a'
+     */
+    public static void encodeFixed(long value, char[] dst, int offset, int width) {
+        checkNonNegative(value);
+        long v = value;
+        for (int i = 0; i < width; i++) {
+            dst[offset + i] = DIGITS[(int) (v % 62)];
+            v /= 62;
         }
+        checkFits(v, value, width);
+    }
 
-        StringBuilder result = new StringBuilder();
-        while (v > 0) {
-            int idx = (int) (v % 62);
-            result.append(BASE62.charAt(idx));
+    /**
+     * Write exactly width ASCII digits of value into dst at offset, padding with 'a'
+     */
+    public static void encodeFixed(long value, byte[] dst, int offset, int width) {
+        checkNonNegative(value);
+        long v = value;
+        for (int i = 0; i < width; i++) {
+            dst[offset + i] = (byte) DIGITS[(int) (v % 62)];
             v /= 62;
         }
-        return result.toString();
+        checkFits(v, value, width);
+    }
+
+    /**
+     * Number of digits encode(value) produces
+     */
+    public static int length(long value) {
+        checkNonNegative(value);
+        int length = 1;
+        for (long v = value / 62; v > 0; v /= 62) {
+            length++;
+        }
+        return length;
+    }
+
+    /**
+     * Value of a code; throws IllegalArgumentException if it is empty, contains a
+     * character outside [a-zA-Z0-9] or does not fit in a non-negative long
+     */
+    public static long decode(CharSequence code) {
+        int length = code.length();
+        checkLength(length);
+        long value = 0;
+        for (int i = length - 1; i >= 0; i--) {
+            value = accumulate(value, digit(code.charAt(i)), code);
+        }
+        return value;
+    }
+
+    /**
+     * Value of the ASCII code in src[offset, offset + length)
+     */
+    public static long decode(byte[] src, int offset, int length) {
+        checkLength(length);
+        long value = 0;
+        for (int i = offset + length - 1; i >= offset; i--) {
+            value = accumulate(value, digit((char) (src[i] & 0xFF)), null);
+        }
+        return value;
+    }
+
+    /**
+     * Value of a code, or -1 where decode would throw; for untrusted input on hot paths
+     */
+    public static long tryDecode(CharSequence code) {
+        int length = code == null ? 0 : code.length();
+        if (length == 0 || length > MAX_LENGTH) {
+            return -1;
+        }
+        long value = 0;
+        for (int i = length - 1; i >= 0; i--) {
+            char c = code.charAt(i);
+            int d = c < VALUES.length ? VALUES[c] : -1;
+            if (d < 0 || value > (Long.MAX_VALUE - d) / 62) {
+                return -1;
+            }
+            value = value * 62 + d;
+        }
+        return value;
+    }
+
+    /**
+     * Whether code is a non-empty string of Base62 digits that decodes to a long
+     */
+    public static boolean isValid(CharSequence code) {
+        return tryDecode(code) >= 0;
+    }
+
+    private static int digit(char c) {
+        int d = c < VALUES.length ? VALUES[c] : -1;
+        if (d < 0) {
+            throw new IllegalArgumentException("Invalid Base62 character: '" + c + "'");
+        }
+        return d;
+    }
+
+    private static long accumulate(long value, int digit, CharSequence code) {
+        // value * 62 + digit must stay within a non-negative long
+        if (value > (Long.MAX_VALUE - digit) / 62) {
+            throw new IllegalArgumentException("Base62 code out of range" + (code == null ? "" : ": " + code));
+        }
+        return value * 62 + digit;
+    }
+
+    private static void checkLength(int length) {
+        if (length == 0 || length > MAX_LENGTH) {
+            throw new IllegalArgumentException("Base62 code must have 1 to " + MAX_LENGTH + " characters");
+        }
+    }
+
+    private static void checkNonNegative(long value) {
+        if (value < 0) {
+            throw new IllegalArgumentException("Cannot encode negative value " + value);
+        }
+    }
+
+    private static void checkFits(long rest, long value, int width) {
+        if (rest != 0) {
+            throw new IllegalArgumentException(value + " does not fit in " + width + " Base62 digits");
+        }
     }
 }
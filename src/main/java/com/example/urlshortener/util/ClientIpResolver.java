@@ -0,0 +1,38 @@
+package com.example.urlshortener.util;
+
+/**
+ * ClientIpResolver works out the client's IP address from proxy headers and
+ * the socket's remote address, shared by every listener that logs clicks.
+ */
+public final class ClientIpResolver {
+
+    private static final String LOOPBACK = "127.0.0.1";
+    private static final String UNKNOWN = "Unknown";
+
+    private ClientIpResolver() {
+    }
+
+    /**
+     * First X-Forwarded-For hop, else X-Real-IP, else the remote address
+     * (with the IPv6 loopback normalized to 127.0.0.1)
+     */
+    public static String resolve(String xForwardedFor, String xRealIp, String remoteAddr) {
+        if (xForwardedFor != null && !xForwardedFor.isEmpty()) {
+            // X-Forwarded-For can contain multiple IPs, get the first one
+            int comma = xForwardedFor.indexOf(',');
+            return (comma < 0 ? xForwardedFor : xForwardedFor.substring(0, comma)).trim();
+        }
+
+        if (xRealIp != null && !xRealIp.isEmpty()) {
+            return xRealIp;
+        }
+
+        if (remoteAddr == null) {
+            return UNKNOWN;
+        }
+        if ("0:0:0:0:0:0:0:1".equals(remoteAddr) || "::1".equals(remoteAddr)) {
+            return LOOPBACK;
+        }
+        return remoteAddr;
+    }
+}
@@ -0,0 +1,115 @@
+package com.example.urlshortener.util;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * ConsistentHashRing maps 64-bit hashes to nodes.
+ *
+ * Every node owns a number of virtual nodes: points on the ring at the hash of
+ * "node#i". A key belongs to the first point at or after its hash, wrapping
+ * around. The share of keys a node receives is proportional to its virtual
+ * node count, and giving a node more virtual nodes only takes keys away from
+ * the others in proportion, so weights can be changed one node at a time.
+ *
+ * The ring is immutable; lookups are a binary search over a sorted long[].
+ */
+public final class ConsistentHashRing<N> {
+
+    private static final double TWO_TO_64 = 18446744073709551616.0;
+
+    private final long[] points;
+    private final Object[] owners;
+    private final Map<N, Integer> virtualNodes;
+
+    /**
+     * @param virtualNodes virtual node count per node; nodes with 0 receive no keys
+     */
+    public ConsistentHashRing(Map<N, Integer> virtualNodes) {
+        int total = 0;
+        for (int count : virtualNodes.values()) {
+            if (count < 0) {
+                throw new IllegalArgumentException("virtual node count must not be negative");
+            }
+            total += count;
+        }
+        if (total == 0) {
+            throw new IllegalArgumentException("ring needs at least one virtual node");
+        }
+
+        long[] hashes = new long[total];
+        Object[] nodes = new Object[total];
+        int i = 0;
+        for (Map.Entry<N, Integer> entry : virtualNodes.entrySet()) {
+            for (int v = 0; v < entry.getValue(); v++) {
+                hashes[i] = HyperLogLog.hash64(entry.getKey() + "#" + v);
+                nodes[i] = entry.getKey();
+                i++;
+            }
+        }
+
+        // Sort points (and their owners) by hash
+        Integer[] order = new Integer[total];
+        for (int j = 0; j < total; j++) {
+            order[j] = j;
+        }
+        Arrays.sort(order, (a, b) -> Long.compare(hashes[a], hashes[b]));
+        this.points = new long[total];
+        this.owners = new Object[total];
+        for (int j = 0; j < total; j++) {
+            points[j] = hashes[order[j]];
+            owners[j] = nodes[order[j]];
+        }
+        this.virtualNodes = new LinkedHashMap<>(virtualNodes);
+    }
+
+    /**
+     * Node owning the given hash
+     */
+    @SuppressWarnings("unchecked")
+    public N nodeFor(long hash) {
+        int index = Arrays.binarySearch(points, hash);
+        if (index < 0) {
+            index = -index - 1;
+            if (index == points.length) {
+                index = 0;
+            }
+        }
+        return (N) owners[index];
+    }
+
+    /**
+     * Node owning the hash of a string key
+     */
+    public N nodeFor(String key) {
+        return nodeFor(HyperLogLog.hash64(key));
+    }
+
+    public Map<N, Integer> getVirtualNodes() {
+        return virtualNodes;
+    }
+
+    /**
+     * Fraction of the hash space each node owns
+     */
+    @SuppressWarnings("unchecked")
+    public Map<N, Double> ownership() {
+        Map<N, Double> shares = new HashMap<>();
+        for (N node : virtualNodes.keySet()) {
+            shares.put(node, 0.0);
+        }
+        for (int i = 0; i < points.length; i++) {
+            // Point i owns the arc from the previous point (exclusive) up to itself
+            long previous = i == 0 ? points[points.length - 1] : points[i - 1];
+            double arc = points.length == 1 ? 1.0 : unsignedToDouble(points[i] - previous) / TWO_TO_64;
+            shares.merge((N) owners[i], arc, Double::sum);
+        }
+        return shares;
+    }
+
+    private static double unsignedToDouble(long value) {
+        return (double) (value >>> 1) * 2.0 + (value & 1);
+    }
+}
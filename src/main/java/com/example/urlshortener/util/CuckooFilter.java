@@ -0,0 +1,266 @@
+package com.example.urlshortener.util;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * CuckooFilter is an approximate set membership structure that, unlike a
+ * Bloom filter, also supports deletes.
+ *
+ * Each key is reduced to a small fingerprint stored in one of two candidate
+ * buckets of four slots. A negative answer is always correct; a positive answer
+ * is wrong with probability about 8 / 2^fingerprintBits at full load.
+ *
+ * Writes take an exclusive lock; reads are optimistic and only fall back to a
+ * shared lock if a write happened at the same time.
+ */
+public class CuckooFilter {
+
+    private static final int SLOTS_PER_BUCKET = 4;
+    private static final int MAX_KICKS = 500;
+    private static final double MAX_LOAD = 0.95;
+
+    private final short[] table;
+    private final int bucketMask;
+    private final int fingerprintBits;
+    private final int fingerprintMask;
+    private final StampedLock lock = new StampedLock();
+
+    private int count;
+    private short victim;
+    private int victimIndex;
+    private long kickSeed = 0x2545F4914F6CDD1DL;
+
+    /**
+     * @param expectedItems     number of keys the filter must hold
+     * @param falsePositiveRate target false-positive probability (0 - 1)
+     */
+    public CuckooFilter(long expectedItems, double falsePositiveRate) {
+        if (expectedItems <= 0 || falsePositiveRate <= 0 || falsePositiveRate >= 1) {
+            throw new IllegalArgumentException("expectedItems must be positive and falsePositiveRate in (0, 1)");
+        }
+        long buckets = (long) Math.ceil(expectedItems / (SLOTS_PER_BUCKET * MAX_LOAD));
+        long bucketCount = Long.highestOneBit(Math.max(2, buckets - 1)) << 1;
+        if (bucketCount * SLOTS_PER_BUCKET > Integer.MAX_VALUE - 8) {
+            throw new IllegalArgumentException("expectedItems too large: " + expectedItems);
+        }
+        int bits = (int) Math.ceil(Math.log(2.0 * SLOTS_PER_BUCKET / falsePositiveRate) / Math.log(2));
+        this.fingerprintBits = Math.max(4, Math.min(16, bits));
+        this.fingerprintMask = (1 << fingerprintBits) - 1;
+        this.bucketMask = (int) bucketCount - 1;
+        this.table = new short[(int) bucketCount * SLOTS_PER_BUCKET];
+    }
+
+    /**
+     * Add a key; returns false if the filter is too full to take it
+     */
+    public boolean add(String key) {
+        long hash = hash(key);
+        int fp = fingerprint(hash);
+        int i1 = index(hash);
+        int i2 = altIndex(i1, fp);
+
+        long stamp = lock.writeLock();
+        try {
+            if (victim != 0) {
+                return false;
+            }
+            if (insertInto(i1, fp) || insertInto(i2, fp)) {
+                count++;
+                return true;
+            }
+
+            // Both buckets full: relocate existing fingerprints
+            int index = (nextRandom() & 1) == 0 ? i1 : i2;
+            int current = fp;
+            for (int kick = 0; kick < MAX_KICKS; kick++) {
+                int slot = index * SLOTS_PER_BUCKET + (nextRandom() & (SLOTS_PER_BUCKET - 1));
+                int evicted = table[slot] & 0xFFFF;
+                table[slot] = (short) current;
+                current = evicted;
+                index = altIndex(index, current);
+                if (insertInto(index, current)) {
+                    count++;
+                    return true;
+                }
+            }
+            // Keep the homeless fingerprint so lookups stay correct; the
+            // filter accepts no more keys from now on.
+            victim = (short) current;
+            victimIndex = index;
+            count++;
+            return true;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * False means the key was definitely never added (or was removed)
+     */
+    public boolean mightContain(String key) {
+        long hash = hash(key);
+        int fp = fingerprint(hash);
+        int i1 = index(hash);
+        int i2 = altIndex(i1, fp);
+
+        long stamp = lock.tryOptimisticRead();
+        boolean found = lookup(i1, i2, fp);
+        if (!lock.validate(stamp)) {
+            stamp = lock.readLock();
+            try {
+                found = lookup(i1, i2, fp);
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Remove one occurrence of a key that was previously added
+     */
+    public boolean remove(String key) {
+        long hash = hash(key);
+        int fp = fingerprint(hash);
+        int i1 = index(hash);
+        int i2 = altIndex(i1, fp);
+
+        long stamp = lock.writeLock();
+        try {
+            if (removeFrom(i1, fp) || removeFrom(i2, fp)) {
+                count--;
+                if (victim != 0) {
+                    // A slot was freed: give the homeless fingerprint a home
+                    int homeless = victim & 0xFFFF;
+                    if (insertInto(victimIndex, homeless) || insertInto(altIndex(victimIndex, homeless), homeless)) {
+                        victim = 0;
+                    }
+                }
+                return true;
+            }
+            if (victim != 0 && (victim & 0xFFFF) == fp && (victimIndex == i1 || victimIndex == i2)) {
+                victim = 0;
+                count--;
+                return true;
+            }
+            return false;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    public int size() {
+        long stamp = lock.readLock();
+        try {
+            return count;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    public int capacity() {
+        return table.length;
+    }
+
+    public boolean isFull() {
+        long stamp = lock.readLock();
+        try {
+            return victim != 0;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    public int getFingerprintBits() {
+        return fingerprintBits;
+    }
+
+    public long getMemoryBytes() {
+        return (long) table.length * Short.BYTES;
+    }
+
+    /**
+     * Expected false-positive rate at the current load
+     */
+    public double estimatedFalsePositiveRate() {
+        double load = (double) size() / table.length;
+        return 2.0 * SLOTS_PER_BUCKET * load / (1 << fingerprintBits);
+    }
+
+    private boolean lookup(int i1, int i2, int fp) {
+        return bucketContains(i1, fp) || bucketContains(i2, fp)
+                || (victim != 0 && (victim & 0xFFFF) == fp && (victimIndex == i1 || victimIndex == i2));
+    }
+
+    private boolean bucketContains(int index, int fp) {
+        int base = index * SLOTS_PER_BUCKET;
+        for (int i = 0; i < SLOTS_PER_BUCKET; i++) {
+            if ((table[base + i] & 0xFFFF) == fp) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean insertInto(int index, int fp) {
+        int base = index * SLOTS_PER_BUCKET;
+        for (int i = 0; i < SLOTS_PER_BUCKET; i++) {
+            if (table[base + i] == 0) {
+                table[base + i] = (short) fp;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean removeFrom(int index, int fp) {
+        int base = index * SLOTS_PER_BUCKET;
+        for (int i = 0; i < SLOTS_PER_BUCKET; i++) {
+            if ((table[base + i] & 0xFFFF) == fp) {
+                table[base + i] = 0;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private int index(long hash) {
+        return (int) hash & bucketMask;
+    }
+
+    private int altIndex(int index, int fp) {
+        return (index ^ (int) mix(fp)) & bucketMask;
+    }
+
+    private int fingerprint(long hash) {
+        int fp = (int) (hash >>> 32) & fingerprintMask;
+        return fp == 0 ? 1 : fp;
+    }
+
+    private int nextRandom() {
+        kickSeed ^= kickSeed << 13;
+        kickSeed ^= kickSeed >>> 7;
+        kickSeed ^= kickSeed << 17;
+        return (int) kickSeed;
+    }
+
+    private static long hash(String key) {
+        // 64-bit FNV-1a over the UTF-8 bytes, finished with a mixer
+        long h = 0xCBF29CE484222325L;
+        for (byte b : key.getBytes(StandardCharsets.UTF_8)) {
+            h ^= b & 0xFF;
+            h *= 0x100000001B3L;
+        }
+        return mix(h);
+    }
+
+    private static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        h *= 0xC4CEB9FE1A85EC53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
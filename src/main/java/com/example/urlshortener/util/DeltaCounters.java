@@ -0,0 +1,117 @@
+package com.example.urlshortener.util;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.ObjLongConsumer;
+
+/**
+ * DeltaCounters accumulates per-key counts in memory until they are drained.
+ *
+ * Adding never blocks and never loses an increment, even while a drain is
+ * running: a drain resets each counter atomically, and a counter that was idle
+ * since the previous drain is retired from the map, with any increment that
+ * raced with the retirement moved to a fresh counter.
+ *
+ * Each key can also carry a mark, the largest value passed with its adds
+ * (e.g. the time of the latest event). Marks are not reset by a drain.
+ */
+public class DeltaCounters<K> {
+
+    /**
+     * Mark of a key that was never given one
+     */
+    public static final long NO_MARK = Long.MIN_VALUE;
+
+    /**
+     * Receives a drained delta with the key's mark
+     */
+    @FunctionalInterface
+    public interface MarkedDeltaConsumer<K> {
+        void accept(K key, long delta, long mark);
+    }
+
+    private final ConcurrentHashMap<K, Counter> counters = new ConcurrentHashMap<>();
+
+    public void add(K key, long delta) {
+        add(key, delta, NO_MARK);
+    }
+
+    /**
+     * Add to a key's count and raise its mark to at least the given one
+     */
+    public void add(K key, long delta, long mark) {
+        while (true) {
+            Counter counter = counters.computeIfAbsent(key, k -> new Counter());
+            if (mark != NO_MARK) {
+                counter.mark.accumulate(mark);
+            }
+            counter.value.add(delta);
+            if (!counter.retired) {
+                return;
+            }
+            counters.remove(key, counter);
+            delta = counter.value.sumThenReset();
+            mark = counter.mark.get();
+            if (delta == 0) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Pending (not yet drained) count for a key
+     */
+    public long get(K key) {
+        Counter counter = counters.get(key);
+        return counter == null ? 0 : counter.value.sum();
+    }
+
+    /**
+     * Mark of a key still held, or NO_MARK
+     */
+    public long getMark(K key) {
+        Counter counter = counters.get(key);
+        return counter == null ? NO_MARK : counter.mark.get();
+    }
+
+    /**
+     * Hand every non-zero delta to the consumer and reset it
+     */
+    public void drain(ObjLongConsumer<K> consumer) {
+        drain((key, delta, mark) -> consumer.accept(key, delta));
+    }
+
+    /**
+     * Hand every non-zero delta with its key's mark to the consumer and reset it
+     */
+    public void drain(MarkedDeltaConsumer<K> consumer) {
+        for (Map.Entry<K, Counter> e : counters.entrySet()) {
+            Counter counter = e.getValue();
+            long delta = counter.value.sumThenReset();
+            if (delta == 0) {
+                counter.retired = true;
+                counters.remove(e.getKey(), counter);
+                delta = counter.value.sumThenReset();
+            }
+            if (delta != 0) {
+                consumer.accept(e.getKey(), delta, counter.mark.get());
+            }
+        }
+    }
+
+    public int size() {
+        return counters.size();
+    }
+
+    public boolean isEmpty() {
+        return counters.isEmpty();
+    }
+
+    private static class Counter {
+        private final LongAdder value = new LongAdder();
+        private final LongAccumulator mark = new LongAccumulator(Math::max, NO_MARK);
+        private volatile boolean retired;
+    }
+}
@@ -0,0 +1,30 @@
+package com.example.urlshortener.util;
+
+import java.time.LocalDateTime;
+
+public final class ExpirationParser {
+
+    private ExpirationParser() {
+    }
+
+    /**
+     * Parse an expiration time relative to now
+     * Formats: "1h", "24h", "7d", "30d", "90m"
+     */
+    public static LocalDateTime parse(String expiresIn) {
+        LocalDateTime now = LocalDateTime.now();
+        
+        if (expiresIn.endsWith("h")) {
+            int hours = Integer.parseInt(expiresIn.replace("h", ""));
+            return now.plusHours(hours);
+        } else if (expiresIn.endsWith("d")) {
+            int days = Integer.parseInt(expiresIn.replace("d", ""));
+            return now.plusDays(days);
+        } else if (expiresIn.endsWith("m")) {
+            int minutes = Integer.parseInt(expiresIn.replace("m", ""));
+            return now.plusMinutes(minutes);
+        }
+        
+        return null;
+    }
+}
@@ -0,0 +1,201 @@
+package com.example.urlshortener.util;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * FrequencyCache is a bounded in-memory cache with per-entry expiry.
+ *
+ * Keys are spread over independently locked segments. Each segment keeps its
+ * entries in LRU order; when a segment is full the new key is only admitted if
+ * the shared FrequencySketch says it is requested more often than the LRU
+ * victim (TinyLFU admission). This keeps a few thousand hot keys resident even
+ * when a scan of one-off keys passes through the cache.
+ */
+public class FrequencyCache<K, V> {
+
+    private static final int SEGMENT_COUNT = 16;
+
+    private final Segment<K, V>[] segments;
+    private final FrequencySketch sketch;
+    private final int maxSize;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong expirations = new AtomicLong();
+    private final AtomicLong rejections = new AtomicLong();
+
+    @SuppressWarnings("unchecked")
+    public FrequencyCache(int maxSize) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("maxSize must be positive");
+        }
+        this.maxSize = maxSize;
+        this.sketch = new FrequencySketch(maxSize);
+        this.segments = new Segment[SEGMENT_COUNT];
+        int perSegment = Math.max(1, (maxSize + SEGMENT_COUNT - 1) / SEGMENT_COUNT);
+        for (int i = 0; i < SEGMENT_COUNT; i++) {
+            segments[i] = new Segment<>(perSegment);
+        }
+    }
+
+    /**
+     * Get a value, or null if absent or expired
+     */
+    public V get(K key) {
+        sketch.increment(key);
+        Segment<K, V> segment = segmentFor(key);
+        long now = System.currentTimeMillis();
+        synchronized (segment) {
+            Node<V> node = segment.map.get(key);
+            if (node == null) {
+                misses.incrementAndGet();
+                return null;
+            }
+            if (node.expiresAtMillis <= now) {
+                segment.map.remove(key);
+                expirations.incrementAndGet();
+                misses.incrementAndGet();
+                return null;
+            }
+            hits.incrementAndGet();
+            return node.value;
+        }
+    }
+
+    /**
+     * Store a value that is valid until the given epoch millis
+     */
+    public void put(K key, V value, long expiresAtMillis) {
+        long now = System.currentTimeMillis();
+        if (expiresAtMillis <= now) {
+            return;
+        }
+        Segment<K, V> segment = segmentFor(key);
+        synchronized (segment) {
+            if (segment.map.containsKey(key) || segment.map.size() < segment.capacity) {
+                segment.map.put(key, new Node<>(value, expiresAtMillis));
+                return;
+            }
+
+            Iterator<Map.Entry<K, Node<V>>> it = segment.map.entrySet().iterator();
+            Map.Entry<K, Node<V>> victim = it.next();
+            if (victim.getValue().expiresAtMillis <= now) {
+                it.remove();
+                expirations.incrementAndGet();
+            } else if (sketch.frequency(key) > sketch.frequency(victim.getKey())) {
+                it.remove();
+                evictions.incrementAndGet();
+            } else {
+                rejections.incrementAndGet();
+                return;
+            }
+            segment.map.put(key, new Node<>(value, expiresAtMillis));
+        }
+    }
+
+    /**
+     * Remove a single key
+     */
+    public void invalidate(K key) {
+        Segment<K, V> segment = segmentFor(key);
+        synchronized (segment) {
+            segment.map.remove(key);
+        }
+    }
+
+    /**
+     * Remove every entry
+     */
+    public void invalidateAll() {
+        for (Segment<K, V> segment : segments) {
+            synchronized (segment) {
+                segment.map.clear();
+            }
+        }
+    }
+
+    /**
+     * Drop every entry whose expiry time has passed
+     */
+    public int removeExpired() {
+        long now = System.currentTimeMillis();
+        int removed = 0;
+        for (Segment<K, V> segment : segments) {
+            synchronized (segment) {
+                Iterator<Node<V>> it = segment.map.values().iterator();
+                while (it.hasNext()) {
+                    if (it.next().expiresAtMillis <= now) {
+                        it.remove();
+                        removed++;
+                    }
+                }
+            }
+        }
+        expirations.addAndGet(removed);
+        return removed;
+    }
+
+    public int size() {
+        int size = 0;
+        for (Segment<K, V> segment : segments) {
+            synchronized (segment) {
+                size += segment.map.size();
+            }
+        }
+        return size;
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+    public long getExpirations() {
+        return expirations.get();
+    }
+
+    public long getRejections() {
+        return rejections.get();
+    }
+
+    private Segment<K, V> segmentFor(K key) {
+        int h = key.hashCode();
+        h ^= h >>> 16;
+        return segments[h & (SEGMENT_COUNT - 1)];
+    }
+
+    private static class Segment<K, V> {
+        private final int capacity;
+        private final LinkedHashMap<K, Node<V>> map;
+
+        Segment(int capacity) {
+            this.capacity = capacity;
+            this.map = new LinkedHashMap<>(16, 0.75f, true);
+        }
+    }
+
+    private static class Node<V> {
+        private final V value;
+        private final long expiresAtMillis;
+
+        Node(V value, long expiresAtMillis) {
+            this.value = value;
+            this.expiresAtMillis = expiresAtMillis;
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package com.example.urlshortener.util;
+
+/**
+ * FrequencySketch is a small Count-Min sketch used to estimate how often a key
+ * has been seen recently. Counters are halved periodically so that the
+ * estimate follows the current traffic instead of all-time popularity.
+ *
+ * Updates are deliberately not synchronized: a lost increment only makes the
+ * estimate slightly lower, which is acceptable for an admission heuristic.
+ */
+public class FrequencySketch {
+
+    private static final int DEPTH = 4;
+    private static final int MAX_COUNT = 15;
+    private static final int[] SEEDS = {0x9E3779B9, 0x85EBCA6B, 0xC2B2AE35, 0x27D4EB2F};
+
+    private final int[] table;
+    private final int mask;
+    private final int sampleSize;
+    private int additions;
+
+    public FrequencySketch(int expectedKeys) {
+        int width = Integer.highestOneBit(Math.max(16, expectedKeys) - 1) << 1;
+        this.table = new int[width * DEPTH];
+        this.mask = width - 1;
+        this.sampleSize = Math.max(160, expectedKeys * 10);
+    }
+
+    /**
+     * Record one occurrence of the key
+     */
+    public void increment(Object key) {
+        int hash = spread(key.hashCode());
+        boolean added = false;
+        for (int i = 0; i < DEPTH; i++) {
+            int index = indexOf(hash, i);
+            if (table[index] < MAX_COUNT) {
+                table[index]++;
+                added = true;
+            }
+        }
+        if (added && ++additions >= sampleSize) {
+            reset();
+        }
+    }
+
+    /**
+     * Estimated number of recent occurrences of the key (0 - 15)
+     */
+    public int frequency(Object key) {
+        int hash = spread(key.hashCode());
+        int min = MAX_COUNT;
+        for (int i = 0; i < DEPTH; i++) {
+            min = Math.min(min, table[indexOf(hash, i)]);
+        }
+        return min;
+    }
+
+    /**
+     * Halve every counter so old popularity fades out
+     */
+    private void reset() {
+        for (int i = 0; i < table.length; i++) {
+            table[i] >>>= 1;
+        }
+        additions = 0;
+    }
+
+    private int indexOf(int hash, int row) {
+        int h = (hash ^ SEEDS[row]) * 0x9E3779B1;
+        h ^= h >>> 16;
+        return row * (mask + 1) + (h & mask);
+    }
+
+    private static int spread(int h) {
+        h ^= h >>> 17;
+        h *= 0xED5AD4BB;
+        h ^= h >>> 11;
+        return h;
+    }
+}
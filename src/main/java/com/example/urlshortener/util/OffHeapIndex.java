@@ -0,0 +1,207 @@
+package com.example.urlshortener.util;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.function.LongPredicate;
+
+/**
+ * OffHeapIndex maps 64-bit key hashes to positive long values in a direct
+ * buffer, so tens of millions of entries cost no Java objects and no GC work.
+ *
+ * Open addressing with linear probing over 16-byte slots (hash, value); a
+ * value of 0 marks an empty slot. Removal shifts the following entries back
+ * instead of leaving tombstones. Different keys can share a hash, so every
+ * operation takes a predicate that confirms whether a stored value belongs to
+ * the caller's key (for example by reading the record it points to).
+ *
+ * Not thread-safe; callers guard it with their own lock. The whole table can
+ * be written to and read back from a file channel as one block.
+ */
+public final class OffHeapIndex {
+
+    private static final int SLOT_BYTES = 16;
+    private static final double MAX_LOAD = 0.7;
+    private static final int MAX_SLOTS = Integer.MAX_VALUE / SLOT_BYTES;
+
+    private ByteBuffer slots;
+    private int mask;
+    private int size;
+
+    public OffHeapIndex(int expectedEntries) {
+        int capacity = Integer.highestOneBit((int) Math.min(MAX_SLOTS, Math.max(16, expectedEntries / MAX_LOAD)) - 1) << 1;
+        allocate(capacity);
+    }
+
+    private OffHeapIndex(ByteBuffer slots, int size) {
+        this.slots = slots;
+        this.mask = slots.capacity() / SLOT_BYTES - 1;
+        this.size = size;
+    }
+
+    /**
+     * Value stored for the key, or 0 if there is none
+     */
+    public long get(long hash, LongPredicate matches) {
+        for (int slot = slotOf(hash); ; slot = (slot + 1) & mask) {
+            long value = slots.getLong(slot * SLOT_BYTES + 8);
+            if (value == 0) {
+                return 0;
+            }
+            if (slots.getLong(slot * SLOT_BYTES) == hash && matches.test(value)) {
+                return value;
+            }
+        }
+    }
+
+    /**
+     * Store a value for the key, replacing the value the predicate matches
+     */
+    public void put(long hash, long value, LongPredicate matches) {
+        if (value <= 0) {
+            throw new IllegalArgumentException("values must be positive");
+        }
+        if (size + 1 > (mask + 1) * MAX_LOAD) {
+            grow();
+        }
+        for (int slot = slotOf(hash); ; slot = (slot + 1) & mask) {
+            int at = slot * SLOT_BYTES;
+            long current = slots.getLong(at + 8);
+            if (current == 0) {
+                slots.putLong(at, hash);
+                slots.putLong(at + 8, value);
+                size++;
+                return;
+            }
+            if (slots.getLong(at) == hash && matches.test(current)) {
+                slots.putLong(at + 8, value);
+                return;
+            }
+        }
+    }
+
+    /**
+     * Remove the key's entry; returns false if there was none
+     */
+    public boolean remove(long hash, LongPredicate matches) {
+        int slot = slotOf(hash);
+        while (true) {
+            long value = slots.getLong(slot * SLOT_BYTES + 8);
+            if (value == 0) {
+                return false;
+            }
+            if (slots.getLong(slot * SLOT_BYTES) == hash && matches.test(value)) {
+                break;
+            }
+            slot = (slot + 1) & mask;
+        }
+        // Backward shift: move later entries of the probe run into the gap
+        int gap = slot;
+        for (int next = (gap + 1) & mask; ; next = (next + 1) & mask) {
+            int at = next * SLOT_BYTES;
+            long value = slots.getLong(at + 8);
+            if (value == 0) {
+                break;
+            }
+            int home = slotOf(slots.getLong(at));
+            // The entry may fill the gap only if its home is not between gap and next
+            boolean movable = gap <= next ? (home <= gap || home > next) : (home <= gap && home > next);
+            if (movable) {
+                slots.putLong(gap * SLOT_BYTES, slots.getLong(at));
+                slots.putLong(gap * SLOT_BYTES + 8, value);
+                gap = next;
+            }
+        }
+        slots.putLong(gap * SLOT_BYTES, 0);
+        slots.putLong(gap * SLOT_BYTES + 8, 0);
+        size--;
+        return true;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public long memoryBytes() {
+        return slots.capacity();
+    }
+
+    /**
+     * Write the table (slot count, size, slots) at the channel's position
+     */
+    public void writeTo(FileChannel channel) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(8);
+        header.putInt(mask + 1).putInt(size).flip();
+        writeFully(channel, header);
+        writeFully(channel, slots.duplicate().clear());
+    }
+
+    /**
+     * Read a table written by writeTo from the channel's position
+     */
+    public static OffHeapIndex readFrom(FileChannel channel) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(8);
+        readFully(channel, header);
+        header.flip();
+        int capacity = header.getInt();
+        int size = header.getInt();
+        if (Integer.bitCount(capacity) != 1 || capacity > MAX_SLOTS || size < 0 || size > capacity) {
+            throw new IOException("corrupt index header");
+        }
+        ByteBuffer slots = ByteBuffer.allocateDirect(capacity * SLOT_BYTES);
+        readFully(channel, slots);
+        return new OffHeapIndex(slots, size);
+    }
+
+    /**
+     * Write the whole buffer; a single channel write may stop early
+     */
+    public static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    /**
+     * Fill the whole buffer, failing at the end of the file
+     */
+    public static void readFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) < 0) {
+                throw new IOException("unexpected end of file");
+            }
+        }
+    }
+
+    private void grow() {
+        int capacity = (mask + 1) * 2;
+        if (capacity > MAX_SLOTS) {
+            throw new IllegalStateException("index is full");
+        }
+        ByteBuffer old = slots;
+        int oldCapacity = mask + 1;
+        allocate(capacity);
+        for (int slot = 0; slot < oldCapacity; slot++) {
+            long value = old.getLong(slot * SLOT_BYTES + 8);
+            if (value != 0) {
+                long hash = old.getLong(slot * SLOT_BYTES);
+                int target = slotOf(hash);
+                while (slots.getLong(target * SLOT_BYTES + 8) != 0) {
+                    target = (target + 1) & mask;
+                }
+                slots.putLong(target * SLOT_BYTES, hash);
+                slots.putLong(target * SLOT_BYTES + 8, value);
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        this.slots = ByteBuffer.allocateDirect(capacity * SLOT_BYTES);
+        this.mask = capacity - 1;
+    }
+
+    private int slotOf(long hash) {
+        // Mix the high bits in; callers' hashes may vary mostly in the upper half
+        return (int) (hash ^ (hash >>> 32)) & mask;
+    }
+}
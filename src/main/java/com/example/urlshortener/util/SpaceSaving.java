@@ -0,0 +1,211 @@
+package com.example.urlshortener.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * SpaceSaving tracks the most frequent keys of a stream with a fixed number
+ * of counters (Metwally et al., "Efficient Computation of Frequent and Top-k
+ * Elements in Data Streams").
+ *
+ * Counters live in an indexed min-heap, so an update costs O(log capacity).
+ * When an unmonitored key arrives and every counter is taken, the smallest
+ * counter is handed to the new key and its old count becomes the new key's
+ * error. Each reported count therefore over-estimates the true count by at
+ * most {@code error}.
+ *
+ * The largest count ever displaced or removed is kept as a floor: a key
+ * that is not monitored has been seen at most floor times, so a new counter
+ * starts from the floor (as its error) even when it takes a slot freed by
+ * remove, and {@link #minCount()} reports the floor. Without removals the
+ * floor is never more than total / capacity.
+ */
+public class SpaceSaving<K> {
+
+    /**
+     * One monitored key: the true count is between count - error and count
+     */
+    public record Entry<K>(K key, long count, long error) {
+
+        public long guaranteedCount() {
+            return count - error;
+        }
+    }
+
+    private final int capacity;
+    private final Map<K, Counter<K>> index;
+    private final Counter<K>[] heap;
+    private int size;
+    private long total;
+    private long floor;
+
+    @SuppressWarnings("unchecked")
+    public SpaceSaving(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("capacity must be positive");
+        }
+        this.capacity = capacity;
+        this.index = new HashMap<>(capacity * 2);
+        this.heap = new Counter[capacity];
+    }
+
+    /**
+     * Record one occurrence of the key
+     */
+    public void offer(K key) {
+        offer(key, 1);
+    }
+
+    /**
+     * Record {@code weight} occurrences of the key
+     */
+    public synchronized void offer(K key, long weight) {
+        if (weight <= 0) {
+            return;
+        }
+        total += weight;
+        Counter<K> counter = index.get(key);
+        if (counter != null) {
+            counter.count += weight;
+            siftDown(counter.position);
+            return;
+        }
+        if (size < capacity) {
+            counter = new Counter<>(key, floor + weight, floor, size);
+            heap[size++] = counter;
+            index.put(key, counter);
+            siftUp(counter.position);
+            return;
+        }
+        // Take over the smallest counter
+        counter = heap[0];
+        index.remove(counter.key);
+        floor = Math.max(floor, counter.count);
+        counter.key = key;
+        counter.error = floor;
+        counter.count = floor + weight;
+        index.put(key, counter);
+        siftDown(0);
+    }
+
+    /**
+     * Stop monitoring a key (for example when its link is deleted)
+     */
+    public synchronized void remove(K key) {
+        Counter<K> counter = index.remove(key);
+        if (counter == null) {
+            return;
+        }
+        floor = Math.max(floor, counter.count);
+        int position = counter.position;
+        Counter<K> last = heap[--size];
+        heap[size] = null;
+        if (position < size) {
+            heap[position] = last;
+            last.position = position;
+            siftDown(position);
+            siftUp(last.position);
+        }
+    }
+
+    /**
+     * Raise the floor to at least count, when keys that are not offered may
+     * have been seen up to count times (e.g. outside a seeded top list)
+     */
+    public synchronized void raiseFloor(long count) {
+        floor = Math.max(floor, count);
+    }
+
+    /**
+     * Monitored keys ordered by estimated count, highest first
+     */
+    public List<Entry<K>> top(int n) {
+        Counter<K>[] snapshot;
+        synchronized (this) {
+            snapshot = Arrays.copyOf(heap, size);
+            for (int i = 0; i < snapshot.length; i++) {
+                Counter<K> c = snapshot[i];
+                snapshot[i] = new Counter<>(c.key, c.count, c.error, i);
+            }
+        }
+        Arrays.sort(snapshot, Comparator.comparingLong((Counter<K> c) -> c.count).reversed());
+        List<Entry<K>> result = new ArrayList<>(Math.min(n, snapshot.length));
+        for (int i = 0; i < snapshot.length && result.size() < n; i++) {
+            result.add(new Entry<>(snapshot[i].key, snapshot[i].count, snapshot[i].error));
+        }
+        return result;
+    }
+
+    /**
+     * Upper bound on the count of any key that is not monitored: the largest
+     * count displaced or removed so far
+     */
+    public synchronized long minCount() {
+        return floor;
+    }
+
+    public synchronized long total() {
+        return total;
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+    private void siftUp(int i) {
+        Counter<K> counter = heap[i];
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (heap[parent].count <= counter.count) {
+                break;
+            }
+            place(heap[parent], i);
+            i = parent;
+        }
+        place(counter, i);
+    }
+
+    private void siftDown(int i) {
+        Counter<K> counter = heap[i];
+        int half = size >>> 1;
+        while (i < half) {
+            int child = 2 * i + 1;
+            if (child + 1 < size && heap[child + 1].count < heap[child].count) {
+                child++;
+            }
+            if (counter.count <= heap[child].count) {
+                break;
+            }
+            place(heap[child], i);
+            i = child;
+        }
+        place(counter, i);
+    }
+
+    private void place(Counter<K> counter, int position) {
+        heap[position] = counter;
+        counter.position = position;
+    }
+
+    private static class Counter<K> {
+        private K key;
+        private long count;
+        private long error;
+        private int position;
+
+        Counter(K key, long count, long error, int position) {
+            this.key = key;
+            this.count = count;
+            this.error = error;
+            this.position = position;
+        }
+    }
+}
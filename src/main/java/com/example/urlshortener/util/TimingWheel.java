@@ -0,0 +1,110 @@
+package com.example.urlshortener.util;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * TimingWheel is a hashed timing wheel (Varghese and Lauck): a ring of slots,
+ * one per tick, where each key is filed under the slot of its deadline.
+ *
+ * Scheduling and cancelling are O(1), and each tick only looks at the keys
+ * in one slot, whatever the number of keys scheduled. Deadlines further away
+ * than one turn of the wheel stay in their slot until their turn comes.
+ * A key never fires before its deadline and fires at most one tick after it,
+ * provided {@link #advance} is called every tick.
+ */
+public class TimingWheel<K> {
+
+    private final long tickMillis;
+    private final List<Entry<K>>[] slots;
+    private final Map<K, Entry<K>> entries = new HashMap<>();
+    private long nextTick;
+
+    @SuppressWarnings("unchecked")
+    public TimingWheel(int slotCount, long tickMillis, long startMillis) {
+        if (slotCount < 1 || tickMillis < 1) {
+            throw new IllegalArgumentException("slotCount and tickMillis must be positive");
+        }
+        this.tickMillis = tickMillis;
+        this.slots = new List[slotCount];
+        for (int i = 0; i < slotCount; i++) {
+            slots[i] = new ArrayList<>();
+        }
+        this.nextTick = startMillis / tickMillis;
+    }
+
+    /**
+     * Schedule (or reschedule) a key to fire at the given time
+     */
+    public synchronized void schedule(K key, long deadlineMillis) {
+        cancel(key);
+        // Round up so a key never fires early
+        long tick = Math.max(nextTick, (deadlineMillis + tickMillis - 1) / tickMillis);
+        Entry<K> entry = new Entry<>(key, tick);
+        slots[(int) (tick % slots.length)].add(entry);
+        entries.put(key, entry);
+    }
+
+    public synchronized boolean cancel(K key) {
+        Entry<K> entry = entries.remove(key);
+        if (entry == null) {
+            return false;
+        }
+        // Removed lazily when its slot is next visited
+        entry.cancelled = true;
+        return true;
+    }
+
+    /**
+     * Remove and return every key whose deadline is at or before now
+     */
+    public synchronized List<K> advance(long nowMillis) {
+        long nowTick = nowMillis / tickMillis;
+        List<K> expired = new ArrayList<>();
+        if (nowTick < nextTick) {
+            return expired;
+        }
+        long steps = Math.min(nowTick - nextTick + 1, slots.length);
+        for (long i = 0; i < steps; i++) {
+            Iterator<Entry<K>> it = slots[(int) ((nextTick + i) % slots.length)].iterator();
+            while (it.hasNext()) {
+                Entry<K> entry = it.next();
+                if (entry.cancelled) {
+                    it.remove();
+                } else if (entry.tick <= nowTick) {
+                    it.remove();
+                    entries.remove(entry.key);
+                    expired.add(entry.key);
+                }
+            }
+        }
+        nextTick = nowTick + 1;
+        return expired;
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public long getTickMillis() {
+        return tickMillis;
+    }
+
+    public int getSlotCount() {
+        return slots.length;
+    }
+
+    private static class Entry<K> {
+        private final K key;
+        private final long tick;
+        private boolean cancelled;
+
+        Entry(K key, long tick) {
+            this.key = key;
+            this.tick = tick;
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package com.example.urlshortener.util;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * TokenBuckets holds one token bucket per key (e.g. client and endpoint).
+ *
+ * Keys are spread over independently locked segments, each keeping its
+ * buckets in LRU order. A segment that is full drops its least recently used
+ * bucket, so memory stays bounded by maxKeys however many clients show up;
+ * a dropped client simply starts again with a full bucket. Buckets idle for
+ * longer than it takes to refill are removed by removeIdle, since a full
+ * bucket holds no state worth keeping.
+ */
+public class TokenBuckets {
+
+    private static final int SEGMENT_COUNT = 16;
+
+    private final Segment[] segments;
+    private final int maxKeys;
+    private final AtomicLong evictions = new AtomicLong();
+
+    public TokenBuckets(int maxKeys) {
+        if (maxKeys <= 0) {
+            throw new IllegalArgumentException("maxKeys must be positive");
+        }
+        this.maxKeys = maxKeys;
+        this.segments = new Segment[SEGMENT_COUNT];
+        int perSegment = Math.max(1, (maxKeys + SEGMENT_COUNT - 1) / SEGMENT_COUNT);
+        for (int i = 0; i < SEGMENT_COUNT; i++) {
+            segments[i] = new Segment(perSegment, evictions);
+        }
+    }
+
+    /**
+     * Take one token from the key's bucket, which refills at ratePerSecond up
+     * to burst tokens. Returns 0 if a token was taken, otherwise the
+     * nanoseconds until one will be available.
+     */
+    public long tryAcquire(String key, double ratePerSecond, double burst, long nowNanos) {
+        Segment segment = segments[(key.hashCode() & 0x7fffffff) % SEGMENT_COUNT];
+        synchronized (segment) {
+            Bucket bucket = segment.buckets.get(key);
+            if (bucket == null) {
+                bucket = new Bucket(burst, nowNanos);
+                segment.buckets.put(key, bucket);
+            } else {
+                long elapsed = Math.max(0, nowNanos - bucket.updatedNanos);
+                bucket.tokens = Math.min(burst, bucket.tokens + elapsed * ratePerSecond / 1e9);
+                bucket.updatedNanos += elapsed;
+            }
+            if (bucket.tokens >= 1) {
+                bucket.tokens -= 1;
+                return 0;
+            }
+            return (long) Math.ceil((1 - bucket.tokens) * 1e9 / ratePerSecond);
+        }
+    }
+
+    /**
+     * Remove buckets not used since idleNanos before now; returns how many were removed
+     */
+    public int removeIdle(long idleNanos, long nowNanos) {
+        int removed = 0;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                // LRU order: stop at the first bucket that was used recently
+                Iterator<Bucket> it = segment.buckets.values().iterator();
+                while (it.hasNext()) {
+                    if (nowNanos - it.next().updatedNanos < idleNanos) {
+                        break;
+                    }
+                    it.remove();
+                    removed++;
+                }
+            }
+        }
+        return removed;
+    }
+
+    public int size() {
+        int size = 0;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                size += segment.buckets.size();
+            }
+        }
+        return size;
+    }
+
+    public int getMaxKeys() {
+        return maxKeys;
+    }
+
+    /**
+     * Buckets dropped because their segment was full
+     */
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+    private static final class Bucket {
+        private double tokens;
+        private long updatedNanos;
+
+        Bucket(double tokens, long updatedNanos) {
+            this.tokens = tokens;
+            this.updatedNanos = updatedNanos;
+        }
+    }
+
+    private static final class Segment {
+        private final LinkedHashMap<String, Bucket> buckets;
+
+        Segment(int capacity, AtomicLong evictions) {
+            this.buckets = new LinkedHashMap<>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, Bucket> eldest) {
+                    if (size() > capacity) {
+                        evictions.incrementAndGet();
+                        return true;
+                    }
+                    return false;
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,159 @@
+package com.example.urlshortener.util;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * TrustedProxies is a set of proxy addresses (single IPs or CIDR ranges such
+ * as 10.0.0.0/8) whose X-Forwarded-For and X-Real-IP headers are believed.
+ *
+ * Anyone can send those headers, so they only name the client when the
+ * request came from a trusted proxy. X-Forwarded-For is then read from the
+ * right, skipping trusted hops: the first untrusted hop is the address the
+ * trusted chain saw, and anything left of it is client-supplied.
+ */
+public final class TrustedProxies {
+
+    private final List<Range> ranges = new ArrayList<>();
+
+    /**
+     * @throws IllegalArgumentException if an entry is not an IP address or CIDR range
+     */
+    public TrustedProxies(Collection<String> entries) {
+        for (String entry : entries) {
+            String trimmed = entry.trim();
+            if (trimmed.isEmpty()) {
+                continue;
+            }
+            int slash = trimmed.indexOf('/');
+            byte[] address = parse(slash < 0 ? trimmed : trimmed.substring(0, slash));
+            if (address == null) {
+                throw new IllegalArgumentException("not an IP address or CIDR range: " + trimmed);
+            }
+            int prefix = address.length * 8;
+            if (slash >= 0) {
+                try {
+                    prefix = Integer.parseInt(trimmed.substring(slash + 1));
+                } catch (NumberFormatException e) {
+                    prefix = -1;
+                }
+                if (prefix < 0 || prefix > address.length * 8) {
+                    throw new IllegalArgumentException("invalid prefix length: " + trimmed);
+                }
+            }
+            ranges.add(new Range(address, prefix));
+        }
+    }
+
+    /**
+     * Whether the address is one of the trusted proxies
+     */
+    public boolean contains(String address) {
+        if (ranges.isEmpty() || address == null) {
+            return false;
+        }
+        byte[] parsed = parse(address.trim());
+        if (parsed == null) {
+            return false;
+        }
+        for (Range range : ranges) {
+            if (range.contains(parsed)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * The client's IP address: the remote address unless it is a trusted
+     * proxy, otherwise the nearest untrusted X-Forwarded-For hop, else
+     * X-Real-IP (see ClientIpResolver for the loopback normalization)
+     */
+    public String clientIp(String xForwardedFor, String xRealIp, String remoteAddr) {
+        if (!contains(remoteAddr)) {
+            return ClientIpResolver.resolve(null, null, remoteAddr);
+        }
+        if (xForwardedFor != null && !xForwardedFor.isEmpty()) {
+            String[] hops = xForwardedFor.split(",");
+            for (int i = hops.length - 1; i >= 0; i--) {
+                String hop = hops[i].trim();
+                if (!hop.isEmpty() && (i == 0 || !contains(hop))) {
+                    return hop;
+                }
+            }
+        }
+        return ClientIpResolver.resolve(null, xRealIp, remoteAddr);
+    }
+
+    /**
+     * Bytes of an IP literal, or null if it is not one (never a DNS lookup)
+     */
+    private static byte[] parse(String literal) {
+        if (literal.indexOf(':') < 0) {
+            return parseIpv4(literal);
+        }
+        for (int i = 0; i < literal.length(); i++) {
+            char c = literal.charAt(i);
+            if (Character.digit(c, 16) < 0 && c != '.' && c != ':') {
+                return null;
+            }
+        }
+        try {
+            // Contains a colon, so it is parsed as an IPv6 literal
+            return InetAddress.getByName(literal).getAddress();
+        } catch (UnknownHostException e) {
+            return null;
+        }
+    }
+
+    private static byte[] parseIpv4(String literal) {
+        String[] parts = literal.split("\\.", -1);
+        if (parts.length != 4) {
+            return null;
+        }
+        byte[] address = new byte[4];
+        for (int i = 0; i < 4; i++) {
+            String part = parts[i];
+            if (part.isEmpty() || part.length() > 3) {
+                return null;
+            }
+            int value = 0;
+            for (int j = 0; j < part.length(); j++) {
+                int digit = Character.digit(part.charAt(j), 10);
+                if (digit < 0) {
+                    return null;
+                }
+                value = value * 10 + digit;
+            }
+            if (value > 255) {
+                return null;
+            }
+            address[i] = (byte) value;
+        }
+        return address;
+    }
+
+    private record Range(byte[] address, int prefix) {
+
+        boolean contains(byte[] candidate) {
+            if (candidate.length != address.length) {
+                return false;
+            }
+            int full = prefix / 8;
+            for (int i = 0; i < full; i++) {
+                if (candidate[i] != address[i]) {
+                    return false;
+                }
+            }
+            int rest = prefix % 8;
+            if (rest == 0) {
+                return true;
+            }
+            int mask = 0xff << (8 - rest);
+            return (candidate[full] & mask) == (address[full] & mask);
+        }
+    }
+}
@@ -1,89 +1,128 @@
 package com.example.urlshortener.util;
 
-import java.util.Stack;
-import java.util.HashMap;
-import java.util.Map;
-import java.util.List;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 /**
  * URLHistoryStack manages a stack-based history of shortened URLs
  * This implements the stack data structure mentioned in DSA requirements
+ *
+ * The stack is a bounded ring buffer: a push claims the next sequence number
+ * and writes its slot, overwriting the oldest entry once the buffer is full,
+ * so push and evict are both O(1). No operation takes a lock. Each slot
+ * remembers the sequence number it was written for, so readers skip slots
+ * that are being overwritten instead of waiting for the writer. Entries are
+ * only ever evicted, never popped: taking the top out of the ring would
+ * leave a gap that the next push does not fill.
  */
 public class URLHistoryStack {
-    
-    private Stack<UrlHistoryEntry> historyStack;
+
     private static final int MAX_HISTORY_SIZE = 100;
 
+    private final AtomicReferenceArray<Slot> slots;
+    private final AtomicLong nextSequence = new AtomicLong();
+    private final int capacity;
+
     public URLHistoryStack() {
-        this.historyStack = new Stack<>();
+        this(MAX_HISTORY_SIZE);
     }
 
-    /**
-     * Push a new URL shortening operation to the stack
-     */
-    public void pushHistory(String originalUrl, String shortCode) {
-        if (historyStack.size() >= MAX_HISTORY_SIZE) {
-            historyStack.remove(0); // Remove oldest entry
+    public URLHistoryStack(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("capacity must be positive");
         }
-        historyStack.push(new UrlHistoryEntry(originalUrl, shortCode));
+        this.capacity = capacity;
+        this.slots = new AtomicReferenceArray<>(capacity);
     }
 
     /**
-     * Pop the most recent URL shortening operation
+     * Push a new URL shortening operation to the stack
      */
-    public UrlHistoryEntry popHistory() {
-        return historyStack.isEmpty() ? null : historyStack.pop();
+    public void pushHistory(String originalUrl, String shortCode) {
+        long sequence = nextSequence.getAndIncrement();
+        // Overwrites (evicts) the entry pushed capacity operations ago
+        slots.set(index(sequence), new Slot(sequence, new UrlHistoryEntry(originalUrl, shortCode)));
     }
 
     /**
      * Peek at the most recent URL shortening operation without removing it
      */
     public UrlHistoryEntry peekHistory() {
-        return historyStack.isEmpty() ? null : historyStack.peek();
+        Slot slot = newestSlot(nextSequence.get());
+        return slot == null ? null : slot.entry;
     }
 
     /**
-     * Get all history entries (for analytics)
+     * Get all history entries (for analytics), oldest first
      */
-    public Stack<UrlHistoryEntry> getHistory() {
-        return historyStack;
+    public List<UrlHistoryEntry> getHistory() {
+        List<UrlHistoryEntry> list = getHistoryList();
+        Collections.reverse(list);
+        return list;
     }
 
     /**
-     * Return history as a list with most-recent-first order for JSON serialization
+     * Return history as a list with most-recent-first order for JSON serialization.
+     * The list is a snapshot; pushes that happen while it is taken may or may
+     * not be included.
      */
     public List<UrlHistoryEntry> getHistoryList() {
-        List<UrlHistoryEntry> list = new ArrayList<>();
-        for (int i = historyStack.size() - 1; i >= 0; i--) {
-            list.add(historyStack.get(i));
+        long top = nextSequence.get();
+        List<UrlHistoryEntry> list = new ArrayList<>(capacity);
+        for (long sequence = top - 1; sequence >= 0 && sequence >= top - capacity; sequence--) {
+            Slot slot = slots.get(index(sequence));
+            if (slot != null && slot.sequence == sequence) {
+                list.add(slot.entry);
+            }
         }
         return list;
     }
 
     public int getMaxSize() {
-        return MAX_HISTORY_SIZE;
+        return capacity;
     }
 
     /**
      * Get the size of the history stack
      */
     public int getHistorySize() {
-        return historyStack.size();
+        return getHistoryList().size();
     }
 
     /**
      * Check if stack is empty
      */
     public boolean isEmpty() {
-        return historyStack.isEmpty();
+        return peekHistory() == null;
     }
 
     /**
      * Clear all history
      */
     public void clearHistory() {
-        historyStack.clear();
+        for (int i = 0; i < capacity; i++) {
+            slots.set(i, null);
+        }
+    }
+
+    private Slot newestSlot(long top) {
+        for (long sequence = top - 1; sequence >= 0 && sequence >= top - capacity; sequence--) {
+            Slot slot = slots.get(index(sequence));
+            if (slot != null && slot.sequence == sequence) {
+                return slot;
+            }
+        }
+        return null;
+    }
+
+    private int index(long sequence) {
+        return (int) (sequence % capacity);
+    }
+
+    private record Slot(long sequence, UrlHistoryEntry entry) {
     }
 
     /**
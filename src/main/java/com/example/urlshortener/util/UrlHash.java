@@ -0,0 +1,31 @@
+package com.example.urlshortener.util;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Fixed-width (64 hex chars) SHA-256 digest of a URL, used to find identical
+ * URLs through an index instead of comparing the 2000-char originalUrl column.
+ */
+public final class UrlHash {
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private UrlHash() {
+    }
+
+    public static String of(String url) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(url.getBytes(StandardCharsets.UTF_8));
+            char[] hex = new char[digest.length * 2];
+            for (int i = 0; i < digest.length; i++) {
+                hex[i * 2] = HEX[(digest[i] >> 4) & 0xF];
+                hex[i * 2 + 1] = HEX[digest[i] & 0xF];
+            }
+            return new String(hex);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
@@ -178,28 +178,44 @@ async function getTopUrls() {
     }
 }
 
-// Get All Active URLs
-async function getAllActiveUrls() {
+// Get All Active URLs, one page at a time
+let activeUrlsShown = [];
+let activeUrlsCursor = null;
+
+async function getAllActiveUrls(loadMore = false) {
     const resultDiv = document.getElementById("activeUrlsResult");
-    resultDiv.innerHTML = "<p>⏳ Loading...</p>";
+    if (!loadMore) {
+        activeUrlsShown = [];
+        activeUrlsCursor = null;
+        resultDiv.innerHTML = "<p>⏳ Loading...</p>";
+    }
 
     try {
-        const response = await fetch("http://localhost:8080/analytics/active/urls");
+        let url = "http://localhost:8080/analytics/active/urls?limit=100";
+        if (loadMore && activeUrlsCursor) {
+            url += "&cursor=" + encodeURIComponent(activeUrlsCursor);
+        }
+        const response = await fetch(url);
 
         if (!response.ok) {
             throw new Error("Failed to fetch active URLs");
         }
 
         const data = await response.json();
+        activeUrlsShown = activeUrlsShown.concat(data.urls);
+        activeUrlsCursor = data.nextCursor;
 
-        if (data.count === 0) {
+        if (activeUrlsShown.length === 0) {
             resultDiv.innerHTML = "<p>📭 No active URLs found</p>";
             return;
         }
 
-        let html = `<p><strong>Found ${data.count} active URLs</strong></p><table><tr><th>Code</th><th>Clicks</th><th>Created</th><th>Status</th></tr>`;
+        const summary = activeUrlsCursor
+            ? `Showing the newest ${activeUrlsShown.length} active URLs`
+            : `Found ${activeUrlsShown.length} active URLs`;
+        let html = `<p><strong>${summary}</strong></p><table><tr><th>Code</th><th>Clicks</th><th>Created</th><th>Status</th></tr>`;
 
-        data.urls.forEach(url => {
+        activeUrlsShown.forEach(url => {
             const isExpired = url.expiresAt && new Date(url.expiresAt) < new Date();
             const status = isExpired ? '❌ Expired' : '✅ Active';
             
@@ -212,6 +228,9 @@ async function getAllActiveUrls() {
         });
 
         html += '</table>';
+        if (activeUrlsCursor) {
+            html += '<button class="btn-secondary" onclick="getAllActiveUrls(true)">Load More</button>';
+        }
         resultDiv.innerHTML = html;
     } catch (error) {
         resultDiv.innerHTML = `<p style='color:red;'>❌ Error: ${error.message}</p>`;
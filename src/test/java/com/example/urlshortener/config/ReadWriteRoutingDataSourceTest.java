@@ -0,0 +1,127 @@
+package com.example.urlshortener.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * A primary and a replica database wired as DataSourceRoutingConfig does.
+ * The replica lags: it lacks the link created last, and each database names
+ * itself, so a query shows where it ran.
+ */
+class ReadWriteRoutingDataSourceTest {
+
+    private ReadWriteRoutingDataSource routing;
+    private JdbcTemplate jdbcTemplate;
+    private TransactionTemplate writeTransaction;
+    private TransactionTemplate readOnlyTransaction;
+
+    @BeforeEach
+    void createDatabases() {
+        HikariDataSource primary = pool(ReadWriteRoutingDataSource.PRIMARY);
+        HikariDataSource replica = pool("replica-0");
+        for (HikariDataSource database : List.of(primary, replica)) {
+            JdbcTemplate direct = new JdbcTemplate(database);
+            direct.execute("CREATE TABLE url_mapping (short_code VARCHAR(32) PRIMARY KEY, original_url VARCHAR(255))");
+            direct.execute("CREATE TABLE whoami (name VARCHAR(32))");
+            direct.update("INSERT INTO whoami VALUES (?)", database.getPoolName());
+            direct.update("INSERT INTO url_mapping VALUES ('old', 'https://example.com/old')");
+        }
+        new JdbcTemplate(primary).update("INSERT INTO url_mapping VALUES ('fresh', 'https://example.com/fresh')");
+
+        routing = new ReadWriteRoutingDataSource(primary, List.of(replica));
+        LazyConnectionDataSourceProxy dataSource = new LazyConnectionDataSourceProxy(routing);
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        DataSourceTransactionManager transactionManager = new DataSourceTransactionManager(dataSource);
+        writeTransaction = new TransactionTemplate(transactionManager);
+        readOnlyTransaction = new TransactionTemplate(transactionManager);
+        readOnlyTransaction.setReadOnly(true);
+    }
+
+    @AfterEach
+    void closePools() {
+        routing.close();
+    }
+
+    @Test
+    void readOnlyTransactionsGoToTheReplicaAndEverythingElseToThePrimary() {
+        long replicaBefore = stat("replicaConnections");
+        assertEquals("replica-0", readOnlyTransaction.execute(status -> whoami()));
+        assertEquals(replicaBefore + 1, stat("replicaConnections"));
+
+        long primaryBefore = stat("primaryConnections");
+        assertEquals("primary", writeTransaction.execute(status -> whoami()));
+        // Outside a transaction, like the scheduled JdbcTemplate flushes
+        assertEquals("primary", whoami());
+        assertEquals(primaryBefore + 2, stat("primaryConnections"));
+        assertEquals(replicaBefore + 1, stat("replicaConnections"));
+    }
+
+    @Test
+    void onPrimaryReadsTheLatestWritesInsideAReadOnlyTransaction() {
+        readOnlyTransaction.executeWithoutResult(status -> {
+            assertEquals("primary", ReadWriteRoutingDataSource.onPrimary(this::whoami));
+        });
+        assertEquals(1L, stat("forcedPrimaryReads"));
+        // The flag does not outlive the lookup
+        assertEquals("replica-0", readOnlyTransaction.execute(status -> whoami()));
+    }
+
+    @Test
+    void justCreatedCodesAreReadFromThePrimaryUntilTheyAreNoLongerSticky() {
+        ReadYourWrites readYourWrites = new ReadYourWrites(true, 60);
+        assertNull(readYourWrites.read("fresh", () -> findUrl("fresh")));
+
+        readYourWrites.recordWrite("fresh");
+        assertEquals("https://example.com/fresh", readYourWrites.read("fresh", () -> findUrl("fresh")));
+        assertEquals(1L, readYourWrites.getStats().get("stickyReads"));
+        // Other codes still use the replica
+        assertEquals("https://example.com/old", readYourWrites.read("old", () -> findUrl("old")));
+        assertEquals(1L, stat("forcedPrimaryReads"));
+    }
+
+    @Test
+    void readYourWritesDoesNothingWithoutRouting() {
+        ReadYourWrites readYourWrites = new ReadYourWrites(false, 60);
+        readYourWrites.recordWrite("fresh");
+        assertNull(readYourWrites.read("fresh", () -> findUrl("fresh")));
+        assertEquals(0, readYourWrites.getStats().get("trackedCodes"));
+    }
+
+    private String whoami() {
+        return jdbcTemplate.queryForObject("SELECT name FROM whoami", String.class);
+    }
+
+    /**
+     * A read-only lookup, as the repository does it
+     */
+    private String findUrl(String code) {
+        return readOnlyTransaction.execute(status -> jdbcTemplate.query("SELECT original_url FROM url_mapping WHERE short_code = ?",
+                rs -> rs.next() ? rs.getString(1) : null, code));
+    }
+
+    private long stat(String name) {
+        return (Long) routing.getStats().get(name);
+    }
+
+    private static HikariDataSource pool(String name) {
+        HikariDataSource pool = new HikariDataSource();
+        pool.setPoolName(name);
+        pool.setJdbcUrl("jdbc:h2:mem:" + name + "-" + UUID.randomUUID() + ";MODE=MySQL;DB_CLOSE_DELAY=-1");
+        pool.setUsername("sa");
+        pool.setPassword("");
+        pool.setMaximumPoolSize(2);
+        return pool;
+    }
+}
@@ -0,0 +1,178 @@
+package com.example.urlshortener.config;
+
+import com.example.urlshortener.model.LinkSummary;
+import com.example.urlshortener.model.RedirectType;
+import com.example.urlshortener.model.UrlMapping;
+import com.example.urlshortener.service.LinkStore;
+import com.example.urlshortener.service.LinkStore.ClickDelta;
+import com.example.urlshortener.util.Base62Encoder;
+import com.example.urlshortener.util.KeysetCursor;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * The application on three embedded databases. Where rows ended up is checked
+ * on each database directly, bypassing the routing under test.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.NONE, properties = {
+        "spring.datasource.url=" + ShardingConfigTest.SHARD_0,
+        "spring.datasource.username=sa",
+        "spring.datasource.password=",
+        "urlshortener.sharding.enabled=true",
+        "urlshortener.sharding.shards[0].url=" + ShardingConfigTest.SHARD_1,
+        "urlshortener.sharding.shards[1].url=" + ShardingConfigTest.SHARD_2
+})
+class ShardingConfigTest {
+
+    static final String SHARD_0 = "jdbc:h2:mem:sharding-0;MODE=MySQL;DB_CLOSE_DELAY=-1";
+    static final String SHARD_1 = "jdbc:h2:mem:sharding-1;MODE=MySQL;DB_CLOSE_DELAY=-1";
+    static final String SHARD_2 = "jdbc:h2:mem:sharding-2;MODE=MySQL;DB_CLOSE_DELAY=-1";
+    private static final LocalDateTime CREATED = LocalDateTime.of(2026, 3, 2, 12, 0);
+
+    private final List<JdbcTemplate> databases = new ArrayList<>();
+
+    @Autowired
+    private Shards shards;
+
+    @Autowired
+    private LinkStore linkStore;
+
+    @BeforeEach
+    void emptyEveryShard() {
+        for (String url : List.of(SHARD_0, SHARD_1, SHARD_2)) {
+            JdbcTemplate database = new JdbcTemplate(new DriverManagerDataSource(url, "sa", ""));
+            database.update("DELETE FROM url_mapping");
+            databases.add(database);
+        }
+    }
+
+    @Test
+    void everyLinkIsStoredAndFoundOnTheShardItsCodeNames() {
+        List<UrlMapping> links = links(90);
+        for (UrlMapping link : links) {
+            linkStore.insert(link, null);
+        }
+
+        int[] perShard = new int[3];
+        for (UrlMapping link : links) {
+            int shard = shards.shardFor(link.getShortCode());
+            perShard[shard]++;
+            assertEquals(1, count(shard, link.getShortCode()), link.getShortCode());
+            assertEquals(link.getOriginalUrl(), linkStore.findByShortCode(link.getShortCode()).orElseThrow().getOriginalUrl());
+        }
+        // The ring spreads new links over all shards
+        for (int shard = 0; shard < 3; shard++) {
+            assertTrue(perShard[shard] > 0, "shard " + shard + " got no links");
+            assertEquals(perShard[shard], (long) shards.on(shard, linkStore::count));
+        }
+        // Codes from before sharding are below the stamped range and stay on shard 0
+        assertEquals(0, shards.shardFor("abc123"));
+    }
+
+    @Test
+    void listingsMergeEveryShardInOrder() {
+        List<UrlMapping> links = links(45);
+        assertArrayEquals(allTrue(45), linkStore.insertAll(links));
+        List<ClickDelta> clicks = new ArrayList<>();
+        for (int i = 0; i < links.size(); i++) {
+            clicks.add(new ClickDelta(links.get(i).getShortCode(), (i * 7L) % 45 + 1, CREATED));
+        }
+        assertTrue(linkStore.addClicks(clicks).isEmpty());
+
+        // Pages of 10 walk all shards newest first without gaps or repeats
+        List<String> paged = new ArrayList<>();
+        KeysetCursor cursor = null;
+        List<LinkSummary> page;
+        do {
+            page = linkStore.findActivePage(cursor, 10);
+            page.forEach(link -> paged.add(link.shortCode()));
+            if (!page.isEmpty()) {
+                LinkSummary last = page.get(page.size() - 1);
+                cursor = new KeysetCursor(last.createdAt(), last.id());
+            }
+        } while (page.size() == 10);
+        List<String> newestFirst = new ArrayList<>();
+        for (int i = links.size() - 1; i >= 0; i--) {
+            newestFirst.add(links.get(i).getShortCode());
+        }
+        assertEquals(newestFirst, paged);
+        assertEquals(newestFirst, linkStore.findAllActive().stream().map(LinkSummary::shortCode).toList());
+
+        // The overall top 5, not each shard's
+        List<LinkSummary> top = linkStore.findTopActive(5);
+        assertEquals(List.of(45, 44, 43, 42, 41), top.stream().map(LinkSummary::clickCount).toList());
+        assertEquals(List.of(45L, 44L, 43L, 42L, 41L),
+                linkStore.findTopActiveClickCounts(5).stream().map(LinkStore.CodeClicks::clicks).toList());
+    }
+
+    @Test
+    void aFailedShardBatchIsRetriedRowByRow() {
+        List<UrlMapping> links = links(30);
+        UrlMapping taken = links.get(0);
+        linkStore.insert(copy(taken), null);
+
+        boolean[] stored = linkStore.insertAll(links);
+        // Only the duplicate fails; the rest of its shard's batch is stored one by one
+        assertFalse(stored[0]);
+        Set<Integer> shardsUsed = new HashSet<>();
+        for (int i = 1; i < links.size(); i++) {
+            assertTrue(stored[i], "link " + i);
+            int shard = shards.shardFor(links.get(i).getShortCode());
+            shardsUsed.add(shard);
+            assertEquals(1, count(shard, links.get(i).getShortCode()));
+        }
+        assertTrue(shardsUsed.contains(shards.shardFor(taken.getShortCode())));
+        assertEquals(1, count(shards.shardFor(taken.getShortCode()), taken.getShortCode()));
+    }
+
+    /**
+     * Links with stamped codes, created a second apart in list order
+     */
+    private List<UrlMapping> links(int count) {
+        List<UrlMapping> links = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            UrlMapping link = new UrlMapping();
+            link.setShortCode(shards.stamp(Base62Encoder.encode(1_000_000L + i * 7919L)));
+            link.setOriginalUrl("https://example.com/sharded/" + i);
+            link.setCreatedAt(CREATED.plusSeconds(i));
+            link.setRedirectType(RedirectType.TRACKED);
+            links.add(link);
+        }
+        return links;
+    }
+
+    private static UrlMapping copy(UrlMapping link) {
+        UrlMapping copy = new UrlMapping();
+        copy.setShortCode(link.getShortCode());
+        copy.setOriginalUrl(link.getOriginalUrl());
+        copy.setCreatedAt(link.getCreatedAt());
+        copy.setRedirectType(link.getRedirectType());
+        return copy;
+    }
+
+    private int count(int shard, String code) {
+        return databases.get(shard).queryForObject("SELECT COUNT(*) FROM url_mapping WHERE short_code = ?", Integer.class, code);
+    }
+
+    private static boolean[] allTrue(int size) {
+        boolean[] values = new boolean[size];
+        Arrays.fill(values, true);
+        return values;
+    }
+}
@@ -0,0 +1,79 @@
+package com.example.urlshortener.controller;
+
+import com.example.urlshortener.service.AdmissionControl;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AdmissionFilterTest {
+
+    private final AdmissionFilter filter = new AdmissionFilter(admissionControl(),
+            List.of("known-key"), List.of("10.0.0.0/8"));
+
+    private static AdmissionControl admissionControl() {
+        // Shorten allows a burst of 2 and practically never refills
+        return new AdmissionControl(new SimpleMeterRegistry(), true, true,
+                0.001, 2, 20, 100, 1, 10, 1000, 300, 5, 20);
+    }
+
+    @Test
+    void routesOnlyApiPaths() {
+        assertEquals(AdmissionControl.Route.SHORTEN, AdmissionFilter.route("/shorten"));
+        assertEquals(AdmissionControl.Route.SHORTEN_BATCH, AdmissionFilter.route("/shorten/batch"));
+        assertEquals(AdmissionControl.Route.ANALYTICS, AdmissionFilter.route("/analytics/abc123"));
+        assertEquals(AdmissionControl.Route.LISTING, AdmissionFilter.route("/analytics/active/urls"));
+        assertEquals(AdmissionControl.Route.LISTING, AdmissionFilter.route("/analytics/abc123/logs/stream"));
+        assertNull(AdmissionFilter.route("/r/abc123"));
+        assertNull(AdmissionFilter.route("/admin/admission/stats"));
+    }
+
+    @Test
+    void onlyConfiguredApiKeysIdentifyAClient() {
+        assertEquals("key:known-key", filter.clientKey(request("203.0.113.9", "known-key", null)));
+        assertEquals("ip:203.0.113.9", filter.clientKey(request("203.0.113.9", "made-up-key", null)));
+    }
+
+    @Test
+    void forwardedForIsOnlyBelievedFromTrustedProxies() {
+        assertEquals("ip:203.0.113.9", filter.clientKey(request("203.0.113.9", null, "198.51.100.4")));
+        assertEquals("ip:198.51.100.4", filter.clientKey(request("10.0.0.1", null, "1.2.3.4, 198.51.100.4")));
+    }
+
+    @Test
+    void rotatingKeysOrForwardedAddressesShareTheSocketAddressBucket() throws Exception {
+        for (int i = 0; i < 2; i++) {
+            MockHttpServletResponse response = send(request("203.0.113.9", "key-" + i, "198.51.100." + i));
+            assertEquals(200, response.getStatus());
+        }
+        MockHttpServletResponse rejected = send(request("203.0.113.9", "key-2", "198.51.100.2"));
+        assertEquals(429, rejected.getStatus());
+        assertEquals("rate_limited", new ObjectMapper().readTree(rejected.getContentAsString()).get("reason").asText());
+        assertTrue(Long.parseLong(rejected.getHeader("Retry-After")) >= 1);
+    }
+
+    private MockHttpServletResponse send(MockHttpServletRequest request) throws Exception {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(request, response, (req, res) -> { });
+        return response;
+    }
+
+    private static MockHttpServletRequest request(String remoteAddr, String apiKey, String forwardedFor) {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/shorten");
+        request.setRemoteAddr(remoteAddr);
+        if (apiKey != null) {
+            request.addHeader("X-API-Key", apiKey);
+        }
+        if (forwardedFor != null) {
+            request.addHeader("X-Forwarded-For", forwardedFor);
+        }
+        return request;
+    }
+}
@@ -0,0 +1,138 @@
+package com.example.urlshortener.service;
+
+import com.example.urlshortener.service.AdmissionControl.Reason;
+import com.example.urlshortener.service.AdmissionControl.Rejection;
+import com.example.urlshortener.service.AdmissionControl.Route;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AdmissionControlTest {
+
+    private final MeterRegistry registry = new SimpleMeterRegistry();
+    private final AtomicInteger pending = new AtomicInteger();
+    private Timer acquire;
+
+    @BeforeEach
+    void registerPoolMeters() {
+        // What HikariCP publishes for one pool
+        Gauge.builder("hikaricp.connections.pending", pending, AtomicInteger::get).tag("pool", "primary").register(registry);
+        acquire = Timer.builder("hikaricp.connections.acquire").tag("pool", "primary").register(registry);
+    }
+
+    /**
+     * Shedding thresholds of 5 waiting threads and 20 ms average wait; rate
+     * limits of 2 requests with practically no refill
+     */
+    private AdmissionControl admissionControl() {
+        return new AdmissionControl(registry, true, true,
+                0.001, 2, 0.001, 2, 0.001, 2,
+                1000, 300, 5, 20);
+    }
+
+    @Test
+    void shedsLowPriorityRoutesFirst() {
+        AdmissionControl control = admissionControl();
+        control.sample();
+        assertEquals(0, sheddingLevel(control));
+
+        pending.set(5);
+        control.sample();
+        assertEquals(1, sheddingLevel(control));
+        assertShed(control.admit(Route.LISTING, "a"));
+        assertShed(control.admit(Route.SHORTEN_BATCH, "a"));
+        assertNull(control.admit(Route.ANALYTICS, "a"));
+
+        pending.set(10);
+        control.sample();
+        assertEquals(2, sheddingLevel(control));
+        assertShed(control.admit(Route.ANALYTICS, "a"));
+        assertNull(control.admit(Route.SHORTEN, "a"));
+
+        pending.set(20);
+        control.sample();
+        assertEquals(3, sheddingLevel(control));
+        assertShed(control.admit(Route.SHORTEN, "a"));
+    }
+
+    @Test
+    void averageConnectionWaitSinceThePreviousSampleCountsAsPressure() {
+        AdmissionControl control = admissionControl();
+        control.sample();
+
+        // Two acquisitions averaging 40 ms: twice the wait threshold
+        acquire.record(Duration.ofMillis(30));
+        acquire.record(Duration.ofMillis(50));
+        control.sample();
+        assertEquals(2, sheddingLevel(control));
+        assertEquals(40.0, (double) control.getStats().get("poolWaitMillis"), 0.001);
+
+        // Earlier waits no longer count, only the decayed pressure does
+        acquire.record(Duration.ofMillis(2));
+        control.sample();
+        assertEquals(2.0, (double) control.getStats().get("poolWaitMillis"), 0.001);
+        assertEquals(1, sheddingLevel(control));
+    }
+
+    @Test
+    void pressureDecaysByHalfPerQuietSample() {
+        AdmissionControl control = admissionControl();
+        pending.set(20);
+        control.sample();
+        assertEquals(3, sheddingLevel(control));
+
+        pending.set(0);
+        control.sample();
+        assertEquals(2, sheddingLevel(control));
+        control.sample();
+        assertEquals(1, sheddingLevel(control));
+        control.sample();
+        assertEquals(0, sheddingLevel(control));
+    }
+
+    @Test
+    void rateLimitsEachClientSeparately() {
+        AdmissionControl control = admissionControl();
+        assertNull(control.admit(Route.SHORTEN, "ip:1.1.1.1"));
+        assertNull(control.admit(Route.SHORTEN, "ip:1.1.1.1"));
+        Rejection rejection = control.admit(Route.SHORTEN, "ip:1.1.1.1");
+        assertNotNull(rejection);
+        assertEquals(Reason.RATE_LIMITED, rejection.reason());
+        assertTrue(rejection.retryAfterSeconds() >= 1);
+
+        assertNull(control.admit(Route.SHORTEN, "ip:2.2.2.2"));
+        // Another rate class has its own bucket
+        assertNull(control.admit(Route.ANALYTICS, "ip:1.1.1.1"));
+    }
+
+    @Test
+    void disabledControlAdmitsEverything() {
+        AdmissionControl control = new AdmissionControl(registry, false, true,
+                0.001, 1, 0.001, 1, 0.001, 1, 1000, 300, 5, 20);
+        pending.set(100);
+        control.sample();
+        for (int i = 0; i < 5; i++) {
+            assertNull(control.admit(Route.SHORTEN, "a"));
+        }
+    }
+
+    private static int sheddingLevel(AdmissionControl control) {
+        return (int) control.getStats().get("sheddingLevel");
+    }
+
+    private static void assertShed(Rejection rejection) {
+        assertNotNull(rejection);
+        assertEquals(Reason.SHED, rejection.reason());
+    }
+}
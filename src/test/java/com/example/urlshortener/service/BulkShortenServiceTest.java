@@ -0,0 +1,57 @@
+package com.example.urlshortener.service;
+
+import com.example.urlshortener.config.ReadYourWrites;
+import com.example.urlshortener.model.UrlMapping;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class BulkShortenServiceTest {
+
+    private final LinkStore linkStore = mock(LinkStore.class);
+    // Codes depend only on the URL, as with the hash strategy
+    private final ShortCodeGenerator generator = mock(ShortCodeGenerator.class);
+
+    @Test
+    void repeatsShareALinkOnlyWhenTheyAskForTheSameOne() throws IOException {
+        when(generator.generate(any())).thenAnswer(invocation -> "c" + Math.abs(invocation.getArgument(0).hashCode()));
+        when(linkStore.insertAll(anyList())).thenAnswer(invocation -> {
+            boolean[] stored = new boolean[invocation.<List<UrlMapping>>getArgument(0).size()];
+            Arrays.fill(stored, true);
+            return stored;
+        });
+        BulkShortenService service = new BulkShortenService(linkStore, generator, mock(ShortCodeFilter.class),
+                mock(RedirectCache.class), mock(ExpiryService.class), mock(ReadYourWrites.class),
+                new RedirectPolicy("tracked", 86400), 100);
+
+        List<Map<String, Object>> results = new ArrayList<>();
+        service.shorten(List.<Map<String, String>>of(
+                Map.of("longUrl", "https://example.com/a", "expiresIn", "7d"),
+                Map.of("longUrl", "https://example.com/a", "expiresIn", "7d"),
+                Map.of("longUrl", "https://example.com/a", "expiresIn", "1h"),
+                Map.of("longUrl", "https://example.com/a", "expiresIn", "7d", "redirectType", "permanent"),
+                Map.of("longUrl", "https://example.com/b")).iterator(), "http://localhost/r/", results::add);
+
+        assertEquals(results.get(0).get("shortCode"), results.get(1).get("shortCode"));
+        assertEquals(results.get(0).get("expiresAt"), results.get(1).get("expiresAt"));
+        assertEquals("longUrl repeats item 0 with a different expiresIn or redirectType", results.get(2).get("error"));
+        assertEquals("longUrl repeats item 0 with a different expiresIn or redirectType", results.get(3).get("error"));
+        assertNull(results.get(2).get("shortCode"));
+        assertNull(results.get(4).get("error"));
+        // One link per distinct request
+        verify(linkStore).insertAll(argThat(mappings -> mappings.size() == 2));
+    }
+}
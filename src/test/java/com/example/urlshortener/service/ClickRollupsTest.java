@@ -0,0 +1,171 @@
+package com.example.urlshortener.service;
+
+import com.example.urlshortener.config.Shards;
+import com.example.urlshortener.repository.ClickRollupRefererRepository;
+import com.example.urlshortener.repository.ClickRollupRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.mock.env.MockEnvironment;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class ClickRollupsTest {
+
+    private static final LocalDateTime JAN_5 = LocalDateTime.of(2026, 1, 5, 10, 0);
+    private static final LocalDateTime CUTOFF = LocalDateTime.of(2026, 1, 6, 0, 0);
+    // Link 2 was deleted: its access logs have no code
+    private static final Map<Long, String> CODES = Map.of(1L, "abc", 3L, "xyz");
+
+    private JdbcTemplate jdbcTemplate;
+    private DataSourceTransactionManager transactionManager;
+    private final LinkStore linkStore = mock(LinkStore.class);
+
+    @BeforeEach
+    void createSchema() {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(
+                "jdbc:h2:mem:" + UUID.randomUUID() + ";MODE=MySQL;DB_CLOSE_DELAY=-1", "sa", "");
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        transactionManager = new DataSourceTransactionManager(dataSource);
+        jdbcTemplate.execute("CREATE TABLE url_access_log (id BIGINT AUTO_INCREMENT PRIMARY KEY, " +
+                "url_mapping_id BIGINT, user_agent VARCHAR(255), ip_address VARCHAR(255), accessed_at TIMESTAMP, referer VARCHAR(255))");
+        jdbcTemplate.execute("CREATE TABLE click_rollup (id BIGINT AUTO_INCREMENT PRIMARY KEY, short_code VARCHAR(32) NOT NULL, " +
+                "granularity VARCHAR(8) NOT NULL, bucket_start TIMESTAMP NOT NULL, clicks BIGINT NOT NULL, " +
+                "UNIQUE KEY uk_click_rollup_bucket (short_code, granularity, bucket_start))");
+        jdbcTemplate.execute("CREATE TABLE click_rollup_referer (id BIGINT AUTO_INCREMENT PRIMARY KEY, short_code VARCHAR(32) NOT NULL, " +
+                "granularity VARCHAR(8) NOT NULL, bucket_start TIMESTAMP NOT NULL, referer VARCHAR(255) NOT NULL, clicks BIGINT NOT NULL, " +
+                "UNIQUE KEY uk_click_rollup_referer (short_code, granularity, bucket_start, referer))");
+        jdbcTemplate.execute("CREATE TABLE rollup_backfill (id INT PRIMARY KEY, live_since TIMESTAMP NOT NULL, " +
+                "cutoff TIMESTAMP, last_log_id BIGINT NOT NULL, completed_at TIMESTAMP)");
+
+        when(linkStore.findShortCodesByIds(any())).thenAnswer(invocation -> {
+            Map<Long, String> codes = new HashMap<>();
+            for (Long id : invocation.<Collection<Long>>getArgument(0)) {
+                if (CODES.containsKey(id)) {
+                    codes.put(id, CODES.get(id));
+                }
+            }
+            return codes;
+        });
+
+        // ids 1-6: five logs before the cutoff (one of a deleted link), one after it
+        accessLog(1, JAN_5, "https://news.example.com/a");
+        accessLog(2, JAN_5.plusMinutes(1), null);
+        accessLog(1, JAN_5.plusMinutes(2), null);
+        accessLog(3, JAN_5.plusHours(3), "https://news.example.com/b");
+        accessLog(1, JAN_5.plusHours(4), null);
+        accessLog(1, CUTOFF.plusMinutes(5), null);
+    }
+
+    private ClickRollups clickRollups() {
+        ClickRollups rollups = new ClickRollups(jdbcTemplate, new Shards(new MockEnvironment()), linkStore, transactionManager,
+                mock(ClickRollupRepository.class), mock(ClickRollupRefererRepository.class), 500, 48, 2);
+        rollups.recordLiveStart();
+        return rollups;
+    }
+
+    @Test
+    void backfillCountsEachAccessLogOnce() {
+        ClickRollups rollups = clickRollups();
+        assertTrue(rollups.startBackfill(CUTOFF));
+        awaitBackfill(rollups);
+        assertEquals(3, dailyClicks("abc"));
+        assertEquals(1, dailyClicks("xyz"));
+        assertEquals(2L, refererClicks("news.example.com"));
+        assertEquals(5L, jdbcTemplate.queryForObject("SELECT last_log_id FROM rollup_backfill", Long.class));
+
+        // Running it again, even from another instance, finds nothing left to count
+        ClickRollups restarted = clickRollups();
+        assertTrue(restarted.startBackfill(CUTOFF));
+        awaitBackfill(restarted);
+        assertEquals(3, dailyClicks("abc"));
+        assertEquals(1, dailyClicks("xyz"));
+    }
+
+    @Test
+    void resumesAfterTheLastCountedAccessLog() {
+        // A previous run counted logs 1 and 2 and stopped
+        jdbcTemplate.update("INSERT INTO rollup_backfill (id, live_since, cutoff, last_log_id) VALUES (1, ?, ?, 2)",
+                Timestamp.valueOf(CUTOFF.plusDays(1)), Timestamp.valueOf(CUTOFF));
+        jdbcTemplate.update("INSERT INTO click_rollup (short_code, granularity, bucket_start, clicks) VALUES ('abc', 'DAY', ?, 1)",
+                Timestamp.valueOf(JAN_5.toLocalDate().atStartOfDay()));
+
+        ClickRollups rollups = clickRollups();
+        assertTrue(rollups.startBackfill(CUTOFF));
+        awaitBackfill(rollups);
+        assertEquals(3, dailyClicks("abc"));
+        assertEquals(1, dailyClicks("xyz"));
+    }
+
+    @Test
+    void refusesRangesThatOverlapCountedClicks() {
+        ClickRollups rollups = clickRollups();
+        // Clicks after the live start were counted as they happened
+        assertThrows(IllegalArgumentException.class, () -> rollups.startBackfill(LocalDateTime.now().plusHours(1)));
+
+        assertTrue(rollups.startBackfill(CUTOFF));
+        awaitBackfill(rollups);
+        // Another cutoff would count the logs between the two again, or leave them out
+        assertThrows(IllegalArgumentException.class, () -> rollups.startBackfill(CUTOFF.minusDays(1)));
+        assertThrows(IllegalArgumentException.class, () -> rollups.startBackfill(null));
+        assertEquals(3, dailyClicks("abc"));
+        assertTrue(rollups.startBackfill(CUTOFF));
+        awaitBackfill(rollups);
+    }
+
+    @Test
+    void defaultCutoffIsTheFirstLiveStartNotThisInstancesStart() {
+        // Live rollups started at the cutoff, long before this instance
+        jdbcTemplate.update("INSERT INTO rollup_backfill (id, live_since, last_log_id) VALUES (1, ?, 0)",
+                Timestamp.valueOf(CUTOFF));
+
+        ClickRollups rollups = clickRollups();
+        assertEquals(CUTOFF, rollups.getStats().get("liveSince"));
+        assertTrue(rollups.startBackfill(null));
+        awaitBackfill(rollups);
+        assertEquals(3, dailyClicks("abc"));
+        assertEquals("completed", rollups.getStats().get("backfillStatus"));
+    }
+
+    private void accessLog(long mappingId, LocalDateTime accessedAt, String referer) {
+        jdbcTemplate.update("INSERT INTO url_access_log (url_mapping_id, accessed_at, referer) VALUES (?, ?, ?)",
+                mappingId, Timestamp.valueOf(accessedAt), referer);
+    }
+
+    private long dailyClicks(String code) {
+        return jdbcTemplate.queryForObject("SELECT COALESCE(SUM(clicks), 0) FROM click_rollup WHERE short_code = ? AND granularity = 'DAY'",
+                Long.class, code);
+    }
+
+    private Long refererClicks(String referer) {
+        return jdbcTemplate.queryForObject("SELECT SUM(clicks) FROM click_rollup_referer WHERE referer = ? AND granularity = 'DAY'",
+                Long.class, referer);
+    }
+
+    private static void awaitBackfill(ClickRollups rollups) {
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (Boolean.TRUE.equals(rollups.getStats().get("backfillRunning"))) {
+            assertTrue(System.currentTimeMillis() < deadline, "backfill did not finish");
+            try {
+                Thread.sleep(10);
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+        assertEquals("completed", rollups.getStats().get("backfillStatus"));
+    }
+}
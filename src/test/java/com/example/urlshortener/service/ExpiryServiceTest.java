@@ -0,0 +1,120 @@
+package com.example.urlshortener.service;
+
+import com.example.urlshortener.config.Shards;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.mock.env.MockEnvironment;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class ExpiryServiceTest {
+
+    private final LinkStore linkStore = mock(LinkStore.class);
+    private final RedirectCache redirectCache = mock(RedirectCache.class);
+    private final TopUrlTracker topUrlTracker = mock(TopUrlTracker.class);
+    private final List<LinkStore.LinkKey> expired = new ArrayList<>();
+    private final List<Integer> deletedChunks = new ArrayList<>();
+    private JdbcTemplate jdbcTemplate;
+    private DataSourceTransactionManager transactionManager;
+
+    @BeforeEach
+    void createSchema() {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(
+                "jdbc:h2:mem:" + UUID.randomUUID() + ";MODE=MySQL;DB_CLOSE_DELAY=-1", "sa", "");
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        transactionManager = new DataSourceTransactionManager(dataSource);
+        jdbcTemplate.execute("CREATE TABLE url_access_log (id BIGINT AUTO_INCREMENT PRIMARY KEY, url_mapping_id BIGINT)");
+        jdbcTemplate.execute("CREATE TABLE click_rollup (short_code VARCHAR(32), bucket_start TIMESTAMP)");
+        jdbcTemplate.execute("CREATE TABLE click_rollup_referer (short_code VARCHAR(32), referer VARCHAR(255))");
+        jdbcTemplate.execute("CREATE TABLE visitor_sketch (short_code VARCHAR(32), visit_date DATE)");
+
+        // The store hands out expired links oldest first and forgets them once deleted
+        when(linkStore.findExpired(any(), anyInt())).thenAnswer(invocation ->
+                new ArrayList<>(expired.subList(0, Math.min(expired.size(), invocation.<Integer>getArgument(1)))));
+        when(linkStore.delete(anyList())).thenAnswer(invocation -> {
+            List<LinkStore.LinkKey> links = invocation.getArgument(0);
+            // Nothing may still point at a link when it is deleted
+            for (LinkStore.LinkKey link : links) {
+                assertEquals(0, dependentRows(link), link.shortCode());
+            }
+            expired.removeAll(links);
+            deletedChunks.add(links.size());
+            return links.size();
+        });
+    }
+
+    private ExpiryService expiryService() {
+        // Chunks of 2 links, access logs deleted 3 at a time
+        return new ExpiryService(linkStore, jdbcTemplate, new Shards(new MockEnvironment()), transactionManager,
+                redirectCache, mock(ShortCodeFilter.class), topUrlTracker, 1000, 60, 60, 2, 3, 0, false);
+    }
+
+    @Test
+    void purgeDeletesDependentRowsBeforeTheirLinksChunkByChunk() {
+        for (long id = 1; id <= 5; id++) {
+            LinkStore.LinkKey link = new LinkStore.LinkKey(id, "code" + id);
+            expired.add(link);
+            for (int i = 0; i < 4; i++) {
+                jdbcTemplate.update("INSERT INTO url_access_log (url_mapping_id) VALUES (?)", id);
+            }
+            jdbcTemplate.update("INSERT INTO click_rollup VALUES (?, ?)", link.shortCode(), LocalDateTime.now());
+            jdbcTemplate.update("INSERT INTO click_rollup_referer VALUES (?, 'news.example.com')", link.shortCode());
+            jdbcTemplate.update("INSERT INTO visitor_sketch VALUES (?, ?)", link.shortCode(), LocalDate.now());
+        }
+        // A live link keeps everything
+        jdbcTemplate.update("INSERT INTO url_access_log (url_mapping_id) VALUES (99)");
+        jdbcTemplate.update("INSERT INTO click_rollup VALUES ('live', ?)", LocalDateTime.now());
+
+        ExpiryService expiryService = expiryService();
+        assertEquals(5, expiryService.purgeExpired());
+
+        assertEquals(List.of(2, 2, 1), deletedChunks);
+        assertEquals(1, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM url_access_log", Integer.class));
+        assertEquals(1, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM click_rollup", Integer.class));
+        assertEquals(0, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM click_rollup_referer", Integer.class));
+        assertEquals(0, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM visitor_sketch", Integer.class));
+        assertEquals(20L, expiryService.getStats().get("logsDeleted"));
+        assertEquals(3L, expiryService.getStats().get("chunks"));
+        verify(redirectCache).invalidate("code5");
+        verify(topUrlTracker).remove("code5");
+    }
+
+    @Test
+    void expiredLinksAreEvictedOnTheNextTick() {
+        ExpiryService expiryService = expiryService();
+        expiryService.schedule("expired", LocalDateTime.now().minusSeconds(1));
+        expiryService.schedule("later", LocalDateTime.now().plusMinutes(30));
+        // Beyond the horizon: left to the periodic scan
+        expiryService.schedule("next-day", LocalDateTime.now().plusDays(1));
+        assertEquals(2, expiryService.getStats().get("scheduled"));
+
+        expiryService.tick();
+        verify(redirectCache).invalidate("expired");
+        verify(topUrlTracker).remove("expired");
+        verify(redirectCache, never()).invalidate("later");
+        assertEquals(1L, expiryService.getStats().get("evictedOnTime"));
+    }
+
+    private int dependentRows(LinkStore.LinkKey link) {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM url_access_log WHERE url_mapping_id = ?", Integer.class, link.id())
+                + jdbcTemplate.queryForObject("SELECT COUNT(*) FROM click_rollup WHERE short_code = ?", Integer.class, link.shortCode())
+                + jdbcTemplate.queryForObject("SELECT COUNT(*) FROM click_rollup_referer WHERE short_code = ?", Integer.class, link.shortCode())
+                + jdbcTemplate.queryForObject("SELECT COUNT(*) FROM visitor_sketch WHERE short_code = ?", Integer.class, link.shortCode());
+    }
+}
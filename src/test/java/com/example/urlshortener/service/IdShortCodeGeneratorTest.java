@@ -0,0 +1,44 @@
+package com.example.urlshortener.service;
+
+import com.example.urlshortener.util.Base62Encoder;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class IdShortCodeGeneratorTest {
+
+    // 62^9 - 2^52: ids from 0 up to this (exclusive) fit in nine digits
+    private static final long ID_LIMIT = 13_537_086_546_263_552L - (1L << 52);
+
+    private final IdShortCodeGenerator generator = new IdShortCodeGenerator();
+
+    @Test
+    void codesDecodeBackToTheirIds() {
+        for (long id : new long[]{0, 1, 61, 62, 1_000_000, ID_LIMIT - 1}) {
+            String code = generator.codeForId(id);
+            assertEquals(IdShortCodeGenerator.CODE_LENGTH, code.length());
+            assertEquals(id, IdShortCodeGenerator.idForCode(code), code);
+        }
+        // The last id takes the largest nine-digit code
+        assertEquals("999999999", generator.codeForId(ID_LIMIT - 1));
+    }
+
+    @Test
+    void idsOutsideTheCodeRangeAreRejected() {
+        assertThrows(IllegalArgumentException.class, () -> generator.codeForId(-1));
+        assertThrows(IllegalArgumentException.class, () -> generator.codeForId(ID_LIMIT));
+    }
+
+    @Test
+    void otherCodesHaveNoId() {
+        // Just below 2^52: a nine-digit hash or range code
+        assertEquals(-1, IdShortCodeGenerator.idForCode(Base62Encoder.encode(IdShortCodeGenerator.CODE_OFFSET - 1)));
+        assertEquals(0, IdShortCodeGenerator.idForCode(Base62Encoder.encode(IdShortCodeGenerator.CODE_OFFSET)));
+        // 62^9 has ten digits
+        assertEquals(-1, IdShortCodeGenerator.idForCode(Base62Encoder.encode(13_537_086_546_263_552L)));
+        assertEquals(-1, IdShortCodeGenerator.idForCode(Base62Encoder.encode(1L << 48)));
+        assertEquals(-1, IdShortCodeGenerator.idForCode("abc-12345"));
+        assertEquals(-1, IdShortCodeGenerator.idForCode(null));
+    }
+}
@@ -0,0 +1,58 @@
+package com.example.urlshortener.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+class ShortCodeFilterTest {
+
+    private final LinkStore linkStore = mock(LinkStore.class);
+
+    @Test
+    void withSeveralInstancesNoCodeIsRuledOut() {
+        ShortCodeFilter filter = new ShortCodeFilter(linkStore, true, false, 1000, 0.001);
+        filter.buildInBackground();
+        filter.add("mine");
+
+        // Another instance may have created it
+        assertTrue(filter.mightContain("theirs"));
+        assertEquals(false, filter.getStats().get("enabled"));
+        verify(linkStore, never()).forEachShortCode(any());
+    }
+
+    @Test
+    void singleInstanceRulesOutCodesItNeverSaw() throws InterruptedException {
+        doAnswer(invocation -> {
+            List.of("stored-1", "stored-2").forEach(invocation.<Consumer<String>>getArgument(0));
+            return null;
+        }).when(linkStore).forEachShortCode(any());
+        ShortCodeFilter filter = new ShortCodeFilter(linkStore, true, true, 1000, 0.001);
+        // Not built yet: nothing is ruled out
+        assertTrue(filter.mightContain("unknown"));
+
+        filter.buildInBackground();
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (!Boolean.TRUE.equals(filter.getStats().get("ready"))) {
+            assertTrue(System.currentTimeMillis() < deadline, "filter was not built");
+            Thread.sleep(10);
+        }
+        filter.add("created");
+        assertTrue(filter.mightContain("stored-1"));
+        assertTrue(filter.mightContain("created"));
+        assertFalse(filter.mightContain("unknown"));
+
+        filter.remove("stored-1");
+        assertFalse(filter.mightContain("stored-1"));
+        assertTrue(filter.mightContain("stored-2"));
+    }
+}
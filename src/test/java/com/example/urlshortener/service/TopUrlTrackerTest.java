@@ -0,0 +1,48 @@
+package com.example.urlshortener.service;
+
+import com.example.urlshortener.util.SpaceSaving;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class TopUrlTrackerTest {
+
+    @Test
+    void bufferedClicksFromManyThreadsAreAllCounted() throws InterruptedException {
+        TopUrlTracker tracker = new TopUrlTracker(null, true, 10);
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            Thread thread = new Thread(() -> {
+                for (int i = 0; i < 10_000; i++) {
+                    tracker.record(i % 4 == 0 ? "hot" : "warm");
+                    if (i % 1000 == 0) {
+                        tracker.drain();
+                    }
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        List<SpaceSaving.Entry<String>> top = tracker.top(2);
+        assertEquals(new SpaceSaving.Entry<>("warm", 60_000, 0), top.get(0));
+        assertEquals(new SpaceSaving.Entry<>("hot", 20_000, 0), top.get(1));
+    }
+
+    @Test
+    void removeDropsBufferedClicksOfTheCode() {
+        TopUrlTracker tracker = new TopUrlTracker(null, true, 10);
+        tracker.record("gone");
+        tracker.record("kept");
+        tracker.remove("gone");
+
+        assertEquals(List.of(new SpaceSaving.Entry<>("kept", 1, 0)), tracker.top(10));
+        assertEquals(1, tracker.maxUntrackedClicks());
+    }
+}
@@ -0,0 +1,67 @@
+package com.example.urlshortener.service;
+
+import com.example.urlshortener.config.Shards;
+import com.example.urlshortener.repository.VisitorSketchRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class UniqueVisitorsTest {
+
+    private static final LocalDate MONDAY = LocalDate.of(2026, 3, 2);
+    private static final LocalDate TUESDAY = MONDAY.plusDays(1);
+
+    private final JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+    // No flushed sketches: every answer comes from the pending ones
+    private final UniqueVisitors visitors = new UniqueVisitors(jdbcTemplate, new Shards(new MockEnvironment()),
+            mock(PlatformTransactionManager.class), mock(VisitorSketchRepository.class), true);
+
+    @Test
+    void pendingSketchesAreReadPerCodeAndDay() {
+        visitors.record("a", "1.1.1.1", "ua", MONDAY);
+        visitors.record("a", "2.2.2.2", "ua", MONDAY);
+        visitors.record("a", "2.2.2.2", "ua", TUESDAY);
+        visitors.record("a", "3.3.3.3", "ua", TUESDAY);
+        visitors.record("b", "9.9.9.9", "ua", MONDAY);
+
+        Map<String, Object> range = visitors.getUniqueVisitors("a", MONDAY, TUESDAY);
+        assertEquals(3L, range.get("uniqueVisitors"));
+        assertEquals(List.of(Map.of("date", MONDAY, "uniqueVisitors", 2L), Map.of("date", TUESDAY, "uniqueVisitors", 2L)),
+                range.get("days"));
+        assertEquals(2L, visitors.getUniqueVisitors("a", TUESDAY, TUESDAY).get("uniqueVisitors"));
+        assertEquals(3, visitors.getLifetimeUniqueVisitors("a"));
+        assertEquals(1, visitors.getLifetimeUniqueVisitors("b"));
+        assertEquals(0, visitors.getLifetimeUniqueVisitors("c"));
+    }
+
+    @Test
+    void failedFlushKeepsTheSketchesForTheNextOne() {
+        visitors.record("a", "1.1.1.1", "ua", MONDAY);
+        visitors.record("a", "2.2.2.2", "ua", TUESDAY);
+        when(jdbcTemplate.query(anyString(), any(RowMapper.class), any(Object[].class)))
+                .thenThrow(new DataAccessResourceFailureException("database down"));
+
+        visitors.flush();
+        assertEquals(1L, visitors.getStats().get("failedFlushes"));
+        assertEquals(1, visitors.getStats().get("pendingCodes"));
+        assertEquals(2, visitors.getLifetimeUniqueVisitors("a"));
+
+        when(jdbcTemplate.query(anyString(), any(RowMapper.class), any(Object[].class))).thenReturn(List.of());
+        visitors.flush();
+        assertEquals(0, visitors.getStats().get("pendingCodes"));
+        assertEquals(2L, visitors.getStats().get("flushedSketches"));
+    }
+}
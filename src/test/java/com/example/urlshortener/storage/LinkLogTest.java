@@ -0,0 +1,290 @@
+package com.example.urlshortener.storage;
+
+import com.example.urlshortener.model.RedirectType;
+import com.example.urlshortener.model.UrlMapping;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Crashes are simulated by copying the files of an open log, as they are on
+ * disk at that moment, into another directory and opening the copy.
+ */
+class LinkLogTest {
+
+    // Small segments, so a few dozen links span several of them
+    private static final int SEGMENT_BYTES = 2048;
+    private static final int EXPECTED_LINKS = 64;
+    private static final LocalDateTime CREATED = LocalDateTime.of(2026, 3, 2, 12, 0);
+
+    @TempDir
+    Path dir;
+
+    private final List<LinkLog> opened = new ArrayList<>();
+
+    @AfterEach
+    void closeLogs() throws IOException {
+        for (LinkLog linkLog : opened) {
+            linkLog.close();
+        }
+    }
+
+    @Test
+    void reopensFromTheCheckpointAndReplaysOnlyLaterRecords() throws IOException {
+        LinkLog linkLog = open(dir.resolve("log"));
+        insertLinks(linkLog, 10);
+        linkLog.checkpoint();
+        insertLinks(linkLog, 2);
+        linkLog.addClicks("code-1", 5, CREATED.plusHours(1));
+        linkLog.force();
+
+        LinkLog recovered = open(crashCopy(dir.resolve("log"), "crash"));
+        assertTrue(recovered.isRecoveredFromCheckpoint());
+        assertEquals(3, recovered.replayedRecords());
+        assertEquals(12, recovered.size());
+        assertEquals(5, recovered.get("code-1").getClickCount());
+        assertEquals(13, insert(recovered, "next").getId());
+    }
+
+    @Test
+    void cutsOffATornRecordAtTheEndOfTheNewestSegment() throws IOException {
+        LinkLog linkLog = open(dir.resolve("log"));
+        insertLinks(linkLog, 6);
+        linkLog.checkpoint();
+        insertLinks(linkLog, 1);
+        linkLog.force();
+        Path crash = crashCopy(dir.resolve("log"), "crash");
+        // Only the first half of the last record reached the disk
+        tearLastRecord(newestSegment(crash));
+
+        LinkLog recovered = open(crash);
+        assertEquals(1, recovered.tornTails());
+        assertEquals(6, recovered.size());
+        assertNull(recovered.get("code-7"));
+        assertEquals(7, insert(recovered, "after-tear").getId());
+        recovered.close();
+        opened.remove(recovered);
+
+        // What was written over the cut-off record replays cleanly
+        LinkLog reopened = open(crash);
+        assertEquals(0, reopened.tornTails());
+        assertEquals("after-tear", reopened.get(7).getShortCode());
+        assertEquals(7, reopened.size());
+    }
+
+    @Test
+    void replaysTheWholeLogWithoutAUsableCheckpoint() throws IOException {
+        LinkLog linkLog = open(dir.resolve("log"));
+        insertLinks(linkLog, 20);
+        linkLog.delete(4, "code-4");
+        linkLog.addClicks("code-2", 3, CREATED.plusHours(1));
+        linkLog.checkpoint();
+        insertLinks(linkLog, 1);
+        linkLog.force();
+
+        Path missing = crashCopy(dir.resolve("log"), "missing");
+        Files.delete(missing.resolve("index.ckpt"));
+        Path truncated = crashCopy(dir.resolve("log"), "truncated");
+        Path checkpoint = truncated.resolve("index.ckpt");
+        Files.write(checkpoint, Arrays.copyOf(Files.readAllBytes(checkpoint), (int) Files.size(checkpoint) - 4));
+
+        for (Path copy : List.of(missing, truncated)) {
+            LinkLog recovered = open(copy);
+            assertFalse(recovered.isRecoveredFromCheckpoint());
+            assertEquals(20, recovered.size());
+            assertNull(recovered.get("code-4"));
+            assertEquals(3, recovered.get("code-2").getClickCount());
+            assertEquals(22, insert(recovered, "next").getId());
+        }
+    }
+
+    @Test
+    void deletedNewestLinkKeepsItsIdRetiredAfterCompaction() throws IOException {
+        LinkLog linkLog = open(dir.resolve("log"));
+        insertLinks(linkLog, 30);
+        linkLog.delete(29, "code-29");
+        linkLog.delete(30, "code-30");
+        linkLog.compact();
+        linkLog.force();
+
+        // Compaction dropped both links and their DELETE records
+        Path copy = crashCopy(dir.resolve("log"), "no-checkpoint");
+        Files.delete(copy.resolve("index.ckpt"));
+        LinkLog recovered = open(copy);
+        assertFalse(recovered.isRecoveredFromCheckpoint());
+        assertEquals(28, recovered.size());
+        assertNull(recovered.get(30));
+        assertEquals(31, insert(recovered, "next").getId());
+    }
+
+    @Test
+    void recoversFromACrashPartWayThroughCompaction() throws IOException {
+        Path live = dir.resolve("log");
+        LinkLog linkLog = open(live);
+        insertLinks(linkLog, 40);
+        for (long id = 2; id <= 40; id += 3) {
+            linkLog.delete(id, "code-" + id);
+        }
+        linkLog.delete(40, "code-40");
+        linkLog.addClicks("code-1", 7, CREATED.plusHours(2));
+        linkLog.checkpoint();
+        linkLog.force();
+        Path beforeCompaction = crashCopy(live, "before");
+        Set<Path> sealed = segmentNames(beforeCompaction);
+
+        linkLog.compact();
+        linkLog.force();
+        assertTrue(linkLog.reclaimedBytes() > 0);
+
+        // Outputs written, nothing deleted yet; then with the oldest sealed segment gone
+        Path nothingDeleted = crashCopy(beforeCompaction, "nothing-deleted");
+        Path oldestDeleted = crashCopy(beforeCompaction, "oldest-deleted");
+        for (Path name : segmentNames(live)) {
+            if (!sealed.contains(name)) {
+                Files.copy(live.resolve(name), nothingDeleted.resolve(name));
+                Files.copy(live.resolve(name), oldestDeleted.resolve(name));
+            }
+        }
+        Files.delete(oldestDeleted.resolve(oldestSegment(beforeCompaction).getFileName()));
+
+        for (Path copy : List.of(nothingDeleted, oldestDeleted)) {
+            LinkLog recovered = open(copy);
+            // The checkpoint lists the deleted segment, so it no longer matches the files
+            assertEquals(copy == nothingDeleted, recovered.isRecoveredFromCheckpoint());
+            assertEquals(linkLog.size(), recovered.size());
+            for (long id = 1; id <= 40; id++) {
+                UrlMapping expected = linkLog.get(id);
+                UrlMapping actual = recovered.get(id);
+                if (expected == null) {
+                    assertNull(actual, "link " + id);
+                } else {
+                    assertNotNull(actual, "link " + id);
+                    assertEquals(expected.getShortCode(), actual.getShortCode());
+                    assertEquals(expected.getOriginalUrl(), actual.getOriginalUrl());
+                    assertEquals(expected.getClickCount(), actual.getClickCount());
+                }
+            }
+            assertEquals(41, insert(recovered, "next").getId());
+        }
+    }
+
+    private LinkLog open(Path path) throws IOException {
+        LinkLog linkLog = LinkLog.open(path, SEGMENT_BYTES, EXPECTED_LINKS);
+        opened.add(linkLog);
+        return linkLog;
+    }
+
+    /**
+     * Insert links whose codes name their ids: code-1, code-2, ...
+     */
+    private static void insertLinks(LinkLog linkLog, int count) {
+        for (int i = 0; i < count; i++) {
+            insert(linkLog, null);
+        }
+    }
+
+    private static UrlMapping insert(LinkLog linkLog, String code) {
+        UrlMapping mapping = new UrlMapping();
+        mapping.setOriginalUrl("https://example.com/page/" + linkLog.size());
+        mapping.setCreatedAt(CREATED);
+        mapping.setRedirectType(RedirectType.TRACKED);
+        assertTrue(linkLog.insert(mapping, code == null ? id -> "code-" + id : id -> code));
+        return mapping;
+    }
+
+    /**
+     * Copy the log's files as they are on disk now
+     */
+    private Path crashCopy(Path from, String name) throws IOException {
+        Path to = dir.resolve(name);
+        Files.createDirectories(to);
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(from)) {
+            for (Path file : files) {
+                if (!file.getFileName().toString().endsWith(".tmp")) {
+                    Files.copy(file, to.resolve(file.getFileName()));
+                }
+            }
+        }
+        return to;
+    }
+
+    private static Set<Path> segmentNames(Path path) throws IOException {
+        Set<Path> names = new HashSet<>();
+        for (Path segment : segments(path)) {
+            names.add(segment.getFileName());
+        }
+        return names;
+    }
+
+    private static List<Path> segments(Path path) throws IOException {
+        List<Path> segments = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(path, "segment-*.log")) {
+            files.forEach(segments::add);
+        }
+        // Only the ids of a test's segments are compared, not the replay order
+        segments.sort(Comparator.comparingInt(LinkLogTest::segmentId));
+        return segments;
+    }
+
+    private static int segmentId(Path segment) {
+        String name = segment.getFileName().toString();
+        return Integer.parseInt(name.substring(name.indexOf('-') + 1, name.indexOf('.')));
+    }
+
+    private static Path oldestSegment(Path path) throws IOException {
+        return segments(path).get(0);
+    }
+
+    private static Path newestSegment(Path path) throws IOException {
+        List<Path> segments = segments(path);
+        Path newest = segments.get(segments.size() - 1);
+        // The newest segment may still be empty right after a roll
+        if (lastRecordAt(ByteBuffer.wrap(Files.readAllBytes(newest))) < 0) {
+            newest = segments.get(segments.size() - 2);
+        }
+        return newest;
+    }
+
+    /**
+     * Zero the second half of the segment's last record
+     */
+    private static void tearLastRecord(Path segment) throws IOException {
+        byte[] bytes = Files.readAllBytes(segment);
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        int last = lastRecordAt(buffer);
+        int size = LinkRecord.sizeAt(buffer, last);
+        Arrays.fill(bytes, last + size / 2, last + size, (byte) 0);
+        Files.write(segment, bytes);
+    }
+
+    private static int lastRecordAt(ByteBuffer buffer) {
+        int last = -1;
+        for (int position = LogSegment.HEADER_BYTES; ; ) {
+            int size = LinkRecord.sizeAt(buffer, position);
+            if (size == 0) {
+                return last;
+            }
+            last = position;
+            position += size;
+        }
+    }
+}
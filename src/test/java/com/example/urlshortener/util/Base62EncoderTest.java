@@ -0,0 +1,79 @@
+package com.example.urlshortener.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class Base62EncoderTest {
+
+    @Test
+    void digitsAreWrittenLeastSignificantFirst() {
+        assertEquals("a", Base62Encoder.encode(0L));
+        assertEquals("9", Base62Encoder.encode(61L));
+        assertEquals("ab", Base62Encoder.encode(62L));
+        assertEquals(62, Base62Encoder.decode("ab"));
+        assertEquals(1, Base62Encoder.decode("ba"));
+        // An int is read as unsigned
+        assertEquals(Base62Encoder.encode(4_294_967_295L), Base62Encoder.encode(-1));
+    }
+
+    @Test
+    void encodeAndDecodeRoundTrip() {
+        for (long value : new long[]{0, 1, 61, 62, 3843, 3844, 1L << 48, (1L << 52) + 12345, Long.MAX_VALUE}) {
+            String code = Base62Encoder.encode(value);
+            assertEquals(Base62Encoder.length(value), code.length());
+            assertEquals(value, Base62Encoder.decode(code), code);
+            assertEquals(value, Base62Encoder.tryDecode(code), code);
+            byte[] ascii = ("--" + code).getBytes(StandardCharsets.US_ASCII);
+            assertEquals(value, Base62Encoder.decode(ascii, 2, code.length()), code);
+        }
+        assertEquals(Base62Encoder.MAX_LENGTH, Base62Encoder.encode(Long.MAX_VALUE).length());
+    }
+
+    @Test
+    void fixedWidthPadsWithTheZeroDigit() {
+        char[] chars = new char[6];
+        Base62Encoder.encodeFixed(62, chars, 1, 4);
+        assertEquals("abaa", new String(chars, 1, 4));
+        assertEquals(62, Base62Encoder.decode("abaa"));
+
+        byte[] bytes = new byte[4];
+        Base62Encoder.encodeFixed(1, bytes, 0, 4);
+        assertEquals("baaa", new String(bytes, StandardCharsets.US_ASCII));
+        assertEquals(1, Base62Encoder.decode(bytes, 0, 4));
+    }
+
+    @Test
+    void fixedWidthRejectsValuesThatNeedMoreDigits() {
+        // 62^2 needs three digits
+        assertThrows(IllegalArgumentException.class, () -> Base62Encoder.encodeFixed(3844, new char[2], 0, 2));
+        assertThrows(IllegalArgumentException.class, () -> Base62Encoder.encodeFixed(3844, new byte[2], 0, 2));
+        assertThrows(IllegalArgumentException.class, () -> Base62Encoder.encodeFixed(-1, new char[2], 0, 2));
+        char[] largest = new char[2];
+        Base62Encoder.encodeFixed(3843, largest, 0, 2);
+        assertEquals("99", new String(largest));
+    }
+
+    @Test
+    void invalidCodesAreRejected() {
+        String tooLong = "a".repeat(Base62Encoder.MAX_LENGTH + 1);
+        // 61 * 62^10 is beyond Long.MAX_VALUE
+        String overflowing = "aaaaaaaaaa9";
+        for (String code : List.of("", tooLong, "ab-c", "abc!", "é", overflowing)) {
+            assertThrows(IllegalArgumentException.class, () -> Base62Encoder.decode(code), code);
+            byte[] ascii = code.getBytes(StandardCharsets.ISO_8859_1);
+            assertThrows(IllegalArgumentException.class, () -> Base62Encoder.decode(ascii, 0, ascii.length), code);
+            assertEquals(-1, Base62Encoder.tryDecode(code), code);
+            assertFalse(Base62Encoder.isValid(code), code);
+        }
+        assertEquals(-1, Base62Encoder.tryDecode(null));
+        assertTrue(Base62Encoder.isValid(Base62Encoder.encode(Long.MAX_VALUE)));
+        assertThrows(IllegalArgumentException.class, () -> Base62Encoder.encode(-1L));
+    }
+}
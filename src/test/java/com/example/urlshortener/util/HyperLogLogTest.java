@@ -0,0 +1,75 @@
+package com.example.urlshortener.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class HyperLogLogTest {
+
+    private static final int[] CARDINALITIES = {1, 10, 100, 1_000, 5_000, 10_000, 15_000, 50_000, 200_000, 1_000_000};
+    private static final int TRIALS = 8;
+
+    @Test
+    void relativeErrorStaysWithinTheSketchBound() {
+        double sigma = new HyperLogLog().standardError();
+        double squaredErrors = 0;
+        int estimates = 0;
+        for (int n : CARDINALITIES) {
+            for (int trial = 0; trial < TRIALS; trial++) {
+                HyperLogLog sketch = new HyperLogLog();
+                for (int i = 0; i < n; i++) {
+                    sketch.offer(trial + "|visitor-" + i);
+                }
+                double error = (sketch.estimate() - n) / (double) n;
+                // Every single estimate within 3.5 standard errors (small counts are near exact)
+                assertTrue(Math.abs(error) <= Math.max(3.5 * sigma, 1.0 / n),
+                        "n=" + n + " trial=" + trial + " estimate=" + sketch.estimate());
+                squaredErrors += error * error;
+                estimates++;
+            }
+        }
+        // The observed spread matches the advertised standard error
+        double rmse = Math.sqrt(squaredErrors / estimates);
+        assertTrue(rmse <= 1.5 * sigma, "rmse " + rmse + " vs standard error " + sigma);
+    }
+
+    @Test
+    void repeatedValuesAreCountedOnce() {
+        HyperLogLog sketch = new HyperLogLog();
+        for (int round = 0; round < 10; round++) {
+            for (int i = 0; i < 1000; i++) {
+                sketch.offer("visitor-" + i);
+            }
+        }
+        assertEquals(1000, sketch.estimate(), 1000 * 3.5 * sketch.standardError());
+    }
+
+    @Test
+    void mergeEstimatesTheUnion() {
+        HyperLogLog monday = new HyperLogLog();
+        HyperLogLog tuesday = new HyperLogLog();
+        for (int i = 0; i < 30_000; i++) {
+            monday.offer("visitor-" + i);
+        }
+        // 10k of Tuesday's visitors came back from Monday
+        for (int i = 20_000; i < 50_000; i++) {
+            tuesday.offer("visitor-" + i);
+        }
+        HyperLogLog both = monday.copy();
+        both.merge(tuesday);
+        assertEquals(50_000, both.estimate(), 50_000 * 3.5 * both.standardError());
+    }
+
+    @Test
+    void serializationRoundTripsSparseAndDenseSketches() {
+        for (int n : new int[]{0, 3, 100_000}) {
+            HyperLogLog sketch = new HyperLogLog();
+            for (int i = 0; i < n; i++) {
+                sketch.offer("visitor-" + i);
+            }
+            HyperLogLog copy = HyperLogLog.fromBytes(sketch.toBytes());
+            assertEquals(sketch.estimate(), copy.estimate());
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package com.example.urlshortener.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SpaceSavingTest {
+
+    @Test
+    void countsAreExactUntilTheSummaryIsFull() {
+        SpaceSaving<String> summary = new SpaceSaving<>(3);
+        summary.offer("a", 5);
+        summary.offer("b");
+        summary.offer("a");
+
+        assertEquals(List.of(new SpaceSaving.Entry<>("a", 6, 0), new SpaceSaving.Entry<>("b", 1, 0)), summary.top(3));
+        assertEquals(0, summary.minCount());
+        assertEquals(7, summary.total());
+    }
+
+    @Test
+    void newKeyTakesOverTheSmallestCounter() {
+        SpaceSaving<String> summary = new SpaceSaving<>(2);
+        summary.offer("a", 10);
+        summary.offer("b", 3);
+        summary.offer("c");
+
+        assertEquals(List.of(new SpaceSaving.Entry<>("a", 10, 0), new SpaceSaving.Entry<>("c", 4, 3)), summary.top(2));
+        assertEquals(3, summary.minCount());
+    }
+
+    @Test
+    void removeKeepsTheFloorForLaterKeys() {
+        SpaceSaving<String> summary = new SpaceSaving<>(2);
+        summary.offer("a", 10);
+        summary.offer("b", 3);
+        summary.offer("c");
+        summary.remove("a");
+
+        // A slot is free again, but an untracked key may still have been seen 10 times
+        assertEquals(10, summary.minCount());
+        summary.offer("d");
+        assertEquals(List.of(new SpaceSaving.Entry<>("d", 11, 10), new SpaceSaving.Entry<>("c", 4, 3)), summary.top(2));
+        assertEquals(10, summary.minCount());
+    }
+
+    @Test
+    void raiseFloorNeverLowersIt() {
+        SpaceSaving<String> summary = new SpaceSaving<>(2);
+        summary.raiseFloor(5);
+        summary.raiseFloor(2);
+        assertEquals(5, summary.minCount());
+        summary.offer("a");
+        assertEquals(List.of(new SpaceSaving.Entry<>("a", 6, 5)), summary.top(1));
+    }
+
+    @Test
+    void estimatesStayWithinTheirErrorBoundsOnASkewedStreamWithRemovals() {
+        SpaceSaving<Integer> summary = new SpaceSaving<>(50);
+        Map<Integer, Long> exact = new HashMap<>();
+        Set<Integer> removed = new HashSet<>();
+        SplittableRandom random = new SplittableRandom(42);
+        for (int i = 0; i < 200_000; i++) {
+            // Roughly Zipf: small keys are much more frequent
+            int key = (int) Math.floor(Math.pow(2000, random.nextDouble())) - 1;
+            if (removed.contains(key)) {
+                continue;
+            }
+            summary.offer(key);
+            exact.merge(key, 1L, Long::sum);
+            if (i % 20_000 == 19_999) {
+                int victim = summary.top(1).get(0).key();
+                summary.remove(victim);
+                removed.add(victim);
+            }
+        }
+
+        Set<Integer> monitored = new HashSet<>();
+        for (SpaceSaving.Entry<Integer> entry : summary.top(summary.size())) {
+            long trueCount = exact.getOrDefault(entry.key(), 0L);
+            assertTrue(entry.count() >= trueCount, "over-estimate for " + entry.key());
+            assertTrue(entry.guaranteedCount() <= trueCount, "guaranteed count for " + entry.key());
+            monitored.add(entry.key());
+        }
+        for (Map.Entry<Integer, Long> e : exact.entrySet()) {
+            if (!monitored.contains(e.getKey()) && !removed.contains(e.getKey())) {
+                assertTrue(e.getValue() <= summary.minCount(), "untracked key " + e.getKey());
+            }
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package com.example.urlshortener.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TimingWheelTest {
+
+    // 8 slots of 10 ms: one turn of the wheel is 80 ms
+    private static final int SLOTS = 8;
+    private static final long TICK = 10;
+
+    @Test
+    void keysFireOnTheTickOfTheirDeadlineNeverBefore() {
+        TimingWheel<String> wheel = new TimingWheel<>(SLOTS, TICK, 0);
+        wheel.schedule("a", 25);
+        wheel.schedule("b", 30);
+
+        assertEquals(List.of(), wheel.advance(10));
+        assertEquals(List.of(), wheel.advance(20));
+        // 25 rounds up to the 30 ms tick, so both fire together
+        assertEquals(List.of("a", "b"), wheel.advance(30));
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    void deadlinesBeyondOneTurnWaitForTheirTurn() {
+        TimingWheel<String> wheel = new TimingWheel<>(SLOTS, TICK, 0);
+        // Same slot as tick 2, but two and three turns later
+        wheel.schedule("two-turns", 20 + 2 * SLOTS * TICK);
+        wheel.schedule("three-turns", 20 + 3 * SLOTS * TICK);
+
+        for (long now = 0; now < 20 + 2 * SLOTS * TICK; now += TICK) {
+            assertEquals(List.of(), wheel.advance(now), "at " + now);
+        }
+        assertEquals(List.of("two-turns"), wheel.advance(20 + 2 * SLOTS * TICK));
+        assertEquals(1, wheel.size());
+        assertEquals(List.of("three-turns"), wheel.advance(20 + 3 * SLOTS * TICK));
+    }
+
+    @Test
+    void cancelledAndRescheduledKeysFireOnlyAtTheirNewDeadline() {
+        TimingWheel<String> wheel = new TimingWheel<>(SLOTS, TICK, 0);
+        wheel.schedule("cancelled", 20);
+        wheel.schedule("moved", 20);
+        assertTrue(wheel.cancel("cancelled"));
+        assertFalse(wheel.cancel("cancelled"));
+        wheel.schedule("moved", 50);
+        assertEquals(1, wheel.size());
+
+        assertEquals(List.of(), wheel.advance(20));
+        assertEquals(List.of(), wheel.advance(40));
+        assertEquals(List.of("moved"), wheel.advance(50));
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    void missedTicksAreCaughtUpInOneAdvance() {
+        TimingWheel<String> wheel = new TimingWheel<>(SLOTS, TICK, 0);
+        wheel.schedule("early", 10);
+        wheel.schedule("late", 60);
+        wheel.schedule("next-turn", 130);
+        // Past deadlines fire on the next tick
+        wheel.schedule("overdue", -100);
+
+        // Skip ticks 1-6 and more than a whole turn
+        List<String> fired = wheel.advance(100);
+        assertEquals(3, fired.size());
+        assertTrue(fired.containsAll(List.of("early", "late", "overdue")));
+        assertEquals(List.of(), wheel.advance(120));
+        assertEquals(List.of("next-turn"), wheel.advance(130));
+        // Advancing to an earlier time does nothing
+        assertEquals(List.of(), wheel.advance(50));
+    }
+
+    @Test
+    void rejectsEmptyWheels() {
+        assertThrows(IllegalArgumentException.class, () -> new TimingWheel<String>(0, TICK, 0));
+        assertThrows(IllegalArgumentException.class, () -> new TimingWheel<String>(SLOTS, 0, 0));
+    }
+}
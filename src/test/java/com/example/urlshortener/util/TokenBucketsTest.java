@@ -0,0 +1,94 @@
+package com.example.urlshortener.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TokenBucketsTest {
+
+    private static final long SECOND = 1_000_000_000L;
+
+    @Test
+    void burstIsAvailableAtOnceThenTheCallerWaitsForRefill() {
+        TokenBuckets buckets = new TokenBuckets(100);
+        for (int i = 0; i < 5; i++) {
+            assertEquals(0, buckets.tryAcquire("a", 10, 5, 0));
+        }
+        // 10 tokens per second: the next one is 100 ms away
+        assertEquals(SECOND / 10, buckets.tryAcquire("a", 10, 5, 0));
+        assertEquals(0, buckets.tryAcquire("a", 10, 5, SECOND / 10));
+        assertTrue(buckets.tryAcquire("a", 10, 5, SECOND / 10) > 0);
+    }
+
+    @Test
+    void refillIsCappedAtBurst() {
+        TokenBuckets buckets = new TokenBuckets(100);
+        for (int i = 0; i < 5; i++) {
+            buckets.tryAcquire("a", 10, 5, 0);
+        }
+        // An hour idle still only refills the burst
+        long later = 3600 * SECOND;
+        for (int i = 0; i < 5; i++) {
+            assertEquals(0, buckets.tryAcquire("a", 10, 5, later));
+        }
+        assertTrue(buckets.tryAcquire("a", 10, 5, later) > 0);
+    }
+
+    @Test
+    void keysHaveIndependentBuckets() {
+        TokenBuckets buckets = new TokenBuckets(100);
+        assertEquals(0, buckets.tryAcquire("a", 1, 1, 0));
+        assertTrue(buckets.tryAcquire("a", 1, 1, 0) > 0);
+        assertEquals(0, buckets.tryAcquire("b", 1, 1, 0));
+        assertEquals(2, buckets.size());
+    }
+
+    @Test
+    void fullSegmentDropsItsLeastRecentlyUsedBucket() {
+        // 32 keys over 16 segments: two buckets per segment
+        TokenBuckets buckets = new TokenBuckets(32);
+        List<String> keys = keysInOneSegment(3);
+        String first = keys.get(0);
+        String second = keys.get(1);
+        String third = keys.get(2);
+
+        assertEquals(0, buckets.tryAcquire(first, 0.001, 1, 0));
+        assertEquals(0, buckets.tryAcquire(second, 0.001, 1, 1));
+        // Using first again makes second the least recently used
+        assertTrue(buckets.tryAcquire(first, 0.001, 1, 2) > 0);
+        assertEquals(0, buckets.tryAcquire(third, 0.001, 1, 3));
+
+        assertEquals(1, buckets.getEvictions());
+        assertEquals(2, buckets.size());
+        // first kept its empty bucket; second was dropped and starts full again
+        assertTrue(buckets.tryAcquire(first, 0.001, 1, 4) > 0);
+        assertEquals(0, buckets.tryAcquire(second, 0.001, 1, 5));
+    }
+
+    @Test
+    void removeIdleDropsOnlyBucketsUnusedForTheIdleTime() {
+        TokenBuckets buckets = new TokenBuckets(100);
+        buckets.tryAcquire("old", 10, 5, 0);
+        buckets.tryAcquire("recent", 10, 5, 5 * SECOND);
+
+        assertEquals(1, buckets.removeIdle(10 * SECOND, 12 * SECOND));
+        assertEquals(1, buckets.size());
+        assertEquals(1, buckets.removeIdle(10 * SECOND, 15 * SECOND));
+        assertEquals(0, buckets.size());
+    }
+
+    private static List<String> keysInOneSegment(int count) {
+        List<String> keys = new ArrayList<>();
+        for (int i = 0; keys.size() < count; i++) {
+            String key = "client-" + i;
+            if ((key.hashCode() & 0x7fffffff) % 16 == 0) {
+                keys.add(key);
+            }
+        }
+        return keys;
+    }
+}
@@ -0,0 +1,55 @@
+package com.example.urlshortener.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TrustedProxiesTest {
+
+    @Test
+    void matchesAddressesAndCidrRanges() {
+        TrustedProxies proxies = new TrustedProxies(List.of("10.0.0.0/8", "192.168.1.7", "fd00::/8"));
+        assertTrue(proxies.contains("10.1.2.3"));
+        assertTrue(proxies.contains("192.168.1.7"));
+        assertTrue(proxies.contains("fd12:3456::1"));
+        assertFalse(proxies.contains("11.0.0.1"));
+        assertFalse(proxies.contains("192.168.1.8"));
+        assertFalse(proxies.contains("not-an-ip"));
+    }
+
+    @Test
+    void matchesPrefixesThatEndInsideAByte() {
+        TrustedProxies proxies = new TrustedProxies(List.of("172.16.0.0/12"));
+        assertTrue(proxies.contains("172.31.255.255"));
+        assertFalse(proxies.contains("172.32.0.0"));
+    }
+
+    @Test
+    void rejectsInvalidEntries() {
+        assertThrows(IllegalArgumentException.class, () -> new TrustedProxies(List.of("proxy.example.com")));
+        assertThrows(IllegalArgumentException.class, () -> new TrustedProxies(List.of("10.0.0.0/33")));
+        assertThrows(IllegalArgumentException.class, () -> new TrustedProxies(List.of("10.0.0.256")));
+    }
+
+    @Test
+    void headersAreIgnoredFromUntrustedPeers() {
+        TrustedProxies proxies = new TrustedProxies(List.of("10.0.0.1"));
+        assertEquals("203.0.113.9", proxies.clientIp("1.2.3.4", "5.6.7.8", "203.0.113.9"));
+        assertEquals("203.0.113.9", new TrustedProxies(List.of()).clientIp("1.2.3.4", null, "203.0.113.9"));
+    }
+
+    @Test
+    void nearestUntrustedHopIsTheClient() {
+        TrustedProxies proxies = new TrustedProxies(List.of("10.0.0.0/8"));
+        // The leftmost hop was sent by the client and is not believed
+        assertEquals("198.51.100.4", proxies.clientIp("1.2.3.4, 198.51.100.4, 10.0.0.2", null, "10.0.0.1"));
+        assertEquals("198.51.100.4", proxies.clientIp(null, "198.51.100.4", "10.0.0.1"));
+        assertEquals("10.0.0.5", proxies.clientIp("10.0.0.5, 10.0.0.2", null, "10.0.0.1"));
+        assertEquals("10.0.0.1", proxies.clientIp(null, null, "10.0.0.1"));
+    }
+}
@@ -0,0 +1,44 @@
+package com.example.urlshortener.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class URLHistoryStackTest {
+
+    @Test
+    void aFullStackKeepsTheNewestEntriesNewestFirst() {
+        URLHistoryStack history = new URLHistoryStack(3);
+        for (int i = 1; i <= 5; i++) {
+            history.pushHistory("https://example.com/" + i, "code" + i);
+        }
+
+        assertEquals(List.of("code5", "code4", "code3"), codes(history.getHistoryList()));
+        assertEquals(List.of("code3", "code4", "code5"), codes(history.getHistory()));
+        assertEquals("code5", history.peekHistory().getShortCode());
+        assertEquals(3, history.getHistorySize());
+    }
+
+    @Test
+    void clearedStackFillsUpAgain() {
+        URLHistoryStack history = new URLHistoryStack(3);
+        history.pushHistory("https://example.com/1", "code1");
+        history.pushHistory("https://example.com/2", "code2");
+        history.clearHistory();
+        assertTrue(history.isEmpty());
+        assertNull(history.peekHistory());
+
+        for (int i = 3; i <= 6; i++) {
+            history.pushHistory("https://example.com/" + i, "code" + i);
+        }
+        assertEquals(List.of("code6", "code5", "code4"), codes(history.getHistoryList()));
+    }
+
+    private static List<String> codes(List<URLHistoryStack.UrlHistoryEntry> entries) {
+        return entries.stream().map(URLHistoryStack.UrlHistoryEntry::getShortCode).toList();
+    }
+}